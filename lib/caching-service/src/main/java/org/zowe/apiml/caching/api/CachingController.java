@@ -10,15 +10,24 @@
 
 package org.zowe.apiml.caching.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import io.swagger.v3.oas.annotations.Operation;
-import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.BatchOperation;
+import org.zowe.apiml.caching.model.BatchRequest;
+import org.zowe.apiml.caching.model.BatchResponse;
+import org.zowe.apiml.caching.model.BatchResult;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.AsyncStorage;
 import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.Storage;
 import org.zowe.apiml.caching.service.StorageException;
@@ -26,15 +35,32 @@ import org.zowe.apiml.message.core.Message;
 import org.zowe.apiml.message.core.MessageService;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 @RestController
-@RequiredArgsConstructor
 @RequestMapping("/api/v1")
 public class CachingController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String CURSOR_HEADER = "X-Cache-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final ObjectMapper mapper = new ObjectMapper();
+
     private final Storage storage;
+    private final AsyncStorage asyncStorage;
     private final MessageService messageService;
+    private final GeneralConfig generalConfig;
 
+    public CachingController(Storage storage, MessageService messageService, GeneralConfig generalConfig) {
+        this.storage = storage;
+        this.asyncStorage = AsyncStorage.of(storage);
+        this.messageService = messageService;
+        this.generalConfig = generalConfig;
+    }
 
     @GetMapping(value = "/cache", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Retrieves all values in the cache",
@@ -53,6 +79,65 @@ public class CachingController {
         ).orElseGet(this::getUnauthorizedResponse);
     }
 
+    @GetMapping(value = "/cache-stream", produces = APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Streams the values in the cache",
+        description = "Values returned for the calling service, one per line. With the limit only one page is returned " +
+            "and the cursor of the next page is in the " + CURSOR_HEADER + " header.")
+    @HystrixCommand
+    public ResponseEntity<StreamingResponseBody> streamAllValues(@RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 HttpServletRequest request) {
+        Optional<String> serviceId = getServiceId(request);
+        if (!serviceId.isPresent()) {
+            return streamed(getUnauthorizedResponse());
+        }
+
+        try {
+            if (limit != null && limit <= 0) {
+                invalidPayload(String.valueOf(limit), "The limit has to be a positive number");
+            }
+
+            int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+            ScanResult firstPage = storage.scanForService(serviceId.get(), cursor, pageSize);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE));
+            if (limit != null) {
+                if (firstPage.getCursor() != null) {
+                    headers.set(CURSOR_HEADER, firstPage.getCursor());
+                }
+                return new ResponseEntity<>(out -> writeEntries(out, firstPage), headers, HttpStatus.OK);
+            }
+
+            // The following pages are read only while the previous ones are being written to the response.
+            return new ResponseEntity<>(out -> {
+                ScanResult page = writeEntries(out, firstPage);
+                while (page.getCursor() != null) {
+                    page = writeEntries(out, storage.scanForService(serviceId.get(), page.getCursor(), pageSize));
+                }
+            }, headers, HttpStatus.OK);
+        } catch (StorageException exception) {
+            return streamed(exceptionToResponse(exception));
+        } catch (Exception exception) {
+            return streamed(handleInternalError(exception, request.getRequestURL()));
+        }
+    }
+
+    private ScanResult writeEntries(OutputStream out, ScanResult page) throws IOException {
+        for (KeyValue entry : page.getEntries()) {
+            out.write(mapper.writeValueAsBytes(entry));
+            out.write('\n');
+        }
+        out.flush();
+        return page;
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamed(ResponseEntity<Object> response) {
+        return ResponseEntity.status(response.getStatusCode())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(out -> out.write(mapper.writeValueAsBytes(response.getBody())));
+    }
+
     @DeleteMapping(value = "/cache", produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Delete all values for service from the cache",
         description = "Will delete all key-value pairs for specific service")
@@ -81,9 +166,8 @@ public class CachingController {
     @Operation(summary = "Retrieves a specific value in the cache",
         description = "Value returned is for the provided {key}")
     @ResponseBody
-    @HystrixCommand
-    public ResponseEntity<Object> getValue(@PathVariable String key, HttpServletRequest request) {
-        return keyRequest(storage::read,
+    public CompletableFuture<ResponseEntity<Object>> getValue(@PathVariable String key, HttpServletRequest request) {
+        return keyRequest(asyncStorage::readAsync,
             key, request, HttpStatus.OK);
     }
 
@@ -91,9 +175,8 @@ public class CachingController {
     @Operation(summary = "Delete key from the cache",
         description = "Will delete key-value pair for the provided {key}")
     @ResponseBody
-    @HystrixCommand
-    public ResponseEntity<Object> delete(@PathVariable String key, HttpServletRequest request) {
-        return keyRequest(storage::delete,
+    public CompletableFuture<ResponseEntity<Object>> delete(@PathVariable String key, HttpServletRequest request) {
+        return keyRequest(asyncStorage::deleteAsync,
             key, request, HttpStatus.NO_CONTENT);
     }
 
@@ -101,9 +184,8 @@ public class CachingController {
     @Operation(summary = "Create a new key in the cache",
         description = "A new key-value pair will be added to the cache")
     @ResponseBody
-    @HystrixCommand
-    public ResponseEntity<Object> createKey(@RequestBody KeyValue keyValue, HttpServletRequest request) {
-        return keyValueRequest(storage::create,
+    public CompletableFuture<ResponseEntity<Object>> createKey(@RequestBody KeyValue keyValue, HttpServletRequest request) {
+        return keyValueRequest(asyncStorage::createAsync,
             keyValue, request, HttpStatus.CREATED);
     }
 
@@ -191,13 +273,149 @@ public class CachingController {
     @Operation(summary = "Update key in the cache",
         description = "Value at the key in the provided key-value pair will be updated to the provided value")
     @ResponseBody
-    @HystrixCommand
-    public ResponseEntity<Object> update(@RequestBody KeyValue keyValue, HttpServletRequest request) {
-        return keyValueRequest(storage::update,
+    public CompletableFuture<ResponseEntity<Object>> update(@RequestBody KeyValue keyValue, HttpServletRequest request) {
+        return keyValueRequest(asyncStorage::updateAsync,
             keyValue, request, HttpStatus.NO_CONTENT);
     }
 
 
+    @PostMapping(value = "/cache/_batch", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Process more operations on the cache at once",
+        description = "The read, create, update and delete operations are processed in the given order. Every operation gets its own status.")
+    @ResponseBody
+    @HystrixCommand
+    public ResponseEntity<Object> batch(@RequestBody BatchRequest batchRequest, HttpServletRequest request) {
+        Optional<String> serviceId = getServiceId(request);
+        if (!serviceId.isPresent()) {
+            return getUnauthorizedResponse();
+        }
+
+        try {
+            if (batchRequest == null || batchRequest.getOperations() == null || batchRequest.getOperations().isEmpty()) {
+                invalidPayload(null, "No operations provided in the payload");
+            }
+            if (batchRequest.getOperations().size() > generalConfig.getMaxBatchSize()) {
+                invalidPayload(null, "At most " + generalConfig.getMaxBatchSize() + " operations can be sent in one batch");
+            }
+
+            List<BatchResult> results = processBatch(serviceId.get(), batchRequest.getOperations());
+            return new ResponseEntity<>(new BatchResponse(results), HttpStatus.OK);
+        } catch (StorageException exception) {
+            return exceptionToResponse(exception);
+        } catch (Exception exception) {
+            return handleInternalError(exception, request.getRequestURL());
+        }
+    }
+
+    /**
+     * The consecutive operations of the same type are passed to the storage at once. The run of the operations ends
+     * with a repeated key, so the result of every operation can be told apart.
+     */
+    private List<BatchResult> processBatch(String serviceId, List<BatchOperation> operations) {
+        BatchResult[] results = new BatchResult[operations.size()];
+
+        int start = 0;
+        while (start < operations.size()) {
+            BatchOperation.Type type = operations.get(start).getOp();
+            Set<String> keys = new HashSet<>();
+            int end = start;
+            while (end < operations.size() && operations.get(end).getOp() == type && keys.add(operations.get(end).getKey())) {
+                end++;
+            }
+
+            processRun(serviceId, type, operations.subList(start, end), start, results);
+            start = end;
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void processRun(String serviceId, BatchOperation.Type type, List<BatchOperation> run, int offset, BatchResult[] results) {
+        Map<Integer, BatchOperation> valid = new LinkedHashMap<>();
+        for (int i = 0; i < run.size(); i++) {
+            BatchOperation operation = run.get(i);
+            try {
+                checkForInvalidOperation(operation);
+                valid.put(offset + i, operation);
+            } catch (StorageException exception) {
+                results[offset + i] = failedOperation(operation.getKey(), exception);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            processValid(serviceId, type, valid, results);
+        } catch (StorageException exception) {
+            // The storage failed the whole run, so every operation of it gets the failure.
+            valid.forEach((index, operation) -> results[index] = failedOperation(operation.getKey(), exception));
+        }
+    }
+
+    private void processValid(String serviceId, BatchOperation.Type type, Map<Integer, BatchOperation> valid, BatchResult[] results) {
+        if (type == BatchOperation.Type.READ) {
+            Map<String, KeyValue> found = storage.readAll(serviceId, keys(valid.values()));
+            valid.forEach((index, operation) -> {
+                KeyValue entry = found.get(operation.getKey());
+                results[index] = entry != null
+                    ? new BatchResult(operation.getKey(), HttpStatus.OK.value(), entry, null)
+                    : failedOperation(operation.getKey(), new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(),
+                    Messages.KEY_NOT_IN_CACHE.getStatus(), operation.getKey(), serviceId));
+            });
+            return;
+        }
+
+        Map<String, StorageException> failures;
+        HttpStatus successStatus;
+        if (type == BatchOperation.Type.CREATE) {
+            failures = storage.createAll(serviceId, keyValues(valid.values()));
+            successStatus = HttpStatus.CREATED;
+        } else if (type == BatchOperation.Type.UPDATE) {
+            failures = storage.updateAll(serviceId, keyValues(valid.values()));
+            successStatus = HttpStatus.NO_CONTENT;
+        } else {
+            failures = storage.deleteAll(serviceId, keys(valid.values()));
+            successStatus = HttpStatus.NO_CONTENT;
+        }
+
+        valid.forEach((index, operation) -> {
+            StorageException failure = failures.get(operation.getKey());
+            results[index] = failure != null
+                ? failedOperation(operation.getKey(), failure)
+                : new BatchResult(operation.getKey(), successStatus.value(), null, null);
+        });
+    }
+
+    private List<String> keys(Collection<BatchOperation> operations) {
+        List<String> keys = new ArrayList<>();
+        operations.forEach(operation -> keys.add(operation.getKey()));
+        return keys;
+    }
+
+    private List<KeyValue> keyValues(Collection<BatchOperation> operations) {
+        List<KeyValue> keyValues = new ArrayList<>();
+        operations.forEach(operation -> keyValues.add(operation.toKeyValue()));
+        return keyValues;
+    }
+
+    private BatchResult failedOperation(String key, StorageException exception) {
+        Message message = messageService.createMessage(exception.getKey(), (Object[]) exception.getParameters());
+        return new BatchResult(key, exception.getStatus().value(), null, message.mapToView());
+    }
+
+    private void checkForInvalidOperation(BatchOperation operation) {
+        if (operation.getOp() == null) {
+            invalidPayload(operation.toString(), "No operation provided in the payload");
+        }
+
+        if (operation.getOp() == BatchOperation.Type.CREATE || operation.getOp() == BatchOperation.Type.UPDATE) {
+            checkForInvalidPayload(operation.toKeyValue());
+        } else if (operation.getKey() == null) {
+            keyNotInCache();
+        }
+    }
+
     private ResponseEntity<Object> exceptionToResponse(StorageException exception) {
         Message message = messageService.createMessage(exception.getKey(), (Object[]) exception.getParameters());
         return new ResponseEntity<>(message.mapToView(), exception.getStatus());
@@ -208,24 +426,24 @@ public class CachingController {
      * Verify validity of the data
      * Do the storage operation passed in as Lambda
      * Properly handle and package Exceptions.
+     * The request thread is released while the storage works, the response is written once the operation completes.
      */
-    private ResponseEntity<Object> keyRequest(KeyOperation keyOperation, String key, HttpServletRequest request, HttpStatus successStatus) {
+    private CompletableFuture<ResponseEntity<Object>> keyRequest(KeyOperation keyOperation, String key, HttpServletRequest request, HttpStatus successStatus) {
         Optional<String> serviceId = getServiceId(request);
         if (!serviceId.isPresent()) {
-            return getUnauthorizedResponse();
+            return CompletableFuture.completedFuture(getUnauthorizedResponse());
         }
+
+        StringBuffer requestURL = request.getRequestURL();
         try {
             if (key == null) {
                 keyNotInCache();
             }
 
-            KeyValue pair = keyOperation.storageRequest(serviceId.get(), key);
-
-            return new ResponseEntity<>(pair, successStatus);
-        } catch (StorageException exception) {
-            return exceptionToResponse(exception);
+            return keyOperation.storageRequest(serviceId.get(), key).toCompletableFuture()
+                .handle((pair, failure) -> failure == null ? new ResponseEntity<>(pair, successStatus) : failureToResponse(failure, requestURL));
         } catch (Exception exception) {
-            return handleInternalError(exception, request.getRequestURL());
+            return CompletableFuture.completedFuture(failureToResponse(exception, requestURL));
         }
     }
 
@@ -234,27 +452,35 @@ public class CachingController {
      * verify validity of the data.
      * Do the storage operation passed in as Lambda
      * Properly handle and package Exceptions.
+     * The request thread is released while the storage works, the response is written once the operation completes.
      */
-    private ResponseEntity<Object> keyValueRequest(KeyValueOperation keyValueOperation, KeyValue keyValue,
-                                                   HttpServletRequest request, HttpStatus successStatus) {
+    private CompletableFuture<ResponseEntity<Object>> keyValueRequest(KeyValueOperation keyValueOperation, KeyValue keyValue,
+                                                                      HttpServletRequest request, HttpStatus successStatus) {
         Optional<String> serviceId = getServiceId(request);
         if (!serviceId.isPresent()) {
-            return getUnauthorizedResponse();
+            return CompletableFuture.completedFuture(getUnauthorizedResponse());
         }
 
+        StringBuffer requestURL = request.getRequestURL();
         try {
             checkForInvalidPayload(keyValue);
 
-            keyValueOperation.storageRequest(serviceId.get(), keyValue);
-
-            return new ResponseEntity<>(successStatus);
-        } catch (StorageException exception) {
-            return exceptionToResponse(exception);
+            return keyValueOperation.storageRequest(serviceId.get(), keyValue).toCompletableFuture()
+                .handle((pair, failure) -> failure == null ? new ResponseEntity<>(successStatus) : failureToResponse(failure, requestURL));
         } catch (Exception exception) {
-            return handleInternalError(exception, request.getRequestURL());
+            return CompletableFuture.completedFuture(failureToResponse(exception, requestURL));
         }
     }
 
+    private ResponseEntity<Object> failureToResponse(Throwable failure, StringBuffer requestURL) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof StorageException) {
+            return exceptionToResponse((StorageException) cause);
+        }
+
+        return handleInternalError(cause, requestURL);
+    }
+
     private ResponseEntity<Object> mapKeyValueRequest(MapKeyValueOperation operation, String mapKey, KeyValue keyValue,
                                                       HttpServletRequest request, HttpStatus successStatus) {
         Optional<String> serviceId = getServiceId(request);
@@ -297,7 +523,7 @@ public class CachingController {
         }
     }
 
-    private ResponseEntity<Object> handleInternalError(Exception exception, StringBuffer requestURL) {
+    private ResponseEntity<Object> handleInternalError(Throwable exception, StringBuffer requestURL) {
         Messages internalServerError = Messages.INTERNAL_SERVER_ERROR;
         Message message = messageService.createMessage(internalServerError.getKey(), requestURL, exception.getMessage(), exception.toString());
         return new ResponseEntity<>(message.mapToView(), internalServerError.getStatus());
@@ -331,16 +557,20 @@ public class CachingController {
         if (key == null) {
             invalidPayload(keyValue.toString(), "No key provided in the payload");
         }
+
+        if (keyValue.getTtl() != null && keyValue.getTtl() <= 0) {
+            invalidPayload(keyValue.toString(), "The time to live has to be a positive amount of milliseconds");
+        }
     }
 
     @FunctionalInterface
     interface KeyOperation {
-        KeyValue storageRequest(String serviceId, String key);
+        CompletionStage<KeyValue> storageRequest(String serviceId, String key);
     }
 
     @FunctionalInterface
     interface KeyValueOperation {
-        KeyValue storageRequest(String serviceId, KeyValue keyValue) throws StorageException;
+        CompletionStage<KeyValue> storageRequest(String serviceId, KeyValue keyValue) throws StorageException;
     }
 
     @FunctionalInterface
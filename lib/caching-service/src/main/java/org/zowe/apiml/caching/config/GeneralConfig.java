@@ -28,6 +28,22 @@ public class GeneralConfig {
     private String evictionStrategy;
     @Value("${caching.storage.size:100}")
     private int maxDataSize;
+    /**
+     * Time to live of the entries in milliseconds used by the ttlFirst eviction strategy. 0 means no expiration.
+     */
+    @Value("${caching.storage.timeToLive:0}")
+    private long timeToLive;
+    /**
+     * When enabled, the new entry is stored in the full storage only if it is estimated to be accessed more often
+     * than the entry which would be evicted for it.
+     */
+    @Value("${caching.storage.admissionFilter.enabled:false}")
+    private boolean admissionFilterEnabled;
+    /**
+     * The maximum amount of the operations in one batch request, the larger batches are rejected.
+     */
+    @Value("${caching.batch.maxSize:1000}")
+    private int maxBatchSize = 1000;
 
     @Bean
     @ConditionalOnProperty(name = "server.attls.enabled", havingValue = "true")
@@ -0,0 +1,47 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single operation of the batch request. The value and time to live are used only by the create and update.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperation {
+    private Type op;
+    private String key;
+    private String value;
+    private Long ttl;
+
+    public KeyValue toKeyValue() {
+        KeyValue keyValue = new KeyValue(key, value);
+        keyValue.setTtl(ttl);
+        return keyValue;
+    }
+
+    public enum Type {
+        @JsonProperty("read")
+        READ,
+        @JsonProperty("create")
+        CREATE,
+        @JsonProperty("update")
+        UPDATE,
+        @JsonProperty("delete")
+        DELETE
+    }
+}
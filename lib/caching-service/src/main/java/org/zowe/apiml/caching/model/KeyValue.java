@@ -29,6 +29,10 @@ public class KeyValue implements Serializable {
     private final String value;
     private String serviceId;
     private final String created;
+    /**
+     * Time to live of the entry in milliseconds counted from its creation. The entry without it never expires.
+     */
+    private Long ttl;
 
     public KeyValue(String key, String value) {
         this.key = key;
@@ -41,6 +45,26 @@ public class KeyValue implements Serializable {
         return String.valueOf(new Date().getTime());
     }
 
+    /**
+     * @return Time in milliseconds when the entry expires or Long.MAX_VALUE if it never expires.
+     */
+    public long expirationTime() {
+        if (ttl == null) {
+            return Long.MAX_VALUE;
+        }
+
+        try {
+            long createdAt = Long.parseLong(created);
+            return ttl > Long.MAX_VALUE - createdAt ? Long.MAX_VALUE : createdAt + ttl;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    public boolean isExpiredAt(long time) {
+        return expirationTime() <= time;
+    }
+
     @JsonCreator
     public KeyValue() {
         key = "";
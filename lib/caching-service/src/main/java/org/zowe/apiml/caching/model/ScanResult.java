@@ -0,0 +1,26 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One page of the entries of a service. The cursor points to the next page and is null once there are no more
+ * entries.
+ */
+@Value
+public class ScanResult {
+    List<KeyValue> entries;
+    String cursor;
+}
@@ -0,0 +1,26 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+public interface AdmissionFilter {
+    /**
+     * This method is called for every access to the entry, whether the entry is stored or not.
+     */
+    void record(String serviceId, String key);
+
+    /**
+     * This method is called when the storage is full, before the victim chosen by the eviction strategy is removed.
+     * It isn't called for the victim which already expired.
+     *
+     * @return true if the new entry should be stored instead of the victim.
+     */
+    boolean admit(String serviceId, String key, EntryKey victim);
+}
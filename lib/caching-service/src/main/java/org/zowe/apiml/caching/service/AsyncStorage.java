@@ -0,0 +1,56 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+import org.zowe.apiml.caching.model.KeyValue;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * The storage able to process the single key operations without blocking the calling thread. The operations behave
+ * the same as the ones of the {@link Storage}, the exceptions are delivered by the failed stage instead of being thrown.
+ * <p>
+ * The storages which don't implement it are adapted by {@link #of(Storage)}, their operations are done by the calling
+ * thread.
+ */
+public interface AsyncStorage {
+    /**
+     * @see Storage#create(String, KeyValue)
+     */
+    CompletionStage<KeyValue> createAsync(String serviceId, KeyValue toCreate);
+
+    /**
+     * @see Storage#read(String, String)
+     */
+    CompletionStage<KeyValue> readAsync(String serviceId, String key);
+
+    /**
+     * @see Storage#update(String, KeyValue)
+     */
+    CompletionStage<KeyValue> updateAsync(String serviceId, KeyValue toUpdate);
+
+    /**
+     * @see Storage#delete(String, String)
+     */
+    CompletionStage<KeyValue> deleteAsync(String serviceId, String toDelete);
+
+    /**
+     * @return The storage itself if it's asynchronous, otherwise the storage completing the stages by the blocking
+     * operations.
+     */
+    static AsyncStorage of(Storage storage) {
+        if (storage instanceof AsyncStorage) {
+            return (AsyncStorage) storage;
+        }
+
+        return new BlockingAsyncStorage(storage);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+import lombok.RequiredArgsConstructor;
+import org.zowe.apiml.caching.model.KeyValue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operations of the synchronous storage on the calling thread and returns them as completed stages. The
+ * storage is called through its own interface, so its retries and the other advices still apply.
+ */
+@RequiredArgsConstructor
+class BlockingAsyncStorage implements AsyncStorage {
+    private final Storage storage;
+
+    @Override
+    public CompletionStage<KeyValue> createAsync(String serviceId, KeyValue toCreate) {
+        return completed(() -> storage.create(serviceId, toCreate));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> readAsync(String serviceId, String key) {
+        return completed(() -> storage.read(serviceId, key));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> updateAsync(String serviceId, KeyValue toUpdate) {
+        return completed(() -> storage.update(serviceId, toUpdate));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> deleteAsync(String serviceId, String toDelete) {
+        return completed(() -> storage.delete(serviceId, toDelete));
+    }
+
+    private static CompletionStage<KeyValue> completed(Supplier<KeyValue> operation) {
+        CompletableFuture<KeyValue> result = new CompletableFuture<>();
+        try {
+            result.complete(operation.get());
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+public class DefaultAdmissionFilter implements AdmissionFilter {
+    @Override
+    public void record(String serviceId, String key) {
+        // Intentionally do nothing.
+    }
+
+    @Override
+    public boolean admit(String serviceId, String key, EntryKey victim) {
+        return true;
+    }
+}
@@ -10,10 +10,28 @@
 
 package org.zowe.apiml.caching.service;
 
+import java.util.Optional;
+
 public interface EvictionStrategy {
     /**
      * This method is called when some item should be evicted. The strategy decides what to do with it.
      * The reject one could use this method to throw the StorageException.
      */
     void evict(String key);
+
+    /**
+     * This method is called before the eviction to find out which entry would be evicted, so that the admission
+     * can compare it with the new one. The strategies which don't choose a specific entry return empty and the new
+     * entry is always admitted.
+     */
+    default Optional<EntryKey> victim() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return true if the time to live of the victim elapsed, so it's evicted without the admission.
+     */
+    default boolean isExpired(EntryKey victim) {
+        return false;
+    }
 }
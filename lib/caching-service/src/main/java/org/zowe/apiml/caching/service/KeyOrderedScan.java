@@ -0,0 +1,48 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.service;
+
+import lombok.experimental.UtilityClass;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.TreeMap;
+
+/**
+ * Pages over the entries ordered by their keys for the storages without their own cursor. The key of the last entry
+ * of the page is the cursor of the next one. Only the entries of the current page are kept in memory.
+ */
+@UtilityClass
+public class KeyOrderedScan {
+    public ScanResult page(Iterator<KeyValue> entries, String cursor, int limit) {
+        TreeMap<String, KeyValue> page = new TreeMap<>();
+        boolean hasMore = false;
+
+        while (entries.hasNext()) {
+            KeyValue entry = entries.next();
+            if (cursor != null && entry.getKey().compareTo(cursor) <= 0) {
+                continue;
+            }
+
+            page.put(entry.getKey(), entry);
+            if (page.size() > limit) {
+                page.pollLastEntry();
+                hasMore = true;
+            }
+        }
+
+        String nextCursor = hasMore ? page.lastKey() : null;
+        return new ScanResult(new ArrayList<>(page.values()), nextCursor);
+    }
+}
@@ -11,7 +11,11 @@
 package org.zowe.apiml.caching.service;
 
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -89,6 +93,24 @@ public interface Storage {
      */
     Map<String, KeyValue> readForService(String serviceId);
 
+    /**
+     * Return one page of the key/value pairs for given service id. The first page is requested without the cursor,
+     * every following one with the cursor returned with the previous page until the returned cursor is null.
+     *
+     * @param serviceId Id of the service to load the key/value pairs
+     * @param cursor    Cursor returned with the previous page or null for the first page.
+     * @param limit     Maximum amount of the key/value pairs in the page. Some storages take it only as a hint.
+     * @return Page of the key/value pairs with the cursor of the next page.
+     */
+    default ScanResult scanForService(String serviceId, String cursor, int limit) {
+        Map<String, KeyValue> serviceEntries = readForService(serviceId);
+        if (serviceEntries == null) {
+            return new ScanResult(Collections.emptyList(), null);
+        }
+
+        return KeyOrderedScan.page(serviceEntries.values().iterator(), cursor, limit);
+    }
+
     /**
      * Delete all key value pairs.
      *
@@ -96,6 +118,92 @@ public interface Storage {
      */
     void deleteForService(String serviceId);
 
+    /**
+     * Return the key/value pairs stored under the given keys. The storages able to read more keys at once override
+     * the default implementation reading them one by one.
+     *
+     * @param serviceId Id of the service to read the values for.
+     * @param keys      Keys to lookup.
+     * @return Map with the found key/value pairs. The keys without a value are left out.
+     * @throws StorageException when a key can't be read for another reason than a missing value.
+     */
+    default Map<String, KeyValue> readAll(String serviceId, Collection<String> keys) {
+        Map<String, KeyValue> result = new HashMap<>();
+        for (String key : keys) {
+            try {
+                result.put(key, read(serviceId, key));
+            } catch (StorageException e) {
+                // The key without a value isn't part of the result, the other failures are reported.
+                if (!Messages.KEY_NOT_IN_CACHE.getKey().equals(e.getKey())) {
+                    throw e;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Store the new key/value pairs, each one as if it was stored by {@link #create(String, KeyValue)}.
+     *
+     * @param serviceId Id of the service to store the values for.
+     * @param toCreate  KeyValue pairs to be created.
+     * @return Map of the failures keyed by the key of the pair which wasn't stored.
+     */
+    default Map<String, StorageException> createAll(String serviceId, Collection<KeyValue> toCreate) {
+        Map<String, StorageException> failures = new HashMap<>();
+        for (KeyValue keyValue : toCreate) {
+            try {
+                create(serviceId, keyValue);
+            } catch (StorageException e) {
+                failures.put(keyValue.getKey(), e);
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * Replace the values of the existing key/value pairs, each one as if it was replaced by
+     * {@link #update(String, KeyValue)}.
+     *
+     * @param serviceId Id of the service to store the values for.
+     * @param toUpdate  KeyValue pairs to store instead of the original ones.
+     * @return Map of the failures keyed by the key of the pair which wasn't updated.
+     */
+    default Map<String, StorageException> updateAll(String serviceId, Collection<KeyValue> toUpdate) {
+        Map<String, StorageException> failures = new HashMap<>();
+        for (KeyValue keyValue : toUpdate) {
+            try {
+                update(serviceId, keyValue);
+            } catch (StorageException e) {
+                failures.put(keyValue.getKey(), e);
+            }
+        }
+
+        return failures;
+    }
+
+    /**
+     * Delete the key/value pairs, each one as if it was deleted by {@link #delete(String, String)}.
+     *
+     * @param serviceId Id of the service to delete the values for.
+     * @param toDelete  Keys to delete from the storage.
+     * @return Map of the failures keyed by the key which wasn't deleted.
+     */
+    default Map<String, StorageException> deleteAll(String serviceId, Collection<String> toDelete) {
+        Map<String, StorageException> failures = new HashMap<>();
+        for (String key : toDelete) {
+            try {
+                delete(serviceId, key);
+            } catch (StorageException e) {
+                failures.put(key, e);
+            }
+        }
+
+        return failures;
+    }
+
     /**
      * Delete a key/value pair from the rules map
      * @param serviceId the id of the service to identify the correct map
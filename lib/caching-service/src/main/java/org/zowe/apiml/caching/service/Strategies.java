@@ -17,7 +17,10 @@ import lombok.Getter;
 @Getter
 public enum Strategies {
     REJECT("reject"),
-    REMOVE_OLDEST("removeOldest");
+    REMOVE_OLDEST("removeOldest"),
+    LEAST_RECENTLY_USED("lru"),
+    LEAST_FREQUENTLY_USED("lfu"),
+    TTL_FIRST("ttlFirst");
 
     private final String key;
 }
@@ -0,0 +1,49 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * TinyLFU admission. The new entry replaces the victim only when it was accessed at least as often as the victim, so
+ * a burst of keys which are used only once doesn't flush the entries which are used repeatedly. On a tie the new entry
+ * wins, the victim chosen by the eviction strategy is expected to be used less recently.
+ * <p>
+ * The frequencies are estimated by the {@link FrequencySketch} sized according to the capacity of the storage.
+ */
+@Slf4j
+public class TinyLfuAdmissionFilter implements AdmissionFilter {
+    private final FrequencySketch sketch;
+
+    public TinyLfuAdmissionFilter(long maxDataSize) {
+        this.sketch = new FrequencySketch(maxDataSize);
+    }
+
+    @Override
+    public void record(String serviceId, String key) {
+        sketch.increment(hash(serviceId, key));
+    }
+
+    @Override
+    public boolean admit(String serviceId, String key, EntryKey victim) {
+        int candidateFrequency = sketch.frequency(hash(serviceId, key));
+        int victimFrequency = sketch.frequency(hash(victim.getServiceId(), victim.getKey()));
+
+        log.debug("Admission of {}|{} with frequency {} against victim {} with frequency {}",
+            serviceId, key, candidateFrequency, victim, victimFrequency);
+
+        return candidateFrequency >= victimFrequency;
+    }
+
+    private static int hash(String serviceId, String key) {
+        return 31 * serviceId.hashCode() + key.hashCode();
+    }
+}
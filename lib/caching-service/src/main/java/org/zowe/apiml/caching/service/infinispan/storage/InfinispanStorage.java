@@ -13,33 +13,54 @@ package org.zowe.apiml.caching.service.infinispan.storage;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.infinispan.lock.api.ClusteredLock;
+import org.infinispan.Cache;
+import org.infinispan.commons.api.BasicCache;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.KeyOrderedScan;
 import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.Storage;
 import org.zowe.apiml.caching.service.StorageException;
 import org.zowe.apiml.models.AccessTokenContainer;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
+/**
+ * The keys of both caches start with the service ID. The operations on all the entries or maps of a service look up
+ * the keys of the service in the sorted {@link KeyIndex} of the cache, so they read only the entries of the service
+ * and of the services whose ID starts with the same characters, instead of the whole cache.
+ * <p>
+ * The time to live of an entry is passed to Infinispan as its lifespan, so the entry expires on all the instances.
+ */
 @Slf4j
 public class InfinispanStorage implements Storage {
 
 
     private final ConcurrentMap<String, KeyValue> cache;
     private final ConcurrentMap<String, Map<String, String>> tokenCache;
-    private final ClusteredLock lock;
+    private final KeyIndex cacheIndex;
+    private final KeyIndex tokenCacheIndex;
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    public InfinispanStorage(ConcurrentMap<String, KeyValue> cache, ConcurrentMap<String, Map<String, String>> tokenCache, ClusteredLock lock) {
+    public InfinispanStorage(ConcurrentMap<String, KeyValue> cache, ConcurrentMap<String, Map<String, String>> tokenCache) {
         this.cache = cache;
         this.tokenCache = tokenCache;
-        this.lock = lock;
+        this.cacheIndex = new KeyIndex(cache);
+        this.tokenCacheIndex = new KeyIndex(tokenCache);
     }
 
     static {
@@ -51,7 +72,8 @@ public class InfinispanStorage implements Storage {
         toCreate.setServiceId(serviceId);
         log.info("Writing record: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
 
-        KeyValue serviceCache = cache.putIfAbsent(serviceId + toCreate.getKey(), toCreate);
+        cacheIndex.added(serviceId + toCreate.getKey());
+        KeyValue serviceCache = putIfAbsent(serviceId + toCreate.getKey(), toCreate);
 
         if (serviceCache != null) {
             throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey());
@@ -59,25 +81,15 @@ public class InfinispanStorage implements Storage {
         return null;
     }
 
+    /**
+     * The item is added by an atomic compute of the map, so the concurrent changes of other maps don't wait for it.
+     */
     @Override
     public KeyValue storeMapItem(String serviceId, String mapKey, KeyValue toCreate) {
-        CompletableFuture<Boolean> complete = lock.tryLock(4, TimeUnit.SECONDS).whenComplete((r, ex) -> {
-            if (Boolean.TRUE.equals(r)) {
-                try {
-                    String cacheKey = serviceId + mapKey;
-                    log.info("Storing the item into token cache: {} -> {}|{}", cacheKey, toCreate.getKey(), toCreate.getValue());
-                    Map<String, String> tokenCacheItem = tokenCache.get(cacheKey);
-                    if (tokenCacheItem == null) {
-                        tokenCacheItem = new HashMap<>();
-                    }
-                    tokenCacheItem.put(toCreate.getKey(), toCreate.getValue());
-                    tokenCache.put(cacheKey, tokenCacheItem);
-                } finally {
-                    lock.unlock();
-                }
-            }
-        });
-        completeJoin(complete);
+        String cacheKey = serviceId + mapKey;
+        log.info("Storing the item into token cache: {} -> {}|{}", cacheKey, toCreate.getKey(), toCreate.getValue());
+        tokenCacheIndex.added(cacheKey);
+        tokenCache.compute(cacheKey, new PutMapItem(toCreate.getKey(), toCreate.getValue()));
         return null;
     }
 
@@ -90,10 +102,15 @@ public class InfinispanStorage implements Storage {
     @Override
     public Map<String, Map<String, String>> getAllMaps(String serviceId) {
         log.info("Reading all records from token cache for service {} ", serviceId);
-        // filter all maps which belong given service and remove the service name from key names.
-        return tokenCache.entrySet().stream().filter(
-            entry -> entry.getKey().startsWith(serviceId))
-            .collect(Collectors.toMap(e -> e.getKey().substring(serviceId.length()), Map.Entry::getValue));
+        // read the maps whose keys start with the service name and remove the service name from key names.
+        Map<String, Map<String, String>> result = new HashMap<>();
+        for (String cacheKey : tokenCacheIndex.startingWith(serviceId)) {
+            Map<String, String> map = tokenCache.get(cacheKey);
+            if (map != null) {
+                result.put(cacheKey.substring(serviceId.length()), map);
+            }
+        }
+        return result;
     }
 
     @Override
@@ -111,7 +128,8 @@ public class InfinispanStorage implements Storage {
     public KeyValue update(String serviceId, KeyValue toUpdate) {
         toUpdate.setServiceId(serviceId);
         log.info("Updating record for service {} under key {}", serviceId, toUpdate);
-        KeyValue serviceCache = cache.put(serviceId + toUpdate.getKey(), toUpdate);
+        cacheIndex.added(serviceId + toUpdate.getKey());
+        KeyValue serviceCache = put(serviceId + toUpdate.getKey(), toUpdate);
         if (serviceCache == null) {
             throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toUpdate.getKey(), serviceId);
         }
@@ -119,10 +137,60 @@ public class InfinispanStorage implements Storage {
 
     }
 
+    /**
+     * The Infinispan cache reads all the entries by a single getAll, so the entries held by the other instances are
+     * fetched together. The plain map is read key by key.
+     */
+    @Override
+    public Map<String, KeyValue> readAll(String serviceId, Collection<String> keys) {
+        log.info("Reading records for service {} under keys {}", serviceId, keys);
+        Map<String, KeyValue> found = cache;
+        if (cache instanceof Cache) {
+            Set<String> cacheKeys = keys.stream().map(key -> serviceId + key).collect(Collectors.toSet());
+            found = ((Cache<String, KeyValue>) cache).getAdvancedCache().getAll(cacheKeys);
+        }
+
+        Map<String, KeyValue> result = new HashMap<>();
+        for (String key : keys) {
+            KeyValue serviceCache = found.get(serviceId + key);
+            if (serviceCache != null) {
+                result.put(key, serviceCache);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The existing entries are stored by a single putAll, so they are replicated to the other instances together.
+     * The entries with the time to live each have their own lifespan, so they are stored one by one.
+     */
+    @Override
+    public Map<String, StorageException> updateAll(String serviceId, Collection<KeyValue> toUpdate) {
+        log.info("Updating {} records for service {}", toUpdate.size(), serviceId);
+        Map<String, KeyValue> existing = new HashMap<>();
+        Map<String, StorageException> failures = new HashMap<>();
+        for (KeyValue keyValue : toUpdate) {
+            keyValue.setServiceId(serviceId);
+            if (cache.containsKey(serviceId + keyValue.getKey())) {
+                cacheIndex.added(serviceId + keyValue.getKey());
+                if (keyValue.getTtl() == null) {
+                    existing.put(serviceId + keyValue.getKey(), keyValue);
+                } else {
+                    put(serviceId + keyValue.getKey(), keyValue);
+                }
+            } else {
+                failures.put(keyValue.getKey(), new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), keyValue.getKey(), serviceId));
+            }
+        }
+        cache.putAll(existing);
+        return failures;
+    }
+
     @Override
     public KeyValue delete(String serviceId, String toDelete) {
         log.info("Removing record for service {} under key {}", serviceId, toDelete);
         KeyValue entry = cache.remove(serviceId + toDelete);
+        cacheIndex.removed(serviceId + toDelete);
         if (entry != null) {
             return entry;
         } else {
@@ -134,87 +202,138 @@ public class InfinispanStorage implements Storage {
     public Map<String, KeyValue> readForService(String serviceId) {
         log.info("Reading all records for service {} ", serviceId);
         Map<String, KeyValue> result = new HashMap<>();
-        cache.forEach((key, value) -> {
-            if (serviceId.equals(value.getServiceId())) {
+        for (String key : cacheIndex.startingWith(serviceId)) {
+            KeyValue value = cache.get(key);
+            if (value != null && serviceId.equals(value.getServiceId())) {
                 result.put(value.getKey(), value);
             }
-        });
+        }
         return result;
     }
 
+    /**
+     * The index is sorted by the keys, so the page is read from the key after the cursor and no further than one
+     * entry past the page.
+     */
+    @Override
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        log.info("Scanning records for service {} from {}", serviceId, cursor);
+        NavigableSet<String> keys = cacheIndex.startingWith(serviceId);
+        if (cursor != null) {
+            keys = keys.tailSet(serviceId + cursor, false);
+        }
+
+        List<KeyValue> values = new ArrayList<>();
+        for (String key : keys) {
+            KeyValue value = cache.get(key);
+            if (value != null && serviceId.equals(value.getServiceId())) {
+                values.add(value);
+                if (values.size() > limit) {
+                    break;
+                }
+            }
+        }
+        return KeyOrderedScan.page(values.iterator(), cursor, limit);
+    }
+
     @Override
     public void deleteForService(String serviceId) {
         log.info("Removing all records for service {} ", serviceId);
-        cache.forEach((key, value) -> {
-            if (value.getServiceId().equals(serviceId)) {
+        for (String key : cacheIndex.startingWith(serviceId)) {
+            KeyValue value = cache.get(key);
+            if (value != null && serviceId.equals(value.getServiceId())) {
                 cache.remove(key);
+                cacheIndex.removed(key);
             }
-        });
+        }
+    }
+
+    private KeyValue putIfAbsent(String cacheKey, KeyValue keyValue) {
+        if (keyValue.getTtl() != null && cache instanceof BasicCache) {
+            return ((BasicCache<String, KeyValue>) cache).putIfAbsent(cacheKey, keyValue, keyValue.getTtl(), TimeUnit.MILLISECONDS);
+        }
+
+        return cache.putIfAbsent(cacheKey, keyValue);
+    }
+
+    private KeyValue put(String cacheKey, KeyValue keyValue) {
+        if (keyValue.getTtl() != null && cache instanceof BasicCache) {
+            return ((BasicCache<String, KeyValue>) cache).put(cacheKey, keyValue, keyValue.getTtl(), TimeUnit.MILLISECONDS);
+        }
+
+        return cache.put(cacheKey, keyValue);
     }
 
     @Override
     public void removeNonRelevantTokens(String serviceId, String mapKey) {
-        CompletableFuture<Boolean> complete = lock.tryLock(4, TimeUnit.SECONDS).whenComplete((r, ex) -> {
-            if (Boolean.TRUE.equals(r)) {
-                try {
-                    removeToken(serviceId, mapKey);
-                } finally {
-                    lock.unlock();
-                }
-            }
-        });
-        completeJoin(complete);
+        tokenCache.computeIfPresent(serviceId + mapKey, new RemoveExpiredTokens());
+    }
+
+    @Override
+    public void removeNonRelevantRules(String serviceId, String mapKey) {
+        tokenCache.computeIfPresent(serviceId + mapKey, new RemoveOldRules(System.currentTimeMillis()));
     }
 
-    private void removeToken(String serviceId, String mapKey) {
-        Map<String, String> map = tokenCache.get(serviceId + mapKey);
-        if (map != null && !map.isEmpty()) {
-            Map<String,String> result = map.entrySet().stream().filter(entry -> {
+    /**
+     * The functions changing a map are run by the owner of the map, which applies the changes of one map one after
+     * another. The stored map is never modified, the function returns its changed copy. The functions are sent to the
+     * other instances, so they have to be serializable and allowed in infinispan.xml.
+     */
+    @RequiredArgsConstructor
+    static class PutMapItem implements BiFunction<String, Map<String, String>, Map<String, String>>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final String value;
+
+        @Override
+        public Map<String, String> apply(String cacheKey, Map<String, String> map) {
+            Map<String, String> result = map == null ? new HashMap<>() : new HashMap<>(map);
+            result.put(key, value);
+            return result;
+        }
+    }
+
+    static class RemoveExpiredTokens implements BiFunction<String, Map<String, String>, Map<String, String>>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Map<String, String> apply(String cacheKey, Map<String, String> map) {
+            if (map.isEmpty()) {
+                return map;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            return map.entrySet().stream().filter(entry -> {
                 try {
                     AccessTokenContainer c = objectMapper.readValue(entry.getValue(), AccessTokenContainer.class);
-                    return !c.getExpiresAt().isBefore(LocalDateTime.now());
+                    return !c.getExpiresAt().isBefore(now);
                 } catch (JsonProcessingException e) {
                     log.error("Not able to parse invalidToken json value.", e);
                     return true;
                 }
-            }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-            tokenCache.put(serviceId + mapKey, result);
+            }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first, HashMap::new));
         }
     }
 
-    @Override
-    public void removeNonRelevantRules(String serviceId, String mapKey) {
-        CompletableFuture<Boolean> complete = lock.tryLock(4, TimeUnit.SECONDS).whenComplete((r, ex) -> {
-            if (Boolean.TRUE.equals(r)) {
-                try {
-                    long timestamp = System.currentTimeMillis();
-                    Map<String, String> map = tokenCache.get(serviceId + mapKey);
-                    if (map != null && !map.isEmpty()) {
-                        Map<String,String> result = map.entrySet().stream().filter(entry -> {
-                            long delta = timestamp - Long.parseLong(entry.getValue());
-                            long deltaToDays = TimeUnit.MILLISECONDS.toDays(delta);
-                            return deltaToDays <= 90;
-                        }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-                        tokenCache.put(serviceId + mapKey, result);
-                    }
-                } finally {
-                    lock.unlock();
-                }
-            }
-        });
-        completeJoin(complete);
-    }
+    @RequiredArgsConstructor
+    static class RemoveOldRules implements BiFunction<String, Map<String, String>, Map<String, String>>, Serializable {
+        private static final long serialVersionUID = 1L;
 
-    private void completeJoin(CompletableFuture<Boolean> complete) {
-        try {
-            complete.join();
-        } catch (CompletionException e) {
-            if (e.getCause() instanceof StorageException) {
-                throw (StorageException) e.getCause();
-            } else {
-                log.error("Unexpected error while acquiring the lock ", e);
-                throw e;
+        private final long timestamp;
+
+        @Override
+        public Map<String, String> apply(String cacheKey, Map<String, String> map) {
+            if (map.isEmpty()) {
+                return map;
             }
+
+            return map.entrySet().stream().filter(entry -> {
+                long delta = timestamp - Long.parseLong(entry.getValue());
+                long deltaToDays = TimeUnit.MILLISECONDS.toDays(delta);
+                return deltaToDays <= 90;
+            }).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first, HashMap::new));
         }
     }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.infinispan.storage;
+
+import org.infinispan.Cache;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryCreated;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryExpired;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted index of the keys of a cache, so the keys starting with the service ID are found without going through the
+ * whole cache.
+ * <p>
+ * The index is kept in the memory of the instance. It is filled from the cache by the first lookup, and for an
+ * Infinispan cache it follows the entries created and removed on this instance and the replicated ones by a listener.
+ * For another map the storage reports its own changes. The index can hold a key whose entry was removed meanwhile, so
+ * the entries looked up by the index are always checked.
+ */
+class KeyIndex {
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private final ConcurrentMap<String, ?> cache;
+    private final boolean listening;
+    private volatile boolean filled;
+
+    KeyIndex(ConcurrentMap<String, ?> cache) {
+        this.cache = cache;
+        // The listener is added before the cache is read, so no entry created meanwhile is missed.
+        if (cache instanceof Cache) {
+            ((Cache<String, ?>) cache).addListener(new IndexListener());
+            listening = true;
+        } else {
+            listening = false;
+        }
+    }
+
+    /**
+     * Called before the entry is written, so the entry is never stored without its key in the index.
+     */
+    void added(String key) {
+        keys.add(key);
+    }
+
+    /**
+     * Called after the entry was removed. The removals in an Infinispan cache are followed by the listener, which sees
+     * them in the order of the other changes of the key.
+     */
+    void removed(String key) {
+        if (!listening) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * @return Sorted view of the keys starting with the prefix.
+     */
+    NavigableSet<String> startingWith(String prefix) {
+        String upperBound = upperBound(prefix);
+        if (upperBound == null) {
+            return filled().tailSet(prefix, true);
+        }
+
+        return filled().subSet(prefix, true, upperBound, false);
+    }
+
+    /**
+     * @return The least string greater than all the strings starting with the prefix, null if there is none.
+     */
+    private static String upperBound(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char last = prefix.charAt(i);
+            if (last != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char) (last + 1);
+            }
+        }
+
+        return null;
+    }
+
+    private NavigableSet<String> filled() {
+        if (!filled) {
+            synchronized (this) {
+                if (!filled) {
+                    cache.keySet().forEach(keys::add);
+                    filled = true;
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Listener(observation = Listener.Observation.POST)
+    public class IndexListener {
+        @CacheEntryCreated
+        public void created(CacheEntryEvent<String, ?> event) {
+            keys.add(event.getKey());
+        }
+
+        @CacheEntryRemoved
+        @CacheEntryExpired
+        public void removed(CacheEntryEvent<String, ?> event) {
+            keys.remove(event.getKey());
+        }
+    }
+}
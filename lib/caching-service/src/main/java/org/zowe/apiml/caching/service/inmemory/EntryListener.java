@@ -0,0 +1,35 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.zowe.apiml.caching.model.KeyValue;
+
+/**
+ * Callback notified by {@link InMemoryEntries} about every successful change of the stored data.
+ * It allows the eviction strategies to keep their own index of the entries instead of scanning the whole storage.
+ */
+public interface EntryListener {
+    default void created(String serviceId, KeyValue entry) {
+        // Intentionally do nothing.
+    }
+
+    default void read(String serviceId, KeyValue entry) {
+        // Intentionally do nothing.
+    }
+
+    default void updated(String serviceId, KeyValue previous, KeyValue entry) {
+        // Intentionally do nothing.
+    }
+
+    default void removed(String serviceId, KeyValue entry) {
+        // Intentionally do nothing.
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.zowe.apiml.caching.model.KeyValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe holder of the data stored in memory.
+ * <p>
+ * The entries are sharded per service into concurrent maps, so the writers of different keys don't block each other.
+ * The total amount of entries is tracked by a counter updated on every successful insert and removal, which means
+ * the size check on write doesn't have to walk through all the services.
+ * <p>
+ * The removed service is detached first and its entries are then taken out one by one, so every entry is subtracted
+ * exactly once by whoever takes it out, even when a concurrent write still reaches the detached map.
+ */
+public class InMemoryEntries {
+    private final Map<String, Map<String, KeyValue>> storage;
+    private final LongAdder size = new LongAdder();
+    private EntryListener listener = new EntryListener() {
+    };
+
+    public InMemoryEntries() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    public InMemoryEntries(Map<String, Map<String, KeyValue>> storage) {
+        this.storage = storage;
+
+        storage.values().forEach(serviceStorage -> size.add(serviceStorage.size()));
+    }
+
+    public void setListener(EntryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Store the entry unless there already is an entry with the same key for the service.
+     *
+     * @return The entry already stored under the key or null if the new entry was stored.
+     */
+    public KeyValue putIfAbsent(String serviceId, KeyValue toCreate) {
+        while (true) {
+            Map<String, KeyValue> serviceStorage = storage.computeIfAbsent(serviceId, k -> new ConcurrentHashMap<>());
+
+            KeyValue existing = serviceStorage.putIfAbsent(toCreate.getKey(), toCreate);
+            if (existing != null) {
+                return existing;
+            }
+
+            size.increment();
+            listener.created(serviceId, toCreate);
+
+            // The entry taken back from the map of the service removed meanwhile is stored again.
+            if (storage.get(serviceId) == serviceStorage || !remove(serviceId, serviceStorage, toCreate)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Replace the entry only if there is an entry with the same key for the service.
+     *
+     * @return The replaced entry or null if there was nothing to replace.
+     */
+    public KeyValue replace(String serviceId, KeyValue toUpdate) {
+        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
+        if (serviceStorage == null) {
+            return null;
+        }
+
+        KeyValue previous = serviceStorage.replace(toUpdate.getKey(), toUpdate);
+        if (previous != null) {
+            listener.updated(serviceId, previous, toUpdate);
+        }
+
+        return previous;
+    }
+
+    public KeyValue get(String serviceId, String key) {
+        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
+        if (serviceStorage == null) {
+            return null;
+        }
+
+        return serviceStorage.get(key);
+    }
+
+    /**
+     * Get the entry on behalf of the client, the read is reported to the listener.
+     */
+    public KeyValue read(String serviceId, String key) {
+        KeyValue entry = get(serviceId, key);
+        if (entry != null) {
+            listener.read(serviceId, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * @return The removed entry or null if there was no entry for the key.
+     */
+    public KeyValue remove(String serviceId, String key) {
+        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
+        if (serviceStorage == null) {
+            return null;
+        }
+
+        KeyValue removed = serviceStorage.remove(key);
+        if (removed != null) {
+            size.decrement();
+            listener.removed(serviceId, removed);
+        }
+
+        return removed;
+    }
+
+    /**
+     * Remove the entry only if it is still the one stored under its key.
+     *
+     * @return true if the entry was removed.
+     */
+    public boolean remove(String serviceId, KeyValue toRemove) {
+        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
+        return serviceStorage != null && remove(serviceId, serviceStorage, toRemove);
+    }
+
+    private boolean remove(String serviceId, Map<String, KeyValue> serviceStorage, KeyValue toRemove) {
+        if (!serviceStorage.remove(toRemove.getKey(), toRemove)) {
+            return false;
+        }
+
+        size.decrement();
+        listener.removed(serviceId, toRemove);
+        return true;
+    }
+
+    public Map<String, KeyValue> getService(String serviceId) {
+        return storage.get(serviceId);
+    }
+
+    /**
+     * @return The removed entries of the service or null if there were none.
+     */
+    public Map<String, KeyValue> removeService(String serviceId) {
+        Map<String, KeyValue> detached = storage.remove(serviceId);
+        if (detached == null) {
+            return null;
+        }
+
+        Map<String, KeyValue> removed = new HashMap<>();
+        for (String key : new ArrayList<>(detached.keySet())) {
+            KeyValue entry = detached.remove(key);
+            if (entry != null) {
+                size.decrement();
+                listener.removed(serviceId, entry);
+                removed.put(key, entry);
+            }
+        }
+
+        return removed;
+    }
+
+    public Set<Map.Entry<String, Map<String, KeyValue>>> services() {
+        return storage.entrySet();
+    }
+
+    public long size() {
+        return size.sum();
+    }
+}
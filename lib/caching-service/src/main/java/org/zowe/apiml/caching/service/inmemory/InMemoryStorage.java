@@ -11,53 +11,94 @@
 package org.zowe.apiml.caching.service.inmemory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.config.GeneralConfig;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.*;
 import org.zowe.apiml.caching.service.inmemory.config.InMemoryConfig;
 import org.zowe.apiml.message.core.MessageService;
 import org.zowe.apiml.message.log.ApimlLogger;
 
+import javax.annotation.PreDestroy;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 public class InMemoryStorage implements Storage {
-    private Map<String, Map<String, KeyValue>> storage;
+    private final InMemoryEntries storage;
     private EvictionStrategy strategy = new DefaultEvictionStrategy();
+    private final AdmissionFilter admissionFilter;
+    private final TimingWheel<EntryKey> expirations = new TimingWheel<>(EXPIRATION_TICK, System.currentTimeMillis());
+    private final AtomicBoolean reaperStarted = new AtomicBoolean();
+    private volatile ScheduledExecutorService reaper;
     private InMemoryConfig config;
 
+    // The frequencies are halved after the amount of accesses reaches ten times the capacity of the storage.
+    private static final int LFU_AGING_FACTOR = 10;
+    // The expired entries are removed in the background with this period in milliseconds.
+    private static final long EXPIRATION_TICK = 100;
+
     public InMemoryStorage(InMemoryConfig inMemoryConfig, MessageService messageService) {
         this(inMemoryConfig, new ConcurrentHashMap<>(), ApimlLogger.of(RejectStrategy.class, messageService));
     }
 
     protected InMemoryStorage(InMemoryConfig inMemoryConfig, Map<String, Map<String, KeyValue>> storage, ApimlLogger apimlLogger) {
-        this.storage = storage;
+        this.storage = new InMemoryEntries(storage);
         this.config = inMemoryConfig;
 
-        String evictionStrategy = inMemoryConfig.getGeneralConfig().getEvictionStrategy();
+        GeneralConfig generalConfig = inMemoryConfig.getGeneralConfig();
+        this.admissionFilter = generalConfig.isAdmissionFilterEnabled()
+            ? new TinyLfuAdmissionFilter(generalConfig.getMaxDataSize()) : new DefaultAdmissionFilter();
+
+        String evictionStrategy = generalConfig.getEvictionStrategy();
         if (evictionStrategy.equals(Strategies.REJECT.getKey())) {
             strategy = new RejectStrategy(apimlLogger);
         } else if (evictionStrategy.equals(Strategies.REMOVE_OLDEST.getKey())) {
-            strategy = new RemoveOldestStrategy(storage);
+            strategy = indexed(new RemoveOldestStrategy(this.storage));
+        } else if (evictionStrategy.equals(Strategies.LEAST_RECENTLY_USED.getKey())) {
+            strategy = indexed(new LeastRecentlyUsedStrategy(this.storage));
+        } else if (evictionStrategy.equals(Strategies.LEAST_FREQUENTLY_USED.getKey())) {
+            strategy = indexed(new LeastFrequentlyUsedStrategy(this.storage, LFU_AGING_FACTOR * (long) generalConfig.getMaxDataSize()));
+        } else if (evictionStrategy.equals(Strategies.TTL_FIRST.getKey())) {
+            strategy = indexed(new TtlFirstStrategy(this.storage, generalConfig.getTimeToLive()));
         }
     }
 
+    private <T extends EvictionStrategy & EntryListener> T indexed(T indexedStrategy) {
+        storage.setListener(indexedStrategy);
+        return indexedStrategy;
+    }
+
     @Override
     public KeyValue create(String serviceId, KeyValue toCreate) {
         log.info("Writing record: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
 
-        storage.computeIfAbsent(serviceId, k -> new HashMap<>());
-        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
-        if (serviceStorage.containsKey(toCreate.getKey())) {
-            throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey());
+        KeyValue existing = storage.get(serviceId, toCreate.getKey());
+        if (existing != null && !removeIfExpired(serviceId, existing, System.currentTimeMillis())) {
+            throw duplicateKey(toCreate);
         }
 
+        admissionFilter.record(serviceId, toCreate.getKey());
         if (aboveThreshold()) {
+            Optional<EntryKey> victim = strategy.victim();
+            if (victim.isPresent() && !isExpired(victim.get()) && !admissionFilter.admit(serviceId, toCreate.getKey(), victim.get())) {
+                throw new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus());
+            }
+
             strategy.evict(toCreate.getKey());
         }
 
-        serviceStorage.put(toCreate.getKey(), toCreate);
+        if (storage.putIfAbsent(serviceId, toCreate) != null) {
+            throw duplicateKey(toCreate);
+        }
+        scheduleExpiration(serviceId, toCreate);
 
         return toCreate;
     }
@@ -81,26 +122,27 @@ public class InMemoryStorage implements Storage {
     public KeyValue read(String serviceId, String key) {
         log.info("Reading Record: {}|{}|{}", serviceId, key, "-");
 
-        Map<String, KeyValue> serviceSpecificStorage = storage.get(serviceId);
-        if (serviceSpecificStorage == null || !serviceSpecificStorage.containsKey(key)) {
-            throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+        admissionFilter.record(serviceId, key);
+        KeyValue result = storage.read(serviceId, key);
+        if (result == null || removeIfExpired(serviceId, result, System.currentTimeMillis())) {
+            throw keyNotInCache(key, serviceId);
         }
 
-        return serviceSpecificStorage.get(key);
+        return result;
     }
 
     @Override
     public KeyValue update(String serviceId, KeyValue toUpdate) {
         log.info("Updating Record: {}|{}|{}", serviceId, toUpdate.getKey(), toUpdate.getValue());
 
-        String key = toUpdate.getKey();
-        if (isKeyNotInCache(serviceId, key)) {
-            throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+        admissionFilter.record(serviceId, toUpdate.getKey());
+        KeyValue existing = storage.get(serviceId, toUpdate.getKey());
+        if (existing == null || removeIfExpired(serviceId, existing, System.currentTimeMillis())
+            || storage.replace(serviceId, toUpdate) == null) {
+            throw keyNotInCache(toUpdate.getKey(), serviceId);
         }
+        scheduleExpiration(serviceId, toUpdate);
 
-        Map<String, KeyValue> serviceStorage = storage.get(serviceId);
-
-        serviceStorage.put(key, toUpdate);
         return toUpdate;
     }
 
@@ -108,22 +150,54 @@ public class InMemoryStorage implements Storage {
     public KeyValue delete(String serviceId, String key) {
         log.info("Deleting Record: {}|{}|{}", serviceId, key, "-");
 
-        if (isKeyNotInCache(serviceId, key)) {
-            throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+        KeyValue removed = storage.remove(serviceId, key);
+        expirations.cancel(new EntryKey(serviceId, key));
+        if (removed == null || removed.isExpiredAt(System.currentTimeMillis())) {
+            throw keyNotInCache(key, serviceId);
         }
 
-        Map<String, KeyValue> serviceSpecificStorage = storage.get(serviceId);
-        return serviceSpecificStorage.remove(key);
+        return removed;
     }
 
     @Override
     public Map<String, KeyValue> readForService(String serviceId) {
-        return storage.get(serviceId);
+        Map<String, KeyValue> serviceStorage = storage.getService(serviceId);
+        if (serviceStorage == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (serviceStorage.values().stream().noneMatch(entry -> entry.isExpiredAt(now))) {
+            return serviceStorage;
+        }
+
+        // The entries which expired since the last run of the reaper are filtered out.
+        Map<String, KeyValue> result = new HashMap<>();
+        serviceStorage.forEach((key, entry) -> {
+            if (!entry.isExpiredAt(now)) {
+                result.put(key, entry);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * The page is taken directly from the entries of the service without copying them.
+     */
+    @Override
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        Map<String, KeyValue> serviceStorage = storage.getService(serviceId);
+        if (serviceStorage == null) {
+            return new ScanResult(Collections.emptyList(), null);
+        }
+
+        long now = System.currentTimeMillis();
+        return KeyOrderedScan.page(serviceStorage.values().stream().filter(entry -> !entry.isExpiredAt(now)).iterator(), cursor, limit);
     }
 
     @Override
     public void deleteForService(String serviceId) {
-        storage.remove(serviceId);
+        storage.removeService(serviceId);
     }
 
     @Override
@@ -136,18 +210,82 @@ public class InMemoryStorage implements Storage {
         throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
     }
 
-    private boolean isKeyNotInCache(String serviceId, String keyToTest) {
-        Map<String, KeyValue> serviceSpecificStorage = storage.get(serviceId);
-        return serviceSpecificStorage == null || serviceSpecificStorage.get(keyToTest) == null;
+    /**
+     * Remove the expired entries whose time to live elapsed before the given time.
+     * Package protected for unit testing.
+     */
+    void removeExpired(long now) {
+        for (EntryKey expired : expirations.advance(now)) {
+            KeyValue entry = storage.get(expired.getServiceId(), expired.getKey());
+            if (entry != null && removeIfExpired(expired.getServiceId(), entry, now)) {
+                log.debug("Removed the expired record {}|{}", expired.getServiceId(), expired.getKey());
+            }
+        }
     }
 
-    private boolean aboveThreshold() {
-        int currentSize = 0;
-        for (Map.Entry<String, Map<String, KeyValue>> serviceStorage: storage.entrySet()) {
-            currentSize += serviceStorage.getValue().size();
+    private boolean removeIfExpired(String serviceId, KeyValue entry, long now) {
+        if (!entry.isExpiredAt(now)) {
+            return false;
         }
 
-        log.info("Current Size {}.", currentSize);
+        // The removal is conditional, so a newer version of the entry stored meanwhile is kept.
+        storage.remove(serviceId, entry);
+        return true;
+    }
+
+    /**
+     * The victim which is already gone or expired doesn't hold any space worth protecting by the admission filter.
+     */
+    private boolean isExpired(EntryKey victim) {
+        KeyValue entry = storage.get(victim.getServiceId(), victim.getKey());
+        return entry == null || entry.isExpiredAt(System.currentTimeMillis()) || strategy.isExpired(victim);
+    }
+
+    private void scheduleExpiration(String serviceId, KeyValue entry) {
+        EntryKey key = new EntryKey(serviceId, entry.getKey());
+        if (entry.getTtl() == null) {
+            expirations.cancel(key);
+            return;
+        }
+
+        expirations.schedule(key, entry.expirationTime());
+        if (reaperStarted.compareAndSet(false, true)) {
+            reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "caching-expiration-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleAtFixedRate(this::removeExpired, EXPIRATION_TICK, EXPIRATION_TICK, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stopReaper() {
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+    }
+
+    private void removeExpired() {
+        try {
+            removeExpired(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.warn("Removing of the expired records failed", e);
+        }
+    }
+
+    private StorageException duplicateKey(KeyValue toCreate) {
+        return new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey());
+    }
+
+    private StorageException keyNotInCache(String key, String serviceId) {
+        return new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+    }
+
+    private boolean aboveThreshold() {
+        long currentSize = storage.size();
+
+        log.debug("Current Size {}.", currentSize);
 
         return currentSize >= config.getGeneralConfig().getMaxDataSize();
     }
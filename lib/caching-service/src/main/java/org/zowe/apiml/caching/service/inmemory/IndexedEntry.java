@@ -0,0 +1,65 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import lombok.Getter;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+
+import java.util.Comparator;
+
+/**
+ * Entry of the time ordered eviction indexes. Two indexed entries are equal when they have the same time, service and
+ * key, so the entry can be removed from the index by recreating it from the stored KeyValue.
+ */
+@Getter
+class IndexedEntry implements Comparable<IndexedEntry> {
+    private static final Comparator<IndexedEntry> ORDER = Comparator.comparingLong(IndexedEntry::getTime)
+        .thenComparing(IndexedEntry::getServiceId)
+        .thenComparing(indexed -> indexed.getEntry().getKey());
+
+    private final long time;
+    private final String serviceId;
+    private final KeyValue entry;
+
+    IndexedEntry(long time, String serviceId, KeyValue entry) {
+        this.time = time;
+        this.serviceId = serviceId;
+        this.entry = entry;
+    }
+
+    EntryKey toEntryKey() {
+        return new EntryKey(serviceId, entry.getKey());
+    }
+
+    static long creationTime(KeyValue entry) {
+        try {
+            return Long.parseLong(entry.getCreated());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public int compareTo(IndexedEntry other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof IndexedEntry && compareTo((IndexedEntry) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (Long.hashCode(time) * 31 + serviceId.hashCode()) * 31 + entry.getKey().hashCode();
+    }
+}
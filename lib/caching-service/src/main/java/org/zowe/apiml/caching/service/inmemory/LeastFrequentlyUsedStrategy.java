@@ -0,0 +1,230 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+import org.zowe.apiml.caching.service.EvictionStrategy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Removes the least frequently used entry. Entries with the same frequency are removed in the order of insertion.
+ * <p>
+ * Each read or update increments the frequency of the entry. To let the entries which were popular in the past leave
+ * the cache, all the frequencies are halved once the amount of accesses reaches the aging period.
+ */
+@Slf4j
+public class LeastFrequentlyUsedStrategy implements EvictionStrategy, EntryListener {
+    private final InMemoryEntries storage;
+    private final long agingPeriod;
+
+    private final Map<EntryKey, FrequencyNode> nodes = new ConcurrentHashMap<>();
+    private final NavigableSet<FrequencyNode> index = new ConcurrentSkipListSet<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder accesses = new LongAdder();
+    // The read lock guards the changes of single entries, the write lock is taken only to age all of them.
+    private final ReadWriteLock agingLock = new ReentrantReadWriteLock();
+
+    public LeastFrequentlyUsedStrategy(InMemoryEntries storage, long agingPeriod) {
+        this.storage = storage;
+        this.agingPeriod = agingPeriod;
+    }
+
+    @Override
+    public void evict(String key) {
+        agingLock.readLock().lock();
+        try {
+            long attempts = storage.size() + 1;
+            FrequencyNode node;
+            while (attempts-- > 0 && (node = index.pollFirst()) != null) {
+                if (storage.remove(node.serviceId, node.entry)) {
+                    log.debug("Removed the least frequently used record {}|{}", node.serviceId, node.entry.getKey());
+                    return;
+                }
+
+                synchronized (node) {
+                    // The entry was replaced concurrently, it stays in the index with its new value.
+                    if (!node.removed && storage.get(node.serviceId, node.entry.getKey()) != null) {
+                        index.add(node);
+                    }
+                }
+            }
+        } finally {
+            agingLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<EntryKey> victim() {
+        Iterator<FrequencyNode> leastFrequent = index.iterator();
+        if (!leastFrequent.hasNext()) {
+            return Optional.empty();
+        }
+
+        FrequencyNode node = leastFrequent.next();
+        return Optional.of(new EntryKey(node.serviceId, node.entry.getKey()));
+    }
+
+    @Override
+    public void created(String serviceId, KeyValue entry) {
+        FrequencyNode node = new FrequencyNode(serviceId, entry, sequence.incrementAndGet());
+
+        agingLock.readLock().lock();
+        try {
+            FrequencyNode previous = nodes.put(new EntryKey(serviceId, entry.getKey()), node);
+            if (previous != null) {
+                discard(previous);
+            }
+            index.add(node);
+        } finally {
+            agingLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void read(String serviceId, KeyValue entry) {
+        FrequencyNode node = nodes.get(new EntryKey(serviceId, entry.getKey()));
+        if (node != null) {
+            touch(node);
+        }
+    }
+
+    @Override
+    public void updated(String serviceId, KeyValue previous, KeyValue entry) {
+        FrequencyNode node = nodes.get(new EntryKey(serviceId, entry.getKey()));
+        if (node == null) {
+            created(serviceId, entry);
+            return;
+        }
+
+        node.entry = entry;
+        touch(node);
+    }
+
+    @Override
+    public void removed(String serviceId, KeyValue entry) {
+        EntryKey entryKey = new EntryKey(serviceId, entry.getKey());
+        FrequencyNode node = nodes.get(entryKey);
+        if (node == null || !node.entry.equals(entry) || !nodes.remove(entryKey, node)) {
+            return;
+        }
+
+        agingLock.readLock().lock();
+        try {
+            discard(node);
+        } finally {
+            agingLock.readLock().unlock();
+        }
+    }
+
+    int frequency(String serviceId, String key) {
+        FrequencyNode node = nodes.get(new EntryKey(serviceId, key));
+        return node == null ? 0 : node.frequency;
+    }
+
+    private void touch(FrequencyNode node) {
+        agingLock.readLock().lock();
+        try {
+            synchronized (node) {
+                // The node which is not in the index is just being evicted or removed.
+                if (index.remove(node)) {
+                    node.frequency++;
+                    index.add(node);
+                }
+            }
+        } finally {
+            agingLock.readLock().unlock();
+        }
+
+        accesses.increment();
+        if (accesses.sum() >= agingPeriod) {
+            age();
+        }
+    }
+
+    private void discard(FrequencyNode node) {
+        synchronized (node) {
+            node.removed = true;
+            index.remove(node);
+        }
+    }
+
+    private void age() {
+        if (!agingLock.writeLock().tryLock()) {
+            // Other thread is already aging the entries.
+            return;
+        }
+
+        try {
+            if (accesses.sum() < agingPeriod) {
+                return;
+            }
+            accesses.reset();
+
+            List<FrequencyNode> all = new ArrayList<>(index);
+            index.clear();
+            for (FrequencyNode node : all) {
+                node.frequency = Math.max(1, node.frequency / 2);
+            }
+            index.addAll(all);
+
+            log.debug("Aged the frequencies of {} records", all.size());
+        } finally {
+            agingLock.writeLock().unlock();
+        }
+    }
+
+    private static final class FrequencyNode implements Comparable<FrequencyNode> {
+        private static final Comparator<FrequencyNode> ORDER = Comparator.<FrequencyNode>comparingInt(node -> node.frequency)
+            .thenComparingLong(node -> node.sequence);
+
+        private final String serviceId;
+        private final long sequence;
+        private volatile KeyValue entry;
+        private volatile int frequency = 1;
+        private boolean removed;
+
+        private FrequencyNode(String serviceId, KeyValue entry, long sequence) {
+            this.serviceId = serviceId;
+            this.entry = entry;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(FrequencyNode other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(sequence);
+        }
+    }
+}
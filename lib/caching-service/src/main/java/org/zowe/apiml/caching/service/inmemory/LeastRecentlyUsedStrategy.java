@@ -0,0 +1,187 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+import org.zowe.apiml.caching.service.EvictionStrategy;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Approximate least recently used eviction implemented as the CLOCK algorithm.
+ * <p>
+ * Every entry has a reference bit which is set when the entry is read or updated. The eviction goes around the clock
+ * and gives the referenced entries a second chance by clearing the bit, the first entry without the bit is removed.
+ * Reads only set a volatile flag, so the read path doesn't reorder any shared structure.
+ * <p>
+ * The nodes of the removed entries are only marked and are skipped by the eviction. Once the marked nodes outnumber
+ * the tracked entries, the clock is compacted, so it holds at most about twice as many nodes as there are entries.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class LeastRecentlyUsedStrategy implements EvictionStrategy, EntryListener {
+    private final InMemoryEntries storage;
+    private final Map<EntryKey, ClockNode> nodes = new ConcurrentHashMap<>();
+    private final Queue<ClockNode> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger removedNodes = new AtomicInteger();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    @Override
+    public void evict(String key) {
+        // Two rounds are enough to clear all the reference bits, the limit protects against the concurrent readers.
+        long attempts = 2 * (storage.size() + 1);
+        ClockNode node;
+        while (attempts-- > 0 && (node = clock.poll()) != null) {
+            if (node.removed) {
+                removedNodes.decrementAndGet();
+                continue;
+            }
+
+            if (node.referenced) {
+                node.referenced = false;
+                clock.offer(node);
+                continue;
+            }
+
+            if (storage.remove(node.serviceId, node.entry)) {
+                // The node was marked removed by the listener, but it is not in the clock anymore.
+                removedNodes.decrementAndGet();
+                log.debug("Removed the least recently used record {}|{}", node.serviceId, node.entry.getKey());
+                return;
+            }
+
+            if (!node.removed && storage.get(node.serviceId, node.entry.getKey()) != null) {
+                clock.offer(node);
+            }
+        }
+    }
+
+    @Override
+    public Optional<EntryKey> victim() {
+        // The same limit as for the eviction, the clock holds at most about twice as many nodes as there are entries.
+        long attempts = 2 * (storage.size() + 1);
+        ClockNode candidate = null;
+        for (ClockNode node : clock) {
+            if (attempts-- <= 0) {
+                break;
+            }
+            if (node.removed) {
+                continue;
+            }
+            if (!node.referenced) {
+                return Optional.of(node.toEntryKey());
+            }
+            if (candidate == null) {
+                // All the entries could have been referenced, then the first one is evicted after a whole round.
+                candidate = node;
+            }
+        }
+
+        return candidate == null ? Optional.empty() : Optional.of(candidate.toEntryKey());
+    }
+
+    @Override
+    public void created(String serviceId, KeyValue entry) {
+        ClockNode node = new ClockNode(serviceId, entry);
+        ClockNode previous = nodes.put(new EntryKey(serviceId, entry.getKey()), node);
+        clock.offer(node);
+        if (previous != null) {
+            markRemoved(previous);
+        }
+    }
+
+    @Override
+    public void read(String serviceId, KeyValue entry) {
+        ClockNode node = nodes.get(new EntryKey(serviceId, entry.getKey()));
+        if (node != null) {
+            node.referenced = true;
+        }
+    }
+
+    @Override
+    public void updated(String serviceId, KeyValue previous, KeyValue entry) {
+        ClockNode node = nodes.get(new EntryKey(serviceId, entry.getKey()));
+        if (node == null) {
+            created(serviceId, entry);
+            return;
+        }
+
+        node.entry = entry;
+        node.referenced = true;
+    }
+
+    @Override
+    public void removed(String serviceId, KeyValue entry) {
+        EntryKey entryKey = new EntryKey(serviceId, entry.getKey());
+        ClockNode node = nodes.get(entryKey);
+        if (node != null && node.entry.equals(entry) && nodes.remove(entryKey, node)) {
+            markRemoved(node);
+        }
+    }
+
+    private void markRemoved(ClockNode node) {
+        node.removed = true;
+        if (removedNodes.incrementAndGet() > nodes.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the nodes of the removed entries from the clock. The pass over the whole clock is paid by the removals
+     * since the last compaction, which are at least as many as the tracked entries. The concurrent compactions are
+     * skipped.
+     */
+    private void compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            removedNodes.set(0);
+            clock.removeIf(node -> node.removed);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    int trackedEntries() {
+        return nodes.size();
+    }
+
+    int clockSize() {
+        return clock.size();
+    }
+
+    private static final class ClockNode {
+        private final String serviceId;
+        private volatile KeyValue entry;
+        private volatile boolean referenced;
+        private volatile boolean removed;
+
+        private ClockNode(String serviceId, KeyValue entry) {
+            this.serviceId = serviceId;
+            this.entry = entry;
+        }
+
+        private EntryKey toEntryKey() {
+            return new EntryKey(serviceId, entry.getKey());
+        }
+    }
+}
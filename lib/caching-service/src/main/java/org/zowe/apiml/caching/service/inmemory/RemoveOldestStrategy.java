@@ -13,41 +13,65 @@ package org.zowe.apiml.caching.service.inmemory;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
 import org.zowe.apiml.caching.service.EvictionStrategy;
 
-import java.util.Map;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
 
+/**
+ * Removes the entry with the oldest creation time.
+ * <p>
+ * The entries are kept in a skip list ordered by the creation time, which is updated through the {@link EntryListener}
+ * callbacks, so finding the oldest entry is O(log N) instead of scanning and parsing all the stored entries.
+ */
 @RequiredArgsConstructor
 @Slf4j
-public class RemoveOldestStrategy implements EvictionStrategy {
-    private final Map<String, Map<String, KeyValue>> storage;
+public class RemoveOldestStrategy implements EvictionStrategy, EntryListener {
+    private final InMemoryEntries storage;
+    private final NavigableSet<IndexedEntry> index = new ConcurrentSkipListSet<>();
 
     @Override
     public void evict(String key) {
-        KeyValue oldest = null;
-        Map<String, KeyValue> mapStoringOldest = null;
-        for (Map.Entry<String, Map<String, KeyValue>> serviceStorage: storage.entrySet()) {
-            Map<String, KeyValue> services = serviceStorage.getValue();
-            for (Map.Entry<String, KeyValue> specificValue: services.entrySet()) {
-                KeyValue current = specificValue.getValue();
-                if (oldest == null) {
-                    oldest = current;
-                    mapStoringOldest = services;
-                    continue;
-                }
-
-                long oldestCreated = Long.parseLong(oldest.getCreated());
-                long currentCreated = Long.parseLong(current.getCreated());
-
-                if (oldestCreated > currentCreated) {
-                    oldest = current;
-                    mapStoringOldest = services;
-                }
+        IndexedEntry oldest;
+        while ((oldest = index.pollFirst()) != null) {
+            // The index can briefly contain an entry which was already replaced or removed by the concurrent request.
+            if (storage.remove(oldest.getServiceId(), oldest.getEntry())) {
+                log.debug("Removed the oldest record {}|{}", oldest.getServiceId(), oldest.getEntry().getKey());
+                return;
             }
         }
+    }
 
-        if (oldest != null) {
-            mapStoringOldest.remove(oldest.getKey());
-        }
+    @Override
+    public Optional<EntryKey> victim() {
+        Iterator<IndexedEntry> oldest = index.iterator();
+        return oldest.hasNext() ? Optional.of(oldest.next().toEntryKey()) : Optional.empty();
+    }
+
+    @Override
+    public void created(String serviceId, KeyValue entry) {
+        index.add(indexed(serviceId, entry));
+    }
+
+    @Override
+    public void updated(String serviceId, KeyValue previous, KeyValue entry) {
+        index.remove(indexed(serviceId, previous));
+        index.add(indexed(serviceId, entry));
+    }
+
+    @Override
+    public void removed(String serviceId, KeyValue entry) {
+        index.remove(indexed(serviceId, entry));
+    }
+
+    int indexSize() {
+        return index.size();
+    }
+
+    private IndexedEntry indexed(String serviceId, KeyValue entry) {
+        return new IndexedEntry(IndexedEntry.creationTime(entry), serviceId, entry);
     }
 }
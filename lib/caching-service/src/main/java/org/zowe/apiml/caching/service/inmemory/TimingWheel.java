@@ -0,0 +1,141 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import java.util.*;
+
+/**
+ * Hierarchical timing wheel keeping track of the deadlines of the items.
+ * <p>
+ * There are four wheels of 64 buckets. A bucket of the lowest wheel spans one tick, a bucket of every higher wheel
+ * spans the whole lower wheel. The item is put into the bucket of the lowest wheel its deadline fits into. Every time
+ * the lower wheel turns around, the items of the current bucket of the higher wheel are moved down. Scheduling,
+ * cancelling and expiring an item are therefore constant time operations regardless of the amount of the items.
+ * <p>
+ * The deadlines are rounded to the ticks, so the item expires at most one tick late.
+ */
+public class TimingWheel<K> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAXIMUM_DELAY = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tick;
+    private final List<List<Set<Timer<K>>>> wheels = new ArrayList<>();
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param tick Length of the tick in milliseconds.
+     * @param now  Current time in milliseconds.
+     */
+    public TimingWheel(long tick, long now) {
+        this.tick = tick;
+        this.currentTick = now / tick;
+
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Timer<K>>> wheel = new ArrayList<>(WHEEL_SIZE);
+            for (int bucket = 0; bucket < WHEEL_SIZE; bucket++) {
+                wheel.add(new HashSet<>());
+            }
+            wheels.add(wheel);
+        }
+    }
+
+    /**
+     * Schedule the expiration of the item. The previous deadline of the same item is replaced.
+     */
+    public synchronized void schedule(K item, long deadline) {
+        cancel(item);
+
+        Timer<K> timer = new Timer<>(item, deadline / tick);
+        timers.put(item, timer);
+        place(timer, currentTick + 1);
+    }
+
+    public synchronized void cancel(K item) {
+        Timer<K> timer = timers.remove(item);
+        if (timer != null) {
+            timer.bucket.remove(timer);
+        }
+    }
+
+    /**
+     * Turn the wheels up to the given time.
+     *
+     * @return The items whose deadline passed.
+     */
+    public synchronized List<K> advance(long now) {
+        List<K> expired = new ArrayList<>();
+
+        long targetTick = now / tick;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+
+            Set<Timer<K>> bucket = wheels.get(0).get((int) (currentTick & WHEEL_MASK));
+            for (Timer<K> timer : bucket) {
+                timers.remove(timer.item);
+                expired.add(timer.item);
+            }
+            bucket.clear();
+        }
+
+        return expired;
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Move the items of the higher wheels whose bucket has come to turn to the lower wheels.
+     */
+    private void cascade() {
+        for (int level = LEVELS - 1; level > 0; level--) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                continue;
+            }
+
+            Set<Timer<K>> bucket = wheels.get(level).get((int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+            List<Timer<K>> toMove = new ArrayList<>(bucket);
+            bucket.clear();
+            toMove.forEach(timer -> place(timer, currentTick));
+        }
+    }
+
+    private void place(Timer<K> timer, long earliestTick) {
+        long deadline = Math.max(timer.deadline, earliestTick);
+        // Deadlines beyond the highest wheel are parked in its furthest bucket and placed again once it comes to turn.
+        long delay = Math.min(deadline - currentTick, MAXIMUM_DELAY);
+        long position = currentTick + delay;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        timer.bucket = wheels.get(level).get((int) ((position >>> (WHEEL_BITS * level)) & WHEEL_MASK));
+        timer.bucket.add(timer);
+    }
+
+    private static class Timer<K> {
+        private final K item;
+        private final long deadline;
+        private Set<Timer<K>> bucket;
+
+        Timer(K item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
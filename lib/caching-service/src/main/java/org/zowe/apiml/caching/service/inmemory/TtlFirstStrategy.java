@@ -0,0 +1,130 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+import org.zowe.apiml.caching.service.EvictionStrategy;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Removes the entries whose time to live already elapsed first, the one closest to its deadline is removed first.
+ * When there is no such entry the least recently used one is removed.
+ * <p>
+ * The deadline of the entry is its creation time increased by its own time to live or by the configured one when the
+ * entry has none. Configured time to live set to 0 means that only the entries with their own time to live expire.
+ * Without them the strategy behaves as the {@link LeastRecentlyUsedStrategy}.
+ */
+@Slf4j
+public class TtlFirstStrategy implements EvictionStrategy, EntryListener {
+    private final InMemoryEntries storage;
+    private final long timeToLive;
+    private final LeastRecentlyUsedStrategy fallback;
+    private final NavigableSet<IndexedEntry> deadlines = new ConcurrentSkipListSet<>();
+
+    public TtlFirstStrategy(InMemoryEntries storage, long timeToLive) {
+        this.storage = storage;
+        this.timeToLive = timeToLive;
+        this.fallback = new LeastRecentlyUsedStrategy(storage);
+    }
+
+    @Override
+    public void evict(String key) {
+        long now = System.currentTimeMillis();
+        IndexedEntry expired;
+        while ((expired = pollExpired(now)) != null) {
+            if (storage.remove(expired.getServiceId(), expired.getEntry())) {
+                log.debug("Removed the expired record {}|{}", expired.getServiceId(), expired.getEntry().getKey());
+                return;
+            }
+        }
+
+        fallback.evict(key);
+    }
+
+    @Override
+    public Optional<EntryKey> victim() {
+        Iterator<IndexedEntry> closest = deadlines.iterator();
+        if (closest.hasNext()) {
+            IndexedEntry first = closest.next();
+            if (first.getTime() <= System.currentTimeMillis()) {
+                return Optional.of(first.toEntryKey());
+            }
+        }
+
+        return fallback.victim();
+    }
+
+    /**
+     * The victim is expired also when only the configured time to live elapsed.
+     */
+    @Override
+    public boolean isExpired(EntryKey victim) {
+        KeyValue entry = storage.get(victim.getServiceId(), victim.getKey());
+        return entry != null && expires(entry) && indexed(victim.getServiceId(), entry).getTime() <= System.currentTimeMillis();
+    }
+
+    @Override
+    public void created(String serviceId, KeyValue entry) {
+        if (expires(entry)) {
+            deadlines.add(indexed(serviceId, entry));
+        }
+        fallback.created(serviceId, entry);
+    }
+
+    @Override
+    public void read(String serviceId, KeyValue entry) {
+        fallback.read(serviceId, entry);
+    }
+
+    @Override
+    public void updated(String serviceId, KeyValue previous, KeyValue entry) {
+        if (expires(previous)) {
+            deadlines.remove(indexed(serviceId, previous));
+        }
+        if (expires(entry)) {
+            deadlines.add(indexed(serviceId, entry));
+        }
+        fallback.updated(serviceId, previous, entry);
+    }
+
+    @Override
+    public void removed(String serviceId, KeyValue entry) {
+        if (expires(entry)) {
+            deadlines.remove(indexed(serviceId, entry));
+        }
+        fallback.removed(serviceId, entry);
+    }
+
+    private boolean expires(KeyValue entry) {
+        return entry.getTtl() != null || timeToLive > 0;
+    }
+
+    private IndexedEntry pollExpired(long now) {
+        IndexedEntry first = deadlines.pollFirst();
+        if (first != null && first.getTime() > now) {
+            deadlines.add(first);
+            return null;
+        }
+
+        return first;
+    }
+
+    private IndexedEntry indexed(String serviceId, KeyValue entry) {
+        long deadline = entry.getTtl() != null ? entry.expirationTime() : IndexedEntry.creationTime(entry) + timeToLive;
+        return new IndexedEntry(deadline, serviceId, entry);
+    }
+}
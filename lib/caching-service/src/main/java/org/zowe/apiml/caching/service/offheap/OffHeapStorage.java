@@ -0,0 +1,159 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.*;
+import org.zowe.apiml.caching.service.offheap.config.OffHeapConfig;
+import org.zowe.apiml.message.core.MessageService;
+import org.zowe.apiml.message.log.ApimlLogger;
+
+import java.util.Map;
+
+/**
+ * Storage keeping the entries in the direct memory. Only the entries returned to the caller live on the heap, which
+ * keeps the garbage collection pauses short even for large caches.
+ * <p>
+ * The storage is bounded by the configured amount of bytes as well as by the maximum amount of entries. When either
+ * is reached the new entries are rejected. The store keeps no access history to choose a victim by, so the other
+ * eviction strategies and the admission filter are refused when the storage is created.
+ */
+@Slf4j
+public class OffHeapStorage implements Storage {
+    private final OffHeapStore store;
+    private final OffHeapConfig config;
+    private final EvictionStrategy strategy;
+
+    public OffHeapStorage(OffHeapConfig config, MessageService messageService) {
+        this(config, new OffHeapStore(config.getCapacity(), config.getSlabSize()), ApimlLogger.of(RejectStrategy.class, messageService));
+    }
+
+    OffHeapStorage(OffHeapConfig config, OffHeapStore store, ApimlLogger apimlLogger) {
+        GeneralConfig generalConfig = config.getGeneralConfig();
+        if (!Strategies.REJECT.getKey().equals(generalConfig.getEvictionStrategy())) {
+            throw new IllegalArgumentException("The off-heap storage supports only the " + Strategies.REJECT.getKey()
+                + " eviction strategy, configured: " + generalConfig.getEvictionStrategy());
+        }
+        if (generalConfig.isAdmissionFilterEnabled()) {
+            throw new IllegalArgumentException("The off-heap storage doesn't support the admission filter");
+        }
+
+        this.config = config;
+        this.store = store;
+        this.strategy = new RejectStrategy(apimlLogger);
+    }
+
+    @Override
+    public KeyValue create(String serviceId, KeyValue toCreate) {
+        log.info("Writing record: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
+
+        // The expired entries are only removed by the full storage, the rest of the time they are just skipped.
+        if (aboveThreshold() && store.removeExpired(System.currentTimeMillis()) == 0) {
+            strategy.evict(toCreate.getKey());
+        }
+
+        if (store.putIfAbsent(serviceId, toCreate) != null) {
+            throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey());
+        }
+
+        return toCreate;
+    }
+
+    @Override
+    public KeyValue storeMapItem(String serviceId, String mapKey, KeyValue toCreate) throws StorageException {
+        throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
+    }
+
+    @Override
+    public Map<String, String> getAllMapItems(String serviceId, String mapKey) throws StorageException {
+        throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getAllMaps(String serviceId) throws StorageException {
+        throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
+    }
+
+    @Override
+    public KeyValue read(String serviceId, String key) {
+        log.info("Reading Record: {}|{}|{}", serviceId, key, "-");
+
+        KeyValue result = store.get(serviceId, key);
+        if (result == null) {
+            throw keyNotInCache(key, serviceId);
+        }
+
+        return result;
+    }
+
+    @Override
+    public KeyValue update(String serviceId, KeyValue toUpdate) {
+        log.info("Updating Record: {}|{}|{}", serviceId, toUpdate.getKey(), toUpdate.getValue());
+
+        if (store.replace(serviceId, toUpdate) == null) {
+            throw keyNotInCache(toUpdate.getKey(), serviceId);
+        }
+
+        return toUpdate;
+    }
+
+    @Override
+    public KeyValue delete(String serviceId, String key) {
+        log.info("Deleting Record: {}|{}|{}", serviceId, key, "-");
+
+        KeyValue removed = store.remove(serviceId, key);
+        if (removed == null) {
+            throw keyNotInCache(key, serviceId);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public Map<String, KeyValue> readForService(String serviceId) {
+        return store.getService(serviceId);
+    }
+
+    @Override
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        return store.scanService(serviceId, cursor, limit);
+    }
+
+    @Override
+    public void deleteForService(String serviceId) {
+        store.removeService(serviceId);
+    }
+
+    @Override
+    public void removeNonRelevantTokens(String serviceId, String mapKey) {
+        throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
+    }
+
+    @Override
+    public void removeNonRelevantRules(String serviceId, String mapKey) {
+        throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
+    }
+
+    private StorageException keyNotInCache(String key, String serviceId) {
+        return new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+    }
+
+    private boolean aboveThreshold() {
+        long currentSize = store.size();
+
+        log.debug("Current Size {}, used bytes {}.", currentSize, store.usedBytes());
+
+        return currentSize >= config.getGeneralConfig().getMaxDataSize();
+    }
+}
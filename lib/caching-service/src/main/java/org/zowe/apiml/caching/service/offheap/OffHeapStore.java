@@ -0,0 +1,681 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.KeyOrderedScan;
+import org.zowe.apiml.caching.service.Messages;
+import org.zowe.apiml.caching.service.StorageException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Holder of the entries outside of the java heap.
+ * <p>
+ * The records are appended to slabs of direct memory. Every record consists of a header with the hash of the entry,
+ * the lengths of its parts and the time to live followed by the UTF-8 bytes of the service id, key, value and creation
+ * time. A missing part is stored with negative length. The index is an open addressing hash table made of primitive
+ * arrays, which maps the hash to the address of the record, so there are no java objects per entry and the heap objects
+ * are only created when the entry is returned. The slots of the entries of a service are linked together, so the
+ * service is processed without going through the whole index.
+ * <p>
+ * The entries whose time to live elapsed are treated as missing. They are replaced by the next entry stored under
+ * their key, removed by the next change of their key or by {@link #removeExpired(long)}.
+ * <p>
+ * Removed and replaced records leave garbage behind. One slab is always kept free. Once there is no other free slab
+ * for the next record, the live records of the slab with the most garbage are moved to the free slab and the
+ * compacted slab becomes the free one.
+ */
+@Slf4j
+public class OffHeapStore {
+    private static final int HEADER_SIZE = 5 * Integer.BYTES + Long.BYTES;
+    private static final int TTL_OFFSET = 5 * Integer.BYTES;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    private static final int NONE = -1;
+    private static final int MISSING = -1;
+    private static final long NO_TTL = Long.MIN_VALUE;
+
+    private final int slabSize;
+    private final ByteBuffer[] slabs;
+    private final int[] slabUsed;
+    private final int[] slabLive;
+    private int activeSlab;
+
+    private long[] addresses = new long[INITIAL_INDEX_CAPACITY];
+    private int[] hashes = new int[INITIAL_INDEX_CAPACITY];
+    private int[] nextInService = new int[INITIAL_INDEX_CAPACITY];
+    private int[] previousInService = new int[INITIAL_INDEX_CAPACITY];
+    private final Map<String, Integer> serviceHeads = new HashMap<>();
+    private int count;
+    private int occupied;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param capacity Maximum amount of bytes used by the records.
+     * @param slabSize Size of a single block of memory. A record can't be larger than a slab.
+     */
+    public OffHeapStore(long capacity, int slabSize) {
+        int slabCount = (int) Math.max(2, Math.min(Integer.MAX_VALUE, capacity / slabSize));
+
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabUsed = new int[slabCount];
+        this.slabLive = new int[slabCount];
+
+        slabs[activeSlab] = ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * Store the entry unless there already is an unexpired entry with the same key for the service.
+     *
+     * @return The entry already stored under the key or null if the new entry was stored.
+     * @throws StorageException if there is no space left for the entry
+     */
+    public KeyValue putIfAbsent(String serviceId, KeyValue toCreate) {
+        Record record = new Record(serviceId, toCreate);
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(record);
+            if (slot >= 0) {
+                KeyValue existing = decode(addresses[slot]);
+                if (!existing.isExpiredAt(System.currentTimeMillis())) {
+                    return existing;
+                }
+
+                overwrite(slot, record);
+                return null;
+            }
+
+            long address = append(record);
+            ensureIndexCapacity();
+            link(serviceId, insert(record.hash, address));
+            count++;
+
+            return null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the entry only if there is an unexpired entry with the same key for the service. The expired entry is
+     * removed.
+     *
+     * @return The replaced entry or null if there was nothing to replace.
+     * @throws StorageException if there is no space left for the new version of the entry
+     */
+    public KeyValue replace(String serviceId, KeyValue toUpdate) {
+        Record record = new Record(serviceId, toUpdate);
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(record);
+            if (slot < 0) {
+                return null;
+            }
+
+            KeyValue previous = decode(addresses[slot]);
+            if (previous.isExpiredAt(System.currentTimeMillis())) {
+                removeSlot(serviceId, slot);
+                return null;
+            }
+
+            overwrite(slot, record);
+            return previous;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The unexpired entry or null if there is none for the key.
+     */
+    public KeyValue get(String serviceId, String key) {
+        Record record = new Record(serviceId, key);
+
+        lock.readLock().lock();
+        try {
+            int slot = find(record);
+            if (slot < 0) {
+                return null;
+            }
+
+            KeyValue entry = decode(addresses[slot]);
+            return entry.isExpiredAt(System.currentTimeMillis()) ? null : entry;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The removed entry or null if there was no unexpired entry for the key.
+     */
+    public KeyValue remove(String serviceId, String key) {
+        Record record = new Record(serviceId, key);
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(record);
+            if (slot < 0) {
+                return null;
+            }
+
+            KeyValue removed = decode(addresses[slot]);
+            removeSlot(serviceId, slot);
+
+            return removed.isExpiredAt(System.currentTimeMillis()) ? null : removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all the entries whose time to live elapsed before the given time. The records without the time to live
+     * aren't decoded.
+     *
+     * @return Amount of the removed entries.
+     */
+    public int removeExpired(long now) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int slot = 0; slot < addresses.length; slot++) {
+                long address = addresses[slot];
+                if (address == EMPTY || address == REMOVED
+                    || slabs[slabOf(address)].getLong(offsetOf(address) + TTL_OFFSET) == NO_TTL) {
+                    continue;
+                }
+
+                KeyValue entry = decode(address);
+                if (entry.isExpiredAt(now)) {
+                    removeSlot(entry.getServiceId(), slot);
+                    removed++;
+                }
+            }
+
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, KeyValue> getService(String serviceId) {
+        Map<String, KeyValue> result = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            serviceEntries(serviceId).forEachRemaining(entry -> result.put(entry.getKey(), entry));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+     * Only the entries of the returned page are kept on the heap, the others are dropped once their key is compared.
+     */
+    public ScanResult scanService(String serviceId, String cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            return KeyOrderedScan.page(serviceEntries(serviceId), cursor, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void removeService(String serviceId) {
+        lock.writeLock().lock();
+        try {
+            Integer head = serviceHeads.remove(serviceId);
+            for (int slot = head == null ? NONE : head; slot != NONE; slot = nextInService[slot]) {
+                release(addresses[slot]);
+                addresses[slot] = REMOVED;
+                count--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Amount of bytes occupied by the live records.
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            long used = 0;
+            for (int live : slabLive) {
+                used += live;
+            }
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void overwrite(int slot, Record record) {
+        // The compaction during the append can move the previous record, the slot stays the same though.
+        long address = append(record);
+        release(addresses[slot]);
+        addresses[slot] = address;
+    }
+
+    private void removeSlot(String serviceId, int slot) {
+        release(addresses[slot]);
+        unlink(serviceId, slot);
+        addresses[slot] = REMOVED;
+        count--;
+    }
+
+    /**
+     * The unexpired entries of the service. The caller holds the lock for the whole iteration.
+     */
+    private Iterator<KeyValue> serviceEntries(String serviceId) {
+        Integer head = serviceHeads.get(serviceId);
+        int first = head == null ? NONE : head;
+        long now = System.currentTimeMillis();
+
+        return new Iterator<KeyValue>() {
+            private int slot = first;
+            private KeyValue next = advance();
+
+            private KeyValue advance() {
+                while (slot != NONE) {
+                    KeyValue entry = decode(addresses[slot]);
+                    slot = nextInService[slot];
+                    if (!entry.isExpiredAt(now)) {
+                        return entry;
+                    }
+                }
+
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public KeyValue next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+
+                KeyValue entry = next;
+                next = advance();
+                return entry;
+            }
+        };
+    }
+
+    private void link(String serviceId, int slot) {
+        Integer head = serviceHeads.get(serviceId);
+        serviceHeads.put(serviceId, push(head == null ? NONE : head, slot));
+    }
+
+    private int push(int head, int slot) {
+        nextInService[slot] = head;
+        previousInService[slot] = NONE;
+        if (head != NONE) {
+            previousInService[head] = slot;
+        }
+
+        return slot;
+    }
+
+    private void unlink(String serviceId, int slot) {
+        int next = nextInService[slot];
+        int previous = previousInService[slot];
+        if (next != NONE) {
+            previousInService[next] = previous;
+        }
+
+        if (previous != NONE) {
+            nextInService[previous] = next;
+        } else if (next != NONE) {
+            serviceHeads.put(serviceId, next);
+        } else {
+            serviceHeads.remove(serviceId);
+        }
+    }
+
+    private int find(Record record) {
+        int mask = addresses.length - 1;
+        for (int slot = record.hash & mask; ; slot = (slot + 1) & mask) {
+            long address = addresses[slot];
+            if (address == EMPTY) {
+                return -1;
+            }
+            if (address != REMOVED && hashes[slot] == record.hash && matches(address, record)) {
+                return slot;
+            }
+        }
+    }
+
+    private int findByAddress(int hash, long address) {
+        int mask = addresses.length - 1;
+        for (int slot = hash & mask; addresses[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (addresses[slot] == address) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private int insert(int hash, long address) {
+        int mask = addresses.length - 1;
+        int slot = hash & mask;
+        while (addresses[slot] != EMPTY && addresses[slot] != REMOVED) {
+            slot = (slot + 1) & mask;
+        }
+
+        if (addresses[slot] == EMPTY) {
+            occupied++;
+        }
+        addresses[slot] = address;
+        hashes[slot] = hash;
+        return slot;
+    }
+
+    private void ensureIndexCapacity() {
+        if ((occupied + 1) * 2 <= addresses.length) {
+            return;
+        }
+
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        int[] oldNextInService = nextInService;
+        int capacity = Math.max(INITIAL_INDEX_CAPACITY, Integer.highestOneBit(Math.max(1, count + 1) * 4));
+
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        nextInService = new int[capacity];
+        previousInService = new int[capacity];
+        occupied = 0;
+        // Every live slot is linked to its service, so following the links moves all of them.
+        for (Map.Entry<String, Integer> service : serviceHeads.entrySet()) {
+            int head = NONE;
+            for (int slot = service.getValue(); slot != NONE; slot = oldNextInService[slot]) {
+                head = push(head, insert(oldHashes[slot], oldAddresses[slot]));
+            }
+            service.setValue(head);
+        }
+    }
+
+    private long append(Record record) {
+        int length = record.length();
+        if (length > slabSize) {
+            log.debug("The record of size {} doesn't fit into the slab of size {}", length, slabSize);
+            throw insufficientStorage();
+        }
+
+        for (int attempt = 0; attempt <= slabs.length; attempt++) {
+            if (slabUsed[activeSlab] + length <= slabSize) {
+                int offset = slabUsed[activeSlab];
+                record.writeTo(duplicate(activeSlab, offset));
+                slabUsed[activeSlab] += length;
+                slabLive[activeSlab] += length;
+
+                return address(activeSlab, offset);
+            }
+
+            int free = freeSlab(activeSlab);
+            if (free >= 0 && freeSlab(free) >= 0) {
+                open(free);
+                activeSlab = free;
+            } else if (free < 0 || !compact(free)) {
+                break;
+            }
+        }
+
+        throw insufficientStorage();
+    }
+
+    /**
+     * Move the live records of the slab with the most garbage to the free slab, which becomes the active one.
+     *
+     * @return false if there is no garbage to get rid of.
+     */
+    private boolean compact(int target) {
+        int source = -1;
+        int garbage = 0;
+        for (int slab = 0; slab < slabs.length; slab++) {
+            if (slabUsed[slab] - slabLive[slab] > garbage) {
+                source = slab;
+                garbage = slabUsed[slab] - slabLive[slab];
+            }
+        }
+        if (source < 0) {
+            return false;
+        }
+
+        log.debug("Compacting slab {} with {} bytes of garbage", source, garbage);
+        open(target);
+        ByteBuffer from = slabs[source];
+        int offset = 0;
+        while (offset < slabUsed[source]) {
+            int length = recordLength(from, offset);
+            long address = address(source, offset);
+            int slot = findByAddress(from.getInt(offset), address);
+            if (slot >= 0) {
+                ByteBuffer bytes = duplicate(source, offset);
+                bytes.limit(offset + length);
+                duplicate(target, slabUsed[target]).put(bytes);
+
+                addresses[slot] = address(target, slabUsed[target]);
+                slabUsed[target] += length;
+                slabLive[target] += length;
+            }
+            offset += length;
+        }
+
+        slabUsed[source] = 0;
+        slabLive[source] = 0;
+        activeSlab = target;
+        return true;
+    }
+
+    private int freeSlab(int except) {
+        for (int slab = 0; slab < slabs.length; slab++) {
+            if (slab != except && slab != activeSlab && slabUsed[slab] == 0) {
+                return slab;
+            }
+        }
+
+        return -1;
+    }
+
+    private void open(int slab) {
+        if (slabs[slab] == null) {
+            slabs[slab] = ByteBuffer.allocateDirect(slabSize);
+        }
+    }
+
+    private void release(long address) {
+        int slab = slabOf(address);
+        slabLive[slab] -= recordLength(slabs[slab], offsetOf(address));
+    }
+
+    private boolean matches(long address, Record record) {
+        ByteBuffer slab = slabs[slabOf(address)];
+        int offset = offsetOf(address);
+        if (slab.getInt(offset + Integer.BYTES) != record.serviceId.length
+            || slab.getInt(offset + 2 * Integer.BYTES) != record.key.length) {
+            return false;
+        }
+
+        int position = offset + HEADER_SIZE;
+        return equalBytes(slab, position, record.serviceId)
+            && equalBytes(slab, position + record.serviceId.length, record.key);
+    }
+
+    private KeyValue decode(long address) {
+        int slab = slabOf(address);
+        int offset = offsetOf(address);
+        ByteBuffer header = slabs[slab];
+
+        ByteBuffer bytes = duplicate(slab, offset + HEADER_SIZE);
+        String serviceId = string(bytes, header.getInt(offset + Integer.BYTES));
+        String key = string(bytes, header.getInt(offset + 2 * Integer.BYTES));
+        String value = string(bytes, header.getInt(offset + 3 * Integer.BYTES));
+        String created = string(bytes, header.getInt(offset + 4 * Integer.BYTES));
+        long ttl = header.getLong(offset + TTL_OFFSET);
+
+        KeyValue entry = new KeyValue(key, value, created);
+        entry.setServiceId(serviceId);
+        if (ttl != NO_TTL) {
+            entry.setTtl(ttl);
+        }
+        return entry;
+    }
+
+    private ByteBuffer duplicate(int slab, int position) {
+        ByteBuffer buffer = slabs[slab].duplicate();
+        buffer.position(position);
+        return buffer;
+    }
+
+    private static boolean equalBytes(ByteBuffer slab, int position, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (slab.get(position + i) != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String string(ByteBuffer bytes, int length) {
+        if (length == MISSING) {
+            return null;
+        }
+
+        byte[] result = new byte[length];
+        bytes.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    private static int recordLength(ByteBuffer slab, int offset) {
+        int length = HEADER_SIZE;
+        for (int part = 1; part < 5; part++) {
+            length += Math.max(0, slab.getInt(offset + part * Integer.BYTES));
+        }
+
+        return length;
+    }
+
+    private static long address(int slab, int offset) {
+        // The slab is shifted by one, so the address is never EMPTY or REMOVED.
+        return ((long) (slab + 1) << 32) | offset;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32) - 1;
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    private static StorageException insufficientStorage() {
+        return new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus());
+    }
+
+    /**
+     * Serialized form of the entry, which is only held for the duration of a single operation.
+     */
+    private static class Record {
+        private final int hash;
+        private final byte[] serviceId;
+        private final byte[] key;
+        private final byte[] value;
+        private final byte[] created;
+        private final long ttl;
+
+        Record(String serviceId, String key) {
+            this.hash = hash(serviceId, key);
+            this.serviceId = serviceId.getBytes(StandardCharsets.UTF_8);
+            this.key = key.getBytes(StandardCharsets.UTF_8);
+            this.value = null;
+            this.created = null;
+            this.ttl = NO_TTL;
+        }
+
+        Record(String serviceId, KeyValue entry) {
+            this.hash = hash(serviceId, entry.getKey());
+            this.serviceId = serviceId.getBytes(StandardCharsets.UTF_8);
+            this.key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            this.value = bytes(entry.getValue());
+            this.created = bytes(entry.getCreated());
+            this.ttl = entry.getTtl() == null ? NO_TTL : entry.getTtl();
+        }
+
+        int length() {
+            return HEADER_SIZE + serviceId.length + key.length + length(value) + length(created);
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.putInt(hash)
+                .putInt(serviceId.length)
+                .putInt(key.length)
+                .putInt(value == null ? MISSING : value.length)
+                .putInt(created == null ? MISSING : created.length)
+                .putLong(ttl)
+                .put(serviceId)
+                .put(key);
+            if (value != null) {
+                buffer.put(value);
+            }
+            if (created != null) {
+                buffer.put(created);
+            }
+        }
+
+        private static byte[] bytes(String part) {
+            return part == null ? null : part.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int length(byte[] part) {
+            return part == null ? 0 : part.length;
+        }
+
+        private static int hash(String serviceId, String key) {
+            int hash = 31 * serviceId.hashCode() + key.hashCode();
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap.config;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.zowe.apiml.caching.config.GeneralConfig;
+
+@Data
+@Configuration
+@ConfigurationProperties(value = "caching.storage.offheap")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "caching.storage.mode", havingValue = "offheap")
+public class OffHeapConfig {
+    private static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+    private static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+    private final GeneralConfig generalConfig;
+
+    /**
+     * Maximum amount of direct memory in bytes used for the entries.
+     */
+    private long capacity = DEFAULT_CAPACITY;
+    /**
+     * Size in bytes of the blocks the direct memory is allocated in. A single entry can't be larger.
+     */
+    private int slabSize = DEFAULT_SLAB_SIZE;
+}
@@ -0,0 +1,35 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zowe.apiml.caching.service.Storage;
+import org.zowe.apiml.caching.service.offheap.OffHeapStorage;
+import org.zowe.apiml.message.core.MessageService;
+
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "caching.storage.mode", havingValue = "offheap")
+public class OffHeapConfiguration {
+    private final OffHeapConfig offHeapConfig;
+
+    @Bean
+    public Storage offHeap(MessageService messageService) {
+        log.info("Using off-heap configuration {}", offHeapConfig);
+
+        return new OffHeapStorage(offHeapConfig, messageService);
+    }
+}
@@ -11,38 +11,71 @@
 package org.zowe.apiml.caching.service.redis;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.zowe.apiml.caching.model.KeyValue;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisEntryException;
 
 /**
  * Class used to represent a cache entry in Redis.
  * <p>
- * The structure is composed of a String service ID and {@link KeyValue}, serialized to JSON format.
+ * The structure is composed of a String service ID and {@link KeyValue}, serialized to JSON format or to the compact
+ * format:
+ * <pre>
+ * format (1 char) | serviceId | key | value | created | ttl
+ * </pre>
+ * Every string is stored as its length in decimal digits and ':' followed by its characters, null is stored as the
+ * length -1. The compact format char is never the first char of JSON, so both formats are read regardless of the
+ * format which is written.
  */
-@AllArgsConstructor
 public class RedisEntry {
+    public static final String JSON_FORMAT = "json";
+    public static final String COMPACT_FORMAT = "compact";
+
+    static final char COMPACT_FORMAT_V1 = '\u0001';
+
+    private static final char LENGTH_SEPARATOR = ':';
+    private static final int NULL_LENGTH = -1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader JSON_READER = MAPPER.readerFor(KeyValue.class);
+    private static final ObjectWriter JSON_WRITER = MAPPER.writerFor(KeyValue.class);
+
     private final String serviceId;
     private final KeyValue entry;
-
-    private final ObjectMapper mapper;
+    private final String format;
+    private final String redisValue;
 
     public RedisEntry(String serviceId, KeyValue entry) {
+        this(serviceId, entry, JSON_FORMAT);
+    }
+
+    /**
+     * @param format format in which the entry is serialized, {@link #JSON_FORMAT} or {@link #COMPACT_FORMAT}.
+     */
+    public RedisEntry(String serviceId, KeyValue entry, String format) {
         this.serviceId = serviceId;
         this.entry = entry;
-        this.mapper = new ObjectMapper();
+        this.format = format;
+        this.redisValue = null;
     }
 
     /**
      * @param serviceId  service ID for the entry.
-     * @param redisValue serialized String representation of the KeyValue entry.
+     * @param redisValue serialized String representation of the KeyValue entry in either of the formats.
      * @throws RedisEntryException thrown if the serialized entry cannot be deserialized to a KeyValue instance.
      */
     public RedisEntry(String serviceId, String redisValue) throws RedisEntryException {
-        this.mapper = new ObjectMapper();
         this.serviceId = serviceId;
+        this.redisValue = redisValue;
         try {
-            this.entry = mapper.readValue(redisValue, KeyValue.class);
+            if (isCompact(redisValue)) {
+                this.entry = decodeCompact(redisValue);
+                this.format = COMPACT_FORMAT;
+            } else {
+                this.entry = JSON_READER.readValue(redisValue);
+                this.format = JSON_FORMAT;
+            }
         } catch (Exception e) {
             throw new RedisEntryException("Failure deserializing the entry to a KeyValue object", e);
         }
@@ -56,15 +89,98 @@ public class RedisEntry {
         return entry;
     }
 
+    /**
+     * @return True if the entries can be written in the format.
+     */
+    public static boolean isSupportedFormat(String format) {
+        return JSON_FORMAT.equalsIgnoreCase(format) || COMPACT_FORMAT.equalsIgnoreCase(format);
+    }
+
+    /**
+     * @return The serialized entry as it was read from Redis, null if the entry wasn't read from Redis.
+     */
+    public String getRedisValue() {
+        return redisValue;
+    }
+
     /**
      * @return KeyValue entry as a serialized String.
      * @throws RedisEntryException thrown if the KeyValue entry cannot be serialized.
      */
     public String getEntryAsString() throws RedisEntryException {
         try {
-            return mapper.writeValueAsString(this.entry);
+            if (COMPACT_FORMAT.equalsIgnoreCase(format)) {
+                return encodeCompact(entry);
+            }
+
+            return JSON_WRITER.writeValueAsString(this.entry);
         } catch (Exception e) {
             throw new RedisEntryException("Failure serializing the entry as a String", e);
         }
     }
+
+    private static boolean isCompact(String redisValue) {
+        return !redisValue.isEmpty() && redisValue.charAt(0) == COMPACT_FORMAT_V1;
+    }
+
+    private static String encodeCompact(KeyValue keyValue) {
+        StringBuilder result = new StringBuilder(64 + length(keyValue.getValue()) + length(keyValue.getKey()));
+        result.append(COMPACT_FORMAT_V1);
+        appendString(result, keyValue.getServiceId());
+        appendString(result, keyValue.getKey());
+        appendString(result, keyValue.getValue());
+        appendString(result, keyValue.getCreated());
+        appendString(result, keyValue.getTtl() == null ? null : String.valueOf(keyValue.getTtl()));
+        return result.toString();
+    }
+
+    private static KeyValue decodeCompact(String redisValue) {
+        int[] position = {1};
+        String decodedServiceId = readString(redisValue, position);
+        String key = readString(redisValue, position);
+        String value = readString(redisValue, position);
+        String created = readString(redisValue, position);
+        String ttl = readString(redisValue, position);
+        if (position[0] != redisValue.length()) {
+            throw new IllegalArgumentException("Unexpected content after the entry");
+        }
+
+        KeyValue keyValue = new KeyValue(key, value, created);
+        keyValue.setServiceId(decodedServiceId);
+        keyValue.setTtl(ttl == null ? null : Long.valueOf(ttl));
+        return keyValue;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private static void appendString(StringBuilder result, String value) {
+        if (value == null) {
+            result.append(NULL_LENGTH).append(LENGTH_SEPARATOR);
+            return;
+        }
+
+        result.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+    }
+
+    private static String readString(String redisValue, int[] position) {
+        int separator = redisValue.indexOf(LENGTH_SEPARATOR, position[0]);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Missing length of the string at " + position[0]);
+        }
+
+        int length = Integer.parseInt(redisValue.substring(position[0], separator));
+        position[0] = separator + 1;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > redisValue.length() - position[0]) {
+            throw new IllegalArgumentException("Invalid length of the string: " + length);
+        }
+
+        String value = redisValue.substring(position[0], position[0] + length);
+        position[0] += length;
+        return value;
+    }
 }
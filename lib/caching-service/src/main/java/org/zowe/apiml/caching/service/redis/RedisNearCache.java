@@ -0,0 +1,275 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.redis;
+
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.service.EntryKey;
+
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the values of the recently read entries of the {@link RedisOperator} in the memory, so the repeated reads
+ * don't go to Redis. The missing entries are kept as well.
+ * <p>
+ * Every instance publishes the changed entries to the {@link #INVALIDATION_CHANNEL} once Redis applied the change and
+ * every instance removes the published entries from its near cache. The messages published while the subscription was
+ * disconnected are lost, so the whole near cache is cleared whenever a connection of the client is lost or
+ * established again. The entries cached for longer than the expiration are read again in any case.
+ * <p>
+ * The cache is bounded by the CLOCK algorithm, the same approximation of the least recently used eviction as the in
+ * memory storage uses. The values are kept in a concurrent map and the reads only set the reference bit, so the reads
+ * don't lock the cache. Every cached value is queued once, the queue is trimmed to the size of the cache and the
+ * queued values which were invalidated meanwhile are dropped by the trimming.
+ */
+@Slf4j
+public class RedisNearCache extends RedisPubSubAdapter<String, String> implements RedisConnectionStateListener, MeterBinder {
+    public static final String INVALIDATION_CHANNEL = "apiml:caching:invalidations";
+
+    private static final char KEY_INVALIDATION = 'k';
+    private static final char SERVICE_INVALIDATION = 's';
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private final int size;
+    private final long expiration;
+    private final Map<EntryKey, CachedValue> cached = new ConcurrentHashMap<>();
+    private final Queue<CachedValue> clock = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger clockSize = new AtomicInteger();
+    // Changed by every invalidation, so the value read meanwhile from Redis isn't cached over the newer one.
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private StatefulRedisPubSubConnection<String, String> subscription;
+
+    public RedisNearCache(int size, long expiration) {
+        log.info("Using near cache of {} entries in front of Redis", size);
+
+        this.size = size;
+        this.expiration = expiration;
+    }
+
+    /**
+     * Starts receiving the invalidations published by all the instances.
+     */
+    public void subscribe(StatefulRedisPubSubConnection<String, String> connection) {
+        subscription = connection;
+        connection.addListener(this);
+        connection.async().subscribe(INVALIDATION_CHANNEL);
+    }
+
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("caching.redis.nearcache.hit.ratio", this, RedisNearCache::getHitRatio)
+            .description("Ratio of the reads served from the near cache")
+            .register(registry);
+        Gauge.builder("caching.redis.nearcache.size", this, RedisNearCache::getSize)
+            .description("Amount of the entries in the near cache")
+            .register(registry);
+        FunctionCounter.builder("caching.redis.nearcache.reads", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("caching.redis.nearcache.reads", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("caching.redis.nearcache.invalidations", invalidations, LongAdder::sum)
+            .description("Amount of the entries and services invalidated")
+            .register(registry);
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public int getSize() {
+        return cached.size();
+    }
+
+    /**
+     * @return The cached value, which is null for the missing entry, or null if the entry isn't cached.
+     */
+    public CachedValue get(String serviceId, String key) {
+        EntryKey entryKey = new EntryKey(serviceId, key);
+        CachedValue value = cached.get(entryKey);
+        if (value != null && System.currentTimeMillis() - value.cachedAt > expiration) {
+            cached.remove(entryKey, value);
+            value = null;
+        }
+
+        if (value == null) {
+            misses.increment();
+        } else {
+            value.referenced = true;
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * @return The generation to pass to {@link #put(String, String, String, long)} for the value read afterwards.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Caches the value unless an entry was invalidated since the generation was taken. The invalidations change the
+     * generation before they remove the entries, so the value cached while an invalidation runs is either removed by
+     * the invalidation or removed again here.
+     */
+    public void put(String serviceId, String key, String value, long loadedGeneration) {
+        if (generation.get() != loadedGeneration) {
+            return;
+        }
+
+        EntryKey entryKey = new EntryKey(serviceId, key);
+        CachedValue cachedValue = new CachedValue(entryKey, value, System.currentTimeMillis());
+        cached.put(entryKey, cachedValue);
+        if (generation.get() != loadedGeneration) {
+            cached.remove(entryKey, cachedValue);
+            return;
+        }
+
+        clock.offer(cachedValue);
+        clockSize.incrementAndGet();
+        trim();
+    }
+
+    /**
+     * Removes the values from the head of the clock until it fits the size. The referenced values get a second chance
+     * within two rounds of the clock, the same limit as the eviction of the in memory storage, afterwards the head is
+     * removed regardless.
+     */
+    private void trim() {
+        long secondChances = 2L * (size + 1);
+        CachedValue head;
+        while (clockSize.get() > size && (head = clock.poll()) != null) {
+            if (head.referenced && secondChances-- > 0 && cached.get(head.entryKey) == head) {
+                head.referenced = false;
+                clock.offer(head);
+                continue;
+            }
+
+            clockSize.decrementAndGet();
+            cached.remove(head.entryKey, head);
+        }
+    }
+
+    public void invalidate(String serviceId, String key) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cached.remove(new EntryKey(serviceId, key));
+    }
+
+    public void invalidateService(String serviceId) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        cached.keySet().removeIf(entryKey -> entryKey.getServiceId().equals(serviceId));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cached.clear();
+    }
+
+    /**
+     * @return The message published to invalidate the entry.
+     */
+    public static String keyInvalidation(String serviceId, String key) {
+        return KEY_INVALIDATION + String.valueOf(serviceId.length()) + LENGTH_SEPARATOR + serviceId + key;
+    }
+
+    /**
+     * @return The message published to invalidate all the entries of the service.
+     */
+    public static String serviceInvalidation(String serviceId) {
+        return SERVICE_INVALIDATION + serviceId;
+    }
+
+    @Override
+    public void message(String channel, String message) {
+        if (!INVALIDATION_CHANNEL.equals(channel) || message.isEmpty()) {
+            return;
+        }
+
+        if (message.charAt(0) == SERVICE_INVALIDATION) {
+            invalidateService(message.substring(1));
+            return;
+        }
+
+        try {
+            int separator = message.indexOf(LENGTH_SEPARATOR);
+            int serviceIdEnd = separator + 1 + Integer.parseInt(message.substring(1, separator));
+            invalidate(message.substring(separator + 1, serviceIdEnd), message.substring(serviceIdEnd));
+        } catch (RuntimeException e) {
+            log.debug("Invalid invalidation message, the near cache is cleared: {}", e.getMessage());
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public void onRedisConnected(RedisChannelHandler<?, ?> connection, SocketAddress socketAddress) {
+        invalidateAll();
+    }
+
+    @Override
+    public void onRedisDisconnected(RedisChannelHandler<?, ?> connection) {
+        invalidateAll();
+    }
+
+    @Override
+    public void onRedisExceptionCaught(RedisChannelHandler<?, ?> connection, Throwable cause) {
+        // The connection is disconnected when it fails, which clears the near cache.
+    }
+
+    public static class CachedValue {
+        private final EntryKey entryKey;
+        private final String value;
+        private final long cachedAt;
+        private volatile boolean referenced;
+
+        CachedValue(EntryKey entryKey, String value, long cachedAt) {
+            this.entryKey = entryKey;
+            this.value = value;
+            this.cachedAt = cachedAt;
+        }
+
+        /**
+         * @return The serialized entry, null if the entry is missing.
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -10,20 +10,27 @@
 
 package org.zowe.apiml.caching.service.redis;
 
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.MapScanCursor;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisCommandExecutionException;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.RedisURI;
-import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
 import io.lettuce.core.codec.StringCodec;
 import io.lettuce.core.masterreplica.MasterReplica;
 import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
-import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
-import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.redis.config.RedisConfig;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisEntryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisOutOfMemoryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RetryableRedisException;
@@ -31,57 +38,172 @@ import org.zowe.apiml.message.log.ApimlLogger;
 
 import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * Class used to connect to and operate on a Redis instance or cluster.
  * Contains the CRUD operations enacted on Redis with serialized read and write.
+ * <p>
+ * The writes always go to the master. The reads are sent through a second connection routed by the
+ * {@link RedisConfig.ReadPolicy}, unless the policy is master. With the pinned policy the reads of the service written
+ * by this instance in the last pinnedReadDuration milliseconds go to the master, so they see the written entries
+ * even before the replicas receive them.
+ * <p>
+ * The entries of a service are stored in one hash named by the service ID. With more shards they are spread over the
+ * hashes named by the service ID, ':' and the number of the shard chosen by the hash code of the key, so in a cluster
+ * the entries of one service are held by more nodes. The operations on all the entries of a service are sent to all
+ * the hashes at once.
+ * <p>
+ * With the {@link RedisNearCache} the entries read by one key are kept in the memory. Every write invalidates the
+ * written entry in the near cache once Redis replied and publishes it to the other instances. The entries missing in
+ * the near cache are read from the master regardless of the read policy, as a replica can still hold a value which was
+ * already invalidated and the near cache would keep it until it expires.
+ * <p>
+ * The services which were written entries with time to live are kept in a Redis set, so their expired entries can be
+ * swept by any instance.
  */
-@AllArgsConstructor
 @NoArgsConstructor
 @Slf4j
 @Component
 @ConditionalOnProperty(name = "caching.storage.mode", havingValue = "redis")
 public class RedisOperator {
-    private RedisClient redisClient;
-    private StatefulRedisMasterReplicaConnection<String, String> redisConnection;
-    private RedisAsyncCommands<String, String> redis;
+    private static final String SHARD_SEPARATOR = ":";
+    static final String EXPIRING_SERVICES_KEY = "apiml:caching:expiring-services";
+
+    private AbstractRedisClient redisClient;
+    private StatefulConnection<String, String> redisConnection;
+    private RedisClusterAsyncCommands<String, String> redis;
+
+    private StatefulConnection<String, String> readConnection;
+    private RedisClusterAsyncCommands<String, String> reads;
+    private RedisConfig.ReadPolicy readPolicy = RedisConfig.ReadPolicy.MASTER;
+    private long pinnedReadDuration;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private int shards = 1;
+    private RedisNearCache nearCache;
+    private final Set<String> expiringServices = ConcurrentHashMap.newKeySet();
 
     public RedisOperator(RedisClient redisClient, RedisURI redisUri, ApimlLogger apimlLog) {
+        this(redisClient, redisUri, RedisConfig.ReadPolicy.MASTER, 0, apimlLog);
+    }
+
+    public RedisOperator(RedisClient redisClient, RedisURI redisUri, RedisConfig.ReadPolicy readPolicy, long pinnedReadDuration, ApimlLogger apimlLog) {
         try {
             this.redisClient = redisClient;
-            redisConnection = MasterReplica.connect(this.redisClient, StringCodec.UTF8, redisUri);
-            redis = redisConnection.async();
-            log.info("Connected to Redis {}", redisUri);
+            this.readPolicy = readPolicy;
+            this.pinnedReadDuration = pinnedReadDuration;
+            StatefulRedisMasterReplicaConnection<String, String> connection = MasterReplica.connect(redisClient, StringCodec.UTF8, redisUri);
+            redisConnection = connection;
+            redis = connection.async();
+            if (readPolicy == RedisConfig.ReadPolicy.MASTER) {
+                reads = redis;
+            } else {
+                StatefulRedisMasterReplicaConnection<String, String> connectionForReads = MasterReplica.connect(redisClient, StringCodec.UTF8, redisUri);
+                connectionForReads.setReadFrom(readPolicy.getReadFrom());
+                readConnection = connectionForReads;
+                reads = connectionForReads.async();
+            }
+            loadScripts();
+            log.info("Connected to Redis {}, reading from {}", redisUri, readPolicy);
         } catch (Exception e) {
             apimlLog.log("org.zowe.apiml.cache.errorInitializingStorage", "redis", e.getCause().getMessage(), e);
             System.exit(1);
         }
     }
 
+    /**
+     * Connects to Redis Cluster. The nodes of the cluster are discovered from the initial URIs of the client.
+     *
+     * @param shards Amount of the hashes over which the entries of every service are spread.
+     */
+    public RedisOperator(RedisClusterClient clusterClient, RedisConfig.ReadPolicy readPolicy, long pinnedReadDuration, int shards, ApimlLogger apimlLog) {
+        try {
+            this.redisClient = clusterClient;
+            this.readPolicy = readPolicy;
+            this.pinnedReadDuration = pinnedReadDuration;
+            this.shards = Math.max(1, shards);
+            StatefulRedisClusterConnection<String, String> connection = clusterClient.connect(StringCodec.UTF8);
+            redisConnection = connection;
+            redis = connection.async();
+            if (readPolicy == RedisConfig.ReadPolicy.MASTER) {
+                reads = redis;
+            } else {
+                StatefulRedisClusterConnection<String, String> connectionForReads = clusterClient.connect(StringCodec.UTF8);
+                connectionForReads.setReadFrom(readPolicy.getReadFrom());
+                readConnection = connectionForReads;
+                reads = connectionForReads.async();
+            }
+            loadScripts();
+            log.info("Connected to Redis Cluster with {} shards per service, reading from {}", this.shards, readPolicy);
+        } catch (Exception e) {
+            apimlLog.log("org.zowe.apiml.cache.errorInitializingStorage", "redis", e.getCause().getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    public RedisOperator(AbstractRedisClient redisClient, StatefulConnection<String, String> redisConnection, RedisClusterAsyncCommands<String, String> redis) {
+        this(redisClient, redisConnection, redis, null, redis, RedisConfig.ReadPolicy.MASTER, 0, 1);
+    }
+
+    /**
+     * Package protected for unit testing.
+     */
+    RedisOperator(AbstractRedisClient redisClient,
+                  StatefulConnection<String, String> redisConnection, RedisClusterAsyncCommands<String, String> redis,
+                  StatefulConnection<String, String> readConnection, RedisClusterAsyncCommands<String, String> reads,
+                  RedisConfig.ReadPolicy readPolicy, long pinnedReadDuration, int shards) {
+        this.redisClient = redisClient;
+        this.redisConnection = redisConnection;
+        this.redis = redis;
+        this.readConnection = readConnection;
+        this.reads = reads;
+        this.readPolicy = readPolicy;
+        this.pinnedReadDuration = pinnedReadDuration;
+        this.shards = shards;
+    }
+
+    /**
+     * Serves the repeated reads of the entries by key from the near cache.
+     */
+    public void useNearCache(RedisNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
     @PreDestroy
     public void closeConnection() {
+        if (nearCache != null) {
+            nearCache.close();
+        }
+
         if (redisConnection != null) {
             redisConnection.close();
         }
 
+        if (readConnection != null) {
+            readConnection.close();
+        }
+
         if (redisClient != null) {
             redisClient.shutdown();
         }
     }
 
     /**
-     * Creates a given entry in Redis.
+     * Creates a given entry in Redis. The entry which exists but is expired is replaced. The check and the creation
+     * are done by one script.
      *
      * @param entryToAdd RedisEntry containing the service ID for which to create the entry, and the key and value.
      * @return true if the key does not exist for the service ID and the entry was created, otherwise false.
      */
     public boolean create(RedisEntry entryToAdd) throws RedisOutOfMemoryException {
-        KeyValue toAdd = entryToAdd.getEntry();
-
         try {
-            RedisFuture<Boolean> result = redis.hsetnx(entryToAdd.getServiceId(), toAdd.getKey(), entryToAdd.getEntryAsString());
-            return result.get();
+            return createEntry(entryToAdd).toCompletableFuture().get();
         } catch (ExecutionException e) {
             handleWriteOperationExecutionException(e);
         } catch (InterruptedException e) {
@@ -94,23 +216,15 @@ public class RedisOperator {
     }
 
     /**
-     * Updates a given entry in Redis.
+     * Updates a given entry in Redis. The existence check and the update are done by one script, so the entry deleted
+     * meanwhile is never created again.
      *
      * @param entryToUpdate RedisEntry containing the service ID and key to update, with the new value.
      * @return true if the key exists for a service ID and the value was updated, otherwise false.
      */
     public boolean update(RedisEntry entryToUpdate) throws RedisOutOfMemoryException {
-        String serviceId = entryToUpdate.getServiceId();
-        KeyValue toUpdate = entryToUpdate.getEntry();
-
         try {
-            boolean exists = redis.hexists(serviceId, toUpdate.getKey()).get();
-            if (!exists) {
-                return false;
-            }
-
-            boolean result = redis.hset(serviceId, toUpdate.getKey(), entryToUpdate.getEntryAsString()).get();
-            return !result; // hset returns false if field already exists and value was updated
+            return updateEntry(entryToUpdate).toCompletableFuture().get();
         } catch (ExecutionException e) {
             handleWriteOperationExecutionException(e);
         } catch (InterruptedException e) {
@@ -122,14 +236,129 @@ public class RedisOperator {
         return false;
     }
 
+    /**
+     * Creates a given entry in Redis without waiting for the response.
+     *
+     * @return Stage completed with true if the key does not exist for the service ID and the entry was created,
+     * otherwise false. The stage fails with RedisOutOfMemoryException when Redis runs out of memory.
+     */
+    public CompletionStage<Boolean> createAsync(RedisEntry entryToAdd) {
+        try {
+            return translateWriteFailure(createEntry(entryToAdd));
+        } catch (RedisEntryException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * Updates a given entry in Redis without waiting for the response.
+     *
+     * @return Stage completed with true if the key exists for a service ID and the value was updated, otherwise false.
+     * The stage fails with RedisOutOfMemoryException when Redis runs out of memory.
+     */
+    public CompletionStage<Boolean> updateAsync(RedisEntry entryToUpdate) {
+        try {
+            return translateWriteFailure(updateEntry(entryToUpdate));
+        } catch (RedisEntryException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private CompletionStage<Boolean> createEntry(RedisEntry entryToAdd) throws RedisEntryException {
+        String serviceId = entryToAdd.getServiceId();
+        String key = entryToAdd.getEntry().getKey();
+        String value = entryToAdd.getEntryAsString();
+
+        return this.<String>script(RedisScript.CREATE, serviceId, key, value).thenCompose(existing -> {
+            if (existing == null) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (!isExpired(serviceId, existing)) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // The expired entry is replaced only if no other instance changed it meanwhile.
+            return this.<Long>script(RedisScript.REPLACE, serviceId, key, existing, value).thenApply(replaced -> replaced == 1);
+        });
+    }
+
+    private CompletionStage<Boolean> updateEntry(RedisEntry entryToUpdate) throws RedisEntryException {
+        return this.<Long>script(RedisScript.UPDATE, entryToUpdate.getServiceId(), entryToUpdate.getEntry().getKey(), entryToUpdate.getEntryAsString())
+            .thenApply(updated -> updated == 1);
+    }
+
+    private boolean isExpired(String serviceId, String redisValue) {
+        try {
+            return new RedisEntry(serviceId, redisValue).getEntry().isExpiredAt(System.currentTimeMillis());
+        } catch (RedisEntryException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the given entries in Redis. The commands are sent without waiting for the responses, so all of them
+     * share the round trips to Redis.
+     *
+     * @return Map keyed by the key of the entry with true if the entry was created, otherwise false.
+     */
+    public Map<String, Boolean> createAll(Collection<RedisEntry> entriesToAdd) throws RedisOutOfMemoryException {
+        Map<String, RedisFuture<Boolean>> futures = new LinkedHashMap<>();
+        Map<String, Boolean> result = new HashMap<>();
+        for (RedisEntry entryToAdd : entriesToAdd) {
+            String key = entryToAdd.getEntry().getKey();
+            try {
+                written(entryToAdd.getServiceId());
+                futures.put(key, redis.hsetnx(hashKey(entryToAdd.getServiceId(), key), key, entryToAdd.getEntryAsString()));
+            } catch (RedisEntryException e) {
+                result.put(key, false);
+            }
+        }
+
+        try {
+            result.putAll(awaitWrites(futures));
+        } finally {
+            entriesToAdd.forEach(entry -> changed(entry.getServiceId(), entry.getEntry().getKey()));
+        }
+        return result;
+    }
+
+    /**
+     * Updates the given entries in Redis. The scripts updating the entries are sent without waiting for the
+     * responses, so all of them share the round trips to Redis.
+     *
+     * @return Map keyed by the key of the entry with true if the entry existed and was updated, otherwise false.
+     */
+    public Map<String, Boolean> updateAll(Collection<RedisEntry> entriesToUpdate) throws RedisOutOfMemoryException {
+        Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+        Map<String, Boolean> result = new HashMap<>();
+        for (RedisEntry entryToUpdate : entriesToUpdate) {
+            String key = entryToUpdate.getEntry().getKey();
+            try {
+                futures.put(key, updateEntry(entryToUpdate).toCompletableFuture());
+            } catch (RedisEntryException e) {
+                result.put(key, false);
+            }
+        }
+
+        result.putAll(awaitWrites(futures));
+        return result;
+    }
+
     /**
      * Retrieve an entry for a given service with the corresponding key.
      *
      * @return RedisEntry instance if the service ID and key exist, otherwise null.
      */
     public RedisEntry get(String serviceId, String key) {
+        RedisNearCache.CachedValue cached = nearCache == null ? null : nearCache.get(serviceId, key);
+        if (cached != null) {
+            return toEntry(serviceId, key, cached.getValue());
+        }
+
         try {
-            String result = redis.hget(serviceId, key).get();
+            long generation = nearCache == null ? 0 : nearCache.getGeneration();
+            String result = keyReadCommands(serviceId).hget(hashKey(serviceId, key), key).get();
+            loaded(serviceId, key, result, generation);
             return new RedisEntry(serviceId, result);
         } catch (InterruptedException e) {
             handleInterruptedException(e);
@@ -143,13 +372,81 @@ public class RedisOperator {
     }
 
     /**
-     * Retrieves all entries for a given service.
+     * Retrieve an entry for a given service with the corresponding key without waiting for the response.
+     *
+     * @return Stage completed with RedisEntry instance if the service ID and key exist, otherwise with null.
+     */
+    public CompletionStage<RedisEntry> getAsync(String serviceId, String key) {
+        RedisNearCache.CachedValue cached = nearCache == null ? null : nearCache.get(serviceId, key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(toEntry(serviceId, key, cached.getValue()));
+        }
+
+        long generation = nearCache == null ? 0 : nearCache.getGeneration();
+        return translateFailure(keyReadCommands(serviceId).hget(hashKey(serviceId, key), key).thenApply(result -> {
+            loaded(serviceId, key, result, generation);
+            return toEntry(serviceId, key, result);
+        }), RetryableRedisException::new);
+    }
+
+    /**
+     * Deletes the entry with the given key for a given service and returns it. Both are done by one script.
+     *
+     * @return RedisEntry instance which was deleted, null if there was none.
+     */
+    public RedisEntry getAndDelete(String serviceId, String key) {
+        try {
+            String result = this.<String>script(RedisScript.GET_AND_DELETE, serviceId, key).toCompletableFuture().get();
+            return toEntry(serviceId, key, result);
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Deletes the entry with the given key for a given service and returns it without waiting for the response.
+     *
+     * @return Stage completed with RedisEntry instance which was deleted, with null if there was none.
+     */
+    public CompletionStage<RedisEntry> getAndDeleteAsync(String serviceId, String key) {
+        return translateFailure(this.<String>script(RedisScript.GET_AND_DELETE, serviceId, key)
+            .thenApply(result -> toEntry(serviceId, key, result)), RetryableRedisException::new);
+    }
+
+    private RedisEntry toEntry(String serviceId, String key, String redisValue) {
+        if (redisValue == null) {
+            return null;
+        }
+
+        try {
+            return new RedisEntry(serviceId, redisValue);
+        } catch (RedisEntryException e) {
+            log.warn("Error retrieving entry: {}|{}. Error: {}", serviceId, key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves all entries for a given service. The hashes of all the shards are read in parallel.
      *
      * @return List of RedisEntry instances. If there are no entries an empty List is returned.
      */
     public List<RedisEntry> get(String serviceId) {
         try {
-            Map<String, String> result = redis.hgetall(serviceId).get();
+            RedisClusterAsyncCommands<String, String> commands = readCommands(serviceId);
+            List<RedisFuture<Map<String, String>>> futures = new ArrayList<>(shards);
+            for (String hashKey : hashKeys(serviceId)) {
+                futures.add(commands.hgetall(hashKey));
+            }
+
+            Map<String, String> result = new LinkedHashMap<>();
+            for (RedisFuture<Map<String, String>> future : futures) {
+                result.putAll(future.get());
+            }
             return collectEntries(serviceId, result);
         } catch (InterruptedException e) {
             handleInterruptedException(e);
@@ -160,6 +457,81 @@ public class RedisOperator {
         return Collections.emptyList();
     }
 
+    /**
+     * Retrieves one page of the entries for a given service by HSCAN. The limit is only a hint for Redis, so the page
+     * can contain a different amount of entries. With more shards the hashes of the shards are scanned one after
+     * another and the cursor starts with the number of the shard.
+     *
+     * @return Page of the entries with the cursor of the next page, the cursor is null once the whole service was scanned.
+     */
+    public EntryPage scan(String serviceId, String cursor, int limit) {
+        try {
+            int shard = 0;
+            ScanCursor scanCursor = ScanCursor.INITIAL;
+            if (cursor != null && shards > 1 && cursor.contains(SHARD_SEPARATOR)) {
+                shard = Integer.parseInt(cursor.substring(0, cursor.indexOf(SHARD_SEPARATOR)));
+                scanCursor = ScanCursor.of(cursor.substring(cursor.indexOf(SHARD_SEPARATOR) + 1));
+            } else if (cursor != null) {
+                scanCursor = ScanCursor.of(cursor);
+            }
+
+            MapScanCursor<String, String> result = readCommands(serviceId).hscan(hashKey(serviceId, shard), scanCursor, ScanArgs.Builder.limit(limit)).get();
+
+            return new EntryPage(collectEntries(serviceId, result.getMap()), nextCursor(shard, result));
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
+        }
+
+        return new EntryPage(Collections.emptyList(), null);
+    }
+
+    private String nextCursor(int shard, MapScanCursor<String, String> result) {
+        if (!result.isFinished()) {
+            return shards > 1 ? shard + SHARD_SEPARATOR + result.getCursor() : result.getCursor();
+        }
+        if (shard + 1 < shards) {
+            return (shard + 1) + SHARD_SEPARATOR + ScanCursor.INITIAL.getCursor();
+        }
+
+        return null;
+    }
+
+    /**
+     * Retrieves the entries for a given service with the corresponding keys by a single command for every shard.
+     *
+     * @return List of RedisEntry instances. The keys without an entry are left out.
+     */
+    public List<RedisEntry> getAll(String serviceId, Collection<String> keys) {
+        try {
+            Map<String, List<String>> keysByHash = new LinkedHashMap<>();
+            for (String key : keys) {
+                keysByHash.computeIfAbsent(hashKey(serviceId, key), hash -> new ArrayList<>()).add(key);
+            }
+
+            RedisClusterAsyncCommands<String, String> commands = readCommands(serviceId);
+            List<RedisFuture<List<io.lettuce.core.KeyValue<String, String>>>> futures = new ArrayList<>();
+            keysByHash.forEach((hash, fields) -> futures.add(commands.hmget(hash, fields.toArray(new String[0]))));
+
+            Map<String, String> found = new LinkedHashMap<>();
+            for (RedisFuture<List<io.lettuce.core.KeyValue<String, String>>> future : futures) {
+                for (io.lettuce.core.KeyValue<String, String> field : future.get()) {
+                    if (field.hasValue()) {
+                        found.put(field.getKey(), field.getValue());
+                    }
+                }
+            }
+            return collectEntries(serviceId, found);
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
+        }
+
+        return Collections.emptyList();
+    }
+
     private List<RedisEntry> collectEntries(String serviceId, Map<String, String> redisEntries) {
         List<RedisEntry> entries = new ArrayList<>();
 
@@ -181,35 +553,161 @@ public class RedisOperator {
      */
     public boolean delete(String serviceId, String toDelete) {
         try {
-            long recordsDeleted = redis.hdel(serviceId, toDelete).get();
+            written(serviceId);
+            long recordsDeleted = redis.hdel(hashKey(serviceId, toDelete), toDelete).get();
             return recordsDeleted >= 1;
         } catch (InterruptedException e) {
             handleInterruptedException(e);
         } catch (ExecutionException e) {
             throw new RetryableRedisException(e);
+        } finally {
+            changed(serviceId, toDelete);
+        }
+
+        return false;
+    }
+
+    /**
+     * Deletes all entries with the given key for a given service without waiting for the response.
+     *
+     * @return Stage completed with true if at least one entry was deleted, otherwise false.
+     */
+    public CompletionStage<Boolean> deleteAsync(String serviceId, String toDelete) {
+        written(serviceId);
+        return translateFailure(changing(serviceId, toDelete, redis.hdel(hashKey(serviceId, toDelete), toDelete))
+            .thenApply(recordsDeleted -> recordsDeleted >= 1), RetryableRedisException::new);
+    }
+
+    /**
+     * Deletes the entry read from Redis only if it still holds the same value, so the entry written meanwhile by
+     * another request or instance is kept. The check and the deletion are done by one script.
+     *
+     * @param entryToDelete RedisEntry read from Redis.
+     * @return true if the entry was deleted, otherwise false.
+     */
+    public boolean deleteIfUnchanged(RedisEntry entryToDelete) {
+        try {
+            return deleteIfUnchangedAsync(entryToDelete).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
         }
 
         return false;
     }
 
     /**
-     * Deletes all entries for a given service.
+     * Deletes the entry read from Redis only if it still holds the same value without waiting for the response.
+     *
+     * @return Stage completed with true if the entry was deleted, otherwise false.
+     */
+    public CompletionStage<Boolean> deleteIfUnchangedAsync(RedisEntry entryToDelete) {
+        if (entryToDelete.getRedisValue() == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return translateFailure(this.<Long>script(RedisScript.DELETE_IF_EQUAL, entryToDelete.getServiceId(), entryToDelete.getEntry().getKey(), entryToDelete.getRedisValue())
+            .thenApply(deleted -> deleted == 1), RetryableRedisException::new);
+    }
+
+    /**
+     * Deletes the entries with the given keys for a given service. The commands are sent without waiting for the
+     * responses, so all of them share the round trips to Redis.
+     *
+     * @return Map keyed by the key with true if the entry was deleted, otherwise false.
+     */
+    public Map<String, Boolean> deleteAll(String serviceId, Collection<String> keys) {
+        Map<String, RedisFuture<Long>> futures = new LinkedHashMap<>();
+        for (String key : keys) {
+            written(serviceId);
+            futures.put(key, redis.hdel(hashKey(serviceId, key), key));
+        }
+
+        Map<String, Boolean> result = new HashMap<>();
+        try {
+            for (Map.Entry<String, RedisFuture<Long>> future : futures.entrySet()) {
+                result.put(future.getKey(), future.getValue().get() >= 1);
+            }
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
+        } finally {
+            keys.forEach(key -> changed(serviceId, key));
+        }
+
+        return result;
+    }
+
+    /**
+     * Deletes all entries for a given service, the hashes of all the shards by one command.
      *
      * @return true if at least one entry was deleted, otherwise false.
      */
     public boolean delete(String serviceId) {
         try {
-            long recordsDeleted = redis.del(serviceId).get();
+            written(serviceId);
+            long recordsDeleted = redis.del(hashKeys(serviceId).toArray(new String[0])).get();
             return recordsDeleted >= 1;
         } catch (InterruptedException e) {
             handleInterruptedException(e);
         } catch (ExecutionException e) {
             throw new RetryableRedisException(e);
+        } finally {
+            serviceChanged(serviceId);
         }
 
         return false;
     }
 
+    /**
+     * Records that the service holds entries with time to live, so the expired ones are swept. The service is sent to
+     * Redis once by this instance, unless it fails.
+     */
+    public void expiring(String serviceId) {
+        if (!expiringServices.add(serviceId)) {
+            return;
+        }
+
+        redis.sadd(EXPIRING_SERVICES_KEY, serviceId).whenComplete((added, failure) -> {
+            if (failure != null) {
+                log.debug("Recording of the service {} with expiring entries failed: {}", serviceId, failure.getMessage());
+                expiringServices.remove(serviceId);
+            }
+        });
+    }
+
+    /**
+     * @return The services which were written entries with time to live by any instance.
+     */
+    public Set<String> getExpiringServices() {
+        try {
+            return redis.smembers(EXPIRING_SERVICES_KEY).get();
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        } catch (ExecutionException e) {
+            throw new RetryableRedisException(e);
+        }
+
+        return Collections.emptySet();
+    }
+
+    private Map<String, Boolean> awaitWrites(Map<String, ? extends Future<Boolean>> futures) throws RedisOutOfMemoryException {
+        Map<String, Boolean> result = new HashMap<>();
+        try {
+            for (Map.Entry<String, ? extends Future<Boolean>> future : futures.entrySet()) {
+                result.put(future.getKey(), future.getValue().get());
+            }
+        } catch (ExecutionException e) {
+            handleWriteOperationExecutionException(e);
+        } catch (InterruptedException e) {
+            handleInterruptedException(e);
+        }
+
+        return result;
+    }
+
     private void handleWriteOperationExecutionException(ExecutionException e) throws RedisOutOfMemoryException {
         Throwable cause = e.getCause();
         if (cause instanceof RedisCommandExecutionException && cause.getMessage().contains("maxmemory")) {
@@ -219,8 +717,186 @@ public class RedisOperator {
         }
     }
 
+    /**
+     * Runs the script by its digest on the hash of the field given as the first argument. The script unknown to Redis,
+     * for example after its restart, is sent whole, which also loads it again.
+     */
+    private <T> CompletionStage<T> script(RedisScript script, String serviceId, String... arguments) {
+        String[] keys = {hashKey(serviceId, arguments[0])};
+        written(serviceId);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        redis.<T>evalsha(script.getSha(), script.getOutputType(), keys, arguments).whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+            } else if (isNoScript(failure)) {
+                redis.<T>eval(script.getBody(), script.getOutputType(), keys, arguments).whenComplete((evaluated, evalFailure) -> {
+                    if (evalFailure == null) {
+                        result.complete(evaluated);
+                    } else {
+                        result.completeExceptionally(evalFailure);
+                    }
+                });
+            } else {
+                result.completeExceptionally(failure);
+            }
+        });
+        return changing(serviceId, arguments[0], result);
+    }
+
+    /**
+     * Caches the value read from Redis, unless the entry was changed since the generation was taken.
+     */
+    private void loaded(String serviceId, String key, String redisValue, long generation) {
+        if (nearCache != null) {
+            nearCache.put(serviceId, key, redisValue, generation);
+        }
+    }
+
+    /**
+     * @return The stage of the write, completed once the written entry was invalidated.
+     */
+    private <T> CompletionStage<T> changing(String serviceId, String key, CompletionStage<T> write) {
+        if (nearCache == null) {
+            return write;
+        }
+
+        return write.whenComplete((value, failure) -> changed(serviceId, key));
+    }
+
+    /**
+     * Invalidates the entry in the near cache of this instance and publishes it to the other instances. The failed
+     * write is invalidated as well, as Redis could apply it anyway.
+     */
+    private void changed(String serviceId, String key) {
+        if (nearCache != null) {
+            nearCache.invalidate(serviceId, key);
+            publish(RedisNearCache.keyInvalidation(serviceId, key));
+        }
+    }
+
+    private void serviceChanged(String serviceId) {
+        if (nearCache != null) {
+            nearCache.invalidateService(serviceId);
+            publish(RedisNearCache.serviceInvalidation(serviceId));
+        }
+    }
+
+    private void publish(String invalidation) {
+        redis.publish(RedisNearCache.INVALIDATION_CHANNEL, invalidation).whenComplete((receivers, failure) -> {
+            if (failure != null) {
+                log.debug("Publishing of the invalidation failed, other instances read it from the near cache until it expires: {}", failure.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return The name of the hash holding the entry with given key.
+     */
+    private String hashKey(String serviceId, String key) {
+        return shards > 1 ? hashKey(serviceId, Math.floorMod(key.hashCode(), shards)) : serviceId;
+    }
+
+    private String hashKey(String serviceId, int shard) {
+        return shards > 1 ? serviceId + SHARD_SEPARATOR + shard : serviceId;
+    }
+
+    private List<String> hashKeys(String serviceId) {
+        List<String> hashKeys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            hashKeys.add(hashKey(serviceId, shard));
+        }
+        return hashKeys;
+    }
+
+    /**
+     * @return The commands reading from the master if the service was written recently with the pinned policy,
+     * otherwise the commands routed by the read policy.
+     */
+    private RedisClusterAsyncCommands<String, String> readCommands(String serviceId) {
+        if (readPolicy != RedisConfig.ReadPolicy.PINNED) {
+            return reads;
+        }
+
+        Long lastWrite = lastWrites.get(serviceId);
+        if (lastWrite == null) {
+            return reads;
+        }
+        if (System.currentTimeMillis() - lastWrite > pinnedReadDuration) {
+            lastWrites.remove(serviceId, lastWrite);
+            return reads;
+        }
+
+        return redis;
+    }
+
+    /**
+     * @return The commands reading the entry by key, from the master when the read value is kept in the near cache.
+     */
+    private RedisClusterAsyncCommands<String, String> keyReadCommands(String serviceId) {
+        return nearCache == null ? readCommands(serviceId) : redis;
+    }
+
+    /**
+     * Marks the service as written before the write is sent, so the reads issued after it is done go to the master.
+     */
+    private void written(String serviceId) {
+        if (readPolicy == RedisConfig.ReadPolicy.PINNED) {
+            lastWrites.put(serviceId, System.currentTimeMillis());
+        }
+    }
+
+    private static boolean isNoScript(Throwable failure) {
+        return failure instanceof RedisCommandExecutionException && failure.getMessage() != null && failure.getMessage().startsWith("NOSCRIPT");
+    }
+
+    private void loadScripts() {
+        for (RedisScript script : RedisScript.values()) {
+            redis.scriptLoad(script.getBody()).whenComplete((sha, failure) -> {
+                if (failure != null) {
+                    log.debug("Loading of the script {} failed, it is loaded by its first use: {}", script, failure.getMessage());
+                }
+            });
+        }
+    }
+
+    private static <T> CompletionStage<T> translateWriteFailure(CompletionStage<T> stage) {
+        return translateFailure(stage, cause -> {
+            if (cause instanceof RedisCommandExecutionException && cause.getMessage().contains("maxmemory")) {
+                return new RedisOutOfMemoryException(cause);
+            }
+            return new RetryableRedisException(cause);
+        });
+    }
+
+    /**
+     * The failures of the Redis commands are replaced by the exceptions of the storage, the same ones the blocking
+     * operations throw.
+     */
+    private static <T> CompletionStage<T> translateFailure(CompletionStage<T> stage, Function<Throwable, Throwable> translation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        stage.whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                result.completeExceptionally(translation.apply(cause));
+            }
+        });
+        return result;
+    }
+
     private void handleInterruptedException(InterruptedException e) {
         Thread.currentThread().interrupt();
         throw new RetryableRedisException(e);
     }
+
+    /**
+     * Page of the entries read by HSCAN. The entries keep the values read from Redis, so they can be deleted only if
+     * unchanged.
+     */
+    @Value
+    public static class EntryPage {
+        List<RedisEntry> entries;
+        String cursor;
+    }
 }
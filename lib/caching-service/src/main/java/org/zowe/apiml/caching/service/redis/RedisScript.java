@@ -0,0 +1,98 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.redis;
+
+import io.lettuce.core.ScriptOutputType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Lua scripts doing the operations which need more commands on the hash of the service. Redis runs every script
+ * atomically, so no other command interleaves the commands of the operation, and the whole operation takes one
+ * round trip.
+ * <p>
+ * Every script gets the hash of the service as the only key and the field of the entry as the first argument.
+ */
+enum RedisScript {
+    /**
+     * Sets the field only if it doesn't exist. Returns nil if the field was set, otherwise the existing value.
+     */
+    CREATE(ScriptOutputType.VALUE,
+        "if redis.call('HSETNX', KEYS[1], ARGV[1], ARGV[2]) == 1 then return false end " +
+            "return redis.call('HGET', KEYS[1], ARGV[1])"),
+
+    /**
+     * Sets the field only if it still holds the given value. Returns 1 if the field was set, otherwise 0.
+     */
+    REPLACE(ScriptOutputType.INTEGER,
+        "if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3]) return 1"),
+
+    /**
+     * Sets the field only if it exists. Returns 1 if the field was set, otherwise 0.
+     */
+    UPDATE(ScriptOutputType.INTEGER,
+        "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) return 1"),
+
+    /**
+     * Deletes the field. Returns its value or nil if it didn't exist.
+     */
+    GET_AND_DELETE(ScriptOutputType.VALUE,
+        "local value = redis.call('HGET', KEYS[1], ARGV[1]) " +
+            "if value then redis.call('HDEL', KEYS[1], ARGV[1]) end return value"),
+
+    /**
+     * Deletes the field only if it still holds the given value. Returns 1 if the field was deleted, otherwise 0.
+     */
+    DELETE_IF_EQUAL(ScriptOutputType.INTEGER,
+        "if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then return 0 end " +
+            "return redis.call('HDEL', KEYS[1], ARGV[1])");
+
+    private final ScriptOutputType outputType;
+    private final String body;
+    private final String sha;
+
+    RedisScript(ScriptOutputType outputType, String body) {
+        this.outputType = outputType;
+        this.body = body;
+        this.sha = sha1(body);
+    }
+
+    public ScriptOutputType getOutputType() {
+        return outputType;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return SHA1 digest of the script, under which Redis knows the loaded script.
+     */
+    public String getSha() {
+        return sha;
+    }
+
+    static String sha1(String body) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(body.getBytes(StandardCharsets.UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
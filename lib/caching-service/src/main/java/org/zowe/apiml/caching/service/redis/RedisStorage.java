@@ -13,15 +13,23 @@ package org.zowe.apiml.caching.service.redis;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.retry.annotation.Retryable;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.AsyncStorage;
 import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.Storage;
 import org.zowe.apiml.caching.service.StorageException;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisOutOfMemoryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RetryableRedisException;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Class handles requests from controller and orchestrates operations on the low level RedisOperator class.
@@ -30,15 +38,118 @@ import java.util.Map;
  * configured memory, or there is not enough memory available and a no eviction policy is used, an error message is returned to the user.
  * If another entry will be evicted to make space for a create or update operation, no warning is logged and the eviction
  * is left to Redis.
+ * <p>
+ * The entries of a service are fields of a single Redis hash and the expiration in Redis applies only to whole keys.
+ * The entries with time to live therefore expire lazily, they are removed once they are found expired. The entries
+ * which are never read again are removed by the sweep, which scans the services holding entries with time to live
+ * periodically. An expired entry is deleted only if it still holds the expired value, so the entry created again
+ * meanwhile is never lost.
+ * <p>
+ * The single key operations are also available as {@link AsyncStorage}, so the calling thread doesn't wait for the
+ * responses of Redis. The asynchronous operations are retried the same amount of times and after the same delay as
+ * the blocking ones, the delay is waited for by the scheduler instead of the calling thread.
  */
 @Slf4j
-public class RedisStorage implements Storage {
+public class RedisStorage implements Storage, AsyncStorage {
+    private static final int MAXIMUM_ATTEMPTS = 3;
+    private static final long RETRY_DELAY = 1000;
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "caching-redis-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int SWEEP_PAGE_SIZE = 100;
+
     private final RedisOperator redis;
+    private final String entryFormat;
+    private final long retryDelay;
+    private ScheduledExecutorService sweeper;
 
     public RedisStorage(RedisOperator redisOperator) {
-        log.info("Using Redis for the cached data");
+        this(redisOperator, RedisEntry.JSON_FORMAT);
+    }
+
+    /**
+     * @param entryFormat format in which the entries are written, the entries in any format are read.
+     * @throws IllegalArgumentException if the format isn't known, so the service doesn't start instead of failing
+     *                                  every write.
+     */
+    public RedisStorage(RedisOperator redisOperator, String entryFormat) {
+        this(redisOperator, entryFormat, RETRY_DELAY);
+    }
+
+    /**
+     * @param retryDelay milliseconds waited before the failed asynchronous operation is attempted again.
+     */
+    RedisStorage(RedisOperator redisOperator, String entryFormat, long retryDelay) {
+        if (!RedisEntry.isSupportedFormat(entryFormat)) {
+            throw new IllegalArgumentException("Unknown Redis entry format '" + entryFormat + "', use "
+                + RedisEntry.JSON_FORMAT + " or " + RedisEntry.COMPACT_FORMAT);
+        }
+        log.info("Using Redis for the cached data in {} format", entryFormat);
 
         this.redis = redisOperator;
+        this.entryFormat = entryFormat;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Starts the periodic sweep of the expired entries.
+     *
+     * @param interval milliseconds between the sweeps, the sweep is not started if not positive.
+     */
+    public void sweepExpiredEntries(long interval) {
+        if (interval <= 0) {
+            return;
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "caching-redis-expiration-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeping() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes the expired entries of all the services holding entries with time to live. A failure of one run is only
+     * logged, the next run sweeps the rest.
+     */
+    void sweep() {
+        try {
+            for (String serviceId : redis.getExpiringServices()) {
+                int removed = 0;
+                String cursor = null;
+                do {
+                    RedisOperator.EntryPage page = redis.scan(serviceId, cursor, SWEEP_PAGE_SIZE);
+                    for (RedisEntry entry : page.getEntries()) {
+                        if (removeIfExpired(entry)) {
+                            removed++;
+                        }
+                    }
+                    cursor = page.getCursor();
+                } while (cursor != null);
+
+                if (removed > 0) {
+                    log.debug("Swept {} expired entries of {}", removed, serviceId);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Sweep of the expired entries failed: {}", e.getMessage());
+        }
+    }
+
+    private void recordExpiring(String serviceId, KeyValue keyValue) {
+        if (keyValue.getTtl() != null) {
+            redis.expiring(serviceId);
+        }
     }
 
     @Override
@@ -46,7 +157,8 @@ public class RedisStorage implements Storage {
     public KeyValue create(String serviceId, KeyValue toCreate) {
         log.info("Creating entry: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
 
-        RedisEntry entryToCreate = new RedisEntry(serviceId, toCreate);
+        recordExpiring(serviceId, toCreate);
+        RedisEntry entryToCreate = new RedisEntry(serviceId, toCreate, entryFormat);
         try {
             boolean result = redis.create(entryToCreate);
 
@@ -80,7 +192,7 @@ public class RedisStorage implements Storage {
         log.info("Reading entry: {}|{}", serviceId, key);
 
         RedisEntry result = redis.get(serviceId, key);
-        if (result == null) {
+        if (result == null || removeIfExpired(result)) {
             throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
         }
         return result.getEntry();
@@ -91,7 +203,8 @@ public class RedisStorage implements Storage {
     public KeyValue update(String serviceId, KeyValue toUpdate) {
         log.info("Updating entry: {}|{}|{}", serviceId, toUpdate.getKey(), toUpdate.getValue());
 
-        RedisEntry entryToUpdate = new RedisEntry(serviceId, toUpdate);
+        recordExpiring(serviceId, toUpdate);
+        RedisEntry entryToUpdate = new RedisEntry(serviceId, toUpdate, entryFormat);
         try {
             boolean result = redis.update(entryToUpdate);
 
@@ -109,15 +222,232 @@ public class RedisStorage implements Storage {
     public KeyValue delete(String serviceId, String toDelete) {
         log.info("Deleting entry: {}|{}", serviceId, toDelete);
 
-        RedisEntry entryToDelete = redis.get(serviceId, toDelete);
-        boolean result = redis.delete(serviceId, toDelete);
+        RedisEntry entryToDelete = redis.getAndDelete(serviceId, toDelete);
 
-        if (!result) {
+        if (entryToDelete == null || entryToDelete.getEntry().isExpiredAt(System.currentTimeMillis())) {
             throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toDelete, serviceId);
         }
         return entryToDelete.getEntry();
     }
 
+    @Override
+    public CompletionStage<KeyValue> createAsync(String serviceId, KeyValue toCreate) {
+        log.info("Creating entry: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
+
+        recordExpiring(serviceId, toCreate);
+        RedisEntry entryToCreate = new RedisEntry(serviceId, toCreate, entryFormat);
+        return retried(() -> redis.createAsync(entryToCreate)
+            .handle((created, failure) -> {
+                checkWriteFailure(failure);
+                if (!created) {
+                    throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey(), serviceId);
+                }
+                return toCreate;
+            }));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> readAsync(String serviceId, String key) {
+        log.info("Reading entry: {}|{}", serviceId, key);
+
+        return retried(() -> redis.getAsync(serviceId, key)
+            .thenCompose(result -> removeIfExpiredAsync(result).thenApply(expired -> {
+                if (result == null || expired) {
+                    throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId);
+                }
+                return result.getEntry();
+            })));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> updateAsync(String serviceId, KeyValue toUpdate) {
+        log.info("Updating entry: {}|{}|{}", serviceId, toUpdate.getKey(), toUpdate.getValue());
+
+        recordExpiring(serviceId, toUpdate);
+        RedisEntry entryToUpdate = new RedisEntry(serviceId, toUpdate, entryFormat);
+        return retried(() -> redis.updateAsync(entryToUpdate)
+            .handle((updated, failure) -> {
+                checkWriteFailure(failure);
+                if (!updated) {
+                    throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toUpdate.getKey(), serviceId);
+                }
+                return toUpdate;
+            }));
+    }
+
+    @Override
+    public CompletionStage<KeyValue> deleteAsync(String serviceId, String toDelete) {
+        log.info("Deleting entry: {}|{}", serviceId, toDelete);
+
+        return retried(() -> redis.getAndDeleteAsync(serviceId, toDelete)
+            .thenApply(entryToDelete -> {
+                if (entryToDelete == null || entryToDelete.getEntry().isExpiredAt(System.currentTimeMillis())) {
+                    throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toDelete, serviceId);
+                }
+                return entryToDelete.getEntry();
+            }));
+    }
+
+    /**
+     * The out of memory failure is reported to the user, the other failures are passed on.
+     */
+    private static void checkWriteFailure(Throwable failure) {
+        if (failure == null) {
+            return;
+        }
+
+        Throwable cause = unwrap(failure);
+        if (cause instanceof RedisOutOfMemoryException) {
+            throw new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus());
+        }
+        throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    /**
+     * The operation is started again while it fails with RetryableRedisException, at most MAXIMUM_ATTEMPTS times. Each
+     * attempt is delayed by the retry delay like the attempts of the blocking operations retried by {@link Retryable}.
+     */
+    private <T> CompletionStage<T> retried(Supplier<CompletionStage<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(operation, MAXIMUM_ATTEMPTS, result);
+        return result;
+    }
+
+    private <T> void attempt(Supplier<CompletionStage<T>> operation, int attemptsLeft, CompletableFuture<T> result) {
+        CompletionStage<T> stage;
+        try {
+            stage = operation.get();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        stage.whenComplete((value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+                return;
+            }
+
+            Throwable cause = unwrap(failure);
+            if (cause instanceof RetryableRedisException && attemptsLeft > 1) {
+                log.debug("Retrying failed Redis operation: {}", cause.getMessage());
+                RETRY_SCHEDULER.schedule(() -> attempt(operation, attemptsLeft - 1, result), retryDelay, TimeUnit.MILLISECONDS);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @Override
+    @Retryable(value = RetryableRedisException.class)
+    public Map<String, KeyValue> readAll(String serviceId, Collection<String> keys) {
+        log.info("Reading entries: {}|{}", serviceId, keys);
+
+        Map<String, KeyValue> readResult = new HashMap<>();
+        for (RedisEntry redisEntry : redis.getAll(serviceId, keys)) {
+            if (!removeIfExpired(redisEntry)) {
+                readResult.put(redisEntry.getEntry().getKey(), redisEntry.getEntry());
+            }
+        }
+        return readResult;
+    }
+
+    /**
+     * When Redis runs out of memory, all the entries of the batch are reported as failed.
+     */
+    @Override
+    public Map<String, StorageException> createAll(String serviceId, Collection<KeyValue> toCreate) {
+        log.info("Creating entries: {}|{}", serviceId, toCreate.size());
+
+        List<RedisEntry> entriesToCreate = new ArrayList<>();
+        toCreate.forEach(keyValue -> {
+            recordExpiring(serviceId, keyValue);
+            entriesToCreate.add(new RedisEntry(serviceId, keyValue, entryFormat));
+        });
+        try {
+            Map<String, Boolean> result = redis.createAll(entriesToCreate);
+
+            List<String> rejected = new ArrayList<>();
+            result.forEach((key, created) -> {
+                if (!created) {
+                    rejected.add(key);
+                }
+            });
+            if (!rejected.isEmpty()) {
+                // The keys of the expired entries can be created again.
+                List<RedisEntry> toRetry = new ArrayList<>();
+                for (RedisEntry existing : redis.getAll(serviceId, rejected)) {
+                    if (removeIfExpired(existing)) {
+                        entriesToCreate.stream()
+                            .filter(entry -> entry.getEntry().getKey().equals(existing.getEntry().getKey()))
+                            .forEach(toRetry::add);
+                    }
+                }
+                if (!toRetry.isEmpty()) {
+                    result.putAll(redis.createAll(toRetry));
+                }
+            }
+
+            Map<String, StorageException> failures = new HashMap<>();
+            result.forEach((key, created) -> {
+                if (!created) {
+                    failures.put(key, new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), key, serviceId));
+                }
+            });
+            return failures;
+        } catch (RedisOutOfMemoryException e) {
+            return allFailed(toCreate, new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus()));
+        }
+    }
+
+    /**
+     * When Redis runs out of memory, all the entries of the batch are reported as failed.
+     */
+    @Override
+    public Map<String, StorageException> updateAll(String serviceId, Collection<KeyValue> toUpdate) {
+        log.info("Updating entries: {}|{}", serviceId, toUpdate.size());
+
+        List<RedisEntry> entriesToUpdate = new ArrayList<>();
+        toUpdate.forEach(keyValue -> {
+            recordExpiring(serviceId, keyValue);
+            entriesToUpdate.add(new RedisEntry(serviceId, keyValue, entryFormat));
+        });
+        try {
+            Map<String, StorageException> failures = new HashMap<>();
+            redis.updateAll(entriesToUpdate).forEach((key, updated) -> {
+                if (!updated) {
+                    failures.put(key, new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId));
+                }
+            });
+            return failures;
+        } catch (RedisOutOfMemoryException e) {
+            return allFailed(toUpdate, new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus()));
+        }
+    }
+
+    @Override
+    public Map<String, StorageException> deleteAll(String serviceId, Collection<String> toDelete) {
+        log.info("Deleting entries: {}|{}", serviceId, toDelete);
+
+        Map<String, StorageException> failures = new HashMap<>();
+        redis.deleteAll(serviceId, toDelete).forEach((key, deleted) -> {
+            if (!deleted) {
+                failures.put(key, new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId));
+            }
+        });
+        return failures;
+    }
+
+    private Map<String, StorageException> allFailed(Collection<KeyValue> entries, StorageException failure) {
+        Map<String, StorageException> failures = new HashMap<>();
+        entries.forEach(keyValue -> failures.put(keyValue.getKey(), failure));
+        return failures;
+    }
+
     @Override
     @Retryable(value = RetryableRedisException.class)
     public Map<String, KeyValue> readForService(String serviceId) {
@@ -127,11 +457,28 @@ public class RedisStorage implements Storage {
         Map<String, KeyValue> readResult = new HashMap<>();
 
         for (RedisEntry redisEntry : redisResult) {
-            readResult.put(redisEntry.getEntry().getKey(), redisEntry.getEntry());
+            if (!removeIfExpired(redisEntry)) {
+                readResult.put(redisEntry.getEntry().getKey(), redisEntry.getEntry());
+            }
         }
         return readResult;
     }
 
+    @Override
+    @Retryable(value = RetryableRedisException.class)
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        log.info("Scanning entries for service: {}|{}", serviceId, cursor);
+
+        RedisOperator.EntryPage page = redis.scan(serviceId, cursor, limit);
+        List<KeyValue> entries = new ArrayList<>();
+        for (RedisEntry entry : page.getEntries()) {
+            if (!removeIfExpired(entry)) {
+                entries.add(entry.getEntry());
+            }
+        }
+        return new ScanResult(entries, page.getCursor());
+    }
+
     @Override
     public void deleteForService(String serviceId) {
         log.info("Deleting all entries: {}", serviceId);
@@ -143,6 +490,28 @@ public class RedisStorage implements Storage {
         }
     }
 
+    /**
+     * The expired entry is deleted only if it still holds the value which was read, the entry written meanwhile is kept.
+     */
+    private boolean removeIfExpired(RedisEntry redisEntry) {
+        if (redisEntry == null || !redisEntry.getEntry().isExpiredAt(System.currentTimeMillis())) {
+            return false;
+        }
+
+        log.debug("Removing expired entry: {}|{}", redisEntry.getServiceId(), redisEntry.getEntry().getKey());
+        redis.deleteIfUnchanged(redisEntry);
+        return true;
+    }
+
+    private CompletionStage<Boolean> removeIfExpiredAsync(RedisEntry redisEntry) {
+        if (redisEntry == null || !redisEntry.getEntry().isExpiredAt(System.currentTimeMillis())) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        log.debug("Removing expired entry: {}|{}", redisEntry.getServiceId(), redisEntry.getEntry().getKey());
+        return redis.deleteIfUnchangedAsync(redisEntry).thenApply(deleted -> true);
+    }
+
     @Override
     public void removeNonRelevantTokens(String serviceId, String mapKey) {
         throw new StorageException(Messages.INCOMPATIBLE_STORAGE_METHOD.getKey(), Messages.INCOMPATIBLE_STORAGE_METHOD.getStatus());
@@ -10,6 +10,7 @@
 
 package org.zowe.apiml.caching.service.redis.config;
 
+import io.lettuce.core.ReadFrom;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -36,6 +37,13 @@ public class RedisConfig {
 
     private Integer timeout = 60;
     private String masterNodeUri;
+    private String entryFormat = "json";
+    private ReadPolicy readFrom = ReadPolicy.MASTER;
+    private long pinnedReadDuration = 1000;
+    /**
+     * Milliseconds between the sweeps removing the expired entries which are not read, 0 disables the sweep.
+     */
+    private long expirationSweepInterval = 60000;
 
     private final GeneralConfig generalConfig;
     private String host;
@@ -43,6 +51,8 @@ public class RedisConfig {
     private String username = DEFAULT_USER;
     private String password = DEFAULT_PASSWORD;
     private Sentinel sentinel;
+    private Cluster cluster;
+    private NearCache nearCache = new NearCache();
     private SslConfig ssl;
 
     @PostConstruct
@@ -59,6 +69,10 @@ public class RedisConfig {
         return sentinel != null && sentinel.isEnabled();
     }
 
+    public boolean usesCluster() {
+        return cluster != null && cluster.isEnabled();
+    }
+
     public boolean usesSsl() {
         return ssl != null && ssl.getEnabled();
     }
@@ -85,6 +99,64 @@ public class RedisConfig {
         }
     }
 
+    @Data
+    public static class Cluster {
+        private boolean enabled = false;
+        /**
+         * The nodes to discover the cluster from, the credentials are the ones of the master node.
+         */
+        private List<ClusterNode> nodes;
+        /**
+         * Amount of the hashes over which the entries of every service are spread.
+         */
+        private int shards = 1;
+
+        @Data
+        public static class ClusterNode {
+            private String host;
+            private Integer port;
+
+            public ClusterNode(String nodeUri) {
+                host = parseHostFromUri(nodeUri);
+                port = parsePortFromUri(nodeUri);
+            }
+        }
+    }
+
+    @Data
+    public static class NearCache {
+        private boolean enabled = false;
+        private int size = 1000;
+        /**
+         * Milliseconds after which the cached entry is read again even without an invalidation.
+         */
+        private long expiration = 60000;
+    }
+
+    /**
+     * Where the reads are sent. The writes always go to the master.
+     */
+    public enum ReadPolicy {
+        MASTER(ReadFrom.MASTER),
+        REPLICA_PREFERRED(ReadFrom.REPLICA_PREFERRED),
+        NEAREST(ReadFrom.NEAREST),
+        /**
+         * Same as the replica preferred, except the reads of the service written recently by the same instance, which
+         * go to the master.
+         */
+        PINNED(ReadFrom.REPLICA_PREFERRED);
+
+        private final ReadFrom readFrom;
+
+        ReadPolicy(ReadFrom readFrom) {
+            this.readFrom = readFrom;
+        }
+
+        public ReadFrom getReadFrom() {
+            return readFrom;
+        }
+    }
+
     @Data
     public static class SslConfig {
         private Boolean enabled = true;
@@ -14,12 +14,20 @@ import io.lettuce.core.ClientOptions;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.SslOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.zowe.apiml.caching.service.Storage;
+import org.zowe.apiml.caching.service.redis.RedisNearCache;
 import org.zowe.apiml.caching.service.redis.RedisOperator;
 import org.zowe.apiml.caching.service.redis.RedisStorage;
 import org.zowe.apiml.message.core.MessageService;
@@ -27,6 +35,8 @@ import org.zowe.apiml.message.log.ApimlLogger;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @RequiredArgsConstructor
@@ -37,13 +47,52 @@ public class RedisConfiguration {
 
 
     @Bean
-    public Storage redis(MessageService messageService) {
+    public Storage redis(MessageService messageService, ObjectProvider<MeterRegistry> meterRegistry) {
         log.info("Using redis configuration {}", redisConfig);
 
+        if (redisConfig.usesCluster()) {
+            RedisClusterClient clusterClient = createRedisClusterClient();
+            RedisOperator clusterOperator = new RedisOperator(clusterClient, redisConfig.getReadFrom(), redisConfig.getPinnedReadDuration(),
+                redisConfig.getCluster().getShards(), ApimlLogger.of(RedisOperator.class, messageService));
+            if (redisConfig.getNearCache().isEnabled()) {
+                RedisNearCache nearCache = createNearCache(clusterClient.connectPubSub(StringCodec.UTF8), meterRegistry);
+                clusterClient.addListener(nearCache);
+                clusterOperator.useNearCache(nearCache);
+            }
+            return createStorage(clusterOperator);
+        }
+
         RedisURI redisUri = createRedisUri();
         RedisClient redisClient = createRedisClient();
 
-        return new RedisStorage(new RedisOperator(redisClient, redisUri, ApimlLogger.of(RedisOperator.class, messageService)));
+        RedisOperator redisOperator = new RedisOperator(redisClient, redisUri, redisConfig.getReadFrom(), redisConfig.getPinnedReadDuration(),
+            ApimlLogger.of(RedisOperator.class, messageService));
+        if (redisConfig.getNearCache().isEnabled()) {
+            RedisNearCache nearCache = createNearCache(redisClient.connectPubSub(StringCodec.UTF8, redisUri), meterRegistry);
+            redisClient.addListener(nearCache);
+            redisOperator.useNearCache(nearCache);
+        }
+        return createStorage(redisOperator);
+    }
+
+    private RedisStorage createStorage(RedisOperator redisOperator) {
+        RedisStorage storage = new RedisStorage(redisOperator, redisConfig.getEntryFormat());
+        storage.sweepExpiredEntries(redisConfig.getExpirationSweepInterval());
+        return storage;
+    }
+
+    /**
+     * The near cache is cleared whenever a connection of the client is lost or established, as the invalidations
+     * published meanwhile are not received.
+     * <p>
+     * Package protected for unit testing.
+     */
+    RedisNearCache createNearCache(StatefulRedisPubSubConnection<String, String> subscription, ObjectProvider<MeterRegistry> meterRegistry) {
+        RedisConfig.NearCache nearCacheConfig = redisConfig.getNearCache();
+        RedisNearCache nearCache = new RedisNearCache(nearCacheConfig.getSize(), nearCacheConfig.getExpiration());
+        nearCache.subscribe(subscription);
+        meterRegistry.ifAvailable(nearCache::bindTo);
+        return nearCache;
     }
 
     /**
@@ -72,6 +121,24 @@ public class RedisConfiguration {
         return uriBuilder.build();
     }
 
+    /**
+     * Package protected for unit testing.
+     */
+    List<RedisURI> createClusterUris() {
+        List<RedisURI> uris = new ArrayList<>();
+        for (RedisConfig.Cluster.ClusterNode node : redisConfig.getCluster().getNodes()) {
+            uris.add(RedisURI.builder()
+                .withHost(node.getHost())
+                .withPort(node.getPort())
+                .withSsl(redisConfig.usesSsl())
+                .withAuthentication(redisConfig.getUsername(), redisConfig.getPassword())
+                .withTimeout(Duration.ofSeconds(redisConfig.getTimeout()))
+                .build());
+        }
+
+        return uris;
+    }
+
     /**
      * Package protected for unit testing.
      */
@@ -79,17 +146,38 @@ public class RedisConfiguration {
         RedisClient redisClient = RedisClient.create();
 
         if (redisConfig.usesSsl()) {
-            RedisConfig.SslConfig sslConfig = redisConfig.getSsl();
+            redisClient.setOptions(ClientOptions.builder().sslOptions(createSslOptions()).build());
+        }
 
-            SslOptions sslOptions = SslOptions.builder()
-                .jdkSslProvider()
-                .keystore(new File(sslConfig.getKeyStore()), sslConfig.getKeyStorePassword().toCharArray())
-                .truststore(new File(sslConfig.getTrustStore()), sslConfig.getTrustStorePassword())
-                .build();
+        return redisClient;
+    }
 
-            redisClient.setOptions(ClientOptions.builder().sslOptions(sslOptions).build());
+    /**
+     * The topology of the cluster is refreshed whenever the cluster redirects a command, so the added nodes and the
+     * moved slots are used without a restart.
+     * <p>
+     * Package protected for unit testing.
+     */
+    RedisClusterClient createRedisClusterClient() {
+        RedisClusterClient clusterClient = RedisClusterClient.create(createClusterUris());
+
+        ClusterClientOptions.Builder options = ClusterClientOptions.builder()
+            .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder().enableAllAdaptiveRefreshTriggers().build());
+        if (redisConfig.usesSsl()) {
+            options.sslOptions(createSslOptions());
         }
+        clusterClient.setOptions(options.build());
 
-        return redisClient;
+        return clusterClient;
+    }
+
+    private SslOptions createSslOptions() {
+        RedisConfig.SslConfig sslConfig = redisConfig.getSsl();
+
+        return SslOptions.builder()
+            .jdkSslProvider()
+            .keystore(new File(sslConfig.getKeyStore()), sslConfig.getKeyStorePassword().toCharArray())
+            .truststore(new File(sslConfig.getTrustStore()), sslConfig.getTrustStorePassword())
+            .build();
     }
 }
@@ -29,7 +29,7 @@ public class EvictionStrategyProducer {
 
     private RejectStrategy rejectStrategy;
 
-    EvictionStrategy evictionStrategy(VsamFile vsamFile) {
+    EvictionStrategy evictionStrategy(VsamFile vsamFile, VsamRecordCount recordCount) {
         if (generalConfig.getEvictionStrategy().equals(Strategies.REJECT.getKey())) {
             if (rejectStrategy == null) {
                 rejectStrategy = new RejectStrategy(ApimlLogger.of(RejectStrategy.class, messageService));
@@ -37,7 +37,7 @@ public class EvictionStrategyProducer {
 
             return rejectStrategy;
         } else {
-            return new RemoveOldestStrategy(vsamConfig, vsamFile);
+            return new RemoveOldestStrategy(vsamConfig, vsamFile, recordCount);
         }
     }
 }
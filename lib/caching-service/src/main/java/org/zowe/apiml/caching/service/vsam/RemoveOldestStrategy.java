@@ -12,6 +12,7 @@ package org.zowe.apiml.caching.service.vsam;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.service.EntryKey;
 import org.zowe.apiml.caching.service.EvictionStrategy;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.zfile.ZFileConstants;
@@ -24,16 +25,88 @@ import java.util.Optional;
 @RequiredArgsConstructor
 @Slf4j
 public class RemoveOldestStrategy implements EvictionStrategy {
+    // Bounds the stale entries of the time index removed by one lookup before the cache is read through instead.
+    private static final int MAXIMUM_STALE_ENTRIES = 100;
+
     private final VsamConfig vsamConfig;
 
     private final VsamFile file;
 
+    private final VsamRecordCount recordCount;
+
+    // The oldest record found by victim(), so the following evict() doesn't have to scan the file again.
+    private VsamRecord candidate;
+
     @Override
     public void evict(String key) {
-        removeOldestRecord();
+        VsamRecord oldest = candidate != null ? candidate : findOldestRecord();
+        candidate = null;
+
+        checkAndRemoveRecord(oldest);
+    }
+
+    @Override
+    public Optional<EntryKey> victim() {
+        candidate = findOldestRecord();
+        if (candidate == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new EntryKey(candidate.getServiceId(), candidate.getKeyValue().getKey()));
     }
 
-    private void removeOldestRecord() {
+    /**
+     * The victim found by {@link #victim()} is expired when its own time to live elapsed.
+     */
+    @Override
+    public boolean isExpired(EntryKey victim) {
+        return candidate != null && victim.equals(new EntryKey(candidate.getServiceId(), candidate.getKeyValue().getKey()))
+            && candidate.getKeyValue().isExpiredAt(System.currentTimeMillis());
+    }
+
+    private VsamRecord findOldestRecord() {
+        Optional<VsamTimeIndex> timeIndex = file.getTimeIndex();
+        if (timeIndex.isPresent()) {
+            VsamRecord indexed = findOldestIndexedRecord(timeIndex.get());
+            if (indexed != null) {
+                return indexed;
+            }
+
+            log.info("The time index doesn't point to any record, it is rebuilt by reading the whole cache");
+        }
+
+        return scanForOldestRecord(timeIndex.orElse(null));
+    }
+
+    private VsamRecord findOldestIndexedRecord(VsamTimeIndex timeIndex) {
+        try {
+            for (int removed = 0; removed < MAXIMUM_STALE_ENTRIES; removed++) {
+                Optional<VsamTimeIndex.Entry> entry = timeIndex.oldest();
+                if (!entry.isPresent()) {
+                    return null;
+                }
+
+                Optional<VsamRecord> indexed = file.readByKey(entry.get().getKey());
+                if (indexed.isPresent() && VsamTimeIndex.createdAt(indexed.get()) == entry.get().getCreated()) {
+                    return indexed.get();
+                }
+
+                log.debug("Removing the stale entry of the time index");
+                timeIndex.remove(entry.get());
+            }
+        } catch (ZFileException | VsamRecordException | UnsupportedEncodingException e) {
+            log.info(e.toString());
+        }
+
+        return null;
+    }
+
+    /**
+     * Read all the records to find the oldest one. The records are added to the time index on the way if it's given.
+     * Without the time index at most 10000 records are read. The time index is always rebuilt from all the records,
+     * as the index missing some of them would point to victims that aren't the oldest ones.
+     */
+    private VsamRecord scanForOldestRecord(VsamTimeIndex timeIndex) {
         VsamRecord oldest = null;
         try {
             byte[] ignoreKey = " ".getBytes(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
@@ -42,7 +115,15 @@ public class RemoveOldestStrategy implements EvictionStrategy {
             int overflowProtection = 10000;
             file.getZfile().locate(ignoreKey, ZFileConstants.LOCATE_KEY_FIRST);
             while ((readRecord = file.readBytes(recBuf)).isPresent()) {
-                VsamRecord current = new VsamRecord(vsamConfig, readRecord.get());
+                Optional<VsamRecord> continued = file.readContinuedRecord(readRecord.get());
+                if (!continued.isPresent()) {
+                    continue;
+                }
+
+                VsamRecord current = continued.get();
+                if (timeIndex != null) {
+                    timeIndex.add(current);
+                }
                 if (oldest == null) {
                     oldest = current;
                 }
@@ -53,7 +134,7 @@ public class RemoveOldestStrategy implements EvictionStrategy {
                     oldest = current;
                 }
                 overflowProtection--;
-                if (overflowProtection <= 0) {
+                if (timeIndex == null && overflowProtection <= 0) {
                     log.info("Maximum number of records retrieved, stopping the retrieval");
                     break;
                 }
@@ -61,7 +142,7 @@ public class RemoveOldestStrategy implements EvictionStrategy {
         } catch (ZFileException | VsamRecordException | UnsupportedEncodingException e) {
             log.info(e.toString());
         }
-        checkAndRemoveRecord(oldest);
+        return oldest;
     }
 
     private void checkAndRemoveRecord(VsamRecord oldest) {
@@ -69,6 +150,7 @@ public class RemoveOldestStrategy implements EvictionStrategy {
             log.info("Removing the oldest record {}", oldest.getKeyValue().getKey());
             Optional<VsamRecord> returned = file.delete(oldest);
             if (returned.isPresent()) {
+                recordCount.decrement();
                 log.info("The oldest record has been successfully removed!");
             }
         }
@@ -12,6 +12,8 @@ package org.zowe.apiml.caching.service.vsam;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.message.log.ApimlLogger;
 import org.zowe.apiml.zfile.ZFile;
@@ -21,6 +23,7 @@ import org.zowe.apiml.zfile.ZFileException;
 import java.io.Closeable;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.regex.Pattern;
@@ -39,8 +42,10 @@ public class VsamFile implements Closeable {
     private final ZFile zfile;
     private final VsamConfig vsamConfig;
     private final ZFileProducer zFileProducer;
+    private final VsamTimeIndex timeIndex;
 
     private final ApimlLogger apimlLog;
+    private boolean failed;
 
     public static final String VSAM_RECORD_ERROR_MESSAGE = "VsamRecordException occurred: {}";
     public static final String RECORD_FOUND_MESSAGE = "Record found: {}";
@@ -97,10 +102,49 @@ public class VsamFile implements Closeable {
 
             throw new IllegalStateException("Failed to open VsamFile");
         }
+
+        this.timeIndex = openTimeIndex(options, initialCreation);
+    }
+
+    private VsamTimeIndex openTimeIndex(VsamConfig.VsamOptions options, boolean initialCreation) {
+        if (vsamConfig.getTimeIndexName() == null || vsamConfig.getTimeIndexName().isEmpty()) {
+            return null;
+        }
+
+        try {
+            ZFile indexFile = new ZFileProducer(VsamTimeIndex.indexConfig(vsamConfig), options, apimlLog).openZfile();
+            VsamTimeIndex index = new VsamTimeIndex(vsamConfig, indexFile);
+            if (initialCreation) {
+                log.info("Warming up the time index");
+                index.warmUp();
+            }
+
+            return index;
+        } catch (Exception e) {
+            String info = String.format("opening of the time index %s in mode %s failed", vsamConfig.getTimeIndexName(), options);
+            if (initialCreation) {
+                apimlLog.log(ERROR_INITIALIZING_STORAGE_MESSAGE_KEY, STORAGE_TYPE, info, e);
+            } else {
+                log.info(info);
+            }
+
+            close();
+            throw new IllegalStateException("Failed to open VsamFile");
+        }
+    }
+
+    /**
+     * @return The index of the records by their creation time if it's configured.
+     */
+    public Optional<VsamTimeIndex> getTimeIndex() {
+        return Optional.ofNullable(timeIndex);
     }
 
     @Override
     public void close() {
+        if (timeIndex != null) {
+            timeIndex.close();
+        }
         if (zfile != null) {
             try {
                 zfile.close();
@@ -110,6 +154,13 @@ public class VsamFile implements Closeable {
         }
     }
 
+    /**
+     * @return True if an operation on the underlying ZFile failed and the file shouldn't be used any more.
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
     public Optional<VsamRecord> create(VsamRecord vsamRec) {
         log.info("Attempting to create record: {}", vsamRec);
 
@@ -123,7 +174,11 @@ public class VsamFile implements Closeable {
             @Override
             public Optional<VsamRecord> handleNoRecordFound() throws VsamRecordException, ZFileException {
                 log.info("Writing Record: {}", vsamRec);
-                zfile.write(vsamRec.getBytes());
+                List<byte[]> records = vsamRec.getRecords();
+                // The continuation records are written first, so the record is never found without them.
+                writeContinuations(records);
+                zfile.write(records.get(0));
+                updateTimeIndex(index -> index.add(vsamRec));
                 return Optional.of(vsamRec);
             }
         });
@@ -136,8 +191,7 @@ public class VsamFile implements Closeable {
             byte[] recBuf = new byte[vsamConfig.getRecordLength()];
             zfile.read(recBuf);
             log.trace("RecBuf: {}", recBuf); //NOSONAR
-            log.info("ConvertedStringValue: {}", new String(recBuf, vsamConfig.getEncoding()));
-            VsamRecord returned = new VsamRecord(vsamConfig, recBuf);
+            VsamRecord returned = readContinuations(recBuf);
             log.info("VsamRecord read: {}", returned);
             return Optional.of(returned);
         });
@@ -151,8 +205,23 @@ public class VsamFile implements Closeable {
             zfile.read(recBuf); //has to be read before update
             log.trace("Read found record: {}", new String(recBuf, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE));
             log.info("Will update record: {}", vsamRec);
-            int nUpdated = zfile.update(vsamRec.getBytes());
+            int previousContinuations = VsamRecordCodec.continuationCount(vsamConfig, recBuf);
+            // The previous version is decoded only to remove its entry from the time index.
+            VsamRecord previous = timeIndex == null ? null : readContinuations(recBuf);
+            List<byte[]> records = vsamRec.getRecords();
+            if (records.size() > 1 || previousContinuations > 0) {
+                writeContinuations(records);
+                // The continuation records moved the position, the record has to be read again before the update.
+                zfile.locate(vsamRec.getKeyBytes(), ZFileConstants.LOCATE_KEY_EQ);
+                zfile.read(recBuf);
+            }
+            int nUpdated = zfile.update(records.get(0));
             log.info("ZFile.update return value: {}", nUpdated);
+            deleteContinuations(keyOf(recBuf), records.size(), previousContinuations);
+            updateTimeIndex(index -> {
+                index.remove(previous);
+                index.add(vsamRec);
+            });
             return Optional.of(vsamRec);
         });
     }
@@ -163,13 +232,163 @@ public class VsamFile implements Closeable {
         return recordOperation(vsamRec, () -> {
             byte[] recBuf = new byte[vsamConfig.getRecordLength()];
             zfile.read(recBuf); //has to be read before delete
-            VsamRecord returned = new VsamRecord(vsamConfig, recBuf);
+            int continuations = VsamRecordCodec.continuationCount(vsamConfig, recBuf);
+            VsamRecord returned = readContinuations(recBuf);
+            if (continuations > 0) {
+                zfile.locate(vsamRec.getKeyBytes(), ZFileConstants.LOCATE_KEY_EQ);
+                zfile.read(recBuf);
+            }
             zfile.delrec();
+            deleteContinuations(keyOf(recBuf), 1, continuations);
             log.info("Deleted vsam record: {}", returned);
+            updateTimeIndex(index -> index.remove(returned));
             return Optional.of(returned);
         });
     }
 
+    /**
+     * Read the record with given VSAM key.
+     */
+    public Optional<VsamRecord> readByKey(byte[] key) throws ZFileException, VsamRecordException {
+        if (!zfile.locate(key, ZFileConstants.LOCATE_KEY_EQ)) {
+            return Optional.empty();
+        }
+
+        byte[] recBuf = new byte[vsamConfig.getRecordLength()];
+        if (zfile.read(recBuf) < 0) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(readContinuations(recBuf));
+        } catch (UnsupportedEncodingException e) {
+            throw new VsamRecordException("Unsupported encoding: " + vsamConfig.getEncoding(), e);
+        }
+    }
+
+    /**
+     * Decode the record read last. The continuation records of the spanned record are located by their keys.
+     */
+    private VsamRecord readContinuations(byte[] recBuf) throws ZFileException, VsamRecordException, UnsupportedEncodingException {
+        int continuations = VsamRecordCodec.continuationCount(vsamConfig, recBuf);
+        if (continuations == 0) {
+            return new VsamRecord(vsamConfig, recBuf);
+        }
+
+        String vsamKey = keyOf(recBuf);
+        List<byte[]> read = new ArrayList<>(continuations);
+        for (int index = 1; index <= continuations; index++) {
+            byte[] continuation = new byte[vsamConfig.getRecordLength()];
+            if (!zfile.locate(continuationKey(vsamKey, index), ZFileConstants.LOCATE_KEY_EQ) || zfile.read(continuation) < 0) {
+                throw new VsamRecordException("The continuation " + index + " of the record " + vsamKey + " is missing");
+            }
+            read.add(continuation);
+        }
+
+        return new VsamRecord(vsamConfig, recBuf, read);
+    }
+
+    /**
+     * Decode the record read last by the sequential read. The continuation records of the spanned record follow it in
+     * the order of the keys, so they are read next.
+     *
+     * @return The record or empty for the continuation record and for the spanned record missing its continuation.
+     */
+    public Optional<VsamRecord> readContinuedRecord(byte[] recBuf) throws ZFileException, VsamRecordException, UnsupportedEncodingException {
+        if (VsamRecordCodec.isContinuation(vsamConfig, recBuf)) {
+            return Optional.empty();
+        }
+
+        int continuations = VsamRecordCodec.continuationCount(vsamConfig, recBuf);
+        if (continuations == 0) {
+            return Optional.of(new VsamRecord(vsamConfig, recBuf));
+        }
+
+        String vsamKey = keyOf(recBuf);
+        List<byte[]> read = new ArrayList<>(continuations);
+        for (int index = 1; index <= continuations; index++) {
+            byte[] continuation = new byte[vsamConfig.getRecordLength()];
+            if (zfile.read(continuation) < 0) {
+                log.info("The continuation {} of the record {} is missing", index, vsamKey);
+                return Optional.empty();
+            }
+
+            if (!regionEquals(continuation, continuationKey(vsamKey, index), vsamConfig.getKeyLength())) {
+                log.info("The continuation {} of the record {} is missing", index, vsamKey);
+                if (!VsamRecordCodec.isContinuation(vsamConfig, continuation)) {
+                    // The following record was read instead, so it's positioned to be read again.
+                    zfile.locate(continuation, 0, vsamConfig.getKeyLength(), ZFileConstants.LOCATE_KEY_EQ);
+                }
+                return Optional.empty();
+            }
+            read.add(continuation);
+        }
+
+        try {
+            return Optional.of(new VsamRecord(vsamConfig, recBuf, read));
+        } catch (VsamRecordException e) {
+            log.info("The continuations of the record {} belong to another version: {}", vsamKey, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Write the continuation records of the record. The continuation records left by the previous version of the
+     * record are replaced.
+     */
+    private void writeContinuations(List<byte[]> records) throws ZFileException {
+        for (byte[] continuation : records.subList(1, records.size())) {
+            if (zfile.locate(continuation, 0, vsamConfig.getKeyLength(), ZFileConstants.LOCATE_KEY_EQ)) {
+                zfile.read(new byte[vsamConfig.getRecordLength()]); //has to be read before update
+                zfile.update(continuation);
+            } else {
+                zfile.write(continuation);
+            }
+        }
+    }
+
+    /**
+     * Delete the continuation records numbered from first to last.
+     */
+    private void deleteContinuations(String vsamKey, int first, int last) throws ZFileException, VsamRecordException, UnsupportedEncodingException {
+        for (int index = first; index <= last; index++) {
+            if (zfile.locate(continuationKey(vsamKey, index), ZFileConstants.LOCATE_KEY_EQ)) {
+                zfile.read(new byte[vsamConfig.getRecordLength()]); //has to be read before delete
+                zfile.delrec();
+            }
+        }
+    }
+
+    private byte[] continuationKey(String vsamKey, int index) throws VsamRecordException, UnsupportedEncodingException {
+        String continuationKey = new VsamKey(vsamConfig).getContinuationKey(vsamKey, index);
+        if (continuationKey == null) {
+            throw new VsamRecordException("The record " + vsamKey + " cannot be continued");
+        }
+
+        return continuationKey.getBytes(vsamConfig.getEncoding());
+    }
+
+    private String keyOf(byte[] recBuf) throws UnsupportedEncodingException {
+        return new String(recBuf, 0, vsamConfig.getKeyLength(), vsamConfig.getEncoding()).trim();
+    }
+
+    /**
+     * The failure of the time index doesn't fail the operation. The entry left in the index is removed once it's found
+     * to be stale, while the record missing in the index isn't chosen as the oldest one until the index runs empty and
+     * is rebuilt from all the records.
+     */
+    private void updateTimeIndex(TimeIndexOperation operation) {
+        if (timeIndex == null) {
+            return;
+        }
+
+        try {
+            operation.apply(timeIndex);
+        } catch (ZFileException | VsamRecordException e) {
+            log.info("Updating of the time index failed: {}", e.toString());
+        }
+    }
+
     private Optional<VsamRecord> recordOperation(VsamRecord vsamRec, RecordHandler recordHandler) {
         if (vsamRec == null) {
             throw new IllegalArgumentException(RECORD_CANNOT_BE_NULL_MESSAGE);
@@ -186,6 +405,7 @@ public class VsamFile implements Closeable {
             log.info(UNSUPPORTED_ENCODING_MESSAGE, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
         } catch (ZFileException e) {
             log.info(e.toString());
+            failed = true;
             throw new RetryableVsamException(e);
         } catch (VsamRecordException e) {
             log.info(VSAM_RECORD_ERROR_MESSAGE, e.toString());
@@ -198,22 +418,63 @@ public class VsamFile implements Closeable {
     public List<VsamRecord> readForService(String serviceId) {
         List<VsamRecord> returned = new ArrayList<>();
 
-        serviceWideOperation(serviceId, (zfile, vsamRec) -> {
+        serviceWideOperation(serviceId, null, Integer.MAX_VALUE, (zfile, recBuf) -> {
             log.debug("Retrieve the record");
-            returned.add(vsamRec);
+            Optional<VsamRecord> read = readContinuedRecord(recBuf);
+            read.ifPresent(returned::add);
+            return read.isPresent();
         });
 
         return returned;
     }
 
+    /**
+     * Reads the records of the service in the order of their VSAM keys starting after the cursor.
+     *
+     * @param cursor VSAM key of the last record of the previous page or null for the first page.
+     * @return Page of the records with the VSAM key of its last record as the cursor, the cursor is null once all
+     * the records of the service were read.
+     */
+    public ScanResult readForService(String serviceId, String cursor, int limit) {
+        List<KeyValue> returned = new ArrayList<>();
+
+        String nextCursor = serviceWideOperation(serviceId, cursor, limit, (zfile, recBuf) -> {
+            log.debug("Retrieve the record");
+            Optional<VsamRecord> read = readContinuedRecord(recBuf);
+            read.ifPresent(vsamRecord -> returned.add(vsamRecord.getKeyValue()));
+            return read.isPresent();
+        });
+
+        return new ScanResult(returned, nextCursor);
+    }
+
     public void deleteForService(String serviceId) {
-        serviceWideOperation(serviceId, (zfile, vsamRec) -> {
+        // The entries of the time index are ordered by the creation time, so the records are read to find them.
+        List<VsamRecord> indexed = timeIndex == null ? Collections.emptyList() : readForService(serviceId);
+
+        // The continuation records share the key prefix of the service, so they are deleted as well.
+        serviceWideOperation(serviceId, null, Integer.MAX_VALUE, (zfile, recBuf) -> {
             log.debug("Delete the record");
             zfile.delrec();
+            return !VsamRecordCodec.isContinuation(vsamConfig, recBuf);
+        });
+
+        updateTimeIndex(index -> {
+            for (VsamRecord deleted : indexed) {
+                index.remove(deleted);
+            }
         });
     }
 
-    private void serviceWideOperation(String serviceId, ServiceWideOperation operation) {
+    /**
+     * Positions the file to the cursor and processes at most limit records of the service.
+     * <p>
+     * The records are matched by comparing the encoded key prefix of the service with the bytes of the record, only
+     * the operation decodes the record if it needs it.
+     *
+     * @return VSAM key of the last processed record if the limit was reached, otherwise null.
+     */
+    private String serviceWideOperation(String serviceId, String cursor, int limit, ServiceWideOperation operation) {
         if (serviceId == null || serviceId.isEmpty()) {
             throw new IllegalArgumentException("serviceId cannot be null");
         }
@@ -224,23 +485,21 @@ public class VsamFile implements Closeable {
             byte[] recBuf = new byte[vsamConfig.getRecordLength()];
 
             String keyGe = key.getKeySidOnly(serviceId);
-            log.info("Attempt to find key in KEY_GE mode: {}", keyGe);
+            log.info("Attempt to find key in KEY_GE mode: {}", cursor == null ? keyGe : cursor);
 
-            boolean found = zfile.locate(key.getKeyBytesSidOnly(serviceId), ZFileConstants.LOCATE_KEY_GE);
+            byte[] servicePrefix = key.getKeyPrefixBytes(serviceId);
+            byte[] cursorKey = cursor == null ? null : key.getPaddedKeyBytes(cursor);
+            byte[] startKey = cursor == null ? key.getKeyBytesSidOnly(serviceId) : cursorKey;
+            boolean found = zfile.locate(startKey, ZFileConstants.LOCATE_KEY_GE);
 
             log.info(RECORD_FOUND_MESSAGE, found);
 
-            int overflowProtection = 10000;
+            int processed = 0;
 
             while (found) {
                 int nread = zfile.read(recBuf);
                 log.trace("RecBuf: {}", recBuf); //NOSONAR
-                log.info("nread: {}", nread);
-
-                String convertedStringValue = new String(recBuf, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
-
-                VsamRecord vsamRec = new VsamRecord(vsamConfig, recBuf);
-                log.info("Read record: {}", vsamRec);
+                log.trace("nread: {}", nread);
 
                 if (nread < 0) {
                     log.info("nread is < 0, stopping the retrieval");
@@ -248,31 +507,52 @@ public class VsamFile implements Closeable {
                     continue;    //NOSONAR
                 }
 
-                log.trace("convertedStringValue: >{}<", convertedStringValue);
-                log.trace("keyGe: >{}<", keyGe);
-                if (!convertedStringValue.trim().startsWith(keyGe.trim())) {
+                // The keys of the service are contiguous, so the first record of another service ends the retrieval.
+                if (!regionEquals(recBuf, servicePrefix, servicePrefix.length)) {
                     log.info("read record does not start with serviceId's keyGe, stopping the retrieval");
                     found = false;
                     continue;   //NOSONAR
-                } else {
-                    log.info("read record starts with serviceId's keyGe, retrieving this record");
                 }
 
-                operation.resolveValidRecord(zfile, vsamRec);
+                if (cursorKey != null && regionEquals(recBuf, cursorKey, vsamConfig.getKeyLength())) {
+                    log.debug("Skipping the last record of the previous page");
+                    continue;   //NOSONAR
+                }
+
+                if (!operation.resolveValidRecord(zfile, recBuf)) {
+                    continue;   //NOSONAR
+                }
 
-                overflowProtection--;
-                if (overflowProtection <= 0) {
-                    log.info("Maximum number of records retrieved, stopping the retrieval");
-                    break;  //NOSONAR
+                processed++;
+                if (processed >= limit) {
+                    log.info("Requested number of records retrieved, stopping the retrieval");
+                    return new String(recBuf, 0, vsamConfig.getKeyLength(), vsamConfig.getEncoding()).trim();
                 }
             }
         } catch (UnsupportedEncodingException e) {
             log.info(UNSUPPORTED_ENCODING_MESSAGE, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
         } catch (ZFileException e) {
             log.info(e.toString());
+            failed = true;
         } catch (VsamRecordException e) {
             log.info(VSAM_RECORD_ERROR_MESSAGE, e.toString());
         }
+
+        return null;
+    }
+
+    private static boolean regionEquals(byte[] record, byte[] expected, int length) {
+        if (record.length < length || expected.length < length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (record[i] != expected[i]) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     public Optional<byte[]> readBytes(byte[] arrayToStoreIn) throws ZFileException {
@@ -289,21 +569,21 @@ public class VsamFile implements Closeable {
         try {
             byte[] recBuf = new byte[vsamConfig.getRecordLength()];
 
-            int overflowProtection = 10000;
+            // The file may be positioned anywhere by the previous operation.
+            zfile.locate(" ".getBytes(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), ZFileConstants.LOCATE_KEY_FIRST);
             while (zfile.read(recBuf) != -1) {
 
                 log.trace("RecBuf: {}", recBuf); //NOSONAR
 
-                recordsCounter += 1;
-
-                overflowProtection--;
-                if (overflowProtection <= 0) {
-                    log.info("Maximum number of records retrieved, stopping the retrieval");
-                    break;
+                if (!VsamRecordCodec.isContinuation(vsamConfig, recBuf)) {
+                    recordsCounter += 1;
                 }
             }
+        } catch (UnsupportedEncodingException e) {
+            log.info(UNSUPPORTED_ENCODING_MESSAGE, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
         } catch (ZFileException e) {
             log.info(e.toString());
+            failed = true;
         }
         return recordsCounter;
     }
@@ -323,8 +603,16 @@ public class VsamFile implements Closeable {
         }
     }
 
+    @FunctionalInterface
+    private interface TimeIndexOperation {
+        void apply(VsamTimeIndex index) throws ZFileException, VsamRecordException;
+    }
+
     @FunctionalInterface
     private interface ServiceWideOperation {
-        void resolveValidRecord(ZFile zFile, VsamRecord vsamRec) throws ZFileException;
+        /**
+         * @return False if the record isn't an entry of its own, e.g. it's a continuation of another record.
+         */
+        boolean resolveValidRecord(ZFile zFile, byte[] recBuf) throws ZFileException, VsamRecordException, UnsupportedEncodingException;
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.service.vsam;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.message.log.ApimlLogger;
+
+import java.io.Closeable;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the opened VSAM files for reuse, so the file isn't opened and closed for every operation.
+ * <p>
+ * At most poolSize files are leased at the same time for every mode. The caller waits for the file to be returned
+ * if all of them are leased. The file which failed is closed when returned and the next lease opens a new one, so the
+ * retry of the failed operation gets a fresh file. The file which was idle for longer than maxIdleTime or opened
+ * longer than maxAge ago is reopened as well, so the file doesn't keep the buffered data which could be rewritten by
+ * the other instances or by the files of the other mode meanwhile. The age bounds the files which are used all the
+ * time and so never become idle.
+ */
+@Slf4j
+public class VsamFilePool implements Closeable {
+    private static final long LEASE_TIMEOUT = 10000;
+
+    private final VsamConfig vsamConfig;
+    private final VsamFileProducer producer;
+    private final ApimlLogger apimlLog;
+
+    private final Map<VsamConfig.VsamOptions, Deque<PooledFile>> idle = new EnumMap<>(VsamConfig.VsamOptions.class);
+    private final Map<VsamConfig.VsamOptions, Semaphore> permits = new EnumMap<>(VsamConfig.VsamOptions.class);
+
+    public VsamFilePool(VsamConfig vsamConfig, VsamFileProducer producer, ApimlLogger apimlLog) {
+        this.vsamConfig = vsamConfig;
+        this.producer = producer;
+        this.apimlLog = apimlLog;
+
+        for (VsamConfig.VsamOptions options : VsamConfig.VsamOptions.values()) {
+            idle.put(options, new ConcurrentLinkedDeque<>());
+            permits.put(options, new Semaphore(vsamConfig.getPoolSize(), true));
+        }
+    }
+
+    /**
+     * Lease the file opened in given mode. The file is returned to the pool by closing the lease.
+     */
+    public Lease lease(VsamConfig.VsamOptions options) {
+        Semaphore semaphore = permits.get(options);
+        try {
+            if (!semaphore.tryAcquire(LEASE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("No VSAM file available in mode " + options);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for VSAM file", e);
+        }
+
+        try {
+            return new Lease(options, take(options));
+        } catch (RuntimeException e) {
+            semaphore.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Close all the idle files. The leased files are closed once returned.
+     */
+    @Override
+    public void close() {
+        idle.values().forEach(files -> {
+            PooledFile pooled;
+            while ((pooled = files.pollFirst()) != null) {
+                pooled.file.close();
+            }
+        });
+    }
+
+    private PooledFile take(VsamConfig.VsamOptions options) {
+        Deque<PooledFile> files = idle.get(options);
+        long now = System.currentTimeMillis();
+
+        // The most recently used file is taken first, so all the others are idle for even longer once this one is.
+        PooledFile pooled;
+        while ((pooled = files.pollFirst()) != null) {
+            if (now - pooled.lastUsed <= vsamConfig.getMaxIdleTime() && !pooled.isTooOld(now)) {
+                return pooled;
+            }
+
+            log.debug("Closing VSAM file idle for {} ms and opened {} ms ago", now - pooled.lastUsed, now - pooled.opened);
+            pooled.file.close();
+        }
+
+        return new PooledFile(producer.newVsamFile(vsamConfig, options, apimlLog));
+    }
+
+    private void giveBack(VsamConfig.VsamOptions options, PooledFile pooled) {
+        try {
+            long now = System.currentTimeMillis();
+            if (pooled.file.hasFailed()) {
+                log.info("Closing VSAM file after a failed operation");
+                pooled.file.close();
+            } else if (pooled.isTooOld(now)) {
+                log.debug("Closing VSAM file opened {} ms ago", now - pooled.opened);
+                pooled.file.close();
+            } else {
+                pooled.lastUsed = now;
+                idle.get(options).offerFirst(pooled);
+            }
+        } finally {
+            permits.get(options).release();
+        }
+    }
+
+    private class PooledFile {
+        private final VsamFile file;
+        private final long opened;
+        private long lastUsed;
+
+        PooledFile(VsamFile file) {
+            this.file = file;
+            this.opened = System.currentTimeMillis();
+            this.lastUsed = opened;
+        }
+
+        boolean isTooOld(long now) {
+            return now - opened > vsamConfig.getMaxAge();
+        }
+    }
+
+    public class Lease implements Closeable {
+        private final VsamConfig.VsamOptions options;
+        private final PooledFile pooled;
+        private boolean returned;
+
+        private Lease(VsamConfig.VsamOptions options, PooledFile pooled) {
+            this.options = options;
+            this.pooled = pooled;
+        }
+
+        public VsamFile getFile() {
+            return pooled.file;
+        }
+
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                giveBack(options, pooled);
+            }
+        }
+    }
+}
@@ -25,6 +25,13 @@ import java.io.UnsupportedEncodingException;
  * Takes configuration from {@link VsamConfig}
  */
 public class VsamKey {
+    /**
+     * The continuation keys are numbered with three digits.
+     */
+    public static final int MAXIMUM_CONTINUATIONS = 999;
+
+    // Sorts after the padding and before the digits, so the continuation records directly follow their record.
+    private static final String CONTINUATION_SEPARATOR = "+";
 
     private final VsamConfig config;
 
@@ -61,6 +68,32 @@ public class VsamKey {
         return getKey(serviceId, keyValue.getKey()).getBytes(config.getEncoding());
     }
 
+    public byte[] getPaddedKeyBytes(String vsamKey) throws UnsupportedEncodingException {
+        return StringUtils.rightPad(vsamKey, keyLength).getBytes(config.getEncoding());
+    }
+
+    /**
+     * @return Encoded beginning shared by the keys of all the records of the service and no other record.
+     */
+    public byte[] getKeyPrefixBytes(String serviceId) throws UnsupportedEncodingException {
+        return (serviceId.hashCode() + ":").getBytes(config.getEncoding());
+    }
+
+    /**
+     * The key of the continuation record is the key of the continued record followed by the separator and the number
+     * of the continuation, e.g. 1234:5678+001.
+     *
+     * @return Key of the index-th continuation record or null if the continued key is too long to be followed.
+     */
+    public String getContinuationKey(String vsamKey, int index) {
+        String continuationKey = vsamKey.trim() + CONTINUATION_SEPARATOR + String.format("%03d", index);
+        if (continuationKey.length() > keyLength) {
+            return null;
+        }
+
+        return StringUtils.rightPad(continuationKey, keyLength);
+    }
+
     public String getKeySidOnly(String serviceId) {
         return StringUtils.rightPad(String.valueOf(serviceId.hashCode()), keyLength);
     }
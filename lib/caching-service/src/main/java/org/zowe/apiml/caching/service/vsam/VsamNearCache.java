@@ -0,0 +1,635 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.EntryKey;
+import org.zowe.apiml.caching.service.Messages;
+import org.zowe.apiml.caching.service.Storage;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the recently used records of the {@link VsamStorage} in the memory, so the repeated reads don't go to the data
+ * set. The records not used for longer than the expiration are read again to reflect the changes done by the other
+ * instances sharing the data set. The records whose own time to live elapsed are treated as missing, same as by the
+ * storage.
+ * <p>
+ * With the sync durability the changes are written to the data set before they are acknowledged. With the delayed
+ * durability the changes are acknowledged once they are queued. The queue keeps only the last change of every record
+ * and it is written in batches, each operation of a service within one opened file, every flush interval, whenever the
+ * queue is full and on shutdown. The changes queued by one instance aren't visible to the other instances until they
+ * are written, and the changes failing when written are only logged.
+ * <p>
+ * The near cache doesn't retry the operations itself. The storage it delegates to is the Spring proxy, which already
+ * retries them, so a failing request isn't attempted more times than without the near cache.
+ */
+@Slf4j
+public class VsamNearCache implements Storage, MeterBinder {
+    public static final String SYNC_DURABILITY = "sync";
+    public static final String DELAYED_DURABILITY = "delayed";
+
+    static final int MAXIMUM_WRITE_ATTEMPTS = 3;
+
+    private final VsamStorage storage;
+    private final long expiration;
+    private final int queueSize;
+    private final boolean writeBehind;
+
+    private final Map<EntryKey, CachedRecord> cached;
+    private Map<EntryKey, QueuedChange> queued = new LinkedHashMap<>();
+    private Map<EntryKey, QueuedChange> flushed = Collections.emptyMap();
+    // Changed by every write, so the record read meanwhile from the data set isn't cached over the newer value.
+    private long generation;
+
+    private final Object flushLock = new Object();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private ScheduledExecutorService flusher;
+
+    public VsamNearCache(VsamStorage storage, VsamConfig vsamConfig) {
+        log.info("Using near cache with {} durability in front of the VSAM storage", vsamConfig.getNearCacheDurability());
+
+        this.storage = storage;
+        this.expiration = vsamConfig.getNearCacheExpiration();
+        this.queueSize = vsamConfig.getNearCacheQueueSize();
+        this.writeBehind = DELAYED_DURABILITY.equalsIgnoreCase(vsamConfig.getNearCacheDurability());
+
+        int size = vsamConfig.getNearCacheSize();
+        this.cached = new LinkedHashMap<EntryKey, CachedRecord>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<EntryKey, CachedRecord> eldest) {
+                return size() > size;
+            }
+        };
+
+        if (writeBehind) {
+            long flushInterval = vsamConfig.getNearCacheFlushInterval();
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "caching-vsam-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::scheduledFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the queued changes. The storage is closed by Spring afterwards, as the near cache depends on it.
+     */
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("caching.vsam.nearcache.hit.ratio", this, VsamNearCache::getHitRatio)
+            .description("Ratio of the reads served from the near cache")
+            .register(registry);
+        Gauge.builder("caching.vsam.nearcache.queue.depth", this, VsamNearCache::getQueueDepth)
+            .description("Amount of the changes waiting to be written to the data set")
+            .register(registry);
+        FunctionCounter.builder("caching.vsam.nearcache.reads", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("caching.vsam.nearcache.reads", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .register(registry);
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queued.size() + flushed.size();
+    }
+
+    @Override
+    public KeyValue create(String serviceId, KeyValue toCreate) {
+        toCreate.setServiceId(serviceId);
+        EntryKey entryKey = new EntryKey(serviceId, toCreate.getKey());
+        if (!writeBehind) {
+            return writeThrough(entryKey, () -> storage.create(serviceId, toCreate));
+        }
+
+        boolean stored = lookup(entryKey).isPresent();
+        synchronized (this) {
+            if (isPresent(entryKey, stored)) {
+                throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey(), serviceId);
+            }
+            enqueue(entryKey, new QueuedChange(Operation.CREATE, copy(toCreate)));
+        }
+        flushIfFull();
+
+        return toCreate;
+    }
+
+    @Override
+    public KeyValue read(String serviceId, String key) {
+        return lookup(new EntryKey(serviceId, key)).orElseThrow(() ->
+            new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId));
+    }
+
+    @Override
+    public KeyValue update(String serviceId, KeyValue toUpdate) {
+        toUpdate.setServiceId(serviceId);
+        EntryKey entryKey = new EntryKey(serviceId, toUpdate.getKey());
+        if (!writeBehind) {
+            return writeThrough(entryKey, () -> storage.update(serviceId, toUpdate));
+        }
+
+        boolean stored = lookup(entryKey).isPresent();
+        synchronized (this) {
+            if (!isPresent(entryKey, stored)) {
+                throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toUpdate.getKey(), serviceId);
+            }
+            enqueue(entryKey, new QueuedChange(Operation.UPDATE, copy(toUpdate)));
+        }
+        flushIfFull();
+
+        return toUpdate;
+    }
+
+    @Override
+    public KeyValue delete(String serviceId, String toDelete) {
+        EntryKey entryKey = new EntryKey(serviceId, toDelete);
+        if (!writeBehind) {
+            try {
+                KeyValue deleted = storage.delete(serviceId, toDelete);
+                remember(entryKey, null);
+                return deleted;
+            } catch (RuntimeException e) {
+                forget(entryKey);
+                throw e;
+            }
+        }
+
+        Optional<KeyValue> stored = lookup(entryKey);
+        KeyValue current;
+        synchronized (this) {
+            QueuedChange change = queuedChange(entryKey);
+            current = change != null ? live(change.keyValue) : stored.orElse(null);
+            if (current == null) {
+                throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toDelete, serviceId);
+            }
+            enqueue(entryKey, new QueuedChange(Operation.DELETE, null));
+        }
+        flushIfFull();
+
+        return copy(current);
+    }
+
+    @Override
+    public Map<String, KeyValue> readAll(String serviceId, Collection<String> keys) {
+        Map<String, KeyValue> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        long loadedGeneration;
+        synchronized (this) {
+            for (String key : keys) {
+                Optional<CachedRecord> known = known(new EntryKey(serviceId, key));
+                if (known.isPresent()) {
+                    hits.increment();
+                    if (known.get().keyValue != null) {
+                        result.put(key, copy(known.get().keyValue));
+                    }
+                } else {
+                    missing.add(key);
+                }
+            }
+            loadedGeneration = generation;
+        }
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.add(missing.size());
+        Map<String, KeyValue> loaded = storage.readAll(serviceId, missing);
+        synchronized (this) {
+            if (generation == loadedGeneration) {
+                missing.forEach(key -> cached.put(new EntryKey(serviceId, key), new CachedRecord(loaded.get(key))));
+            }
+        }
+        loaded.forEach((key, keyValue) -> result.put(key, copy(keyValue)));
+
+        return result;
+    }
+
+    /**
+     * The records already in the data set are read within one opened file, so the checks of the single changes are
+     * answered by the near cache.
+     */
+    @Override
+    public Map<String, StorageException> createAll(String serviceId, Collection<KeyValue> toCreate) {
+        if (!writeBehind) {
+            Map<String, StorageException> failures = storage.createAll(serviceId, toCreate);
+            rememberAll(serviceId, toCreate, failures);
+            return failures;
+        }
+
+        readAll(serviceId, keysOf(toCreate));
+        return Storage.super.createAll(serviceId, toCreate);
+    }
+
+    @Override
+    public Map<String, StorageException> updateAll(String serviceId, Collection<KeyValue> toUpdate) {
+        if (!writeBehind) {
+            Map<String, StorageException> failures = storage.updateAll(serviceId, toUpdate);
+            rememberAll(serviceId, toUpdate, failures);
+            return failures;
+        }
+
+        readAll(serviceId, keysOf(toUpdate));
+        return Storage.super.updateAll(serviceId, toUpdate);
+    }
+
+    @Override
+    public Map<String, StorageException> deleteAll(String serviceId, Collection<String> toDelete) {
+        if (!writeBehind) {
+            Map<String, StorageException> failures = storage.deleteAll(serviceId, toDelete);
+            toDelete.forEach(key -> remember(new EntryKey(serviceId, key), null));
+            return failures;
+        }
+
+        readAll(serviceId, toDelete);
+        return Storage.super.deleteAll(serviceId, toDelete);
+    }
+
+    @Override
+    public Map<String, KeyValue> readForService(String serviceId) {
+        flush();
+        return storage.readForService(serviceId);
+    }
+
+    @Override
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        flush();
+        return storage.scanForService(serviceId, cursor, limit);
+    }
+
+    @Override
+    public void deleteForService(String serviceId) {
+        flush();
+        try {
+            storage.deleteForService(serviceId);
+        } finally {
+            synchronized (this) {
+                cached.keySet().removeIf(entryKey -> entryKey.getServiceId().equals(serviceId));
+                generation++;
+            }
+        }
+    }
+
+    @Override
+    public KeyValue storeMapItem(String serviceId, String mapKey, KeyValue toCreate) throws StorageException {
+        return storage.storeMapItem(serviceId, mapKey, toCreate);
+    }
+
+    @Override
+    public Map<String, String> getAllMapItems(String serviceId, String mapKey) throws StorageException {
+        return storage.getAllMapItems(serviceId, mapKey);
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getAllMaps(String serviceId) throws StorageException {
+        return storage.getAllMaps(serviceId);
+    }
+
+    @Override
+    public void removeNonRelevantTokens(String serviceId, String mapKey) {
+        storage.removeNonRelevantTokens(serviceId, mapKey);
+    }
+
+    @Override
+    public void removeNonRelevantRules(String serviceId, String mapKey) {
+        storage.removeNonRelevantRules(serviceId, mapKey);
+    }
+
+    /**
+     * Write all the queued changes to the data set. The changes which can't be written due to a temporary failure are
+     * queued again unless they were attempted {@value #MAXIMUM_WRITE_ATTEMPTS} times.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<EntryKey, QueuedChange> batch;
+            synchronized (this) {
+                if (queued.isEmpty()) {
+                    return;
+                }
+                batch = queued;
+                flushed = batch;
+                queued = new LinkedHashMap<>();
+            }
+
+            Map<EntryKey, QueuedChange> failed = new HashMap<>();
+            Set<EntryKey> rejected = new HashSet<>();
+            try {
+                Map<String, Map<Operation, Map<String, QueuedChange>>> byService = new HashMap<>();
+                batch.forEach((entryKey, change) -> byService
+                    .computeIfAbsent(entryKey.getServiceId(), serviceId -> new EnumMap<>(Operation.class))
+                    .computeIfAbsent(change.operation, operation -> new LinkedHashMap<>())
+                    .put(entryKey.getKey(), change));
+
+                // The deletions go first to make the space for the created records.
+                byService.forEach((serviceId, operations) -> operations.forEach((operation, changes) ->
+                    write(serviceId, operation, changes, failed, rejected)));
+            } finally {
+                synchronized (this) {
+                    flushed = Collections.emptyMap();
+                    failed.forEach(this::requeue);
+                    rejected.forEach(cached::remove);
+                    generation++;
+                }
+            }
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Writing of the queued changes failed", e);
+        }
+    }
+
+    private void flushIfFull() {
+        boolean full;
+        synchronized (this) {
+            full = queued.size() >= queueSize;
+        }
+
+        if (full) {
+            flush();
+        }
+    }
+
+    private void write(String serviceId, Operation operation, Map<String, QueuedChange> changes,
+                       Map<EntryKey, QueuedChange> failed, Set<EntryKey> rejected) {
+        Map<String, StorageException> failures;
+        try {
+            switch (operation) {
+                case CREATE:
+                    failures = storage.createAll(serviceId, valuesOf(changes));
+                    break;
+                case UPDATE:
+                    failures = storage.updateAll(serviceId, valuesOf(changes));
+                    break;
+                default:
+                    failures = storage.deleteAll(serviceId, changes.keySet());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Writing of {} queued changes of the service {} failed: {}", changes.size(), serviceId, e.toString());
+            changes.forEach((key, change) -> failed.put(new EntryKey(serviceId, key), change));
+            return;
+        }
+
+        failures.forEach((key, e) -> {
+            log.warn("The queued {} of the record {}|{} was rejected: {}", operation, serviceId, key, e.getMessage());
+            rejected.add(new EntryKey(serviceId, key));
+        });
+    }
+
+    private void requeue(EntryKey entryKey, QueuedChange change) {
+        QueuedChange newer = queued.remove(entryKey);
+        if (newer == null && change.attempts + 1 >= MAXIMUM_WRITE_ATTEMPTS) {
+            log.error("The queued {} of the record {}|{} was dropped after {} attempts",
+                change.operation, entryKey.getServiceId(), entryKey.getKey(), MAXIMUM_WRITE_ATTEMPTS);
+            cached.remove(entryKey);
+            return;
+        }
+
+        QueuedChange merged = newer == null ? change.retried() : coalesce(change, newer);
+        if (merged != null) {
+            queued.put(entryKey, merged);
+        }
+    }
+
+    /**
+     * @return The record with the key, either queued, cached or read from the data set.
+     */
+    private Optional<KeyValue> lookup(EntryKey entryKey) {
+        long loadedGeneration;
+        synchronized (this) {
+            Optional<CachedRecord> known = known(entryKey);
+            if (known.isPresent()) {
+                hits.increment();
+                return Optional.ofNullable(known.get().keyValue).map(VsamNearCache::copy);
+            }
+            loadedGeneration = generation;
+        }
+
+        misses.increment();
+        KeyValue loaded;
+        try {
+            loaded = storage.read(entryKey.getServiceId(), entryKey.getKey());
+        } catch (StorageException e) {
+            if (!Messages.KEY_NOT_IN_CACHE.getKey().equals(e.getKey())) {
+                throw e;
+            }
+            loaded = null;
+        }
+
+        synchronized (this) {
+            if (generation == loadedGeneration) {
+                cached.put(entryKey, new CachedRecord(loaded));
+            }
+        }
+
+        return Optional.ofNullable(loaded).map(VsamNearCache::copy);
+    }
+
+    /**
+     * @return The queued or cached state of the record, the value of the state is null for the missing record.
+     */
+    private Optional<CachedRecord> known(EntryKey entryKey) {
+        QueuedChange change = queuedChange(entryKey);
+        if (change != null) {
+            return Optional.of(new CachedRecord(live(change.keyValue)));
+        }
+
+        CachedRecord cachedRecord = cached.get(entryKey);
+        if (cachedRecord == null || cachedRecord.isExpired(expiration)) {
+            return Optional.empty();
+        }
+
+        if (cachedRecord.keyValue != null && live(cachedRecord.keyValue) == null) {
+            return Optional.of(new CachedRecord(null));
+        }
+
+        return Optional.of(cachedRecord);
+    }
+
+    /**
+     * @return The record unless its time to live elapsed.
+     */
+    private static KeyValue live(KeyValue keyValue) {
+        return keyValue == null || keyValue.isExpiredAt(System.currentTimeMillis()) ? null : keyValue;
+    }
+
+    private QueuedChange queuedChange(EntryKey entryKey) {
+        QueuedChange change = queued.get(entryKey);
+        return change != null ? change : flushed.get(entryKey);
+    }
+
+    private boolean isPresent(EntryKey entryKey, boolean stored) {
+        QueuedChange change = queuedChange(entryKey);
+        return change != null ? change.operation != Operation.DELETE && live(change.keyValue) != null : stored;
+    }
+
+    private void enqueue(EntryKey entryKey, QueuedChange change) {
+        QueuedChange merged = coalesce(queued.get(entryKey), change);
+        if (merged == null) {
+            queued.remove(entryKey);
+        } else {
+            queued.put(entryKey, merged);
+        }
+
+        cached.put(entryKey, new CachedRecord(change.keyValue));
+        generation++;
+    }
+
+    /**
+     * @return The change with the same effect as the earlier change followed by the later one or null if there is
+     * nothing to write.
+     */
+    static QueuedChange coalesce(QueuedChange earlier, QueuedChange later) {
+        if (earlier == null) {
+            return later;
+        }
+
+        if (later.operation == Operation.DELETE) {
+            return earlier.operation == Operation.CREATE ? null : later;
+        }
+
+        // The record deleted before is still in the data set, so it's updated instead.
+        return new QueuedChange(earlier.operation == Operation.CREATE ? Operation.CREATE : Operation.UPDATE, later.keyValue);
+    }
+
+    private KeyValue writeThrough(EntryKey entryKey, Supplier<KeyValue> write) {
+        try {
+            KeyValue written = write.get();
+            remember(entryKey, written);
+            return written;
+        } catch (RuntimeException e) {
+            forget(entryKey);
+            throw e;
+        }
+    }
+
+    private synchronized void remember(EntryKey entryKey, KeyValue keyValue) {
+        cached.put(entryKey, new CachedRecord(keyValue == null ? null : copy(keyValue)));
+        generation++;
+    }
+
+    private synchronized void forget(EntryKey entryKey) {
+        cached.remove(entryKey);
+        generation++;
+    }
+
+    private void rememberAll(String serviceId, Collection<KeyValue> written, Map<String, StorageException> failures) {
+        for (KeyValue keyValue : written) {
+            EntryKey entryKey = new EntryKey(serviceId, keyValue.getKey());
+            if (failures.containsKey(keyValue.getKey())) {
+                forget(entryKey);
+            } else {
+                remember(entryKey, keyValue);
+            }
+        }
+    }
+
+    private static List<String> keysOf(Collection<KeyValue> keyValues) {
+        List<String> keys = new ArrayList<>(keyValues.size());
+        keyValues.forEach(keyValue -> keys.add(keyValue.getKey()));
+        return keys;
+    }
+
+    private static List<KeyValue> valuesOf(Map<String, QueuedChange> changes) {
+        List<KeyValue> values = new ArrayList<>(changes.size());
+        changes.values().forEach(change -> values.add(change.keyValue));
+        return values;
+    }
+
+    private static KeyValue copy(KeyValue keyValue) {
+        KeyValue copy = new KeyValue(keyValue.getKey(), keyValue.getValue(), keyValue.getCreated());
+        copy.setServiceId(keyValue.getServiceId());
+        copy.setTtl(keyValue.getTtl());
+        return copy;
+    }
+
+    enum Operation {
+        DELETE, CREATE, UPDATE
+    }
+
+    static class QueuedChange {
+        private final Operation operation;
+        private final KeyValue keyValue;
+        private final int attempts;
+
+        QueuedChange(Operation operation, KeyValue keyValue) {
+            this(operation, keyValue, 0);
+        }
+
+        private QueuedChange(Operation operation, KeyValue keyValue, int attempts) {
+            this.operation = operation;
+            this.keyValue = keyValue;
+            this.attempts = attempts;
+        }
+
+        Operation getOperation() {
+            return operation;
+        }
+
+        KeyValue getKeyValue() {
+            return keyValue;
+        }
+
+        QueuedChange retried() {
+            return new QueuedChange(operation, keyValue, attempts + 1);
+        }
+    }
+
+    /**
+     * State of the record as last seen in the data set, the missing record is remembered with null.
+     */
+    private static class CachedRecord {
+        private final KeyValue keyValue;
+        private final long loadedAt = System.currentTimeMillis();
+
+        CachedRecord(KeyValue keyValue) {
+            this.keyValue = keyValue;
+        }
+
+        boolean isExpired(long expiration) {
+            return System.currentTimeMillis() - loadedAt >= expiration;
+        }
+    }
+}
@@ -10,20 +10,17 @@
 
 package org.zowe.apiml.caching.service.vsam;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.StringUtils;
 import org.zowe.apiml.caching.model.KeyValue;
-import org.zowe.apiml.caching.service.Messages;
-import org.zowe.apiml.caching.service.StorageException;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Represents a record data structure in VSAM file.
  *
- * The structure is composed of {@link VsamKey} and {@link KeyValue}, serialized to JSON format.
+ * The structure is composed of {@link VsamKey} and {@link KeyValue}, serialized by {@link VsamRecordCodec}.
  * Configuration is driven from {@link VsamConfig}
  *
  * Constructors provide ways to create record from raw bytes or from POJOs.
@@ -39,8 +36,6 @@ public class VsamRecord {
     private VsamKey key;
     private KeyValue keyValue;
 
-    private ObjectMapper mapper = new ObjectMapper();
-
     private static final String UNSUPPORTED_ENCODING_MESSAGE = "Unsupported encoding: ";
 
     public VsamRecord(VsamConfig config, String serviceId, KeyValue kv) {
@@ -51,36 +46,40 @@ public class VsamRecord {
     }
 
     public VsamRecord(VsamConfig config, byte[] recordData) throws VsamRecordException {
+        this(config, recordData, Collections.emptyList());
+    }
+
+    /**
+     * @param continuations The continuation records of the spanned record.
+     */
+    public VsamRecord(VsamConfig config, byte[] recordData, List<byte[]> continuations) throws VsamRecordException {
         this.config = config;
         this.key = new VsamKey(config);
 
         try {
-            String recordString = new String(recordData, config.getEncoding());
-            this.keyValue = mapper.readValue(recordString.substring(config.getKeyLength()).trim(), KeyValue.class);
+            this.keyValue = VsamRecordCodec.forEncoding(config.getEncoding()).decode(config, recordData, continuations);
             this.serviceId = keyValue.getServiceId();
         } catch (UnsupportedEncodingException e) {
             throw new VsamRecordException(UNSUPPORTED_ENCODING_MESSAGE + config.getEncoding(), e);
-        } catch (JsonProcessingException e) {
-            throw new VsamRecordException("Failure deserializing the record value to KeyValue object", e);
         }
-
     }
 
     public byte[] getBytes() throws VsamRecordException {
         try {
-            byte[] bytes = StringUtils.rightPad(key.getKey(serviceId, keyValue.getKey()) + mapper.writeValueAsString(keyValue), config.getRecordLength())
-                .getBytes(config.getEncoding());
-            if (bytes.length > config.getRecordLength()) {
-                throw new StorageException(Messages.PAYLOAD_TOO_LARGE.getKey(), Messages.PAYLOAD_TOO_LARGE.getStatus(), keyValue.getKey());
-            }
-
-            return bytes;
-
+            return VsamRecordCodec.forEncoding(config.getEncoding()).encode(config, key.getKey(serviceId, keyValue.getKey()), keyValue);
+        } catch (UnsupportedEncodingException e) {
+            throw new VsamRecordException(UNSUPPORTED_ENCODING_MESSAGE + config.getEncoding(), e);
+        }
+    }
 
+    /**
+     * @return The record followed by its continuation records if it doesn't fit into one record.
+     */
+    public List<byte[]> getRecords() throws VsamRecordException {
+        try {
+            return VsamRecordCodec.forEncoding(config.getEncoding()).encodeRecords(config, key.getKey(serviceId, keyValue.getKey()), keyValue);
         } catch (UnsupportedEncodingException e) {
             throw new VsamRecordException(UNSUPPORTED_ENCODING_MESSAGE + config.getEncoding(), e);
-        } catch (JsonProcessingException e) {
-            throw new VsamRecordException("Failure serializing KeyValue object to Json: " + config.getEncoding(), e);
         }
     }
 
@@ -0,0 +1,412 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.commons.lang3.StringUtils;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.Messages;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Converts the {@link KeyValue} to the bytes of the VSAM record and back.
+ * <p>
+ * The record starts with the VSAM key padded to the key length. The binary layout follows:
+ * <pre>
+ * format (1 byte) | flags (1 byte) | ttl (8 bytes, only if the flag is set) | serviceId | key | value | created
+ * </pre>
+ * Every string is stored as 4 bytes of its encoded length followed by the encoded characters, null is stored as the
+ * length -1. The record is only as long as its content.
+ * <p>
+ * The content which doesn't fit into one record is spanned over the continuation records stored under the keys from
+ * {@link VsamKey#getContinuationKey(String, int)}. The first record has the spanned flag set and holds the first part
+ * of the strings, the continuation records hold the rest:
+ * <pre>
+ * first:        format | flags | ttl | stamp (4 bytes) | continuations (2 bytes) | length (4 bytes) | part of strings
+ * continuation: continuation format (1 byte) | stamp (4 bytes) | length (4 bytes) | part of strings
+ * </pre>
+ * The stamp is random for every write of the record, so the continuation records left by another write are recognized.
+ * <p>
+ * The records written by the previous versions hold the KeyValue serialized to JSON after the key. They are
+ * recognized by the first byte after the key, which is never the format byte, and are still read. The JSON format is
+ * also written if configured, so the file can be shared with the instances which don't read the binary format.
+ * <p>
+ * The encoders and buffers are reused, the codec is therefore bound to a thread via {@link #forEncoding(String)}.
+ */
+public class VsamRecordCodec {
+    public static final String JSON_FORMAT = "json";
+
+    static final byte BINARY_FORMAT_V1 = 0x01;
+    static final byte CONTINUATION_FORMAT = 0x02;
+
+    private static final int TTL_PRESENT = 0x01;
+    private static final int SPANNED = 0x02;
+    private static final int NULL_LENGTH = -1;
+    private static final int SPAN_HEADER_LENGTH = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int CONTINUATION_HEADER_LENGTH = 1 + Integer.BYTES + Integer.BYTES;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader JSON_READER = MAPPER.readerFor(KeyValue.class);
+    private static final ObjectWriter JSON_WRITER = MAPPER.writerFor(KeyValue.class);
+
+    private static final ThreadLocal<VsamRecordCodec> CODECS = new ThreadLocal<>();
+
+    private final String encoding;
+    private final CharsetEncoder encoder;
+    private final CharsetDecoder decoder;
+    private CharBuffer chars = CharBuffer.allocate(1024);
+    private ByteBuffer encoded = ByteBuffer.allocate(1024);
+
+    private VsamRecordCodec(String encoding) throws UnsupportedEncodingException {
+        this.encoding = encoding;
+
+        Charset charset;
+        try {
+            charset = Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * @return The codec of the current thread for given encoding.
+     */
+    public static VsamRecordCodec forEncoding(String encoding) throws UnsupportedEncodingException {
+        VsamRecordCodec codec = CODECS.get();
+        if (codec == null || !codec.encoding.equals(encoding)) {
+            codec = new VsamRecordCodec(encoding);
+            CODECS.set(codec);
+        }
+
+        return codec;
+    }
+
+    /**
+     * @return The single record holding the key value.
+     * @throws StorageException if the key value doesn't fit into one record.
+     */
+    public byte[] encode(VsamConfig config, String vsamKey, KeyValue keyValue) throws VsamRecordException {
+        List<byte[]> records = encodeRecords(config, vsamKey, keyValue);
+        if (records.size() > 1) {
+            throw payloadTooLarge(keyValue);
+        }
+
+        return records.get(0);
+    }
+
+    /**
+     * @return The record holding the key value followed by its continuation records if it doesn't fit into one.
+     */
+    public List<byte[]> encodeRecords(VsamConfig config, String vsamKey, KeyValue keyValue) throws VsamRecordException {
+        if (JSON_FORMAT.equalsIgnoreCase(config.getRecordFormat())) {
+            return Collections.singletonList(encodeJson(config, vsamKey, keyValue));
+        }
+
+        try {
+            int length = encodeStrings(keyValue);
+            int headerLength = config.getKeyLength() + 2 + (keyValue.getTtl() != null ? Long.BYTES : 0);
+            if (headerLength + length <= config.getRecordLength()) {
+                ByteBuffer buffer = header(config, vsamKey, keyValue, headerLength + length, 0);
+                buffer.put(encoded.array(), 0, length);
+                return Collections.singletonList(buffer.array());
+            }
+
+            return encodeSpanned(config, vsamKey, keyValue, length, headerLength);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            throw payloadTooLarge(keyValue);
+        }
+    }
+
+    public KeyValue decode(VsamConfig config, byte[] recordData) throws VsamRecordException {
+        return decode(config, recordData, Collections.emptyList());
+    }
+
+    /**
+     * @param continuations The continuation records of the spanned record in their order.
+     */
+    public KeyValue decode(VsamConfig config, byte[] recordData, List<byte[]> continuations) throws VsamRecordException {
+        if (recordData.length <= config.getKeyLength()) {
+            throw new VsamRecordException("The record is shorter than the key");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(recordData);
+        buffer.position(config.getKeyLength());
+        if (recordData[config.getKeyLength()] == CONTINUATION_FORMAT) {
+            throw new VsamRecordException("The record is a continuation of another record");
+        }
+        if (recordData[config.getKeyLength()] != BINARY_FORMAT_V1) {
+            return decodeJson(buffer);
+        }
+
+        try {
+            buffer.get();
+            byte flags = buffer.get();
+            Long ttl = (flags & TTL_PRESENT) != 0 ? buffer.getLong() : null;
+            if ((flags & SPANNED) != 0) {
+                buffer = joinSpanned(config, buffer, continuations);
+            }
+
+            String serviceId = getString(buffer);
+            String key = getString(buffer);
+            String value = getString(buffer);
+            String created = getString(buffer);
+
+            KeyValue keyValue = new KeyValue(key, value, created);
+            keyValue.setServiceId(serviceId);
+            keyValue.setTtl(ttl);
+            return keyValue;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new VsamRecordException("Failure decoding the record to KeyValue object", e);
+        }
+    }
+
+    /**
+     * @return The amount of the continuation records following the record, 0 if the record isn't spanned.
+     */
+    public static int continuationCount(VsamConfig config, byte[] recordData) {
+        int formatPosition = config.getKeyLength();
+        if (recordData.length <= formatPosition + 1 || recordData[formatPosition] != BINARY_FORMAT_V1
+            || (recordData[formatPosition + 1] & SPANNED) == 0) {
+            return 0;
+        }
+
+        int countPosition = formatPosition + 2 + ((recordData[formatPosition + 1] & TTL_PRESENT) != 0 ? Long.BYTES : 0)
+            + Integer.BYTES;
+        if (recordData.length < countPosition + Short.BYTES) {
+            return 0;
+        }
+
+        return ByteBuffer.wrap(recordData).getShort(countPosition);
+    }
+
+    public static boolean isContinuation(VsamConfig config, byte[] recordData) {
+        return recordData.length > config.getKeyLength() && recordData[config.getKeyLength()] == CONTINUATION_FORMAT;
+    }
+
+    private ByteBuffer header(VsamConfig config, String vsamKey, KeyValue keyValue, int length, int flags) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        encodeString(buffer, vsamKey);
+        buffer.position(config.getKeyLength());
+
+        buffer.put(BINARY_FORMAT_V1);
+        buffer.put((byte) (flags | (keyValue.getTtl() != null ? TTL_PRESENT : 0)));
+        if (keyValue.getTtl() != null) {
+            buffer.putLong(keyValue.getTtl());
+        }
+
+        return buffer;
+    }
+
+    private List<byte[]> encodeSpanned(VsamConfig config, String vsamKey, KeyValue keyValue, int length, int headerLength) {
+        int firstPart = config.getRecordLength() - headerLength - SPAN_HEADER_LENGTH;
+        int continuationPart = config.getRecordLength() - config.getKeyLength() - CONTINUATION_HEADER_LENGTH;
+        if (firstPart < 0 || continuationPart <= 0) {
+            throw payloadTooLarge(keyValue);
+        }
+
+        byte[] strings = encoded.array();
+        int continuations = (length - firstPart + continuationPart - 1) / continuationPart;
+        VsamKey key = new VsamKey(config);
+        if (continuations > VsamKey.MAXIMUM_CONTINUATIONS || key.getContinuationKey(vsamKey, continuations) == null) {
+            throw payloadTooLarge(keyValue);
+        }
+
+        int stamp = ThreadLocalRandom.current().nextInt();
+        List<byte[]> records = new ArrayList<>(continuations + 1);
+
+        ByteBuffer first = header(config, vsamKey, keyValue, config.getRecordLength(), SPANNED);
+        first.putInt(stamp).putShort((short) continuations).putInt(firstPart).put(strings, 0, firstPart);
+        records.add(first.array());
+
+        int offset = firstPart;
+        for (int index = 1; index <= continuations; index++) {
+            int partLength = Math.min(continuationPart, length - offset);
+            ByteBuffer continuation = ByteBuffer.allocate(config.getKeyLength() + CONTINUATION_HEADER_LENGTH + partLength);
+            encodeString(continuation, key.getContinuationKey(vsamKey, index));
+            continuation.position(config.getKeyLength());
+            continuation.put(CONTINUATION_FORMAT).putInt(stamp).putInt(partLength).put(strings, offset, partLength);
+            records.add(continuation.array());
+            offset += partLength;
+        }
+
+        return records;
+    }
+
+    private ByteBuffer joinSpanned(VsamConfig config, ByteBuffer buffer, List<byte[]> continuations) throws VsamRecordException {
+        int stamp = buffer.getInt();
+        int expected = buffer.getShort();
+        if (continuations.size() != expected) {
+            throw new VsamRecordException("The record continues in " + expected + " records, " + continuations.size() + " were given");
+        }
+
+        byte[] firstPart = getPart(buffer);
+        int length = firstPart.length;
+        List<byte[]> parts = new ArrayList<>(expected);
+        for (byte[] continuation : continuations) {
+            ByteBuffer continuationBuffer = ByteBuffer.wrap(continuation);
+            continuationBuffer.position(config.getKeyLength());
+            if (continuationBuffer.get() != CONTINUATION_FORMAT || continuationBuffer.getInt() != stamp) {
+                throw new VsamRecordException("The continuation record belongs to another version of the record");
+            }
+
+            byte[] part = getPart(continuationBuffer);
+            parts.add(part);
+            length += part.length;
+        }
+
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        joined.put(firstPart);
+        parts.forEach(joined::put);
+        joined.flip();
+        return joined;
+    }
+
+    private static byte[] getPart(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] part = new byte[length];
+        buffer.get(part);
+        return part;
+    }
+
+    /**
+     * Encodes the strings into the reused buffer, the records copy them from there.
+     *
+     * @return The length of the encoded strings.
+     */
+    private int encodeStrings(KeyValue keyValue) {
+        String[] strings = {keyValue.getServiceId(), keyValue.getKey(), keyValue.getValue(), keyValue.getCreated()};
+
+        long capacity = 0;
+        for (String string : strings) {
+            capacity += Integer.BYTES + (string == null ? 0 : (long) Math.ceil(string.length() * (double) encoder.maxBytesPerChar()));
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new BufferOverflowException();
+        }
+
+        if (encoded.capacity() < capacity) {
+            encoded = ByteBuffer.allocate((int) capacity);
+        }
+        encoded.clear();
+        for (String string : strings) {
+            putString(encoded, string);
+        }
+
+        return encoded.position();
+    }
+
+    private static StorageException payloadTooLarge(KeyValue keyValue) {
+        return new StorageException(Messages.PAYLOAD_TOO_LARGE.getKey(), Messages.PAYLOAD_TOO_LARGE.getStatus(), keyValue.getKey());
+    }
+
+    private byte[] encodeJson(VsamConfig config, String vsamKey, KeyValue keyValue) throws VsamRecordException {
+        try {
+            byte[] bytes = StringUtils.rightPad(vsamKey + JSON_WRITER.writeValueAsString(keyValue), config.getRecordLength())
+                .getBytes(encoding);
+            if (bytes.length > config.getRecordLength()) {
+                throw payloadTooLarge(keyValue);
+            }
+
+            return bytes;
+        } catch (UnsupportedEncodingException e) {
+            throw new VsamRecordException("Unsupported encoding: " + encoding, e);
+        } catch (JsonProcessingException e) {
+            throw new VsamRecordException("Failure serializing KeyValue object to Json: " + encoding, e);
+        }
+    }
+
+    private KeyValue decodeJson(ByteBuffer buffer) throws VsamRecordException {
+        try {
+            return JSON_READER.readValue(decodeString(buffer, buffer.remaining()).trim());
+        } catch (JsonProcessingException e) {
+            throw new VsamRecordException("Failure deserializing the record value to KeyValue object", e);
+        }
+    }
+
+    private void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        encodeString(buffer, value);
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - Integer.BYTES);
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        return decodeString(buffer, length);
+    }
+
+    private void encodeString(ByteBuffer buffer, String value) {
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(value), buffer, true);
+        if (!result.isUnderflow()) {
+            throw new BufferOverflowException();
+        }
+        if (!encoder.flush(buffer).isUnderflow()) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private String decodeString(ByteBuffer buffer, int length) {
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        }
+        chars.clear();
+
+        decoder.reset();
+        decoder.decode(buffer, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+
+        buffer.limit(limit);
+        return chars.toString();
+    }
+}
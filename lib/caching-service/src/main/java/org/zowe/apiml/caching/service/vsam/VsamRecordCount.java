@@ -0,0 +1,77 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Amount of the records in the VSAM file kept up to date by the create and delete operations of this instance, so
+ * the file doesn't have to be read through to learn its size.
+ * <p>
+ * The records stored or removed by the other instances sharing the file aren't reflected, neither are the changes
+ * racing with the reconciliation. The count is therefore periodically replaced by the real amount of the records.
+ * Until the first count, or after the count was invalidated, the records are counted on the next use.
+ */
+@Slf4j
+public class VsamRecordCount {
+    private static final int UNKNOWN = -1;
+
+    private final AtomicInteger count = new AtomicInteger(UNKNOWN);
+
+    /**
+     * @param file Opened file used to count the records if the amount isn't known.
+     */
+    public int get(VsamFile file) {
+        int current = count.get();
+        if (current == UNKNOWN) {
+            current = file.countAllRecords();
+            if (!file.hasFailed()) {
+                count.compareAndSet(UNKNOWN, current);
+            }
+        }
+
+        return current;
+    }
+
+    public void increment() {
+        count.getAndUpdate(current -> current == UNKNOWN ? UNKNOWN : current + 1);
+    }
+
+    public void decrement() {
+        count.getAndUpdate(current -> current == UNKNOWN ? UNKNOWN : Math.max(0, current - 1));
+    }
+
+    /**
+     * Forget the amount, so the records are counted on the next use.
+     */
+    public void invalidate() {
+        count.set(UNKNOWN);
+    }
+
+    /**
+     * Replace the amount by the real amount of the records in the file.
+     */
+    public void reconcile(VsamFile file) {
+        int counted = file.countAllRecords();
+        if (file.hasFailed()) {
+            log.info("The records couldn't be counted, the amount will be counted on the next use");
+            invalidate();
+            return;
+        }
+
+        int previous = count.getAndSet(counted);
+        if (previous != UNKNOWN && previous != counted) {
+            log.debug("Record count reconciled from {} to {}", previous, counted);
+        }
+    }
+}
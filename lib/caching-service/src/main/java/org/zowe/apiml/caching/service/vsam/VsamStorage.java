@@ -12,31 +12,44 @@ package org.zowe.apiml.caching.service.vsam;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.retry.annotation.Retryable;
+import org.zowe.apiml.caching.config.GeneralConfig;
 import org.zowe.apiml.caching.model.KeyValue;
-import org.zowe.apiml.caching.service.EvictionStrategy;
-import org.zowe.apiml.caching.service.Messages;
-import org.zowe.apiml.caching.service.Storage;
-import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.*;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.message.log.ApimlLogger;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Class handles requests from controller and orchestrates operations on the low level VSAM File class
+ * <p>
+ * The records whose time to live elapsed are treated as missing. They stay in the data set until they are deleted,
+ * evicted or replaced by a newly created record with the same key. The update doesn't read the record first, so it
+ * stores the new version of the expired record too.
  */
 @Slf4j
 public class VsamStorage implements Storage {
 
     private VsamConfig vsamConfig;
     private EvictionStrategyProducer evictionStrategyProducer;
-    private VsamFileProducer producer = new VsamFileProducer();
+    private VsamFilePool pool;
     private ApimlLogger apimlLog;
+    private AdmissionFilter admissionFilter;
+    private final VsamRecordCount recordCount = new VsamRecordCount();
+    private ScheduledExecutorService reconciler;
+    private VsamWriter writer;
 
     public VsamStorage(VsamConfig vsamConfig, VsamInitializer vsamInitializer, ApimlLogger apimlLog, EvictionStrategyProducer evictionStrategyProducer) {
+        this(vsamConfig, vsamInitializer, new VsamFileProducer(), apimlLog, evictionStrategyProducer);
+    }
+
+    public VsamStorage(VsamConfig vsamConfig, VsamInitializer vsamInitializer, VsamFileProducer producer, ApimlLogger apimlLog, EvictionStrategyProducer evictionStrategyProducer) {
         log.info("Using VSAM storage for the cached data");
 
         this.apimlLog = apimlLog;
@@ -51,48 +64,133 @@ public class VsamStorage implements Storage {
         this.vsamConfig = vsamConfig;
         this.evictionStrategyProducer = evictionStrategyProducer;
 
+        GeneralConfig generalConfig = vsamConfig.getGeneralConfig();
+        this.admissionFilter = generalConfig.isAdmissionFilterEnabled()
+            ? new TinyLfuAdmissionFilter(generalConfig.getMaxDataSize()) : new DefaultAdmissionFilter();
+
         log.info("Using Vsam configuration: {}", vsamConfig);
         vsamInitializer.storageWarmup(vsamConfig, apimlLog);
+
+        this.pool = new VsamFilePool(vsamConfig, producer, apimlLog);
+        if (vsamConfig.isGroupCommit()) {
+            this.writer = new VsamWriter(pool, vsamConfig.getMaxBatchSize());
+        }
+
+        long reconcileInterval = vsamConfig.getCountReconcileInterval();
+        if (reconcileInterval > 0) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "caching-vsam-count-reconciler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reconciler.scheduleWithFixedDelay(this::reconcileCount, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+        pool.close();
     }
 
-    public VsamStorage(VsamConfig vsamConfig, VsamInitializer vsamInitializer, VsamFileProducer producer, ApimlLogger apimlLogger, EvictionStrategyProducer evictionStrategyProducer) {
-        this(vsamConfig, vsamInitializer, apimlLogger, evictionStrategyProducer);
+    /**
+     * Count the records in the file, so the changes done by the other instances are reflected in the record count.
+     */
+    void reconcileCount() {
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.READ)) {
+            recordCount.reconcile(lease.getFile());
+        } catch (RuntimeException e) {
+            log.warn("Counting of the records failed", e);
+        }
+    }
 
-        this.producer = producer;
+    /**
+     * Run the operation changing the records either via the writer or on the file leased by the calling thread.
+     */
+    private <T> T write(Function<VsamFile, T> operation) {
+        if (writer != null) {
+            return writer.write(operation);
+        }
+
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.WRITE)) {
+            return operation.apply(lease.getFile());
+        }
     }
 
     private EvictionStrategy provideStrategy(VsamFile file) {
-        return evictionStrategyProducer.evictionStrategy(file);
+        return evictionStrategyProducer.evictionStrategy(file, recordCount);
     }
 
     @Override
     @Retryable(value = {RetryableVsamException.class, IllegalStateException.class, UnsupportedOperationException.class})
     public KeyValue create(String serviceId, KeyValue toCreate) {
         log.info("Writing record: {}|{}|{}", serviceId, toCreate.getKey(), toCreate.getValue());
-        KeyValue result = null;
 
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.WRITE, apimlLog)) {
-            toCreate.setServiceId(serviceId);
-            VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, toCreate);
-            int currentSize = file.countAllRecords();
-            log.info("Current Size {}.", currentSize);
+        return write(file -> createRecord(file, serviceId, toCreate));
+    }
 
-            if (aboveThreshold(currentSize)) {
-                EvictionStrategy strategy = provideStrategy(file);
-                log.info("Evicting record using the {} strategy", vsamConfig.getGeneralConfig().getEvictionStrategy());
-                strategy.evict(toCreate.getKey());
+    /**
+     * All the records are created within one opened file.
+     */
+    @Override
+    public Map<String, StorageException> createAll(String serviceId, Collection<KeyValue> toCreate) {
+        log.info("Writing records: {}|{}|{}", serviceId, toCreate.size(), "-");
+
+        return write(file -> {
+            Map<String, StorageException> failures = new HashMap<>();
+            for (KeyValue keyValue : toCreate) {
+                try {
+                    createRecord(file, serviceId, keyValue);
+                } catch (StorageException e) {
+                    failures.put(keyValue.getKey(), e);
+                }
             }
-            Optional<VsamRecord> returned = file.create(vsamRec);
-            if (returned.isPresent()) {
-                result = returned.get().getKeyValue();
+
+            return failures;
+        });
+    }
+
+    private KeyValue createRecord(VsamFile file, String serviceId, KeyValue toCreate) {
+        toCreate.setServiceId(serviceId);
+        VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, toCreate);
+
+        int currentSize = recordCount.get(file);
+        log.info("Current Size {}.", currentSize);
+
+        admissionFilter.record(serviceId, toCreate.getKey());
+        if (aboveThreshold(currentSize)) {
+            EvictionStrategy strategy = provideStrategy(file);
+            Optional<EntryKey> victim = strategy.victim();
+            // The expired victim doesn't hold any space worth protecting by the admission filter.
+            if (victim.isPresent() && !strategy.isExpired(victim.get()) && !admissionFilter.admit(serviceId, toCreate.getKey(), victim.get())) {
+                log.info("The record {} is accessed less often than the record which would be evicted for it", toCreate.getKey());
+                throw new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus());
             }
+            log.info("Evicting record using the {} strategy", vsamConfig.getGeneralConfig().getEvictionStrategy());
+            strategy.evict(toCreate.getKey());
         }
 
-        if (result == null) {
-            throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey(), serviceId);
+        Optional<VsamRecord> returned = file.create(vsamRec);
+        if (returned.isPresent()) {
+            recordCount.increment();
+            return returned.get().getKeyValue();
         }
 
-        return result;
+        // The existing record is read only for the duplicate key, it's replaced if its time to live elapsed.
+        boolean expired = file.read(vsamRec).map(existing -> isExpired(existing, System.currentTimeMillis())).orElse(false);
+        if (expired) {
+            returned = file.update(vsamRec);
+            if (returned.isPresent()) {
+                return returned.get().getKeyValue();
+            }
+        }
+
+        throw new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), toCreate.getKey(), serviceId);
     }
 
     @Override
@@ -114,18 +212,24 @@ public class VsamStorage implements Storage {
         return currentSize >= vsamConfig.getGeneralConfig().getMaxDataSize();
     }
 
+    private static boolean isExpired(VsamRecord vsamRecord, long now) {
+        return vsamRecord.getKeyValue().isExpiredAt(now);
+    }
+
     @Override
     @Retryable(value = {RetryableVsamException.class})
     public KeyValue read(String serviceId, String key) {
         log.info("Reading Record: {}|{}|{}", serviceId, key, "-");
         KeyValue result = null;
+        admissionFilter.record(serviceId, key);
 
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.READ, apimlLog)) {
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.READ)) {
+            VsamFile file = lease.getFile();
 
             VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, new KeyValue(key, "", serviceId));
 
             Optional<VsamRecord> returned = file.read(vsamRec);
-            if (returned.isPresent()) {
+            if (returned.isPresent() && !isExpired(returned.get(), System.currentTimeMillis())) {
                 result = returned.get().getKeyValue();
             }
         }
@@ -137,21 +241,40 @@ public class VsamStorage implements Storage {
         return result;
     }
 
+    @Override
+    @Retryable(value = {RetryableVsamException.class})
+    public Map<String, KeyValue> readAll(String serviceId, Collection<String> keys) {
+        log.info("Reading Records: {}|{}|{}", serviceId, keys, "-");
+        Map<String, KeyValue> result = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.READ)) {
+            VsamFile file = lease.getFile();
+            for (String key : keys) {
+                admissionFilter.record(serviceId, key);
+
+                VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, new KeyValue(key, "", serviceId));
+                file.read(vsamRec)
+                    .filter(returned -> !isExpired(returned, now))
+                    .ifPresent(returned -> result.put(key, returned.getKeyValue()));
+            }
+        }
+
+        return result;
+    }
+
     @Override
     @Retryable(value = {RetryableVsamException.class, IllegalStateException.class, UnsupportedOperationException.class})
     public KeyValue update(String serviceId, KeyValue toUpdate) {
         log.info("Updating Record: {}|{}|{}", serviceId, toUpdate.getKey(), toUpdate.getValue());
-        KeyValue result = null;
+        admissionFilter.record(serviceId, toUpdate.getKey());
 
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.WRITE, apimlLog)) {
+        KeyValue result = write(file -> {
             toUpdate.setServiceId(serviceId);
             VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, toUpdate);
 
-            Optional<VsamRecord> returned = file.update(vsamRec);
-            if (returned.isPresent()) {
-                result = returned.get().getKeyValue();
-            }
-        }
+            return file.update(vsamRec).map(VsamRecord::getKeyValue).orElse(null);
+        });
 
         if (result == null) {
             throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toUpdate.getKey(), serviceId);
@@ -165,17 +288,18 @@ public class VsamStorage implements Storage {
     public KeyValue delete(String serviceId, String toDelete) {
 
         log.info("Deleting Record: {}|{}|{}", serviceId, toDelete, "-");
-        KeyValue result = null;
-
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.WRITE, apimlLog)) {
 
+        KeyValue result = write(file -> {
             VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, new KeyValue(toDelete, "", serviceId));
 
             Optional<VsamRecord> returned = file.delete(vsamRec);
-            if (returned.isPresent()) {
-                result = returned.get().getKeyValue();
+            if (!returned.isPresent()) {
+                return null;
             }
-        }
+            recordCount.decrement();
+            // The expired record is deleted all the same, but it's reported as missing.
+            return isExpired(returned.get(), System.currentTimeMillis()) ? null : returned.get().getKeyValue();
+        });
 
         if (result == null) {
             throw new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), toDelete, serviceId);
@@ -184,6 +308,47 @@ public class VsamStorage implements Storage {
         return result;
     }
 
+    @Override
+    public Map<String, StorageException> updateAll(String serviceId, Collection<KeyValue> toUpdate) {
+        log.info("Updating Records: {}|{}|{}", serviceId, toUpdate.size(), "-");
+
+        return write(file -> {
+            Map<String, StorageException> failures = new HashMap<>();
+            for (KeyValue keyValue : toUpdate) {
+                admissionFilter.record(serviceId, keyValue.getKey());
+                keyValue.setServiceId(serviceId);
+
+                if (!file.update(new VsamRecord(vsamConfig, serviceId, keyValue)).isPresent()) {
+                    failures.put(keyValue.getKey(), new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), keyValue.getKey(), serviceId));
+                }
+            }
+
+            return failures;
+        });
+    }
+
+    @Override
+    public Map<String, StorageException> deleteAll(String serviceId, Collection<String> toDelete) {
+        log.info("Deleting Records: {}|{}|{}", serviceId, toDelete, "-");
+
+        return write(file -> {
+            Map<String, StorageException> failures = new HashMap<>();
+            for (String key : toDelete) {
+                VsamRecord vsamRec = new VsamRecord(vsamConfig, serviceId, new KeyValue(key, "", serviceId));
+
+                Optional<VsamRecord> returned = file.delete(vsamRec);
+                if (returned.isPresent()) {
+                    recordCount.decrement();
+                }
+                if (!returned.isPresent() || isExpired(returned.get(), System.currentTimeMillis())) {
+                    failures.put(key, new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, serviceId));
+                }
+            }
+
+            return failures;
+        });
+    }
+
     @Override
     public Map<String, KeyValue> readForService(String serviceId) {
 
@@ -191,21 +356,48 @@ public class VsamStorage implements Storage {
         Map<String, KeyValue> result = new HashMap<>();
         List<VsamRecord> returned;
 
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.READ, apimlLog)) {
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.READ)) {
+            VsamFile file = lease.getFile();
             returned = file.readForService(serviceId);
         }
 
-        returned.forEach(vsamRecord -> result.put(vsamRecord.getKeyValue().getKey(), vsamRecord.getKeyValue()));
+        long now = System.currentTimeMillis();
+        returned.stream()
+            .filter(vsamRecord -> !isExpired(vsamRecord, now))
+            .forEach(vsamRecord -> result.put(vsamRecord.getKeyValue().getKey(), vsamRecord.getKeyValue()));
 
         return result;
     }
 
+    @Override
+    public ScanResult scanForService(String serviceId, String cursor, int limit) {
+        log.info("Reading Records: {}|{}|{}", serviceId, cursor, limit);
+
+        ScanResult page;
+        try (VsamFilePool.Lease lease = pool.lease(VsamConfig.VsamOptions.READ)) {
+            VsamFile file = lease.getFile();
+            page = file.readForService(serviceId, cursor, limit);
+        }
+
+        // The cursor is the VSAM key of the last record read, so the page can get shorter without losing the position.
+        long now = System.currentTimeMillis();
+        List<KeyValue> live = new ArrayList<>(page.getEntries().size());
+        page.getEntries().stream().filter(keyValue -> !keyValue.isExpiredAt(now)).forEach(live::add);
+        return new ScanResult(live, page.getCursor());
+    }
+
     @Override
     public void deleteForService(String serviceId) {
         log.info("Deleting All Records: {}|{}|{}", serviceId, "-", "-");
 
-        try (VsamFile file = producer.newVsamFile(vsamConfig, VsamConfig.VsamOptions.WRITE, apimlLog)) {
-            file.deleteForService(serviceId);
+        try {
+            write(file -> {
+                file.deleteForService(serviceId);
+                return null;
+            });
+        } finally {
+            // The amount of the removed records isn't known, so they are counted again by the next create.
+            recordCount.invalidate();
         }
     }
 
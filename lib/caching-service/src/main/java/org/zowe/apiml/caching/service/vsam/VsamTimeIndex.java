@@ -0,0 +1,160 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.zfile.ZFile;
+import org.zowe.apiml.zfile.ZFileConstants;
+import org.zowe.apiml.zfile.ZFileException;
+
+import java.io.Closeable;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Second keyed data set ordering the records of the cache by their creation time, so the oldest record is found by
+ * positioning to the first key instead of reading the whole cache.
+ * <p>
+ * The key of the index record is the creation time padded to {@value #TIMESTAMP_LENGTH} digits followed by the VSAM key
+ * of the cache record. The index record holds only the key.
+ * <p>
+ * The index is a hint only. The entries of the records removed or updated elsewhere stay in the index until they are
+ * found to point to a missing record or to a record created at another time, and they are removed then.
+ */
+@Slf4j
+public class VsamTimeIndex implements Closeable {
+    static final int TIMESTAMP_LENGTH = 19;
+
+    private final VsamConfig vsamConfig;
+    private final ZFile zfile;
+
+    public VsamTimeIndex(VsamConfig vsamConfig, ZFile zfile) {
+        this.vsamConfig = vsamConfig;
+        this.zfile = zfile;
+    }
+
+    /**
+     * @return Configuration of the index data set derived from the configuration of the cache data set.
+     */
+    public static VsamConfig indexConfig(VsamConfig config) {
+        VsamConfig indexConfig = new VsamConfig(config.getGeneralConfig());
+        indexConfig.setFileName(config.getTimeIndexName());
+        indexConfig.setKeyLength(TIMESTAMP_LENGTH + config.getKeyLength());
+        indexConfig.setRecordLength(TIMESTAMP_LENGTH + config.getKeyLength());
+        indexConfig.setEncoding(config.getEncoding());
+        indexConfig.setLocal(config.isLocal());
+        return indexConfig;
+    }
+
+    public void add(VsamRecord vsamRec) throws ZFileException, VsamRecordException {
+        byte[] entry = entryKey(vsamRec);
+        if (!zfile.locate(entry, ZFileConstants.LOCATE_KEY_EQ)) {
+            zfile.write(entry);
+        }
+    }
+
+    public void remove(VsamRecord vsamRec) throws ZFileException, VsamRecordException {
+        removeEntry(entryKey(vsamRec));
+    }
+
+    /**
+     * @return The entry with the earliest creation time or empty if the index is empty.
+     */
+    public Optional<Entry> oldest() throws ZFileException, UnsupportedEncodingException {
+        byte[] entry = new byte[vsamConfig.getKeyLength() + TIMESTAMP_LENGTH];
+        if (!zfile.locate(" ".getBytes(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), ZFileConstants.LOCATE_KEY_FIRST)
+            || zfile.read(entry) < 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Entry(entry));
+    }
+
+    public void remove(Entry entry) throws ZFileException {
+        removeEntry(entry.bytes);
+    }
+
+    /**
+     * Write an entry and remove it, so the freshly defined data set can be opened for the following operations.
+     */
+    public void warmUp() throws ZFileException, VsamRecordException {
+        byte[] entry = entryKey(0, new VsamKey(vsamConfig).getKey("delete", "me"));
+        zfile.write(entry);
+        removeEntry(entry);
+    }
+
+    @Override
+    public void close() {
+        try {
+            zfile.close();
+        } catch (ZFileException e) {
+            log.info("Closing of the time index failed: {}", e.toString());
+        }
+    }
+
+    private void removeEntry(byte[] entry) throws ZFileException {
+        if (zfile.locate(entry, ZFileConstants.LOCATE_KEY_EQ)) {
+            zfile.read(new byte[entry.length]); // has to be read before delete
+            zfile.delrec();
+        }
+    }
+
+    private byte[] entryKey(VsamRecord vsamRec) throws VsamRecordException {
+        return entryKey(createdAt(vsamRec), new VsamKey(vsamConfig).getKey(vsamRec.getServiceId(), vsamRec.getKeyValue()));
+    }
+
+    private byte[] entryKey(long created, String vsamKey) throws VsamRecordException {
+        try {
+            return (String.format("%0" + TIMESTAMP_LENGTH + "d", created) + vsamKey).getBytes(vsamConfig.getEncoding());
+        } catch (UnsupportedEncodingException e) {
+            throw new VsamRecordException("Unsupported encoding: " + vsamConfig.getEncoding(), e);
+        }
+    }
+
+    static long createdAt(VsamRecord vsamRec) {
+        try {
+            return Math.max(0, Long.parseLong(vsamRec.getKeyValue().getCreated()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Entry of the index pointing to the cache record.
+     */
+    public class Entry {
+        private final byte[] bytes;
+
+        private Entry(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return The creation time of the cache record or -1 if the entry is damaged.
+         */
+        public long getCreated() throws UnsupportedEncodingException {
+            try {
+                return Long.parseLong(new String(bytes, 0, TIMESTAMP_LENGTH, vsamConfig.getEncoding()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * @return The VSAM key of the cache record.
+         */
+        public byte[] getKey() {
+            return Arrays.copyOfRange(bytes, TIMESTAMP_LENGTH, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import lombok.extern.slf4j.Slf4j;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Applies the changes of the records requested by all the threads on a single thread, so the writing threads don't
+ * compete for the files and don't retry the operations failed due to the concurrent access.
+ * <p>
+ * The operations queued meanwhile are taken together, up to maxBatchSize of them, and applied one after another on
+ * one leased file. Every caller waits for its own operation and gets its result or its exception. The file which
+ * failed is returned to the pool and the rest of the batch continues on a new one.
+ */
+@Slf4j
+public class VsamWriter implements Closeable {
+    private static final long POLL_TIMEOUT = 1000;
+    private static final long CLOSE_TIMEOUT = 30000;
+
+    private final VsamFilePool pool;
+    private final int maxBatchSize;
+    private final BlockingQueue<Operation<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public VsamWriter(VsamFilePool pool, int maxBatchSize) {
+        this.pool = pool;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+
+        thread = new Thread(this::run, "caching-vsam-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue the operation and wait until it's applied.
+     *
+     * @return The result of the operation.
+     */
+    public <T> T write(Function<VsamFile, T> function) {
+        Operation<T> operation = new Operation<>(function);
+        queue.add(operation);
+        // The operation queued after the writer stopped is never taken.
+        if (closed && queue.remove(operation)) {
+            throw new IllegalStateException("The VSAM writer is closed");
+        }
+
+        try {
+            return operation.getResult().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for VSAM write", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Apply the queued operations and stop the writer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Operation<?> operation;
+        while ((operation = queue.poll()) != null) {
+            operation.fail(new IllegalStateException("The VSAM writer is closed"));
+        }
+    }
+
+    private void run() {
+        List<Operation<?>> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            Operation<?> first;
+            try {
+                first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+            log.debug("Writing batch of {} operations", batch.size());
+
+            apply(batch);
+            batch.clear();
+        }
+    }
+
+    void apply(List<Operation<?>> batch) {
+        VsamFilePool.Lease lease = null;
+        try {
+            for (Operation<?> operation : batch) {
+                if (lease == null) {
+                    lease = pool.lease(VsamConfig.VsamOptions.WRITE);
+                }
+
+                operation.apply(lease.getFile());
+
+                if (lease.getFile().hasFailed()) {
+                    lease.close();
+                    lease = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            // The file couldn't be leased, the operations not applied yet get the failure.
+            batch.forEach(operation -> operation.fail(e));
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+        }
+    }
+
+    static class Operation<T> {
+        private final Function<VsamFile, T> function;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Operation(Function<VsamFile, T> function) {
+            this.function = function;
+        }
+
+        CompletableFuture<T> getResult() {
+            return result;
+        }
+
+        void apply(VsamFile file) {
+            try {
+                result.complete(function.apply(file));
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void fail(Throwable failure) {
+            result.completeExceptionally(failure);
+        }
+    }
+}
@@ -32,6 +32,10 @@ public class ZFileProducer {
         if (!REGEX_CORRECT_FILENAME.matcher(vsamConfig.getFileName()).find()) {
             throw new IllegalStateException("VsamFile does not exist");
         }
+        if (vsamConfig.isLocal()) {
+            return openLocalZfile();
+        }
+
         String calledMethod = "getMessage";
         try {
             return ClassOrDefaultProxyUtils.createProxyByConstructor(ZFile.class, "com.ibm.jzos.ZFile",
@@ -57,4 +61,17 @@ public class ZFileProducer {
             throw new VsamRecordException("Failed opening of file", e.getTargetException());
         }
     }
+
+    /**
+     * Open the data set emulated in the local file, whose path is quoted in the file name, e.g. //'/tmp/cache.ksds'.
+     */
+    private ZFile openLocalZfile() throws VsamRecordException {
+        String fileName = vsamConfig.getFileName();
+        String path = fileName.substring(3, fileName.lastIndexOf('\''));
+        try {
+            return new LocalZFile(path, options.getOptionsString(), vsamConfig.getKeyLength(), vsamConfig.getRecordLength());
+        } catch (ZFileException e) {
+            throw new VsamRecordException("Failed opening of file", e);
+        }
+    }
 }
@@ -37,6 +37,36 @@ public class VsamConfig {
     private int recordLength;
     @Value("${caching.storage.vsam.encoding:" + ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE + "}")
     private String encoding;
+    @Value("${caching.storage.vsam.poolSize:4}")
+    private int poolSize = 4;
+    @Value("${caching.storage.vsam.maxIdleTime:30000}")
+    private long maxIdleTime = 30000;
+    @Value("${caching.storage.vsam.maxAge:60000}")
+    private long maxAge = 60000;
+    @Value("${caching.storage.vsam.countReconcileInterval:60000}")
+    private long countReconcileInterval = 60000;
+    @Value("${caching.storage.vsam.recordFormat:binary}")
+    private String recordFormat = "binary";
+    @Value("${caching.storage.vsam.local:false}")
+    private boolean local;
+    @Value("${caching.storage.vsam.timeIndexName:}")
+    private String timeIndexName;
+    @Value("${caching.storage.vsam.groupCommit:false}")
+    private boolean groupCommit;
+    @Value("${caching.storage.vsam.maxBatchSize:64}")
+    private int maxBatchSize = 64;
+    @Value("${caching.storage.vsam.nearCache.enabled:false}")
+    private boolean nearCacheEnabled;
+    @Value("${caching.storage.vsam.nearCache.size:1000}")
+    private int nearCacheSize = 1000;
+    @Value("${caching.storage.vsam.nearCache.expiration:5000}")
+    private long nearCacheExpiration = 5000;
+    @Value("${caching.storage.vsam.nearCache.durability:sync}")
+    private String nearCacheDurability = "sync";
+    @Value("${caching.storage.vsam.nearCache.flushInterval:200}")
+    private long nearCacheFlushInterval = 200;
+    @Value("${caching.storage.vsam.nearCache.queueSize:1000}")
+    private int nearCacheQueueSize = 1000;
 
     public enum VsamOptions {
         READ("rb,type=record"),
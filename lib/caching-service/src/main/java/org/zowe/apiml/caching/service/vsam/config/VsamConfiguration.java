@@ -10,13 +10,18 @@
 
 package org.zowe.apiml.caching.service.vsam.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.zowe.apiml.caching.service.Storage;
 import org.zowe.apiml.caching.service.vsam.EvictionStrategyProducer;
 import org.zowe.apiml.caching.service.vsam.VsamInitializer;
+import org.zowe.apiml.caching.service.vsam.VsamNearCache;
 import org.zowe.apiml.caching.service.vsam.VsamStorage;
 import org.zowe.apiml.message.core.MessageService;
 import org.zowe.apiml.message.log.ApimlLogger;
@@ -29,7 +34,20 @@ public class VsamConfiguration {
 
     @ConditionalOnProperty(name = "caching.storage.mode", havingValue = "vsam")
     @Bean
-    public Storage vsam(MessageService messageService, EvictionStrategyProducer evictionStrategyProducer) {
+    public VsamStorage vsam(MessageService messageService, EvictionStrategyProducer evictionStrategyProducer) {
         return new VsamStorage(vsamConfig, vsamInitializer, ApimlLogger.of(VsamStorage.class, messageService), evictionStrategyProducer);
     }
+
+    /**
+     * The near cache gets the storage bean, so its calls of the storage go through the Spring proxy and are retried
+     * the same way as without the near cache.
+     */
+    @ConditionalOnExpression("'${caching.storage.mode:}' == 'vsam' && ${caching.storage.vsam.nearCache.enabled:false}")
+    @Primary
+    @Bean
+    public Storage vsamNearCache(VsamStorage vsam, ObjectProvider<MeterRegistry> meterRegistry) {
+        VsamNearCache nearCache = new VsamNearCache(vsam, vsamConfig);
+        meterRegistry.ifAvailable(nearCache::bindTo);
+        return nearCache;
+    }
 }
@@ -10,6 +10,8 @@
 
 package org.zowe.apiml.caching.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -18,7 +20,15 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.BatchOperation;
+import org.zowe.apiml.caching.model.BatchRequest;
+import org.zowe.apiml.caching.model.BatchResponse;
+import org.zowe.apiml.caching.model.BatchResult;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.AsyncStorage;
 import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.Storage;
 import org.zowe.apiml.caching.service.StorageException;
@@ -27,13 +37,21 @@ import org.zowe.apiml.message.core.MessageService;
 import org.zowe.apiml.message.yaml.YamlMessageService;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 class CachingControllerTest {
@@ -47,6 +65,7 @@ class CachingControllerTest {
     private HttpServletRequest mockRequest;
     private Storage mockStorage;
     private final MessageService messageService = new YamlMessageService("/caching-log-messages.yml");
+    private final GeneralConfig generalConfig = new GeneralConfig();
     private CachingController underTest;
 
     @BeforeEach
@@ -55,7 +74,7 @@ class CachingControllerTest {
         when(mockRequest.getHeader("X-Certificate-DistinguishedName")).thenReturn(SERVICE_ID);
         when(mockRequest.getHeader("X-CS-Service-ID")).thenReturn(null);
         mockStorage = mock(Storage.class);
-        underTest = new CachingController(mockStorage, messageService);
+        underTest = new CachingController(mockStorage, messageService, generalConfig);
     }
 
     @Nested
@@ -82,6 +101,61 @@ class CachingControllerTest {
         }
     }
 
+    @Nested
+    class WhenStreamingAllKeysForService {
+        @Test
+        void givenLimit_thenReturnOnePageWithCursor() throws IOException {
+            when(mockStorage.scanForService(SERVICE_ID, null, 1))
+                .thenReturn(new ScanResult(Collections.singletonList(KEY_VALUE), KEY));
+
+            ResponseEntity<StreamingResponseBody> response = underTest.streamAllValues(null, 1, mockRequest);
+            assertThat(response.getStatusCode(), is(HttpStatus.OK));
+            assertThat(response.getHeaders().getFirst(CachingController.CURSOR_HEADER), is(KEY));
+
+            String[] lines = write(response).split("\n");
+            assertThat(lines.length, is(1));
+            assertThat(new ObjectMapper().readValue(lines[0], KeyValue.class), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenNoLimit_thenAllPagesAreWritten() throws IOException {
+            KeyValue second = new KeyValue("key2", VALUE);
+            when(mockStorage.scanForService(eq(SERVICE_ID), isNull(), anyInt()))
+                .thenReturn(new ScanResult(Collections.singletonList(KEY_VALUE), KEY));
+            when(mockStorage.scanForService(eq(SERVICE_ID), eq(KEY), anyInt()))
+                .thenReturn(new ScanResult(Collections.singletonList(second), null));
+
+            ResponseEntity<StreamingResponseBody> response = underTest.streamAllValues(null, null, mockRequest);
+            assertThat(response.getHeaders().containsKey(CachingController.CURSOR_HEADER), is(false));
+
+            String[] lines = write(response).split("\n");
+            assertThat(lines.length, is(2));
+            assertThat(new ObjectMapper().readValue(lines[1], KeyValue.class), is(second));
+        }
+
+        @Test
+        void givenNonPositiveLimit_thenResponseBadRequest() {
+            ResponseEntity<StreamingResponseBody> response = underTest.streamAllValues(null, 0, mockRequest);
+
+            assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+            verify(mockStorage, never()).scanForService(any(), any(), anyInt());
+        }
+
+        @Test
+        void givenStorageThrowsInternalException_thenProperlyReturnError() {
+            when(mockStorage.scanForService(any(), any(), anyInt())).thenThrow(new RuntimeException());
+
+            ResponseEntity<StreamingResponseBody> response = underTest.streamAllValues(null, null, mockRequest);
+            assertThat(response.getStatusCode(), is(HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+
+        private String write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            response.getBody().writeTo(out);
+            return out.toString("UTF-8");
+        }
+    }
+
     @Nested
     class WhenDeletingAllKeysForService {
         @Test
@@ -107,7 +181,7 @@ class CachingControllerTest {
         void givenStorageReturnsValidValue_thenReturnProperValue() {
             when(mockStorage.read(SERVICE_ID, KEY)).thenReturn(KEY_VALUE);
 
-            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest);
+            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.OK));
 
             KeyValue body = (KeyValue) response.getBody();
@@ -119,7 +193,7 @@ class CachingControllerTest {
         void givenNoKey_thenResponseBadRequest() {
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyNotProvided", SERVICE_ID).mapToView();
 
-            ResponseEntity<?> response = underTest.getValue(null, mockRequest);
+            ResponseEntity<?> response = underTest.getValue(null, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
             assertThat(response.getBody(), is(expectedBody));
         }
@@ -129,7 +203,7 @@ class CachingControllerTest {
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyNotInCache", KEY, SERVICE_ID).mapToView();
             when(mockStorage.read(any(), any())).thenThrow(new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), new Exception("the cause"), KEY, SERVICE_ID));
 
-            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest);
+            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.NOT_FOUND));
             assertThat(response.getBody(), is(expectedBody));
         }
@@ -138,7 +212,7 @@ class CachingControllerTest {
         void givenErrorReadingStorage_thenResponseInternalError() {
             when(mockStorage.read(any(), any())).thenThrow(new RuntimeException("error"));
 
-            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest);
+            ResponseEntity<?> response = underTest.getValue(KEY, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.INTERNAL_SERVER_ERROR));
         }
     }
@@ -149,7 +223,7 @@ class CachingControllerTest {
         void givenStorage_thenResponseCreated() {
             when(mockStorage.create(SERVICE_ID, KEY_VALUE)).thenReturn(KEY_VALUE);
 
-            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest);
+            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.CREATED));
             assertThat(response.getBody(), is(nullValue()));
         }
@@ -159,7 +233,7 @@ class CachingControllerTest {
             when(mockStorage.create(SERVICE_ID, KEY_VALUE)).thenThrow(new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), KEY));
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyCollision", KEY).mapToView();
 
-            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest);
+            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.CONFLICT));
             assertThat(response.getBody(), is(expectedBody));
         }
@@ -168,7 +242,7 @@ class CachingControllerTest {
         void givenStorageWithError_thenResponseInternalError() {
             when(mockStorage.create(SERVICE_ID, KEY_VALUE)).thenThrow(new RuntimeException("error"));
 
-            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest);
+            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.INTERNAL_SERVER_ERROR));
         }
 
@@ -180,7 +254,7 @@ class CachingControllerTest {
         void givenStorageWithKey_thenResponseNoContent() {
             when(mockStorage.update(SERVICE_ID, KEY_VALUE)).thenReturn(KEY_VALUE);
 
-            ResponseEntity<?> response = underTest.update(KEY_VALUE, mockRequest);
+            ResponseEntity<?> response = underTest.update(KEY_VALUE, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.NO_CONTENT));
             assertThat(response.getBody(), is(nullValue()));
         }
@@ -190,7 +264,7 @@ class CachingControllerTest {
             when(mockStorage.update(SERVICE_ID, KEY_VALUE)).thenThrow(new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), KEY, SERVICE_ID));
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyNotInCache", KEY, SERVICE_ID).mapToView();
 
-            ResponseEntity<?> response = underTest.update(KEY_VALUE, mockRequest);
+            ResponseEntity<?> response = underTest.update(KEY_VALUE, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.NOT_FOUND));
             assertThat(response.getBody(), is(expectedBody));
         }
@@ -202,7 +276,7 @@ class CachingControllerTest {
         void givenStorageWithKey_thenResponseNoContent() {
             when(mockStorage.delete(any(), any())).thenReturn(KEY_VALUE);
 
-            ResponseEntity<?> response = underTest.delete(KEY, mockRequest);
+            ResponseEntity<?> response = underTest.delete(KEY, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.NO_CONTENT));
             assertThat(response.getBody(), is(KEY_VALUE));
         }
@@ -211,7 +285,7 @@ class CachingControllerTest {
         void givenNoKey_thenResponseBadRequest() {
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyNotProvided").mapToView();
 
-            ResponseEntity<?> response = underTest.delete(null, mockRequest);
+            ResponseEntity<?> response = underTest.delete(null, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
             assertThat(response.getBody(), is(expectedBody));
         }
@@ -221,18 +295,180 @@ class CachingControllerTest {
             ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.keyNotInCache", KEY, SERVICE_ID).mapToView();
             when(mockStorage.delete(any(), any())).thenThrow(new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), KEY, SERVICE_ID));
 
-            ResponseEntity<?> response = underTest.delete(KEY, mockRequest);
+            ResponseEntity<?> response = underTest.delete(KEY, mockRequest).join();
             assertThat(response.getStatusCode(), is(HttpStatus.NOT_FOUND));
             assertThat(response.getBody(), is(expectedBody));
         }
     }
 
+    @Nested
+    class WhenStorageIsAsynchronous {
+        private AsyncStorage asyncStorage;
+
+        @BeforeEach
+        void setUp() {
+            mockStorage = mock(Storage.class, withSettings().extraInterfaces(AsyncStorage.class));
+            asyncStorage = (AsyncStorage) mockStorage;
+            underTest = new CachingController(mockStorage, messageService, generalConfig);
+        }
+
+        @Test
+        void asynchronousEndpointsAreNotHystrixCommands() {
+            // Hystrix runs the methods returning a Future as asynchronous commands, which have to return AsyncResult.
+            for (Method method : CachingController.class.getMethods()) {
+                if (CompletableFuture.class.equals(method.getReturnType())) {
+                    assertThat(method.getName(), method.isAnnotationPresent(HystrixCommand.class), is(false));
+                }
+            }
+        }
+
+        @Test
+        void givenPendingRead_thenResponseIsReturnedOnceTheStorageCompletes() {
+            CompletableFuture<KeyValue> read = new CompletableFuture<>();
+            when(asyncStorage.readAsync(SERVICE_ID, KEY)).thenReturn(read);
+
+            CompletableFuture<ResponseEntity<Object>> response = underTest.getValue(KEY, mockRequest);
+            assertThat(response.isDone(), is(false));
+
+            read.complete(KEY_VALUE);
+            assertThat(response.join().getStatusCode(), is(HttpStatus.OK));
+            assertThat(response.join().getBody(), is(KEY_VALUE));
+            verify(mockStorage, never()).read(any(), any());
+        }
+
+        @Test
+        void givenFailedCreate_thenResponseHasTheStatusOfTheFailure() {
+            CompletableFuture<KeyValue> created = new CompletableFuture<>();
+            created.completeExceptionally(new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), KEY));
+            when(asyncStorage.createAsync(SERVICE_ID, KEY_VALUE)).thenReturn(created);
+
+            ResponseEntity<?> response = underTest.createKey(KEY_VALUE, mockRequest).join();
+            assertThat(response.getStatusCode(), is(HttpStatus.CONFLICT));
+        }
+
+        @Test
+        void givenUnexpectedFailure_thenResponseInternalError() {
+            CompletableFuture<KeyValue> deleted = new CompletableFuture<>();
+            deleted.completeExceptionally(new CompletionException(new RuntimeException("error")));
+            when(asyncStorage.deleteAsync(SERVICE_ID, KEY)).thenReturn(deleted);
+
+            ResponseEntity<?> response = underTest.delete(KEY, mockRequest).join();
+            assertThat(response.getStatusCode(), is(HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    @Nested
+    class WhenProcessingBatch {
+        @Test
+        void givenOperationsOfVariousTypes_thenEveryOperationHasItsStatus() {
+            Map<String, KeyValue> found = new HashMap<>();
+            found.put(KEY, KEY_VALUE);
+            when(mockStorage.readAll(SERVICE_ID, Arrays.asList(KEY, "missing"))).thenReturn(found);
+            when(mockStorage.createAll(eq(SERVICE_ID), any())).thenReturn(Collections.singletonMap("existing",
+                new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), "existing", SERVICE_ID)));
+
+            BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+                new BatchOperation(BatchOperation.Type.READ, KEY, null, null),
+                new BatchOperation(BatchOperation.Type.READ, "missing", null, null),
+                new BatchOperation(BatchOperation.Type.CREATE, "new", VALUE, null),
+                new BatchOperation(BatchOperation.Type.CREATE, "existing", VALUE, null)
+            ));
+
+            ResponseEntity<?> response = underTest.batch(batchRequest, mockRequest);
+            assertThat(response.getStatusCode(), is(HttpStatus.OK));
+
+            List<BatchResult> results = ((BatchResponse) response.getBody()).getResults();
+            assertThat(results.size(), is(4));
+            assertThat(results.get(0).getStatus(), is(HttpStatus.OK.value()));
+            assertThat(results.get(0).getEntry(), is(KEY_VALUE));
+            assertThat(results.get(1).getStatus(), is(HttpStatus.NOT_FOUND.value()));
+            assertThat(results.get(2).getStatus(), is(HttpStatus.CREATED.value()));
+            assertThat(results.get(3).getStatus(), is(HttpStatus.CONFLICT.value()));
+        }
+
+        @Test
+        void givenRepeatedKey_thenOperationsArePassedToStorageSeparately() {
+            BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+                new BatchOperation(BatchOperation.Type.DELETE, KEY, null, null),
+                new BatchOperation(BatchOperation.Type.DELETE, KEY, null, null)
+            ));
+            when(mockStorage.deleteAll(SERVICE_ID, Collections.singletonList(KEY)))
+                .thenReturn(Collections.emptyMap())
+                .thenReturn(Collections.singletonMap(KEY, new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(),
+                    Messages.KEY_NOT_IN_CACHE.getStatus(), KEY, SERVICE_ID)));
+
+            ResponseEntity<?> response = underTest.batch(batchRequest, mockRequest);
+
+            List<BatchResult> results = ((BatchResponse) response.getBody()).getResults();
+            assertThat(results.get(0).getStatus(), is(HttpStatus.NO_CONTENT.value()));
+            assertThat(results.get(1).getStatus(), is(HttpStatus.NOT_FOUND.value()));
+            verify(mockStorage, times(2)).deleteAll(SERVICE_ID, Collections.singletonList(KEY));
+        }
+
+        @Test
+        void givenInvalidOperation_thenOnlyItFails() {
+            BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+                new BatchOperation(BatchOperation.Type.UPDATE, KEY, null, null),
+                new BatchOperation(BatchOperation.Type.UPDATE, "key2", VALUE, null)
+            ));
+            when(mockStorage.updateAll(eq(SERVICE_ID), any())).thenReturn(Collections.emptyMap());
+
+            ResponseEntity<?> response = underTest.batch(batchRequest, mockRequest);
+
+            List<BatchResult> results = ((BatchResponse) response.getBody()).getResults();
+            assertThat(results.get(0).getStatus(), is(HttpStatus.BAD_REQUEST.value()));
+            assertThat(results.get(1).getStatus(), is(HttpStatus.NO_CONTENT.value()));
+        }
+
+        @Test
+        void givenStorageFailsTheRead_thenReadsGetTheFailure() {
+            when(mockStorage.readAll(SERVICE_ID, Arrays.asList(KEY, "key2"))).thenThrow(
+                new StorageException(Messages.INSUFFICIENT_STORAGE.getKey(), Messages.INSUFFICIENT_STORAGE.getStatus()));
+            when(mockStorage.deleteAll(eq(SERVICE_ID), any())).thenReturn(Collections.emptyMap());
+
+            BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+                new BatchOperation(BatchOperation.Type.READ, KEY, null, null),
+                new BatchOperation(BatchOperation.Type.READ, "key2", null, null),
+                new BatchOperation(BatchOperation.Type.DELETE, KEY, null, null)
+            ));
+
+            ResponseEntity<?> response = underTest.batch(batchRequest, mockRequest);
+            assertThat(response.getStatusCode(), is(HttpStatus.OK));
+
+            List<BatchResult> results = ((BatchResponse) response.getBody()).getResults();
+            assertThat(results.get(0).getStatus(), is(Messages.INSUFFICIENT_STORAGE.getStatus().value()));
+            assertThat(results.get(1).getStatus(), is(Messages.INSUFFICIENT_STORAGE.getStatus().value()));
+            assertThat(results.get(2).getStatus(), is(HttpStatus.NO_CONTENT.value()));
+        }
+
+        @Test
+        void givenTooManyOperations_thenResponseBadRequest() {
+            generalConfig.setMaxBatchSize(1);
+            BatchRequest batchRequest = new BatchRequest(Arrays.asList(
+                new BatchOperation(BatchOperation.Type.READ, KEY, null, null),
+                new BatchOperation(BatchOperation.Type.READ, "key2", null, null)
+            ));
+
+            ResponseEntity<?> response = underTest.batch(batchRequest, mockRequest);
+
+            assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+            verify(mockStorage, never()).readAll(any(), any());
+        }
+
+        @Test
+        void givenNoOperations_thenResponseBadRequest() {
+            ResponseEntity<?> response = underTest.batch(new BatchRequest(Collections.emptyList()), mockRequest);
+
+            assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+        }
+    }
+
     @Test
     void givenNoPayload_whenValidatePayload_thenResponseBadRequest() {
         ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.invalidPayload",
             null, "No KeyValue provided in the payload").mapToView();
 
-        ResponseEntity<?> response = underTest.createKey(null, mockRequest);
+        ResponseEntity<?> response = underTest.createKey(null, mockRequest).join();
         assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
         assertThat(response.getBody(), is(expectedBody));
     }
@@ -242,7 +478,7 @@ class CachingControllerTest {
     void givenVariousKeyValue_whenValidatePayload_thenResponseAccordingly(String key, String value, String errMessage, HttpStatus statusCode) {
         KeyValue keyValue = new KeyValue(key, value);
 
-        ResponseEntity<?> response = underTest.createKey(keyValue, mockRequest);
+        ResponseEntity<?> response = underTest.createKey(keyValue, mockRequest).join();
         assertThat(response.getStatusCode(), is(statusCode));
 
         if (errMessage != null) {
@@ -260,6 +496,19 @@ class CachingControllerTest {
         );
     }
 
+    @Test
+    void givenNonPositiveTimeToLive_whenValidatePayload_thenResponseBadRequest() {
+        KeyValue keyValue = new KeyValue("key", "value");
+        keyValue.setTtl(0L);
+
+        ResponseEntity<?> response = underTest.createKey(keyValue, mockRequest).join();
+        assertThat(response.getStatusCode(), is(HttpStatus.BAD_REQUEST));
+
+        ApiMessageView expectedBody = messageService.createMessage("org.zowe.apiml.cache.invalidPayload",
+            keyValue, "The time to live has to be a positive amount of milliseconds").mapToView();
+        assertThat(response.getBody(), is(expectedBody));
+    }
+
     @Test
     void givenNoCertificateInformationInHeader_whenGetAllValues_thenReturnUnauthorized() {
         when(mockStorage.read(SERVICE_ID, KEY)).thenReturn(KEY_VALUE);
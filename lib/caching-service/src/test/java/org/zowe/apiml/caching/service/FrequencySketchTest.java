@@ -0,0 +1,64 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+class FrequencySketchTest {
+    private FrequencySketch underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new FrequencySketch(16);
+    }
+
+    @Test
+    void givenNoIncrement_thenFrequencyIsZero() {
+        assertThat(underTest.frequency("key".hashCode()), is(0));
+    }
+
+    @Test
+    void givenIncrements_thenTheyAreCounted() {
+        for (int i = 0; i < 5; i++) {
+            underTest.increment("hot".hashCode());
+        }
+        underTest.increment("cold".hashCode());
+
+        assertThat(underTest.frequency("hot".hashCode()), is(5));
+        assertThat(underTest.frequency("cold".hashCode()), is(1));
+    }
+
+    @Test
+    void givenManyIncrements_thenFrequencyStopsAtMaximum() {
+        for (int i = 0; i < 100; i++) {
+            underTest.increment("hot".hashCode());
+        }
+
+        assertThat(underTest.frequency("hot".hashCode()), is(15));
+    }
+
+    @Test
+    void givenSampleSizeIsReached_thenFrequenciesAreHalved() {
+        for (int i = 0; i < 15; i++) {
+            underTest.increment("hot".hashCode());
+        }
+        for (int i = 0; i < 200; i++) {
+            underTest.increment(("key" + i).hashCode());
+        }
+
+        assertThat(underTest.frequency("hot".hashCode()), is(lessThan(15)));
+    }
+}
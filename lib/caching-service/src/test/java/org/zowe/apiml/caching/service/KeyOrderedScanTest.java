@@ -0,0 +1,76 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.service;
+
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class KeyOrderedScanTest {
+    private final List<KeyValue> entries = Arrays.asList(
+        new KeyValue("key-3", "value"),
+        new KeyValue("key-1", "value"),
+        new KeyValue("key-4", "value"),
+        new KeyValue("key-2", "value")
+    );
+
+    @Test
+    void givenMoreEntriesThanLimit_thenFirstPageIsReturnedWithCursor() {
+        ScanResult result = KeyOrderedScan.page(entries.iterator(), null, 2);
+
+        assertThat(keys(result), contains("key-1", "key-2"));
+        assertThat(result.getCursor(), is("key-2"));
+    }
+
+    @Test
+    void givenCursor_thenEntriesAfterItAreReturned() {
+        ScanResult result = KeyOrderedScan.page(entries.iterator(), "key-2", 2);
+
+        assertThat(keys(result), contains("key-3", "key-4"));
+        assertThat(result.getCursor(), is(nullValue()));
+    }
+
+    @Test
+    void givenPagesAreFollowed_thenEveryEntryIsReturnedOnce() {
+        List<String> scanned = new ArrayList<>();
+        String cursor = null;
+        do {
+            ScanResult result = KeyOrderedScan.page(entries.iterator(), cursor, 3);
+            scanned.addAll(keys(result));
+            cursor = result.getCursor();
+        } while (cursor != null);
+
+        assertThat(scanned, contains("key-1", "key-2", "key-3", "key-4"));
+    }
+
+    @Test
+    void givenNoEntries_thenEmptyPageWithoutCursorIsReturned() {
+        ScanResult result = KeyOrderedScan.page(Collections.<KeyValue>emptyList().iterator(), null, 2);
+
+        assertThat(result.getEntries(), is(empty()));
+        assertThat(result.getCursor(), is(nullValue()));
+    }
+
+    private List<String> keys(ScanResult result) {
+        List<String> keys = new ArrayList<>();
+        result.getEntries().forEach(entry -> keys.add(entry.getKey()));
+        return keys;
+    }
+}
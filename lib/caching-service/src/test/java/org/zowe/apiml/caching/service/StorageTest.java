@@ -0,0 +1,61 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+
+package org.zowe.apiml.caching.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class StorageTest {
+    private static final String SERVICE_ID = "my-service-id";
+    private static final KeyValue KEY_VALUE = new KeyValue("key", "value");
+
+    private Storage underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = mock(Storage.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+        doReturn(KEY_VALUE).when(underTest).read(SERVICE_ID, "key");
+    }
+
+    @Nested
+    class WhenReadingAll {
+        @Test
+        void givenMissingKey_thenItIsLeftOut() {
+            doThrow(new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), "missing", SERVICE_ID))
+                .when(underTest).read(SERVICE_ID, "missing");
+
+            Map<String, KeyValue> result = underTest.readAll(SERVICE_ID, Arrays.asList("key", "missing"));
+
+            assertThat(result, is(Collections.singletonMap("key", KEY_VALUE)));
+        }
+
+        @Test
+        void givenOtherFailure_thenItIsThrown() {
+            doThrow(new StorageException(Messages.INTERNAL_SERVER_ERROR.getKey(), Messages.INTERNAL_SERVER_ERROR.getStatus()))
+                .when(underTest).read(SERVICE_ID, "broken");
+
+            StorageException e = assertThrows(StorageException.class, () -> underTest.readAll(SERVICE_ID, Arrays.asList("key", "broken")));
+            assertThat(e.getKey(), is(Messages.INTERNAL_SERVER_ERROR.getKey()));
+        }
+    }
+}
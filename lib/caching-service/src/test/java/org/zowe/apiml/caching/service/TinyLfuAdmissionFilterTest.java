@@ -0,0 +1,63 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class TinyLfuAdmissionFilterTest {
+    private static final String SERVICE_ID = "test-service";
+
+    private TinyLfuAdmissionFilter underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new TinyLfuAdmissionFilter(100);
+    }
+
+    @Test
+    void givenCandidateIsMoreFrequent_thenItIsAdmitted() {
+        underTest.record(SERVICE_ID, "candidate");
+        underTest.record(SERVICE_ID, "candidate");
+        underTest.record(SERVICE_ID, "victim");
+
+        assertThat(underTest.admit(SERVICE_ID, "candidate", new EntryKey(SERVICE_ID, "victim")), is(true));
+    }
+
+    @Test
+    void givenVictimIsMoreFrequent_thenCandidateIsRejected() {
+        underTest.record(SERVICE_ID, "candidate");
+        underTest.record(SERVICE_ID, "victim");
+        underTest.record(SERVICE_ID, "victim");
+
+        assertThat(underTest.admit(SERVICE_ID, "candidate", new EntryKey(SERVICE_ID, "victim")), is(false));
+    }
+
+    @Test
+    void givenSameFrequency_thenCandidateIsAdmitted() {
+        underTest.record(SERVICE_ID, "candidate");
+        underTest.record(SERVICE_ID, "victim");
+
+        assertThat(underTest.admit(SERVICE_ID, "candidate", new EntryKey(SERVICE_ID, "victim")), is(true));
+    }
+
+    @Test
+    void givenSameKeyInDifferentService_thenItIsCountedSeparately() {
+        underTest.record("other-service", "key");
+        underTest.record("other-service", "key");
+        underTest.record(SERVICE_ID, "key");
+
+        assertThat(underTest.admit(SERVICE_ID, "key", new EntryKey("other-service", "key")), is(false));
+    }
+}
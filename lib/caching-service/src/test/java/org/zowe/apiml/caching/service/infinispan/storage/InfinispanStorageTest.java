@@ -12,17 +12,17 @@ package org.zowe.apiml.caching.service.infinispan.storage;
 
 import org.infinispan.AdvancedCache;
 import org.infinispan.Cache;
-import org.infinispan.lock.api.ClusteredLock;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.StorageException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -40,14 +40,12 @@ class InfinispanStorageTest {
     String serviceId1 = "service1";
 
     String serviceId2 = "service2";
-    ClusteredLock lock;
 
     @BeforeEach
     void setup() {
         cache = mock(Cache.class);
         tokenCache = mock(AdvancedCache.class);
-        storage = new InfinispanStorage(cache, tokenCache, lock);
-        lock = mock(ClusteredLock.class);
+        storage = new InfinispanStorage(cache, tokenCache);
     }
 
     @Nested
@@ -80,6 +78,17 @@ class InfinispanStorageTest {
             assertNull(storage.create(serviceId1, keyValue));
         }
 
+        @Test
+        void givenTtl_whenAddNew_thenItIsTheLifespan() {
+            keyValue = new KeyValue("key", "value");
+            keyValue.setTtl(1000L);
+
+            storage.create(serviceId1, keyValue);
+
+            verify(cache).putIfAbsent(serviceId1 + "key", keyValue, 1000L, TimeUnit.MILLISECONDS);
+            verify(cache, never()).putIfAbsent(any(), any());
+        }
+
         @Test
         void whenDelete_thenExceptionIsThrown() {
 
@@ -112,6 +121,17 @@ class InfinispanStorageTest {
             assertEquals(TO_CREATE.getValue(), result.getValue());
         }
 
+        @Test
+        void givenTtl_thenTheUpdateHasItAsLifespan() {
+            KeyValue withTtl = new KeyValue("key1", "val2");
+            withTtl.setTtl(1000L);
+            when(cache.put(serviceId1 + "key1", withTtl, 1000L, TimeUnit.MILLISECONDS)).thenReturn(TO_CREATE);
+
+            storage.update(serviceId1, withTtl);
+
+            verify(cache, never()).put(any(), any());
+        }
+
         @Test
         void cacheIsUpdated() {
 
@@ -124,7 +144,7 @@ class InfinispanStorageTest {
         @Test
         void itemIsDeleted() {
             ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
-            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache, lock);
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
             assertNull(storage.create(serviceId1, TO_CREATE));
             assertEquals(TO_CREATE, storage.delete(serviceId1, TO_CREATE.getKey()));
         }
@@ -132,7 +152,7 @@ class InfinispanStorageTest {
         @Test
         void returnAll() {
             ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
-            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache, lock);
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
             storage.create(serviceId1, new KeyValue("key", "value"));
             storage.create(serviceId1, new KeyValue("key2", "value2"));
             assertEquals(2, storage.readForService(serviceId1).size());
@@ -141,7 +161,7 @@ class InfinispanStorageTest {
         @Test
         void removeAll() {
             ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
-            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache, lock);
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
             storage.create(serviceId1, new KeyValue("key", "value"));
             storage.create(serviceId1, new KeyValue("key2", "value2"));
             assertEquals(2, storage.readForService(serviceId1).size());
@@ -149,45 +169,126 @@ class InfinispanStorageTest {
             assertEquals(0, storage.readForService(serviceId1).size());
         }
 
+        @Test
+        void scanReturnsItemsOfServiceInPages() {
+            ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
+            storage.create(serviceId1, new KeyValue("key", "value"));
+            storage.create(serviceId1, new KeyValue("key2", "value2"));
+            storage.create(serviceId2, new KeyValue("key3", "value3"));
+
+            ScanResult firstPage = storage.scanForService(serviceId1, null, 1);
+            assertEquals("key", firstPage.getEntries().get(0).getKey());
+            assertEquals("key", firstPage.getCursor());
+
+            ScanResult secondPage = storage.scanForService(serviceId1, firstPage.getCursor(), 1);
+            assertEquals("key2", secondPage.getEntries().get(0).getKey());
+            assertNull(secondPage.getCursor());
+        }
+
+        @Test
+        void serviceWithSamePrefixIsNotAffected() {
+            ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
+            storage.create(serviceId1, new KeyValue("key", "value"));
+            storage.create(serviceId1 + "0", new KeyValue("key", "value"));
+            storage.create(serviceId1 + "0", new KeyValue("0key", "value"));
+
+            assertEquals(1, storage.readForService(serviceId1).size());
+            ScanResult page = storage.scanForService(serviceId1, null, 10);
+            assertEquals(1, page.getEntries().size());
+            assertNull(page.getCursor());
+
+            storage.deleteForService(serviceId1);
+            assertEquals(0, storage.readForService(serviceId1).size());
+            assertEquals(2, storage.readForService(serviceId1 + "0").size());
+        }
+
+        @Test
+        void batchUpdatesOnlyExistingItems() {
+            ConcurrentMap<String, KeyValue> cache = new ConcurrentHashMap<>();
+            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache);
+            storage.create(serviceId1, new KeyValue("key", "value"));
+
+            Map<String, StorageException> failures = storage.updateAll(serviceId1,
+                Arrays.asList(new KeyValue("key", "value2"), new KeyValue("key2", "value2")));
+            assertEquals(1, failures.size());
+            assertTrue(failures.containsKey("key2"));
+
+            Map<String, KeyValue> result = storage.readAll(serviceId1, Arrays.asList("key", "key2"));
+            assertEquals(1, result.size());
+            assertEquals("value2", result.get("key").getValue());
+        }
+
+        @Test
+        void batchReadOfInfinispanCacheUsesSingleGetAll() {
+            AdvancedCache<String, KeyValue> advancedCache = mock(AdvancedCache.class);
+            when(cache.getAdvancedCache()).thenReturn(advancedCache);
+            Map<String, KeyValue> found = new HashMap<>();
+            found.put(serviceId1 + "key", new KeyValue("key", "value"));
+            when(advancedCache.getAll(new HashSet<>(Arrays.asList(serviceId1 + "key", serviceId1 + "key2")))).thenReturn(found);
+
+            Map<String, KeyValue> result = storage.readAll(serviceId1, Arrays.asList("key", "key2"));
+            assertEquals(1, result.size());
+            assertEquals("value", result.get("key").getValue());
+            verify(cache, never()).get(any());
+        }
+
     }
 
     @Nested
     class WhenStoreToken {
-        KeyValue keyValue;
-
-        @BeforeEach
-        void createEmptyStore() {
-            keyValue = null;
-        }
+        ConcurrentMap<String, Map<String, String>> tokenCache;
+        InfinispanStorage underTest;
 
         @BeforeEach
-        void createStoreWithEntry() {
-            when(tokenCache.getAdvancedCache()).thenReturn(tokenCache);
-            CompletableFuture<Boolean> cmpl = new CompletableFuture<>();
-            cmpl.complete(true);
-            when(lock.tryLock(4, TimeUnit.SECONDS)).thenReturn(cmpl);
-            when(tokenCache.computeIfAbsent(anyString(), any())).thenAnswer(k -> new ArrayList<>());
+        void createStorage() {
+            tokenCache = new ConcurrentHashMap<>();
+            underTest = new InfinispanStorage(cache, tokenCache);
         }
 
         @Test
         void addToken() {
             HashMap<String, String> hashMap = new HashMap<>();
             hashMap.put("key", "token");
-            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache, lock);
-            when(tokenCache.get(anyString())).thenAnswer(invocation -> hashMap);
-            assertNull(storage.storeMapItem(serviceId1, "invalidTokens", new KeyValue("newkey", "newvalue")));
-            verify(tokenCache, times(1)).put(serviceId1 + "invalidTokens", hashMap);
+            tokenCache.put(serviceId1 + "invalidTokens", hashMap);
+
+            assertNull(underTest.storeMapItem(serviceId1, "invalidTokens", new KeyValue("newkey", "newvalue")));
+            Map<String, String> result = underTest.getAllMapItems(serviceId1, "invalidTokens");
+            assertEquals(2, result.size());
+            assertEquals("newvalue", result.get("newkey"));
+            assertEquals(1, hashMap.size());
         }
 
         @Test
         void updateToken() {
-            HashMap<String, String> hashMap = new HashMap();
+            HashMap<String, String> hashMap = new HashMap<>();
             hashMap.put("key", "token");
-            InfinispanStorage storage = new InfinispanStorage(cache, tokenCache, lock);
-            when(tokenCache.get(serviceId1 + "invalidTokens")).thenReturn(hashMap);
-            KeyValue keyValue = new KeyValue("key", "token2");
-            assertNull(storage.storeMapItem(serviceId1, "invalidTokens", keyValue));
-            verify(tokenCache, times(1)).put(serviceId1 + "invalidTokens", hashMap);
+            tokenCache.put(serviceId1 + "invalidTokens", hashMap);
+
+            assertNull(underTest.storeMapItem(serviceId1, "invalidTokens", new KeyValue("key", "token2")));
+            assertEquals("token2", underTest.getAllMapItems(serviceId1, "invalidTokens").get("key"));
+        }
+
+        @Test
+        void addFirstToken() {
+            assertNull(underTest.storeMapItem(serviceId1, "invalidTokens", new KeyValue("key", "token")));
+
+            assertEquals(1, underTest.getAllMapItems(serviceId1, "invalidTokens").size());
+            assertEquals(1, underTest.getAllMaps(serviceId1).size());
+        }
+
+        @Test
+        void mapIsChangedByAtomicCompute() {
+            AdvancedCache<String, Map<String, String>> infinispanCache = mock(AdvancedCache.class);
+            underTest = new InfinispanStorage(cache, infinispanCache);
+
+            underTest.storeMapItem(serviceId1, "invalidTokens", new KeyValue("key", "token"));
+            underTest.removeNonRelevantRules(serviceId1, "invalidUsers");
+
+            verify(infinispanCache).compute(eq(serviceId1 + "invalidTokens"), any(InfinispanStorage.PutMapItem.class));
+            verify(infinispanCache).computeIfPresent(eq(serviceId1 + "invalidUsers"), any(InfinispanStorage.RemoveOldRules.class));
+            verify(infinispanCache, never()).put(any(), any());
         }
     }
 
@@ -223,7 +324,7 @@ class InfinispanStorageTest {
             tokenCache.put(serviceId1 + "invalidTokens", tokensService1);
             tokenCache.put(serviceId1 + "invalidTokenRules", rulesService1);
             tokenCache.put(serviceId2 + "invalidTokens", tokensService2);
-            underTest = new InfinispanStorage(cache, tokenCache, lock);
+            underTest = new InfinispanStorage(cache, tokenCache);
         }
 
 
@@ -275,13 +376,10 @@ class InfinispanStorageTest {
             tokenCache.put(serviceId1 + "invalidTokens", tokensService);
             tokenCache.put(serviceId1 + "invalidScopes", rulesService);
             tokenCache.put(serviceId1 + "invalidUsers", rulesUsers);
-            underTest = new InfinispanStorage(cache, tokenCache, lock);
+            underTest = new InfinispanStorage(cache, tokenCache);
         }
         @Test
         void thenEvictItems() {
-            CompletableFuture<Boolean> cmpl = new CompletableFuture<>();
-            cmpl.complete(true);
-            when(lock.tryLock(4, TimeUnit.SECONDS)).thenReturn(cmpl);
             underTest.removeNonRelevantTokens(serviceId1, "invalidTokens");
             underTest.removeNonRelevantRules(serviceId1, "invalidScopes");
             underTest.removeNonRelevantRules(serviceId1, "invalidUsers");
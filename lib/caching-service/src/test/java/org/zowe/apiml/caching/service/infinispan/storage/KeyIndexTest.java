@@ -0,0 +1,111 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.infinispan.storage;
+
+import org.infinispan.Cache;
+import org.infinispan.CacheSet;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class KeyIndexTest {
+
+    @Nested
+    class WhenIndexingMap {
+        ConcurrentMap<String, String> cache;
+        KeyIndex underTest;
+
+        @BeforeEach
+        void setup() {
+            cache = new ConcurrentHashMap<>();
+            cache.put("service1key1", "value");
+            cache.put("service1key2", "value");
+            cache.put("service10key1", "value");
+            cache.put("service2key1", "value");
+            underTest = new KeyIndex(cache);
+        }
+
+        @Test
+        void existingKeysStartingWithPrefixAreReturnedInOrder() {
+            assertEquals(Arrays.asList("service10key1", "service1key1", "service1key2"), new ArrayList<>(underTest.startingWith("service1")));
+        }
+
+        @Test
+        void addedAndRemovedKeysAreReflected() {
+            underTest.startingWith("service2");
+            underTest.added("service2key2");
+            underTest.removed("service2key1");
+
+            assertEquals(Collections.singletonList("service2key2"), new ArrayList<>(underTest.startingWith("service2")));
+        }
+
+        @Test
+        void prefixEndingWithMaxCharIsBounded() {
+            String prefix = "service" + Character.MAX_VALUE;
+            underTest.added(prefix + "key");
+            underTest.added("servicf");
+
+            assertEquals(Collections.singletonList(prefix + "key"), new ArrayList<>(underTest.startingWith(prefix)));
+        }
+    }
+
+    @Nested
+    class WhenIndexingInfinispanCache {
+        Cache<String, String> cache;
+        KeyIndex underTest;
+        KeyIndex.IndexListener listener;
+
+        @BeforeEach
+        void setup() {
+            cache = mock(Cache.class);
+            when(cache.keySet()).thenReturn(mock(CacheSet.class));
+            underTest = new KeyIndex(cache);
+
+            ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+            verify(cache).addListener(captor.capture());
+            listener = (KeyIndex.IndexListener) captor.getValue();
+        }
+
+        @Test
+        void replicatedChangesAreFollowed() {
+            underTest.added("service1key1");
+            listener.created(event("service1key2"));
+            listener.removed(event("service1key1"));
+
+            assertEquals(Collections.singletonList("service1key2"), new ArrayList<>(underTest.startingWith("service1")));
+        }
+
+        @Test
+        void removalReportedByStorageIsLeftToListener() {
+            listener.created(event("service1key1"));
+            underTest.removed("service1key1");
+
+            assertEquals(Collections.singletonList("service1key1"), new ArrayList<>(underTest.startingWith("service1")));
+        }
+
+        private CacheEntryEvent<String, ?> event(String key) {
+            CacheEntryEvent<String, String> event = mock(CacheEntryEvent.class);
+            when(event.getKey()).thenReturn(key);
+            return event;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class InMemoryEntriesTest {
+    private static final String SERVICE_ID = "acme";
+
+    private InMemoryEntries underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new InMemoryEntries();
+    }
+
+    @Nested
+    class WhenEntriesAreStored {
+        @Test
+        void givenNewKeys_thenSizeIsIncremented() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+            underTest.putIfAbsent("other", new KeyValue("key1", "value"));
+
+            assertThat(underTest.size(), is(2L));
+        }
+
+        @Test
+        void givenDuplicateKey_thenExistingIsReturnedAndSizeIsKept() {
+            KeyValue original = new KeyValue("key1", "value");
+            underTest.putIfAbsent(SERVICE_ID, original);
+
+            KeyValue existing = underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "other"));
+
+            assertThat(existing, is(original));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenConcurrentWriters_thenEveryEntryIsCounted() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    int threadId = thread;
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < 1000; i++) {
+                            underTest.putIfAbsent(SERVICE_ID, new KeyValue(threadId + "-" + i, "value"));
+                        }
+                    }));
+                }
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            assertThat(underTest.size(), is(8000L));
+            assertThat(underTest.getService(SERVICE_ID).size(), is(8000));
+        }
+    }
+
+    @Nested
+    class WhenEntriesAreRemoved {
+        @Test
+        void givenExistingKey_thenSizeIsDecremented() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+
+            underTest.remove(SERVICE_ID, "key1");
+
+            assertThat(underTest.size(), is(0L));
+        }
+
+        @Test
+        void givenMissingKey_thenSizeIsKept() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+
+            assertThat(underTest.remove(SERVICE_ID, "key2"), is(nullValue()));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenReplacedEntry_thenConditionalRemoveIsIgnored() {
+            KeyValue original = new KeyValue("key1", "value");
+            underTest.putIfAbsent(SERVICE_ID, original);
+            underTest.replace(SERVICE_ID, new KeyValue("key1", "updated"));
+
+            assertThat(underTest.remove(SERVICE_ID, original), is(false));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenWholeService_thenAllItsEntriesAreSubtracted() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key2", "value"));
+            underTest.putIfAbsent("other", new KeyValue("key1", "value"));
+
+            underTest.removeService(SERVICE_ID);
+
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenServiceRemovedDuringWrites_thenSizeMatchesTheStoredEntries() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(5);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int thread = 0; thread < 4; thread++) {
+                    int threadId = thread;
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < 5000; i++) {
+                            underTest.putIfAbsent(SERVICE_ID, new KeyValue(threadId + "-" + i, "value"));
+                        }
+                    }));
+                }
+                Future<?> remover = executor.submit(() -> {
+                    while (!writers.stream().allMatch(Future::isDone)) {
+                        underTest.removeService(SERVICE_ID);
+                    }
+                });
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+                remover.get();
+            } finally {
+                executor.shutdown();
+            }
+
+            Map<String, KeyValue> remaining = underTest.getService(SERVICE_ID);
+            assertThat(underTest.size(), is(remaining == null ? 0L : (long) remaining.size()));
+        }
+    }
+}
@@ -10,11 +10,14 @@
 
 package org.zowe.apiml.caching.service.inmemory;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
 import org.zowe.apiml.caching.config.GeneralConfig;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.StorageException;
 import org.zowe.apiml.caching.service.Strategies;
 import org.zowe.apiml.caching.service.inmemory.config.InMemoryConfig;
@@ -26,6 +29,7 @@ import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 
@@ -109,6 +113,81 @@ class InMemoryStorageTest {
     }
 
 
+    @Nested
+    class WhenStorageIsFullAndStrategyIsLeastRecentlyUsed {
+        @Test
+        void givenEntryWasRead_thenTheOtherOneIsEvicted() {
+            GeneralConfig generalConfig = new GeneralConfig();
+            generalConfig.setEvictionStrategy(Strategies.LEAST_RECENTLY_USED.getKey());
+            config = new InMemoryConfig(generalConfig);
+            config.getGeneralConfig().setMaxDataSize(2);
+
+            underTest = new InMemoryStorage(config, testingStorage, ApimlLogger.empty());
+            underTest.create(serviceId, new KeyValue("hot", "value"));
+            underTest.create(serviceId, new KeyValue("cold", "value"));
+            underTest.read(serviceId, "hot");
+
+            underTest.create(serviceId, new KeyValue("new", "value"));
+
+            assertThat(underTest.read(serviceId, "hot").getValue(), is("value"));
+            assertThrows(StorageException.class, () -> underTest.read(serviceId, "cold"));
+        }
+    }
+
+    @Nested
+    class WhenStorageIsFullAndAdmissionFilterIsEnabled {
+        @BeforeEach
+        void setUp() {
+            GeneralConfig generalConfig = new GeneralConfig();
+            generalConfig.setEvictionStrategy(Strategies.REMOVE_OLDEST.getKey());
+            generalConfig.setAdmissionFilterEnabled(true);
+            config = new InMemoryConfig(generalConfig);
+            config.getGeneralConfig().setMaxDataSize(1);
+
+            underTest = new InMemoryStorage(config, testingStorage, ApimlLogger.empty());
+            underTest.create(serviceId, new KeyValue("hot", "value"));
+            underTest.read(serviceId, "hot");
+            underTest.read(serviceId, "hot");
+        }
+
+        @Test
+        void givenCandidateIsRequestedLessOftenThanVictim_thenItIsRejected() {
+            KeyValue candidate = new KeyValue("new", "value");
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.create(serviceId, candidate));
+
+            assertThat(exception.getStatus(), is(HttpStatus.INSUFFICIENT_STORAGE));
+            assertThat(underTest.read(serviceId, "hot").getValue(), is("value"));
+        }
+
+        @Test
+        void givenCandidateIsRequestedMoreOftenThanVictim_thenVictimIsEvicted() {
+            for (int i = 0; i < 4; i++) {
+                assertThrows(StorageException.class, () -> underTest.read(serviceId, "new"));
+            }
+
+            underTest.create(serviceId, new KeyValue("new", "value"));
+
+            assertThat(underTest.read(serviceId, "new").getValue(), is("value"));
+            assertThrows(StorageException.class, () -> underTest.read(serviceId, "hot"));
+        }
+
+        @Test
+        void givenVictimIsPastItsDeadline_thenCandidateIsAdmittedWithoutComparison() {
+            testingStorage.clear();
+            config.getGeneralConfig().setEvictionStrategy(Strategies.TTL_FIRST.getKey());
+            config.getGeneralConfig().setTimeToLive(1L);
+            underTest = new InMemoryStorage(config, testingStorage, ApimlLogger.empty());
+            underTest.create(serviceId, new KeyValue("hot", "value", "1"));
+            underTest.read(serviceId, "hot");
+            underTest.read(serviceId, "hot");
+
+            underTest.create(serviceId, new KeyValue("new", "value"));
+
+            assertThat(underTest.read(serviceId, "new").getValue(), is("value"));
+            assertThrows(StorageException.class, () -> underTest.read(serviceId, "hot"));
+        }
+    }
+
     @Nested
     class WhenValueIsUpdated {
         @Test
@@ -141,6 +220,76 @@ class InMemoryStorageTest {
         }
     }
 
+    @Nested
+    class WhenValueHasTimeToLive {
+        @AfterEach
+        void tearDown() {
+            underTest.stopReaper();
+        }
+
+        private KeyValue expired() {
+            KeyValue expired = new KeyValue("key", "value", "1");
+            expired.setTtl(1L);
+            return expired;
+        }
+
+        @Test
+        void givenTimeToLiveElapsed_thenItIsNotReturned() {
+            underTest.create(serviceId, expired());
+
+            assertThrows(StorageException.class, () -> underTest.read(serviceId, "key"));
+            assertThat(testingStorage.get(serviceId).containsKey("key"), is(false));
+        }
+
+        @Test
+        void givenTimeToLiveDidntElapse_thenItIsReturned() {
+            KeyValue valid = new KeyValue("key", "value");
+            valid.setTtl(60_000L);
+            underTest.create(serviceId, valid);
+
+            assertThat(underTest.read(serviceId, "key").getValue(), is("value"));
+        }
+
+        @Test
+        void givenExpiredValue_thenTheSameKeyCanBeCreatedAgain() {
+            underTest.create(serviceId, expired());
+
+            underTest.create(serviceId, new KeyValue("key", "newValue"));
+
+            assertThat(underTest.read(serviceId, "key").getValue(), is("newValue"));
+        }
+
+        @Test
+        void givenExpiredValue_thenItCantBeUpdated() {
+            underTest.create(serviceId, expired());
+
+            KeyValue toUpdate = new KeyValue("key", "newValue");
+            assertThrows(StorageException.class, () -> underTest.update(serviceId, toUpdate));
+        }
+
+        @Test
+        void givenExpiredValue_thenItIsNotReadForService() {
+            underTest.create(serviceId, expired());
+            underTest.create(serviceId, new KeyValue("valid", "value"));
+
+            Map<String, KeyValue> result = underTest.readForService(serviceId);
+
+            assertThat(result.size(), is(1));
+            assertThat(result.get("valid").getValue(), is("value"));
+        }
+
+        @Test
+        void givenReaperRuns_thenExpiredValuesAreRemoved() {
+            underTest.create(serviceId, expired());
+            underTest.create(serviceId, new KeyValue("valid", "value"));
+
+            underTest.removeExpired(System.currentTimeMillis() + 1000);
+
+            assertThat(testingStorage.get(serviceId).containsKey("key"), is(false));
+            assertThat(testingStorage.get(serviceId).containsKey("valid"), is(true));
+        }
+    }
+
     @Nested
     class WhenValueIsRetrieved {
         @Test
@@ -201,6 +350,27 @@ class InMemoryStorageTest {
             Map<String, KeyValue> result = underTest.readForService(serviceId);
             assertThat(result.containsKey("username"), is(true));
         }
+
+        @Test
+        void givenServiceHasStoredValues_thenTheyAreScannedInPages() {
+            underTest.create(serviceId, new KeyValue("key-1", "value"));
+            underTest.create(serviceId, new KeyValue("key-2", "value"));
+            underTest.create(serviceId, new KeyValue("key-3", "value"));
+
+            ScanResult firstPage = underTest.scanForService(serviceId, null, 2);
+            assertThat(firstPage.getEntries().size(), is(2));
+            assertThat(firstPage.getCursor(), is("key-2"));
+
+            ScanResult secondPage = underTest.scanForService(serviceId, firstPage.getCursor(), 2);
+            assertThat(secondPage.getEntries().get(0).getKey(), is("key-3"));
+            assertThat(secondPage.getCursor(), is(nullValue()));
+        }
+
+        @Test
+        void givenUnknownService_thenEmptyPageIsReturned() {
+            ScanResult result = underTest.scanForService("unknown", null, 2);
+            assertThat(result.getEntries().isEmpty(), is(true));
+        }
     }
 
     @Nested
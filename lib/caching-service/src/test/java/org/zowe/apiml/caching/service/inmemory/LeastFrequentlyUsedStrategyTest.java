@@ -0,0 +1,90 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class LeastFrequentlyUsedStrategyTest {
+    private static final String SERVICE_ID = "test-service";
+
+    private LeastFrequentlyUsedStrategy underTest;
+    private InMemoryEntries entries;
+
+    @BeforeEach
+    void setUp() {
+        entries = new InMemoryEntries();
+        underTest = new LeastFrequentlyUsedStrategy(entries, 100);
+        entries.setListener(underTest);
+
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key2", "value"));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key3", "value"));
+    }
+
+    @Test
+    void givenFrequentlyReadEntries_thenTheLeastReadIsRemoved() {
+        entries.read(SERVICE_ID, "key1");
+        entries.read(SERVICE_ID, "key1");
+        entries.read(SERVICE_ID, "key2");
+        entries.read(SERVICE_ID, "key3");
+        entries.read(SERVICE_ID, "key3");
+
+        underTest.evict("key4");
+
+        assertThat(entries.get(SERVICE_ID, "key2"), is(nullValue()));
+        assertThat(entries.get(SERVICE_ID, "key1"), is(notNullValue()));
+        assertThat(entries.get(SERVICE_ID, "key3"), is(notNullValue()));
+    }
+
+    @Test
+    void givenSameFrequency_thenTheFirstInsertedIsRemoved() {
+        underTest.evict("key4");
+
+        assertThat(entries.get(SERVICE_ID, "key1"), is(nullValue()));
+    }
+
+    @Test
+    void givenUpdate_thenItCountsAsAccess() {
+        entries.replace(SERVICE_ID, new KeyValue("key1", "updated"));
+
+        assertThat(underTest.frequency(SERVICE_ID, "key1"), is(2));
+    }
+
+    @Test
+    void givenAgingPeriodElapsed_thenFrequenciesAreHalved() {
+        for (int i = 0; i < 99; i++) {
+            entries.read(SERVICE_ID, "key1");
+        }
+        assertThat(underTest.frequency(SERVICE_ID, "key1"), is(100));
+
+        entries.read(SERVICE_ID, "key2");
+
+        assertThat(underTest.frequency(SERVICE_ID, "key1"), is(50));
+        assertThat(underTest.frequency(SERVICE_ID, "key2"), is(1));
+    }
+
+    @Test
+    void givenEntryWasDeleted_thenItIsNotEvicted() {
+        entries.remove(SERVICE_ID, "key1");
+
+        underTest.evict("key4");
+
+        assertThat(entries.size(), is(1L));
+        assertThat(entries.get(SERVICE_ID, "key3"), is(notNullValue()));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class LeastRecentlyUsedStrategyTest {
+    private static final String SERVICE_ID = "test-service";
+
+    private LeastRecentlyUsedStrategy underTest;
+    private InMemoryEntries entries;
+
+    @BeforeEach
+    void setUp() {
+        entries = new InMemoryEntries();
+        underTest = new LeastRecentlyUsedStrategy(entries);
+        entries.setListener(underTest);
+
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value"));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key2", "value"));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("key3", "value"));
+    }
+
+    @Test
+    void givenNoReads_thenFirstInsertedIsRemoved() {
+        underTest.evict("key4");
+
+        assertThat(entries.get(SERVICE_ID, "key1"), is(nullValue()));
+        assertThat(entries.size(), is(2L));
+    }
+
+    @Test
+    void givenRecentlyReadEntry_thenItGetsSecondChance() {
+        entries.read(SERVICE_ID, "key1");
+
+        underTest.evict("key4");
+
+        assertThat(entries.get(SERVICE_ID, "key1"), is(notNullValue()));
+        assertThat(entries.get(SERVICE_ID, "key2"), is(nullValue()));
+    }
+
+    @Test
+    void givenAllEntriesWereRead_thenEvictionStillRemovesOne() {
+        entries.read(SERVICE_ID, "key1");
+        entries.read(SERVICE_ID, "key2");
+        entries.read(SERVICE_ID, "key3");
+
+        underTest.evict("key4");
+
+        assertThat(entries.size(), is(2L));
+    }
+
+    @Test
+    void givenEntryWasDeleted_thenItIsNotTrackedAnymore() {
+        entries.remove(SERVICE_ID, "key1");
+
+        underTest.evict("key4");
+
+        assertThat(underTest.trackedEntries(), is(1));
+        assertThat(entries.get(SERVICE_ID, "key2"), is(nullValue()));
+    }
+
+    @Test
+    void givenManyCreatedAndRemovedEntries_thenClockStaysBounded() {
+        for (int i = 0; i < 1000; i++) {
+            entries.putIfAbsent(SERVICE_ID, new KeyValue("temporary" + i, "value"));
+            entries.remove(SERVICE_ID, "temporary" + i);
+        }
+
+        assertThat(underTest.trackedEntries(), is(3));
+        assertThat(underTest.clockSize() <= 2 * 3 + 1, is(true));
+    }
+
+    @Test
+    void givenRecreatedEntries_thenClockStaysBounded() {
+        for (int i = 0; i < 1000; i++) {
+            entries.remove(SERVICE_ID, "key1");
+            entries.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value" + i));
+        }
+
+        assertThat(underTest.clockSize() <= 2 * 3 + 1, is(true));
+        assertThat(underTest.victim().isPresent(), is(true));
+    }
+}
@@ -21,30 +21,63 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 
 class RemoveOldestStrategyTest {
+    private static final String SERVICE_ID = "test-service";
+
     private RemoveOldestStrategy underTest;
-    private Map<String, KeyValue> dataForStorage;
+    private InMemoryEntries entries;
+    private Map<String, Map<String, KeyValue>> storage;
 
     @BeforeEach
     void setUp() {
-        Map<String, Map<String, KeyValue>> storage = new ConcurrentHashMap<>();
-        dataForStorage = new ConcurrentHashMap<>();
-        storage.put("test-service", dataForStorage);
+        storage = new ConcurrentHashMap<>();
+        entries = new InMemoryEntries(storage);
+        underTest = new RemoveOldestStrategy(entries);
+        entries.setListener(underTest);
+
         KeyValue keyValue1 = new KeyValue("key1", "willBeRemoved", "1610965944035");
-        keyValue1.setServiceId("test-service");
+        keyValue1.setServiceId(SERVICE_ID);
 
         KeyValue keyValue2 = new KeyValue("key2", "willFit", "1610965944036");
-        keyValue2.setServiceId("test-service");
-
-        dataForStorage.put("key1", keyValue1);
-        dataForStorage.put("key2", keyValue2);
+        keyValue2.setServiceId(SERVICE_ID);
 
-        underTest = new RemoveOldestStrategy(storage);
+        entries.putIfAbsent(SERVICE_ID, keyValue2);
+        entries.putIfAbsent(SERVICE_ID, keyValue1);
     }
 
     @Test
     void removeOldest() {
         underTest.evict("key3");
 
-        assertThat(dataForStorage.containsKey("key1"), is(false));
+        assertThat(storage.get(SERVICE_ID).containsKey("key1"), is(false));
+        assertThat(entries.size(), is(1L));
+    }
+
+    @Test
+    void givenOldestWasUpdated_thenNextOldestIsRemoved() {
+        entries.replace(SERVICE_ID, new KeyValue("key1", "updated", "1610965944037"));
+
+        underTest.evict("key3");
+
+        assertThat(storage.get(SERVICE_ID).containsKey("key1"), is(true));
+        assertThat(storage.get(SERVICE_ID).containsKey("key2"), is(false));
+    }
+
+    @Test
+    void givenOldestWasDeleted_thenItIsRemovedFromIndex() {
+        entries.remove(SERVICE_ID, "key1");
+
+        assertThat(underTest.indexSize(), is(1));
+
+        underTest.evict("key3");
+
+        assertThat(storage.get(SERVICE_ID).isEmpty(), is(true));
+        assertThat(underTest.indexSize(), is(0));
+    }
+
+    @Test
+    void givenServiceWasDeleted_thenIndexIsEmpty() {
+        entries.removeService(SERVICE_ID);
+
+        assertThat(underTest.indexSize(), is(0));
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+class TimingWheelTest {
+    private static final long TICK = 10;
+    private static final long START = 1_000_000;
+
+    private TimingWheel<String> underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new TimingWheel<>(TICK, START);
+    }
+
+    @Test
+    void givenDeadlineDidntPass_thenNothingExpires() {
+        underTest.schedule("item", START + 100);
+
+        assertThat(underTest.advance(START + 90), is(empty()));
+        assertThat(underTest.size(), is(1));
+    }
+
+    @Test
+    void givenDeadlinePassed_thenItemExpires() {
+        underTest.schedule("item", START + 100);
+
+        assertThat(underTest.advance(START + 100), is(Collections.singletonList("item")));
+        assertThat(underTest.size(), is(0));
+    }
+
+    @Test
+    void givenDeadlineInThePast_thenItemExpiresOnNextTick() {
+        underTest.schedule("item", START - 1000);
+
+        assertThat(underTest.advance(START + TICK), is(Collections.singletonList("item")));
+    }
+
+    @Test
+    void givenDeadlinesOnHigherWheels_thenTheyExpireInTime() {
+        underTest.schedule("minute", START + 60_000);
+        underTest.schedule("hour", START + 3_600_000);
+        underTest.schedule("day", START + 24 * 3_600_000);
+
+        assertThat(underTest.advance(START + 59_990), is(empty()));
+        assertThat(underTest.advance(START + 60_000), is(Collections.singletonList("minute")));
+        assertThat(underTest.advance(START + 3_599_990), is(empty()));
+        assertThat(underTest.advance(START + 3_600_000), is(Collections.singletonList("hour")));
+        assertThat(underTest.advance(START + 24 * 3_600_000 - TICK), is(empty()));
+        assertThat(underTest.advance(START + 24 * 3_600_000), is(Collections.singletonList("day")));
+    }
+
+    @Test
+    void givenCancelledItem_thenItDoesntExpire() {
+        underTest.schedule("item", START + 100);
+        underTest.schedule("other", START + 100);
+        underTest.cancel("item");
+
+        assertThat(underTest.advance(START + 200), is(Collections.singletonList("other")));
+    }
+
+    @Test
+    void givenRescheduledItem_thenTheNewDeadlineIsUsed() {
+        underTest.schedule("item", START + 100);
+        underTest.schedule("item", START + 500);
+
+        assertThat(underTest.advance(START + 400), is(empty()));
+        assertThat(underTest.advance(START + 500), is(Collections.singletonList("item")));
+    }
+
+    @Test
+    void givenMoreItemsExpired_thenAllAreReturned() {
+        underTest.schedule("first", START + 100);
+        underTest.schedule("second", START + 5_000);
+        underTest.schedule("third", START + 700_000);
+
+        assertThat(underTest.advance(START + 1_000_000), containsInAnyOrder(Arrays.asList("first", "second", "third").toArray()));
+    }
+}
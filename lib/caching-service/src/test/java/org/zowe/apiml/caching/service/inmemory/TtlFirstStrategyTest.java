@@ -0,0 +1,85 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.inmemory;
+
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+class TtlFirstStrategyTest {
+    private static final String SERVICE_ID = "test-service";
+
+    private InMemoryEntries entries;
+
+    private TtlFirstStrategy strategy(long timeToLive) {
+        entries = new InMemoryEntries();
+        TtlFirstStrategy strategy = new TtlFirstStrategy(entries, timeToLive);
+        entries.setListener(strategy);
+        return strategy;
+    }
+
+    @Test
+    void givenExpiredEntry_thenItIsRemovedBeforeLeastRecentlyUsed() {
+        TtlFirstStrategy underTest = strategy(60_000);
+        long now = System.currentTimeMillis();
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("fresh", "value", String.valueOf(now)));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("expired", "value", String.valueOf(now - 120_000)));
+
+        underTest.evict("new");
+
+        assertThat(entries.get(SERVICE_ID, "expired"), is(nullValue()));
+        assertThat(entries.get(SERVICE_ID, "fresh"), is(notNullValue()));
+    }
+
+    @Test
+    void givenNoExpiredEntry_thenLeastRecentlyUsedIsRemoved() {
+        TtlFirstStrategy underTest = strategy(60_000);
+        long now = System.currentTimeMillis();
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("first", "value", String.valueOf(now - 1000)));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("second", "value", String.valueOf(now)));
+        entries.read(SERVICE_ID, "first");
+
+        underTest.evict("new");
+
+        assertThat(entries.get(SERVICE_ID, "first"), is(notNullValue()));
+        assertThat(entries.get(SERVICE_ID, "second"), is(nullValue()));
+    }
+
+    @Test
+    void givenVictimPastTheConfiguredTimeToLive_thenItIsExpired() {
+        TtlFirstStrategy underTest = strategy(60_000);
+        long now = System.currentTimeMillis();
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("fresh", "value", String.valueOf(now)));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("expired", "value", String.valueOf(now - 120_000)));
+
+        assertThat(underTest.victim().get(), is(new EntryKey(SERVICE_ID, "expired")));
+        assertThat(underTest.isExpired(new EntryKey(SERVICE_ID, "expired")), is(true));
+        assertThat(underTest.isExpired(new EntryKey(SERVICE_ID, "fresh")), is(false));
+    }
+
+    @Test
+    void givenNoTimeToLive_thenEntriesNeverExpire() {
+        TtlFirstStrategy underTest = strategy(0);
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("recent", "value", "1"));
+        entries.putIfAbsent(SERVICE_ID, new KeyValue("other", "value", "2"));
+        entries.read(SERVICE_ID, "recent");
+
+        underTest.evict("new");
+
+        assertThat(entries.get(SERVICE_ID, "recent"), is(notNullValue()));
+        assertThat(entries.get(SERVICE_ID, "other"), is(nullValue()));
+    }
+}
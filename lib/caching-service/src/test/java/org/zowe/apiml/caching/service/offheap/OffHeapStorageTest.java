@@ -0,0 +1,157 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.Strategies;
+import org.zowe.apiml.caching.service.offheap.config.OffHeapConfig;
+import org.zowe.apiml.message.log.ApimlLogger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapStorageTest {
+    private static final String SERVICE_ID = "acme";
+
+    private GeneralConfig generalConfig;
+    private OffHeapConfig config;
+    private OffHeapStorage underTest;
+
+    @BeforeEach
+    void setUp() {
+        generalConfig = new GeneralConfig();
+        generalConfig.setMaxDataSize(2);
+        generalConfig.setEvictionStrategy(Strategies.REJECT.getKey());
+        config = new OffHeapConfig(generalConfig);
+        config.setCapacity(64 * 1024);
+        config.setSlabSize(16 * 1024);
+
+        underTest = storage();
+    }
+
+    private OffHeapStorage storage() {
+        return new OffHeapStorage(config, new OffHeapStore(config.getCapacity(), config.getSlabSize()), ApimlLogger.empty());
+    }
+
+    @Nested
+    class WhenStorageIsCreated {
+        @Test
+        void givenEvictionStrategyOtherThanReject_thenItIsRefused() {
+            generalConfig.setEvictionStrategy(Strategies.LEAST_RECENTLY_USED.getKey());
+
+            assertThrows(IllegalArgumentException.class, OffHeapStorageTest.this::storage);
+        }
+
+        @Test
+        void givenAdmissionFilter_thenItIsRefused() {
+            generalConfig.setAdmissionFilterEnabled(true);
+
+            assertThrows(IllegalArgumentException.class, OffHeapStorageTest.this::storage);
+        }
+    }
+
+    @Nested
+    class WhenValueIsStored {
+        @Test
+        void givenNewKey_thenItCanBeRead() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("value"));
+        }
+
+        @Test
+        void givenDuplicateKey_thenExceptionIsRaised() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            KeyValue duplicate = new KeyValue("key", "other");
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.create(SERVICE_ID, duplicate));
+            assertThat(exception.getStatus(), is(HttpStatus.CONFLICT));
+        }
+
+        @Test
+        void givenStorageIsFullOfExpiredEntries_thenTheyMakeSpace() {
+            KeyValue expired = new KeyValue("key1", "value", "1");
+            expired.setTtl(1L);
+            underTest.create(SERVICE_ID, expired);
+            underTest.create(SERVICE_ID, new KeyValue("key2", "value"));
+
+            underTest.create(SERVICE_ID, new KeyValue("key3", "value"));
+
+            assertThat(underTest.read(SERVICE_ID, "key3").getValue(), is("value"));
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key1"));
+        }
+
+        @Test
+        void givenStorageIsFull_thenInsufficientStorageIsRaised() {
+            underTest.create(SERVICE_ID, new KeyValue("key1", "value"));
+            underTest.create(SERVICE_ID, new KeyValue("key2", "value"));
+
+            KeyValue wontFit = new KeyValue("key3", "value");
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.create(SERVICE_ID, wontFit));
+            assertThat(exception.getStatus(), is(HttpStatus.INSUFFICIENT_STORAGE));
+        }
+    }
+
+    @Nested
+    class WhenValueIsChanged {
+        @Test
+        void givenExistingKey_thenItIsUpdated() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+            underTest.update(SERVICE_ID, new KeyValue("key", "updated"));
+
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("updated"));
+        }
+
+        @Test
+        void givenMissingKey_thenUpdateFails() {
+            KeyValue missing = new KeyValue("key", "value");
+
+            assertThrows(StorageException.class, () -> underTest.update(SERVICE_ID, missing));
+        }
+
+        @Test
+        void givenExistingKey_thenItIsDeleted() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            assertThat(underTest.delete(SERVICE_ID, "key").getValue(), is("value"));
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+        }
+
+        @Test
+        void givenServiceIsDeleted_thenNoneOfItsValuesRemains() {
+            underTest.create(SERVICE_ID, new KeyValue("key1", "value"));
+            underTest.create(SERVICE_ID, new KeyValue("key2", "value"));
+
+            underTest.deleteForService(SERVICE_ID);
+
+            assertThat(underTest.readForService(SERVICE_ID).isEmpty(), is(true));
+        }
+
+        @Test
+        void givenServiceIsScanned_thenItsEntriesAreReturned() {
+            underTest.create(SERVICE_ID, new KeyValue("key1", "value"));
+            underTest.create("other", new KeyValue("key2", "value"));
+
+            ScanResult result = underTest.scanForService(SERVICE_ID, null, 10);
+
+            assertThat(result.getEntries().size(), is(1));
+            assertThat(result.getEntries().get(0).getKey(), is("key1"));
+        }
+    }
+}
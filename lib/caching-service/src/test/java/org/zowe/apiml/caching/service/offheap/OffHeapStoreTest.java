@@ -0,0 +1,282 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.offheap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
+import org.zowe.apiml.caching.service.StorageException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OffHeapStoreTest {
+    private static final String SERVICE_ID = "acme";
+
+    private OffHeapStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new OffHeapStore(4096, 1024);
+    }
+
+    @Nested
+    class WhenEntriesAreStored {
+        @Test
+        void givenNewKey_thenTheWholeEntryIsReturnedOnRead() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "value", "123"));
+
+            KeyValue result = underTest.get(SERVICE_ID, "key");
+            assertThat(result.getKey(), is("key"));
+            assertThat(result.getValue(), is("value"));
+            assertThat(result.getCreated(), is("123"));
+            assertThat(result.getServiceId(), is(SERVICE_ID));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenTtlAndMissingValue_thenBothAreKept() {
+            KeyValue entry = new KeyValue("key", null, "123");
+            entry.setTtl(1000L);
+            underTest.putIfAbsent(SERVICE_ID, entry);
+
+            KeyValue result = underTest.get(SERVICE_ID, "key");
+            assertThat(result.getValue(), is(nullValue()));
+            assertThat(result.getTtl(), is(1000L));
+            assertThat(result.getCreated(), is("123"));
+        }
+
+        @Test
+        void givenNoTtlAndEmptyValue_thenNeitherIsMadeUp() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "", "123"));
+
+            KeyValue result = underTest.get(SERVICE_ID, "key");
+            assertThat(result.getValue(), is(""));
+            assertThat(result.getTtl(), is(nullValue()));
+        }
+
+        @Test
+        void givenDuplicateKey_thenExistingIsReturnedAndSizeIsKept() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "original"));
+
+            KeyValue existing = underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "other"));
+
+            assertThat(existing.getValue(), is("original"));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenSameKeyForDifferentServices_thenBothAreStored() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "first"));
+            underTest.putIfAbsent("other", new KeyValue("key", "second"));
+
+            assertThat(underTest.get(SERVICE_ID, "key").getValue(), is("first"));
+            assertThat(underTest.get("other", "key").getValue(), is("second"));
+        }
+
+        @Test
+        void givenMoreEntriesThanInitialIndexCapacity_thenAllAreFound() {
+            underTest = new OffHeapStore(1024 * 1024, 64 * 1024);
+            for (int i = 0; i < 2000; i++) {
+                underTest.putIfAbsent(SERVICE_ID, new KeyValue("key" + i, "value" + i));
+            }
+
+            for (int i = 0; i < 2000; i++) {
+                assertThat(underTest.get(SERVICE_ID, "key" + i).getValue(), is("value" + i));
+            }
+            assertThat(underTest.size(), is(2000L));
+        }
+
+        @Test
+        void givenEntryLargerThanSlab_thenItIsRejected() {
+            KeyValue tooLarge = new KeyValue("key", new String(new char[2048]).replace('\0', 'a'));
+
+            assertThrows(StorageException.class, () -> underTest.putIfAbsent(SERVICE_ID, tooLarge));
+        }
+
+        @Test
+        void givenBudgetIsExhausted_thenTheEntryIsRejected() {
+            String value = new String(new char[400]).replace('\0', 'a');
+
+            assertThrows(StorageException.class, () -> {
+                for (int i = 0; i < 100; i++) {
+                    underTest.putIfAbsent(SERVICE_ID, new KeyValue("key" + i, value));
+                }
+            });
+        }
+    }
+
+    @Nested
+    class WhenEntriesAreChanged {
+        @Test
+        void givenExistingKey_thenItIsReplaced() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "original"));
+
+            KeyValue previous = underTest.replace(SERVICE_ID, new KeyValue("key", "updated"));
+
+            assertThat(previous.getValue(), is("original"));
+            assertThat(underTest.get(SERVICE_ID, "key").getValue(), is("updated"));
+        }
+
+        @Test
+        void givenMissingKey_thenNothingIsReplaced() {
+            assertThat(underTest.replace(SERVICE_ID, new KeyValue("key", "updated")), is(nullValue()));
+            assertThat(underTest.get(SERVICE_ID, "key"), is(nullValue()));
+        }
+
+        @Test
+        void givenExistingKey_thenItIsRemoved() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "value"));
+
+            assertThat(underTest.remove(SERVICE_ID, "key").getValue(), is("value"));
+            assertThat(underTest.get(SERVICE_ID, "key"), is(nullValue()));
+            assertThat(underTest.size(), is(0L));
+            assertThat(underTest.usedBytes(), is(0L));
+        }
+
+        @Test
+        void givenManyUpdates_thenTheGarbageIsCompacted() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("stable", "value"));
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "value"));
+
+            // Every update leaves the previous version behind, which is way more than the capacity.
+            for (int i = 0; i < 1000; i++) {
+                underTest.replace(SERVICE_ID, new KeyValue("key", "value" + i));
+            }
+
+            assertThat(underTest.get(SERVICE_ID, "key").getValue(), is("value999"));
+            assertThat(underTest.get(SERVICE_ID, "stable").getValue(), is("value"));
+            assertThat(underTest.size(), is(2L));
+        }
+    }
+
+    @Nested
+    class WhenTimeToLiveElapsed {
+        private KeyValue expired(String key) {
+            KeyValue expired = new KeyValue(key, "expired", "1");
+            expired.setTtl(1L);
+            return expired;
+        }
+
+        @Test
+        void thenTheEntryIsntReturned() {
+            underTest.putIfAbsent(SERVICE_ID, expired("key"));
+
+            assertThat(underTest.get(SERVICE_ID, "key"), is(nullValue()));
+            assertThat(underTest.getService(SERVICE_ID).size(), is(0));
+        }
+
+        @Test
+        void thenTheKeyCanBeStoredAgain() {
+            underTest.putIfAbsent(SERVICE_ID, expired("key"));
+
+            assertThat(underTest.putIfAbsent(SERVICE_ID, new KeyValue("key", "value")), is(nullValue()));
+            assertThat(underTest.get(SERVICE_ID, "key").getValue(), is("value"));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void thenTheEntryIsntReplacedButRemoved() {
+            underTest.putIfAbsent(SERVICE_ID, expired("key"));
+
+            assertThat(underTest.replace(SERVICE_ID, new KeyValue("key", "value")), is(nullValue()));
+            assertThat(underTest.size(), is(0L));
+        }
+
+        @Test
+        void thenOnlyTheExpiredEntriesAreRemoved() {
+            underTest.putIfAbsent(SERVICE_ID, expired("key1"));
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key2", "value"));
+
+            assertThat(underTest.removeExpired(System.currentTimeMillis()), is(1));
+            assertThat(underTest.size(), is(1L));
+            assertThat(underTest.getService(SERVICE_ID).keySet(), contains("key2"));
+        }
+    }
+
+    @Nested
+    class WhenServiceIsProcessed {
+        @BeforeEach
+        void setUp() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key1", "value1"));
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key2", "value2"));
+            underTest.putIfAbsent("other", new KeyValue("key1", "other"));
+        }
+
+        @Test
+        void thenOnlyItsEntriesAreReturned() {
+            Map<String, KeyValue> result = underTest.getService(SERVICE_ID);
+
+            assertThat(result.size(), is(2));
+            assertThat(result.get("key1").getValue(), is("value1"));
+            assertThat(result.get("key2").getValue(), is("value2"));
+        }
+
+        @Test
+        void thenOnlyItsEntriesAreRemoved() {
+            underTest.removeService(SERVICE_ID);
+
+            assertThat(underTest.getService(SERVICE_ID).size(), is(0));
+            assertThat(underTest.get("other", "key1").getValue(), is("other"));
+            assertThat(underTest.size(), is(1L));
+        }
+
+        @Test
+        void givenSingleEntryIsRemoved_thenTheOthersAreStillReturned() {
+            underTest.remove(SERVICE_ID, "key2");
+            underTest.remove(SERVICE_ID, "key1");
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key3", "value3"));
+
+            assertThat(underTest.getService(SERVICE_ID).keySet(), contains("key3"));
+            assertThat(underTest.getService("other").keySet(), contains("key1"));
+        }
+
+        @Test
+        void givenIndexIsResized_thenEntriesStayLinkedToTheirService() {
+            underTest = new OffHeapStore(1024 * 1024, 64 * 1024);
+            for (int i = 0; i < 2000; i++) {
+                underTest.putIfAbsent("service" + i % 3, new KeyValue("key" + i, "value" + i));
+            }
+
+            assertThat(underTest.getService("service1").size(), is(667));
+            underTest.removeService("service1");
+
+            assertThat(underTest.getService("service1").size(), is(0));
+            assertThat(underTest.getService("service0").size(), is(667));
+            assertThat(underTest.size(), is(1333L));
+        }
+
+        @Test
+        void thenItsEntriesArePagedByKey() {
+            underTest.putIfAbsent(SERVICE_ID, new KeyValue("key0", "value0"));
+
+            ScanResult first = underTest.scanService(SERVICE_ID, null, 2);
+            ScanResult second = underTest.scanService(SERVICE_ID, first.getCursor(), 2);
+
+            assertThat(keys(first), contains("key0", "key1"));
+            assertThat(keys(second), contains("key2"));
+            assertThat(second.getCursor(), is(nullValue()));
+        }
+
+        private List<String> keys(ScanResult page) {
+            return page.getEntries().stream().map(KeyValue::getKey).collect(Collectors.toList());
+        }
+    }
+}
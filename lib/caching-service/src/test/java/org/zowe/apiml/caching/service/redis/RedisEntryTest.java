@@ -11,7 +11,6 @@
 package org.zowe.apiml.caching.service.redis;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.zowe.apiml.caching.model.KeyValue;
@@ -21,9 +20,6 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class RedisEntryTest {
     private static final String SERVICE_ID = "my-service";
@@ -70,13 +66,71 @@ public class RedisEntryTest {
         }
 
         @Test
-        void givenSerializingError_thenThrowRedisEntryException() throws JsonProcessingException {
-            ObjectMapper mapper = mock(ObjectMapper.class);
-            when(mapper.writeValueAsString(any())).thenThrow(new RuntimeException("error"));
+        void givenCompactFormat_thenReturnCompactString() throws RedisEntryException {
+            RedisEntry underTest = new RedisEntry(SERVICE_ID, KEY_VALUE, RedisEntry.COMPACT_FORMAT);
+            String result = underTest.getEntryAsString();
+
+            String created = KEY_VALUE.getCreated();
+            assertThat(result, is("\u00010:3:key5:value" + created.length() + ":" + created + "-1:"));
+            assertThat(result.length() < KEY_VALUE_SERIALIZED.length(), is(true));
+        }
+
+        @Test
+        void givenSerializingError_thenThrowRedisEntryException() {
+            KeyValue unserializable = new KeyValue("key", "value") {
+                @Override
+                public String getValue() {
+                    throw new IllegalStateException("error");
+                }
+            };
+            RedisEntry underTest = new RedisEntry(SERVICE_ID, unserializable);
+
+            RedisEntryException thrown = assertThrows(RedisEntryException.class, underTest::getEntryAsString);
+            assertThat(thrown.getCause(), instanceOf(JsonProcessingException.class));
+        }
+    }
+
+    @Nested
+    class whenUsingCompactFormat {
+        @Test
+        void givenKeyValueWithAllFields_thenItIsReadBack() throws RedisEntryException {
+            KeyValue keyValue = new KeyValue("key:with:colons", "{\"quoted\":\"value\"}", "1700000000000");
+            keyValue.setServiceId(SERVICE_ID);
+            keyValue.setTtl(60000L);
+
+            String serialized = new RedisEntry(SERVICE_ID, keyValue, RedisEntry.COMPACT_FORMAT).getEntryAsString();
+            assertThat(new RedisEntry(SERVICE_ID, serialized).getEntry(), is(keyValue));
+        }
+
+        @Test
+        void givenNullFields_thenTheyAreReadBackAsNull() throws RedisEntryException {
+            KeyValue keyValue = new KeyValue("key", null, "1");
+
+            String serialized = new RedisEntry(SERVICE_ID, keyValue, RedisEntry.COMPACT_FORMAT).getEntryAsString();
+            assertThat(new RedisEntry(SERVICE_ID, serialized).getEntry(), is(keyValue));
+        }
+
+        @Test
+        void givenEmptyValue_thenItIsReadBackAsEmpty() throws RedisEntryException {
+            KeyValue keyValue = new KeyValue("key", "");
+
+            String serialized = new RedisEntry(SERVICE_ID, keyValue, RedisEntry.COMPACT_FORMAT).getEntryAsString();
+            assertThat(new RedisEntry(SERVICE_ID, serialized).getEntry(), is(keyValue));
+        }
+
+        @Test
+        void givenJsonWrittenByPreviousVersion_thenItIsStillRead() throws RedisEntryException {
+            RedisEntry actual = new RedisEntry(SERVICE_ID, KEY_VALUE_SERIALIZED);
+            assertThat(actual.getEntry(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenTruncatedCompactValue_thenThrowException() throws RedisEntryException {
+            String serialized = new RedisEntry(SERVICE_ID, KEY_VALUE, RedisEntry.COMPACT_FORMAT).getEntryAsString();
+            String truncated = serialized.substring(0, serialized.length() - 4);
 
-            RedisEntry underTest = new RedisEntry(SERVICE_ID, KEY_VALUE, mapper);
-            RedisEntryException ex = assertThrows(RedisEntryException.class, underTest::getEntryAsString);
-            assertThat(ex.getMessage(), is("Failure serializing the entry as a String"));
+            RedisEntryException thrown = assertThrows(RedisEntryException.class, () -> new RedisEntry(SERVICE_ID, truncated));
+            assertThat(thrown.getCause(), instanceOf(IllegalArgumentException.class));
         }
     }
 }
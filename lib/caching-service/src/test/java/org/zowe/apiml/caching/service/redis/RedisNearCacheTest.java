@@ -0,0 +1,201 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.redis;
+
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import io.lettuce.core.pubsub.api.async.RedisPubSubAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+class RedisNearCacheTest {
+    private static final String SERVICE_ID = "service";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    private RedisNearCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new RedisNearCache(2, 60000);
+    }
+
+    @Nested
+    class WhenCaching {
+        @Test
+        void givenCachedValue_thenItIsReturned() {
+            underTest.put(SERVICE_ID, KEY, VALUE, underTest.getGeneration());
+
+            assertThat(underTest.get(SERVICE_ID, KEY).getValue(), is(VALUE));
+        }
+
+        @Test
+        void givenCachedMissingEntry_thenNullValueIsReturned() {
+            underTest.put(SERVICE_ID, KEY, null, underTest.getGeneration());
+
+            RedisNearCache.CachedValue result = underTest.get(SERVICE_ID, KEY);
+            assertThat(result, is(notNullValue()));
+            assertThat(result.getValue(), is(nullValue()));
+        }
+
+        @Test
+        void givenMoreEntriesThanSize_thenLeastRecentlyReadIsEvicted() {
+            underTest.put(SERVICE_ID, "key1", VALUE, underTest.getGeneration());
+            underTest.put(SERVICE_ID, "key2", VALUE, underTest.getGeneration());
+            underTest.get(SERVICE_ID, "key1");
+            underTest.put(SERVICE_ID, "key3", VALUE, underTest.getGeneration());
+
+            assertThat(underTest.getSize(), is(2));
+            assertThat(underTest.get(SERVICE_ID, "key1"), is(notNullValue()));
+            assertThat(underTest.get(SERVICE_ID, "key2"), is(nullValue()));
+        }
+
+        @Test
+        void givenManyInvalidatedEntries_thenCacheStaysBounded() {
+            for (int i = 0; i < 100; i++) {
+                underTest.put(SERVICE_ID, "key" + i, VALUE, underTest.getGeneration());
+                underTest.invalidate(SERVICE_ID, "key" + i);
+                underTest.put(SERVICE_ID, "other" + i, VALUE, underTest.getGeneration());
+            }
+
+            assertThat(underTest.getSize(), is(lessThanOrEqualTo(2)));
+            assertThat(underTest.get(SERVICE_ID, "other99"), is(notNullValue()));
+        }
+
+        @Test
+        void givenConcurrentReadsAndWrites_thenSizeIsNotExceeded() throws InterruptedException {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                int offset = t;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String key = "key" + (i * threads.length + offset);
+                        underTest.put(SERVICE_ID, key, VALUE, underTest.getGeneration());
+                        underTest.get(SERVICE_ID, key);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertThat(underTest.getSize(), is(lessThanOrEqualTo(2)));
+        }
+
+        @Test
+        void givenExpiredEntry_thenItIsNotReturned() {
+            underTest = new RedisNearCache(2, -1);
+            underTest.put(SERVICE_ID, KEY, VALUE, underTest.getGeneration());
+
+            assertThat(underTest.get(SERVICE_ID, KEY), is(nullValue()));
+            assertThat(underTest.getSize(), is(0));
+        }
+
+        @Test
+        void givenInvalidationDuringLoad_thenLoadedValueIsNotCached() {
+            long generation = underTest.getGeneration();
+            underTest.invalidate(SERVICE_ID, KEY);
+            underTest.put(SERVICE_ID, KEY, VALUE, generation);
+
+            assertThat(underTest.get(SERVICE_ID, KEY), is(nullValue()));
+        }
+    }
+
+    @Nested
+    class WhenReceivingInvalidations {
+        @BeforeEach
+        void cacheEntries() {
+            underTest.put(SERVICE_ID, KEY, VALUE, underTest.getGeneration());
+            underTest.put("other", KEY, VALUE, underTest.getGeneration());
+        }
+
+        @Test
+        void givenKeyInvalidation_thenOnlyTheKeyIsInvalidated() {
+            underTest.message(RedisNearCache.INVALIDATION_CHANNEL, RedisNearCache.keyInvalidation(SERVICE_ID, KEY));
+
+            assertThat(underTest.get(SERVICE_ID, KEY), is(nullValue()));
+            assertThat(underTest.get("other", KEY), is(notNullValue()));
+        }
+
+        @Test
+        void givenKeyWithSeparator_thenTheKeyIsInvalidated() {
+            underTest.put("a:b", "c:d", VALUE, underTest.getGeneration());
+            underTest.message(RedisNearCache.INVALIDATION_CHANNEL, RedisNearCache.keyInvalidation("a:b", "c:d"));
+
+            assertThat(underTest.get("a:b", "c:d"), is(nullValue()));
+        }
+
+        @Test
+        void givenServiceInvalidation_thenAllEntriesOfTheServiceAreInvalidated() {
+            underTest.message(RedisNearCache.INVALIDATION_CHANNEL, RedisNearCache.serviceInvalidation(SERVICE_ID));
+
+            assertThat(underTest.get(SERVICE_ID, KEY), is(nullValue()));
+            assertThat(underTest.get("other", KEY), is(notNullValue()));
+        }
+
+        @Test
+        void givenInvalidMessage_thenAllEntriesAreInvalidated() {
+            underTest.message(RedisNearCache.INVALIDATION_CHANNEL, "kx");
+
+            assertThat(underTest.getSize(), is(0));
+        }
+
+        @Test
+        void givenMessageOfAnotherChannel_thenNothingIsInvalidated() {
+            underTest.message("another", RedisNearCache.serviceInvalidation(SERVICE_ID));
+
+            assertThat(underTest.getSize(), is(2));
+        }
+
+        @Test
+        void givenDisconnectedClient_thenAllEntriesAreInvalidated() {
+            underTest.onRedisDisconnected(null);
+
+            assertThat(underTest.getSize(), is(0));
+        }
+    }
+
+    @Test
+    void whenSubscribed_thenListenToTheInvalidationChannel() {
+        StatefulRedisPubSubConnection<String, String> connection = mock(StatefulRedisPubSubConnection.class);
+        RedisPubSubAsyncCommands<String, String> commands = mock(RedisPubSubAsyncCommands.class);
+        when(connection.async()).thenReturn(commands);
+
+        underTest.subscribe(connection);
+        underTest.close();
+
+        verify(connection).addListener(underTest);
+        verify(commands).subscribe(RedisNearCache.INVALIDATION_CHANNEL);
+        verify(connection).close();
+    }
+
+    @Test
+    void whenBoundToRegistry_thenHitsAndInvalidationsAreReported() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        underTest.get(SERVICE_ID, KEY);
+        underTest.put(SERVICE_ID, KEY, VALUE, underTest.getGeneration());
+        underTest.get(SERVICE_ID, KEY);
+        underTest.invalidate(SERVICE_ID, KEY);
+
+        assertThat(registry.get("caching.redis.nearcache.hit.ratio").gauge().value(), is(0.5));
+        assertThat(registry.get("caching.redis.nearcache.size").gauge().value(), is(0.0));
+        assertThat(registry.get("caching.redis.nearcache.reads").tag("result", "miss").functionCounter().count(), is(1.0));
+        assertThat(registry.get("caching.redis.nearcache.invalidations").functionCounter().count(), is(1.0));
+    }
+}
@@ -10,26 +10,33 @@
 
 package org.zowe.apiml.caching.service.redis;
 
+import io.lettuce.core.MapScanCursor;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisCommandExecutionException;
 import io.lettuce.core.RedisFuture;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.masterreplica.StatefulRedisMasterReplicaConnection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.redis.config.RedisConfig;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisEntryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisOutOfMemoryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RetryableRedisException;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
@@ -65,50 +72,84 @@ class RedisOperatorTest {
     @Nested
     class whenCreating {
 
-        @Mock
-        private RedisFuture<Boolean> future;
+        @Test
+        void givenNewEntry_thenReturnTrue() throws RedisEntryException, RedisOutOfMemoryException {
+            stubCreate(completed(null));
 
-        @BeforeEach
-        void mockRedisCommand() {
-            when(redisCommands.hsetnx(any(), any(), any())).thenReturn(future);
+            boolean result = underTest.create(REDIS_ENTRY);
+            assertTrue(result);
         }
 
         @Test
-        void givenNewEntry_thenReturnTrue() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
-            when(future.get()).thenReturn(true);
+        void givenExistingEntry_thenReturnFalse() throws RedisEntryException, RedisOutOfMemoryException {
+            stubCreate(completed(VALID_SERIALIZED_ENTRY));
+
+            boolean result = underTest.create(REDIS_ENTRY);
+            assertFalse(result);
+        }
+
+        @Test
+        void givenExpiredEntry_thenReplaceIt() throws RedisEntryException, RedisOutOfMemoryException {
+            String expired = new RedisEntry(SERVICE_ID, expiredKeyValue()).getEntryAsString();
+            stubCreate(completed(expired));
+            when(redisCommands.<Long>evalsha(RedisScript.REPLACE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, expired, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
 
             boolean result = underTest.create(REDIS_ENTRY);
             assertTrue(result);
         }
 
         @Test
-        void givenExistingEntry_thenReturnFalse() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
-            when(future.get()).thenReturn(false);
+        void givenExpiredEntryChangedMeanwhile_thenReturnFalse() throws RedisEntryException, RedisOutOfMemoryException {
+            String expired = new RedisEntry(SERVICE_ID, expiredKeyValue()).getEntryAsString();
+            stubCreate(completed(expired));
+            when(redisCommands.<Long>evalsha(RedisScript.REPLACE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, expired, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(0L));
 
             boolean result = underTest.create(REDIS_ENTRY);
             assertFalse(result);
         }
 
         @Test
-        void givenRedisOutOfMemory_thenThrowOutOfMemoryException() throws ExecutionException, InterruptedException {
-            when(future.get()).thenThrow(new ExecutionException(new RedisCommandExecutionException("maxmemory")));
+        void givenRedisOutOfMemory_thenThrowOutOfMemoryException() throws RedisEntryException {
+            stubCreate(failed(new RedisCommandExecutionException("maxmemory")));
 
             assertThrows(RedisOutOfMemoryException.class, () -> underTest.create(REDIS_ENTRY));
         }
 
         @Test
-        void givenInterruptedException_thenThrowRetryException() throws ExecutionException, InterruptedException {
-            when(future.get()).thenThrow(new InterruptedException());
+        void givenInterruptedException_thenThrowRetryException() throws RedisEntryException {
+            stubCreate(new CompletedRedisFuture<>());
 
-            assertThrows(RetryableRedisException.class, () -> underTest.create(REDIS_ENTRY));
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(RetryableRedisException.class, () -> underTest.create(REDIS_ENTRY));
+            } finally {
+                Thread.interrupted();
+            }
         }
 
         @Test
-        void givenExecutionException_thenThrowRetryException() throws ExecutionException, InterruptedException {
-            when(future.get()).thenThrow(new ExecutionException(new Exception()));
+        void givenExecutionException_thenThrowRetryException() throws RedisEntryException {
+            stubCreate(failed(new Exception()));
 
             assertThrows(RetryableRedisException.class, () -> underTest.create(REDIS_ENTRY));
         }
+
+        @Test
+        void givenUnknownScript_thenEvaluateWholeScript() throws RedisEntryException, RedisOutOfMemoryException {
+            stubCreate(failed(new RedisCommandExecutionException("NOSCRIPT No matching script. Please use EVAL.")));
+            when(redisCommands.<String>eval(RedisScript.CREATE.getBody(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(null));
+
+            boolean result = underTest.create(REDIS_ENTRY);
+            assertTrue(result);
+        }
+
+        private void stubCreate(RedisFuture<String> future) throws RedisEntryException {
+            when(redisCommands.<String>evalsha(RedisScript.CREATE.getSha(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(future);
+        }
     }
 
     // Outside whenCreating because test fails with unnecessary stubbings error
@@ -126,85 +167,102 @@ class RedisOperatorTest {
     @Nested
     class whenUpdating {
 
-        @Mock
-        private RedisFuture<Boolean> setFuture;
-
-        @Mock
-        private RedisFuture<Boolean> existsFuture;
-
         @Test
-        void givenExistingEntry_thenUpdateEntry() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
-            when(redisCommands.hset(any(), any(), any())).thenReturn(setFuture);
-            when(setFuture.get()).thenReturn(false);
-
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenReturn(true);
+        void givenExistingEntry_thenUpdateEntry() throws RedisEntryException, RedisOutOfMemoryException {
+            stubUpdate(completed(1L));
 
             boolean result = underTest.update(REDIS_ENTRY);
             assertTrue(result);
         }
 
         @Test
-        void givenExistingEntryAndFailureUpdating_thenDontUpdateEntry() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
-            when(redisCommands.hset(any(), any(), any())).thenReturn(setFuture);
-            when(setFuture.get()).thenReturn(true);
-
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenReturn(true);
+        void givenNotExistingEntry_thenDontUpdateEntry() throws RedisEntryException, RedisOutOfMemoryException {
+            stubUpdate(completed(0L));
 
             boolean result = underTest.update(REDIS_ENTRY);
             assertFalse(result);
         }
 
         @Test
-        void givenNotExistingEntry_thenDontUpdateEntry() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenReturn(false);
-
-            boolean result = underTest.update(REDIS_ENTRY);
-            assertFalse(result);
-        }
-
-        @Test
-        void givenRedisOutOfMemory_thenThrowOutOfMemoryException() throws ExecutionException, InterruptedException {
-            when(redisCommands.hset(any(), any(), any())).thenReturn(setFuture);
-            when(setFuture.get()).thenThrow(new ExecutionException(new RedisCommandExecutionException("maxmemory")));
-
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenReturn(true);
+        void givenRedisOutOfMemory_thenThrowOutOfMemoryException() throws RedisEntryException {
+            stubUpdate(failed(new RedisCommandExecutionException("maxmemory")));
 
             assertThrows(RedisOutOfMemoryException.class, () -> underTest.update(REDIS_ENTRY));
         }
 
         @Test
-        void givenInterruptedException_thenThrowRetryException() throws ExecutionException, InterruptedException {
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenThrow(new InterruptedException());
+        void givenInterruptedException_thenThrowRetryException() throws RedisEntryException {
+            stubUpdate(new CompletedRedisFuture<>());
 
-            assertThrows(RetryableRedisException.class, () -> underTest.update(REDIS_ENTRY));
+            Thread.currentThread().interrupt();
+            try {
+                assertThrows(RetryableRedisException.class, () -> underTest.update(REDIS_ENTRY));
+            } finally {
+                Thread.interrupted();
+            }
         }
 
         @Test
-        void givenExecutionException_thenThrowRetryException() throws ExecutionException, InterruptedException {
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenThrow(new ExecutionException(new Exception()));
+        void givenExecutionException_thenThrowRetryException() throws RedisEntryException {
+            stubUpdate(failed(new Exception()));
 
             assertThrows(RetryableRedisException.class, () -> underTest.update(REDIS_ENTRY));
         }
 
         @Test
-        void givenRedisEntryException_thenReturnFalse() throws RedisEntryException, RedisOutOfMemoryException, ExecutionException, InterruptedException {
+        void givenRedisEntryException_thenReturnFalse() throws RedisEntryException, RedisOutOfMemoryException {
             RedisEntry entry = mock(RedisEntry.class);
             when(entry.getServiceId()).thenReturn(SERVICE_ID);
             when(entry.getEntry()).thenReturn(KEY_VALUE);
             when(entry.getEntryAsString()).thenThrow(new RedisEntryException("error"));
 
-            when(redisCommands.hexists(any(), any())).thenReturn(existsFuture);
-            when(existsFuture.get()).thenReturn(true);
-
             boolean result = underTest.update(entry);
             assertFalse(result);
         }
+
+        private void stubUpdate(RedisFuture<Long> future) throws RedisEntryException {
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(future);
+        }
+    }
+
+    @Nested
+    class whenGettingAndDeletingEntry {
+
+        @Test
+        void givenExistingKey_thenReturnDeletedEntry() {
+            stubGetAndDelete(completed(VALID_SERIALIZED_ENTRY));
+
+            RedisEntry result = underTest.getAndDelete(SERVICE_ID, KEY);
+            assertThat(result.getEntry(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenNotExistingKey_thenReturnNull() {
+            stubGetAndDelete(completed(null));
+
+            assertThat(underTest.getAndDelete(SERVICE_ID, KEY), is(nullValue()));
+        }
+
+        @Test
+        void givenExecutionException_thenThrowRetryException() {
+            stubGetAndDelete(failed(new Exception()));
+
+            assertThrows(RetryableRedisException.class, () -> underTest.getAndDelete(SERVICE_ID, KEY));
+        }
+
+        @Test
+        void givenRedisFailure_thenAsyncFailsWithRetryException() {
+            stubGetAndDelete(failed(new Exception()));
+
+            CompletionException e = assertThrows(CompletionException.class, () -> underTest.getAndDeleteAsync(SERVICE_ID, KEY).toCompletableFuture().join());
+            assertThat(e.getCause() instanceof RetryableRedisException, is(true));
+        }
+
+        private void stubGetAndDelete(RedisFuture<String> future) {
+            when(redisCommands.<String>evalsha(RedisScript.GET_AND_DELETE.getSha(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY))
+                .thenReturn(future);
+        }
     }
 
     @Nested
@@ -363,6 +421,184 @@ class RedisOperatorTest {
         }
     }
 
+    @Nested
+    class whenDeletingIfUnchanged {
+        @Test
+        void givenUnchangedEntry_thenDeleteIt() throws RedisEntryException {
+            RedisEntry read = new RedisEntry(SERVICE_ID, VALID_SERIALIZED_ENTRY);
+            when(redisCommands.<Long>evalsha(RedisScript.DELETE_IF_EQUAL.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, VALID_SERIALIZED_ENTRY))
+                .thenReturn(completed(1L));
+
+            assertTrue(underTest.deleteIfUnchanged(read));
+        }
+
+        @Test
+        void givenEntryChangedMeanwhile_thenKeepIt() throws RedisEntryException {
+            RedisEntry read = new RedisEntry(SERVICE_ID, VALID_SERIALIZED_ENTRY);
+            when(redisCommands.<Long>evalsha(RedisScript.DELETE_IF_EQUAL.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, VALID_SERIALIZED_ENTRY))
+                .thenReturn(completed(0L));
+
+            assertFalse(underTest.deleteIfUnchangedAsync(read).toCompletableFuture().join());
+        }
+
+        @Test
+        void givenEntryNotReadFromRedis_thenNothingIsDeleted() {
+            assertFalse(underTest.deleteIfUnchanged(REDIS_ENTRY));
+            verifyNoMoreInteractions(redisCommands);
+        }
+    }
+
+    @Nested
+    class whenRecordingExpiringServices {
+        @Test
+        void givenServiceRecordedTwice_thenItIsSentOnce() {
+            when(redisCommands.sadd(RedisOperator.EXPIRING_SERVICES_KEY, SERVICE_ID)).thenReturn(completed(1L));
+
+            underTest.expiring(SERVICE_ID);
+            underTest.expiring(SERVICE_ID);
+
+            verify(redisCommands, times(1)).sadd(RedisOperator.EXPIRING_SERVICES_KEY, SERVICE_ID);
+        }
+
+        @Test
+        void givenFailedRecording_thenItIsSentAgain() {
+            when(redisCommands.sadd(RedisOperator.EXPIRING_SERVICES_KEY, SERVICE_ID))
+                .thenReturn(failed(new RedisCommandExecutionException("failure")))
+                .thenReturn(completed(1L));
+
+            underTest.expiring(SERVICE_ID);
+            underTest.expiring(SERVICE_ID);
+
+            verify(redisCommands, times(2)).sadd(RedisOperator.EXPIRING_SERVICES_KEY, SERVICE_ID);
+        }
+
+        @Test
+        void givenRecordedServices_thenReturnThem() {
+            when(redisCommands.smembers(RedisOperator.EXPIRING_SERVICES_KEY)).thenReturn(completed(Collections.singleton(SERVICE_ID)));
+
+            assertThat(underTest.getExpiringServices(), is(Collections.singleton(SERVICE_ID)));
+        }
+    }
+
+    @Nested
+    class whenScanningEntries {
+        @Mock
+        private RedisFuture<MapScanCursor<String, String>> future;
+
+        @BeforeEach
+        void mockRedisCommand() {
+            when(redisCommands.hscan(eq(SERVICE_ID), any(ScanCursor.class), any(ScanArgs.class))).thenReturn(future);
+        }
+
+        @Test
+        void givenMoreEntries_thenReturnPageWithCursor() throws ExecutionException, InterruptedException {
+            MapScanCursor<String, String> cursor = new MapScanCursor<>();
+            cursor.getMap().put(KEY, VALID_SERIALIZED_ENTRY);
+            cursor.setCursor("17");
+            when(future.get()).thenReturn(cursor);
+
+            RedisOperator.EntryPage result = underTest.scan(SERVICE_ID, null, 10);
+            assertThat(result.getEntries().size(), is(1));
+            assertThat(result.getEntries().get(0).getEntry(), is(KEY_VALUE));
+            assertThat(result.getEntries().get(0).getRedisValue(), is(VALID_SERIALIZED_ENTRY));
+            assertThat(result.getCursor(), is("17"));
+        }
+
+        @Test
+        void givenLastPage_thenReturnNoCursor() throws ExecutionException, InterruptedException {
+            MapScanCursor<String, String> cursor = new MapScanCursor<>();
+            cursor.setCursor("0");
+            cursor.setFinished(true);
+            when(future.get()).thenReturn(cursor);
+
+            RedisOperator.EntryPage result = underTest.scan(SERVICE_ID, "17", 10);
+            assertTrue(result.getEntries().isEmpty());
+            assertThat(result.getCursor(), is(nullValue()));
+        }
+
+        @Test
+        void givenExecutionException_thenThrowRetryException() throws ExecutionException, InterruptedException {
+            when(future.get()).thenThrow(new ExecutionException(new Exception()));
+
+            assertThrows(RetryableRedisException.class, () -> underTest.scan(SERVICE_ID, null, 10));
+        }
+    }
+
+    @Nested
+    class whenProcessingBatch {
+        private final RedisEntry secondEntry = new RedisEntry(SERVICE_ID, new KeyValue("key2", VALUE));
+
+        @Mock
+        private RedisFuture<Boolean> future;
+
+        @Mock
+        private RedisFuture<Boolean> secondFuture;
+
+        @Test
+        void givenEntriesToCreate_thenAllCommandsAreSentBeforeWaiting() throws ExecutionException, InterruptedException, RedisOutOfMemoryException {
+            when(redisCommands.hsetnx(eq(SERVICE_ID), eq(KEY), any())).thenReturn(future);
+            when(redisCommands.hsetnx(eq(SERVICE_ID), eq("key2"), any())).thenReturn(secondFuture);
+            when(future.get()).thenReturn(true);
+            when(secondFuture.get()).thenReturn(false);
+
+            Map<String, Boolean> result = underTest.createAll(Arrays.asList(REDIS_ENTRY, secondEntry));
+            assertTrue(result.get(KEY));
+            assertFalse(result.get("key2"));
+
+            InOrder inOrder = inOrder(redisCommands, future);
+            inOrder.verify(redisCommands, times(2)).hsetnx(any(), any(), any());
+            inOrder.verify(future).get();
+        }
+
+        @Test
+        void givenRedisOutOfMemory_thenThrowOutOfMemoryException() throws ExecutionException, InterruptedException {
+            when(redisCommands.hsetnx(any(), any(), any())).thenReturn(future);
+            when(future.get()).thenThrow(new ExecutionException(new RedisCommandExecutionException("maxmemory")));
+
+            assertThrows(RedisOutOfMemoryException.class, () -> underTest.createAll(Collections.singletonList(REDIS_ENTRY)));
+        }
+
+        @Test
+        void givenEntriesToUpdate_thenOnlyExistingAreUpdated() throws RedisEntryException, RedisOutOfMemoryException {
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, "key2", secondEntry.getEntryAsString()))
+                .thenReturn(completed(0L));
+
+            Map<String, Boolean> result = underTest.updateAll(Arrays.asList(REDIS_ENTRY, secondEntry));
+            assertTrue(result.get(KEY));
+            assertFalse(result.get("key2"));
+        }
+
+        @Test
+        void givenKeysToRead_thenReturnFoundEntries() throws ExecutionException, InterruptedException {
+            RedisFuture<List<io.lettuce.core.KeyValue<String, String>>> getFuture = mock(RedisFuture.class);
+            when(redisCommands.hmget(SERVICE_ID, KEY, "key2")).thenReturn(getFuture);
+            when(getFuture.get()).thenReturn(Arrays.asList(
+                io.lettuce.core.KeyValue.just(KEY, VALID_SERIALIZED_ENTRY),
+                io.lettuce.core.KeyValue.empty("key2")
+            ));
+
+            List<RedisEntry> result = underTest.getAll(SERVICE_ID, Arrays.asList(KEY, "key2"));
+            assertThat(result.size(), is(1));
+            assertThat(result.get(0).getEntry(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenKeysToDelete_thenReturnWhichWereDeleted() throws ExecutionException, InterruptedException {
+            RedisFuture<Long> deleteFuture = mock(RedisFuture.class);
+            RedisFuture<Long> secondDeleteFuture = mock(RedisFuture.class);
+            when(redisCommands.hdel(SERVICE_ID, KEY)).thenReturn(deleteFuture);
+            when(redisCommands.hdel(SERVICE_ID, "key2")).thenReturn(secondDeleteFuture);
+            when(deleteFuture.get()).thenReturn(1L);
+            when(secondDeleteFuture.get()).thenReturn(0L);
+
+            Map<String, Boolean> result = underTest.deleteAll(SERVICE_ID, Arrays.asList(KEY, "key2"));
+            assertTrue(result.get(KEY));
+            assertFalse(result.get("key2"));
+        }
+    }
+
     @Nested
     class whenDeletingAllEntries {
 
@@ -404,14 +640,278 @@ class RedisOperatorTest {
     }
 
     @Test
-    void givenRedisExecutionExceptionNotOutOfMemory_thenThrowRetryableRedisException() throws ExecutionException, InterruptedException {
-        RedisFuture<Boolean> future = (RedisFuture<Boolean>) mock(RedisFuture.class);
-        when(redisCommands.hsetnx(any(), any(), any())).thenReturn(future);
-        when(future.get()).thenThrow(new ExecutionException(new RedisCommandExecutionException("error")));
+    void givenRedisExecutionExceptionNotOutOfMemory_thenThrowRetryableRedisException() throws RedisEntryException {
+        when(redisCommands.<String>evalsha(RedisScript.CREATE.getSha(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+            .thenReturn(failed(new RedisCommandExecutionException("error")));
 
         assertThrows(RetryableRedisException.class, () -> underTest.create(REDIS_ENTRY));
     }
 
+    @Nested
+    class whenUsingAsyncCommands {
+        @Test
+        void givenNewEntry_thenCreateCompletesWithTrue() throws RedisEntryException {
+            when(redisCommands.<String>evalsha(RedisScript.CREATE.getSha(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(null));
+
+            assertTrue(underTest.createAsync(REDIS_ENTRY).toCompletableFuture().join());
+        }
+
+        @Test
+        void givenRedisOutOfMemory_thenCreateFailsWithOutOfMemoryException() throws RedisEntryException {
+            when(redisCommands.<String>evalsha(RedisScript.CREATE.getSha(), ScriptOutputType.VALUE, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(failed(new RedisCommandExecutionException("maxmemory")));
+
+            CompletionException e = assertThrows(CompletionException.class, () -> underTest.createAsync(REDIS_ENTRY).toCompletableFuture().join());
+            assertThat(e.getCause() instanceof RedisOutOfMemoryException, is(true));
+        }
+
+        @Test
+        void givenMissingEntry_thenUpdateCompletesWithFalse() throws RedisEntryException {
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(0L));
+
+            assertFalse(underTest.updateAsync(REDIS_ENTRY).toCompletableFuture().join());
+        }
+
+        @Test
+        void givenExistingEntry_thenUpdateCompletesWithTrue() throws RedisEntryException {
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+
+            assertTrue(underTest.updateAsync(REDIS_ENTRY).toCompletableFuture().join());
+        }
+
+        @Test
+        void givenExistingEntry_thenGetCompletesWithIt() {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            RedisEntry result = underTest.getAsync(SERVICE_ID, KEY).toCompletableFuture().join();
+            assertThat(result.getEntry().getValue(), is(VALUE));
+        }
+
+        @Test
+        void givenMissingEntry_thenGetCompletesWithNull() {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(null));
+
+            assertThat(underTest.getAsync(SERVICE_ID, KEY).toCompletableFuture().join(), is(nullValue()));
+        }
+
+        @Test
+        void givenRedisFailure_thenDeleteFailsWithRetryException() {
+            when(redisCommands.hdel(SERVICE_ID, KEY)).thenReturn(failed(new Exception()));
+
+            CompletionException e = assertThrows(CompletionException.class, () -> underTest.deleteAsync(SERVICE_ID, KEY).toCompletableFuture().join());
+            assertThat(e.getCause() instanceof RetryableRedisException, is(true));
+        }
+    }
+
+    @Nested
+    class whenReadingFromReplicas {
+        @Mock
+        private RedisAsyncCommands<String, String> readCommands;
+
+        @Test
+        void givenReplicaPreferred_thenReadsUseReadConnection() {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, readCommands, RedisConfig.ReadPolicy.REPLICA_PREFERRED, 0, 1);
+            when(readCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            assertThat(underTest.get(SERVICE_ID, KEY).getEntry(), is(KEY_VALUE));
+            verify(redisCommands, never()).hget(any(), any());
+        }
+
+        @Test
+        void givenPinnedAndServiceWrittenRecently_thenReadFromMaster() throws RedisEntryException, RedisOutOfMemoryException {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, readCommands, RedisConfig.ReadPolicy.PINNED, 60000, 1);
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            underTest.update(REDIS_ENTRY);
+            assertThat(underTest.get(SERVICE_ID, KEY).getEntry(), is(KEY_VALUE));
+            verify(readCommands, never()).hget(any(), any());
+        }
+
+        @Test
+        void givenPinnedAndAnotherServiceWritten_thenReadFromReplica() throws RedisEntryException, RedisOutOfMemoryException {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, readCommands, RedisConfig.ReadPolicy.PINNED, 60000, 1);
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+            when(readCommands.hget("otherService", KEY)).thenReturn(completed(null));
+
+            underTest.update(REDIS_ENTRY);
+            assertThat(underTest.get("otherService", KEY), is(nullValue()));
+        }
+
+        @Test
+        void givenPinnedAndPinExpired_thenReadFromReplica() throws RedisEntryException, RedisOutOfMemoryException {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, readCommands, RedisConfig.ReadPolicy.PINNED, -1, 1);
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+            when(readCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            underTest.update(REDIS_ENTRY);
+            assertThat(underTest.get(SERVICE_ID, KEY).getEntry(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenNearCache_thenMissesAreReadFromMaster() {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, readCommands, RedisConfig.ReadPolicy.REPLICA_PREFERRED, 0, 1);
+            underTest.useNearCache(new RedisNearCache(10, 60000));
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            assertThat(underTest.get(SERVICE_ID, KEY).getEntry(), is(KEY_VALUE));
+            verify(readCommands, never()).hget(any(), any());
+        }
+
+        @Test
+        void givenReadConnection_thenItIsClosed() {
+            StatefulRedisMasterReplicaConnection<String, String> readConnection = mock(StatefulRedisMasterReplicaConnection.class);
+            underTest = new RedisOperator(null, redisConnection, redisCommands, readConnection, readCommands, RedisConfig.ReadPolicy.NEAREST, 0, 1);
+
+            underTest.closeConnection();
+            verify(readConnection).close();
+        }
+    }
+
+    @Nested
+    class whenShardingService {
+        private final String keyHash = SERVICE_ID + ":" + Math.floorMod(KEY.hashCode(), 2);
+
+        @BeforeEach
+        void useShards() {
+            underTest = new RedisOperator(redisClient, redisConnection, redisCommands, null, redisCommands, RedisConfig.ReadPolicy.MASTER, 0, 2);
+        }
+
+        @Test
+        void givenNewEntry_thenCreateItInTheHashOfItsShard() throws RedisEntryException, RedisOutOfMemoryException {
+            when(redisCommands.<String>evalsha(RedisScript.CREATE.getSha(), ScriptOutputType.VALUE, new String[]{keyHash}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(null));
+
+            assertTrue(underTest.create(REDIS_ENTRY));
+        }
+
+        @Test
+        void givenEntriesInBothShards_thenReadThemAll() {
+            Map<String, String> first = new HashMap<>();
+            first.put(KEY, VALID_SERIALIZED_ENTRY);
+            Map<String, String> second = new HashMap<>();
+            second.put("key2", "{\"key\":\"key2\",\"value\":\"value\",\"created\":\"1\"}");
+            when(redisCommands.hgetall(SERVICE_ID + ":0")).thenReturn(completed(first));
+            when(redisCommands.hgetall(SERVICE_ID + ":1")).thenReturn(completed(second));
+
+            assertThat(underTest.get(SERVICE_ID).size(), is(2));
+        }
+
+        @Test
+        void givenFirstShardScanned_thenCursorContinuesWithTheNextShard() {
+            MapScanCursor<String, String> finished = new MapScanCursor<>();
+            finished.setCursor("0");
+            finished.setFinished(true);
+            when(redisCommands.hscan(eq(SERVICE_ID + ":0"), any(ScanCursor.class), any(ScanArgs.class))).thenReturn(completed(finished));
+            when(redisCommands.hscan(eq(SERVICE_ID + ":1"), any(ScanCursor.class), any(ScanArgs.class))).thenReturn(completed(finished));
+
+            RedisOperator.EntryPage firstPage = underTest.scan(SERVICE_ID, null, 10);
+            assertThat(firstPage.getCursor(), is("1:0"));
+            RedisOperator.EntryPage lastPage = underTest.scan(SERVICE_ID, firstPage.getCursor(), 10);
+            assertThat(lastPage.getCursor(), is(nullValue()));
+        }
+
+        @Test
+        void givenService_thenDeleteHashesOfAllShards() {
+            when(redisCommands.del(SERVICE_ID + ":0", SERVICE_ID + ":1")).thenReturn(completed(2L));
+
+            assertTrue(underTest.delete(SERVICE_ID));
+        }
+    }
+
+    @Nested
+    class whenUsingNearCache {
+        private RedisNearCache nearCache;
+
+        @BeforeEach
+        void useNearCache() {
+            nearCache = new RedisNearCache(10, 60000);
+            underTest.useNearCache(nearCache);
+        }
+
+        @Test
+        void givenRepeatedRead_thenRedisIsReadOnce() {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+
+            assertThat(underTest.get(SERVICE_ID, KEY).getEntry(), is(KEY_VALUE));
+            assertThat(underTest.getAsync(SERVICE_ID, KEY).toCompletableFuture().join().getEntry(), is(KEY_VALUE));
+            verify(redisCommands, times(1)).hget(SERVICE_ID, KEY);
+        }
+
+        @Test
+        void givenRepeatedReadOfMissingEntry_thenRedisIsReadOnce() {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(null));
+
+            assertThat(underTest.getAsync(SERVICE_ID, KEY).toCompletableFuture().join(), is(nullValue()));
+            assertThat(underTest.get(SERVICE_ID, KEY), is(nullValue()));
+            verify(redisCommands, times(1)).hget(SERVICE_ID, KEY);
+        }
+
+        @Test
+        void givenUpdate_thenEntryIsInvalidatedAndPublished() throws RedisEntryException, RedisOutOfMemoryException {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+            when(redisCommands.<Long>evalsha(RedisScript.UPDATE.getSha(), ScriptOutputType.INTEGER, new String[]{SERVICE_ID}, KEY, REDIS_ENTRY.getEntryAsString()))
+                .thenReturn(completed(1L));
+            when(redisCommands.publish(any(), any())).thenReturn(completed(1L));
+
+            underTest.get(SERVICE_ID, KEY);
+            assertTrue(underTest.update(REDIS_ENTRY));
+            underTest.get(SERVICE_ID, KEY);
+
+            verify(redisCommands).publish(RedisNearCache.INVALIDATION_CHANNEL, RedisNearCache.keyInvalidation(SERVICE_ID, KEY));
+            verify(redisCommands, times(2)).hget(SERVICE_ID, KEY);
+        }
+
+        @Test
+        void givenServiceDeleted_thenServiceIsInvalidatedAndPublished() {
+            when(redisCommands.hget(SERVICE_ID, KEY)).thenReturn(completed(VALID_SERIALIZED_ENTRY));
+            when(redisCommands.del(SERVICE_ID)).thenReturn(completed(1L));
+            when(redisCommands.publish(any(), any())).thenReturn(completed(1L));
+
+            underTest.get(SERVICE_ID, KEY);
+            assertTrue(underTest.delete(SERVICE_ID));
+
+            verify(redisCommands).publish(RedisNearCache.INVALIDATION_CHANNEL, RedisNearCache.serviceInvalidation(SERVICE_ID));
+            assertThat(nearCache.getSize(), is(0));
+        }
+    }
+
+    private static KeyValue expiredKeyValue() {
+        KeyValue expired = new KeyValue(KEY, VALUE, "1");
+        expired.setTtl(1L);
+        return expired;
+    }
+
+    private static <T> RedisFuture<T> completed(T value) {
+        CompletedRedisFuture<T> future = new CompletedRedisFuture<>();
+        future.complete(value);
+        return future;
+    }
+
+    private static <T> RedisFuture<T> failed(Throwable failure) {
+        CompletedRedisFuture<T> future = new CompletedRedisFuture<>();
+        future.completeExceptionally(failure);
+        return future;
+    }
+
+    private static class CompletedRedisFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+        @Override
+        public String getError() {
+            return null;
+        }
+
+        @Override
+        public boolean await(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
     @Nested
     class WhenDestroying {
 
@@ -0,0 +1,31 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.redis;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class RedisScriptTest {
+    @Test
+    void givenScript_thenDigestIsTheOneUsedByRedis() {
+        assertThat(RedisScript.sha1("return 1"), is("e0e1f9fabfc9d4800c877a703b823ac0578ff8db"));
+    }
+
+    @Test
+    void givenEveryScript_thenDigestMatchesItsBody() {
+        for (RedisScript script : RedisScript.values()) {
+            assertThat(script.getSha(), is(RedisScript.sha1(script.getBody())));
+            assertThat(script.getSha().length(), is(40));
+        }
+    }
+}
@@ -13,20 +13,26 @@ package org.zowe.apiml.caching.service.redis;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.redis.exceptions.RedisEntryException;
 import org.zowe.apiml.caching.service.redis.exceptions.RedisOutOfMemoryException;
+import org.zowe.apiml.caching.service.redis.exceptions.RetryableRedisException;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -37,6 +43,7 @@ public class RedisStorageTest {
     private static final String VALUE = "value";
     private static final KeyValue KEY_VALUE = new KeyValue(KEY, VALUE);
     private static final RedisEntry REDIS_ENTRY = new RedisEntry(SERVICE_ID, KEY_VALUE);
+    private static final RedisEntry EXPIRED_ENTRY = new RedisEntry(SERVICE_ID, expired());
 
     private RedisStorage underTest;
 
@@ -48,6 +55,25 @@ public class RedisStorageTest {
         underTest = new RedisStorage(redisOperator);
     }
 
+    private static KeyValue expired() {
+        KeyValue expired = new KeyValue(KEY, VALUE, "1");
+        expired.setTtl(1L);
+        return expired;
+    }
+
+    @Nested
+    class whenInstantiating {
+        @Test
+        void givenUnknownEntryFormat_thenThrowException() {
+            assertThrows(IllegalArgumentException.class, () -> new RedisStorage(redisOperator, "smile"));
+        }
+
+        @Test
+        void givenFormatInOtherCase_thenItIsAccepted() {
+            assertDoesNotThrow(() -> new RedisStorage(redisOperator, "COMPACT"));
+        }
+    }
+
     @Nested
     class whenCreate {
         @Test
@@ -65,6 +91,16 @@ public class RedisStorageTest {
             assertThat(e.getKey(), is(Messages.DUPLICATE_KEY.getKey()));
         }
 
+        @Test
+        void givenCompactFormat_thenEntryIsWrittenInIt() throws RedisOutOfMemoryException, RedisEntryException {
+            underTest = new RedisStorage(redisOperator, RedisEntry.COMPACT_FORMAT);
+            ArgumentCaptor<RedisEntry> created = ArgumentCaptor.forClass(RedisEntry.class);
+            when(redisOperator.create(created.capture())).thenReturn(true);
+
+            underTest.create(SERVICE_ID, KEY_VALUE);
+            assertThat(created.getValue().getEntryAsString().charAt(0), is(RedisEntry.COMPACT_FORMAT_V1));
+        }
+
         @Test
         void givenRedisOutOfMemory_thenThrowException() throws RedisOutOfMemoryException {
             when(redisOperator.create(any())).thenThrow(new RedisOutOfMemoryException(new Exception()));
@@ -90,6 +126,16 @@ public class RedisStorageTest {
 
             assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
         }
+
+        @Test
+        void givenExpiredKey_thenRemoveItAndThrowException() {
+            when(redisOperator.get(anyString(), anyString())).thenReturn(EXPIRED_ENTRY);
+            StorageException e = assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, KEY));
+
+            assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+            verify(redisOperator).deleteIfUnchanged(EXPIRED_ENTRY);
+            verify(redisOperator, never()).delete(SERVICE_ID, KEY);
+        }
     }
 
     @Nested
@@ -122,8 +168,7 @@ public class RedisStorageTest {
     class whenDelete {
         @Test
         void givenExistingKey_thenRemoveKey() {
-            when(redisOperator.get(anyString(), anyString())).thenReturn(REDIS_ENTRY);
-            when(redisOperator.delete(anyString(), anyString())).thenReturn(true);
+            when(redisOperator.getAndDelete(SERVICE_ID, KEY)).thenReturn(REDIS_ENTRY);
 
             KeyValue result = underTest.delete(SERVICE_ID, KEY);
             assertThat(result, is(KEY_VALUE));
@@ -131,10 +176,210 @@ public class RedisStorageTest {
 
         @Test
         void givenNewKey_thenThrowException() {
-            when(redisOperator.delete(anyString(), any())).thenReturn(false);
+            when(redisOperator.getAndDelete(SERVICE_ID, KEY)).thenReturn(null);
+            StorageException e = assertThrows(StorageException.class, () -> underTest.delete(SERVICE_ID, KEY));
+
+            assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+
+        @Test
+        void givenExpiredKey_thenRemoveItAndThrowException() {
+            when(redisOperator.getAndDelete(SERVICE_ID, KEY)).thenReturn(EXPIRED_ENTRY);
             StorageException e = assertThrows(StorageException.class, () -> underTest.delete(SERVICE_ID, KEY));
 
             assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+            verify(redisOperator, never()).delete(SERVICE_ID, KEY);
+        }
+    }
+
+    @Nested
+    class whenUsingAsyncOperations {
+        @BeforeEach
+        void setUp() {
+            underTest = new RedisStorage(redisOperator, RedisEntry.JSON_FORMAT, 0);
+        }
+
+        @Test
+        void givenNewKey_thenCreateCompletes() throws RedisOutOfMemoryException {
+            when(redisOperator.createAsync(any())).thenReturn(CompletableFuture.completedFuture(true));
+
+            assertThat(underTest.createAsync(SERVICE_ID, KEY_VALUE).toCompletableFuture().join(), is(KEY_VALUE));
+            verify(redisOperator, never()).create(any());
+        }
+
+        @Test
+        void givenExistingKey_thenCreateFailsWithDuplicateKey() {
+            when(redisOperator.createAsync(any())).thenReturn(CompletableFuture.completedFuture(false));
+
+            StorageException e = storageFailure(underTest.createAsync(SERVICE_ID, KEY_VALUE));
+            assertThat(e.getKey(), is(Messages.DUPLICATE_KEY.getKey()));
+        }
+
+        @Test
+        void givenRedisOutOfMemory_thenCreateFailsWithInsufficientStorage() {
+            CompletableFuture<Boolean> failure = new CompletableFuture<>();
+            failure.completeExceptionally(new RedisOutOfMemoryException(new RuntimeException("maxmemory")));
+            when(redisOperator.createAsync(any())).thenReturn(failure);
+
+            StorageException e = storageFailure(underTest.createAsync(SERVICE_ID, KEY_VALUE));
+            assertThat(e.getKey(), is(Messages.INSUFFICIENT_STORAGE.getKey()));
+        }
+
+        @Test
+        void givenExpiredEntry_thenReadFailsWithKeyNotInCache() {
+            when(redisOperator.getAsync(SERVICE_ID, KEY)).thenReturn(CompletableFuture.completedFuture(EXPIRED_ENTRY));
+            when(redisOperator.deleteIfUnchangedAsync(EXPIRED_ENTRY)).thenReturn(CompletableFuture.completedFuture(true));
+
+            StorageException e = storageFailure(underTest.readAsync(SERVICE_ID, KEY));
+            assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+
+        @Test
+        void givenRetryableFailure_thenReadIsRetried() {
+            CompletableFuture<RedisEntry> failure = new CompletableFuture<>();
+            failure.completeExceptionally(new RetryableRedisException(new RuntimeException("connection reset")));
+            when(redisOperator.getAsync(SERVICE_ID, KEY))
+                .thenReturn(failure)
+                .thenReturn(CompletableFuture.completedFuture(REDIS_ENTRY));
+
+            assertThat(underTest.readAsync(SERVICE_ID, KEY).toCompletableFuture().join(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenPersistentRetryableFailure_thenReadFailsAfterThreeAttempts() {
+            CompletableFuture<RedisEntry> failure = new CompletableFuture<>();
+            failure.completeExceptionally(new RetryableRedisException(new RuntimeException("connection reset")));
+            when(redisOperator.getAsync(SERVICE_ID, KEY)).thenReturn(failure);
+
+            CompletionException e = assertThrows(CompletionException.class, () -> underTest.readAsync(SERVICE_ID, KEY).toCompletableFuture().join());
+            assertThat(e.getCause() instanceof RetryableRedisException, is(true));
+            verify(redisOperator, times(3)).getAsync(SERVICE_ID, KEY);
+        }
+
+        @Test
+        void givenRetryableFailure_thenReadIsRetriedAfterDelay() {
+            underTest = new RedisStorage(redisOperator, RedisEntry.JSON_FORMAT, 100);
+            CompletableFuture<RedisEntry> failure = new CompletableFuture<>();
+            failure.completeExceptionally(new RetryableRedisException(new RuntimeException("connection reset")));
+            when(redisOperator.getAsync(SERVICE_ID, KEY))
+                .thenReturn(failure)
+                .thenReturn(CompletableFuture.completedFuture(REDIS_ENTRY));
+
+            long start = System.nanoTime();
+            CompletableFuture<KeyValue> result = underTest.readAsync(SERVICE_ID, KEY).toCompletableFuture();
+            verify(redisOperator, times(1)).getAsync(SERVICE_ID, KEY);
+
+            assertThat(result.join(), is(KEY_VALUE));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+            verify(redisOperator, times(2)).getAsync(SERVICE_ID, KEY);
+        }
+
+        @Test
+        void givenMissingKey_thenUpdateFailsWithKeyNotInCache() {
+            when(redisOperator.updateAsync(any())).thenReturn(CompletableFuture.completedFuture(false));
+
+            StorageException e = storageFailure(underTest.updateAsync(SERVICE_ID, KEY_VALUE));
+            assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+
+        @Test
+        void givenExistingKey_thenDeleteCompletesWithTheEntry() {
+            when(redisOperator.getAndDeleteAsync(SERVICE_ID, KEY)).thenReturn(CompletableFuture.completedFuture(REDIS_ENTRY));
+
+            assertThat(underTest.deleteAsync(SERVICE_ID, KEY).toCompletableFuture().join(), is(KEY_VALUE));
+        }
+
+        @Test
+        void givenMissingKey_thenDeleteFailsWithKeyNotInCache() {
+            when(redisOperator.getAndDeleteAsync(SERVICE_ID, KEY)).thenReturn(CompletableFuture.completedFuture(null));
+
+            StorageException e = storageFailure(underTest.deleteAsync(SERVICE_ID, KEY));
+            assertThat(e.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+
+        private StorageException storageFailure(CompletionStage<KeyValue> stage) {
+            CompletionException e = assertThrows(CompletionException.class, () -> stage.toCompletableFuture().join());
+            assertThat(e.getCause() instanceof StorageException, is(true));
+            return (StorageException) e.getCause();
+        }
+    }
+
+    @Nested
+    class whenScanForService {
+        @Test
+        void givenPageWithExpiredEntry_thenReturnOnlyValidOnesWithCursor() {
+            when(redisOperator.scan(SERVICE_ID, null, 10))
+                .thenReturn(new RedisOperator.EntryPage(Arrays.asList(EXPIRED_ENTRY, new RedisEntry(SERVICE_ID, new KeyValue("key2", VALUE))), "17"));
+
+            ScanResult result = underTest.scanForService(SERVICE_ID, null, 10);
+
+            assertThat(result.getEntries().size(), is(1));
+            assertThat(result.getEntries().get(0).getKey(), is("key2"));
+            assertThat(result.getCursor(), is("17"));
+            verify(redisOperator).deleteIfUnchanged(EXPIRED_ENTRY);
+        }
+    }
+
+    @Nested
+    class whenProcessingBatch {
+        @Test
+        void givenNewAndExistingKeys_thenReportOnlyDuplicates() throws RedisOutOfMemoryException {
+            Map<String, Boolean> created = new HashMap<>();
+            created.put(KEY, true);
+            created.put("key2", false);
+            when(redisOperator.createAll(any())).thenReturn(created);
+            when(redisOperator.getAll(SERVICE_ID, Collections.singletonList("key2"))).thenReturn(new ArrayList<>());
+
+            Map<String, StorageException> failures = underTest.createAll(SERVICE_ID, Arrays.asList(KEY_VALUE, new KeyValue("key2", VALUE)));
+
+            assertThat(failures.size(), is(1));
+            assertThat(failures.get("key2").getKey(), is(Messages.DUPLICATE_KEY.getKey()));
+        }
+
+        @Test
+        void givenExpiredExistingKey_thenReplaceEntry() throws RedisOutOfMemoryException {
+            when(redisOperator.createAll(any()))
+                .thenReturn(Collections.singletonMap(KEY, false))
+                .thenReturn(Collections.singletonMap(KEY, true));
+            when(redisOperator.getAll(SERVICE_ID, Collections.singletonList(KEY))).thenReturn(Collections.singletonList(EXPIRED_ENTRY));
+
+            Map<String, StorageException> failures = underTest.createAll(SERVICE_ID, Collections.singletonList(KEY_VALUE));
+
+            assertTrue(failures.isEmpty());
+            verify(redisOperator).deleteIfUnchanged(EXPIRED_ENTRY);
+        }
+
+        @Test
+        void givenRedisOutOfMemory_thenReportAllEntries() throws RedisOutOfMemoryException {
+            when(redisOperator.updateAll(any())).thenThrow(new RedisOutOfMemoryException(new Exception()));
+
+            Map<String, StorageException> failures = underTest.updateAll(SERVICE_ID, Collections.singletonList(KEY_VALUE));
+
+            assertThat(failures.get(KEY).getKey(), is(Messages.INSUFFICIENT_STORAGE.getKey()));
+        }
+
+        @Test
+        void givenKeysToRead_thenSkipExpiredEntries() {
+            RedisEntry valid = new RedisEntry(SERVICE_ID, new KeyValue("key2", VALUE));
+            when(redisOperator.getAll(SERVICE_ID, Arrays.asList(KEY, "key2"))).thenReturn(Arrays.asList(EXPIRED_ENTRY, valid));
+
+            Map<String, KeyValue> result = underTest.readAll(SERVICE_ID, Arrays.asList(KEY, "key2"));
+
+            assertThat(result.size(), is(1));
+            assertThat(result.get("key2"), is(valid.getEntry()));
+        }
+
+        @Test
+        void givenMissingKeyToDelete_thenReportIt() {
+            Map<String, Boolean> deleted = new HashMap<>();
+            deleted.put(KEY, true);
+            deleted.put("key2", false);
+            when(redisOperator.deleteAll(SERVICE_ID, Arrays.asList(KEY, "key2"))).thenReturn(deleted);
+
+            Map<String, StorageException> failures = underTest.deleteAll(SERVICE_ID, Arrays.asList(KEY, "key2"));
+
+            assertThat(failures.keySet().size(), is(1));
+            assertThat(failures.get("key2").getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
         }
     }
 
@@ -153,6 +398,21 @@ public class RedisStorageTest {
             assertThat(result, is(expected));
         }
 
+        @Test
+        void givenServiceWithExpiredEntries_thenReturnOnlyValidOnes() {
+            KeyValue valid = new KeyValue("valid", VALUE);
+            List<RedisEntry> redisResults = new ArrayList<>();
+            redisResults.add(EXPIRED_ENTRY);
+            redisResults.add(new RedisEntry(SERVICE_ID, valid));
+            when(redisOperator.get(anyString())).thenReturn(redisResults);
+
+            Map<String, KeyValue> result = underTest.readForService(SERVICE_ID);
+
+            assertThat(result.size(), is(1));
+            assertThat(result.get("valid"), is(valid));
+            verify(redisOperator).deleteIfUnchanged(EXPIRED_ENTRY);
+        }
+
         @Test
         void givenServiceWithNoEntries_thenReturnEmptyMap() {
             when(redisOperator.get(anyString())).thenReturn(new ArrayList<>());
@@ -162,6 +422,49 @@ public class RedisStorageTest {
         }
     }
 
+    @Nested
+    class whenSweepingExpiredEntries {
+        @Test
+        void givenEntryWithTtl_thenServiceIsRecordedAsExpiring() throws RedisOutOfMemoryException {
+            when(redisOperator.create(any())).thenReturn(true);
+            KeyValue withTtl = new KeyValue(KEY, VALUE);
+            withTtl.setTtl(1000L);
+
+            underTest.create(SERVICE_ID, KEY_VALUE);
+            verify(redisOperator, never()).expiring(SERVICE_ID);
+            underTest.create(SERVICE_ID, withTtl);
+            verify(redisOperator).expiring(SERVICE_ID);
+        }
+
+        @Test
+        void givenExpiringServices_thenRemoveTheirExpiredEntriesOnAllPages() {
+            RedisEntry valid = new RedisEntry(SERVICE_ID, new KeyValue("key2", VALUE));
+            when(redisOperator.getExpiringServices()).thenReturn(Collections.singleton(SERVICE_ID));
+            when(redisOperator.scan(SERVICE_ID, null, 100)).thenReturn(new RedisOperator.EntryPage(Collections.singletonList(valid), "17"));
+            when(redisOperator.scan(SERVICE_ID, "17", 100)).thenReturn(new RedisOperator.EntryPage(Collections.singletonList(EXPIRED_ENTRY), null));
+
+            underTest.sweep();
+
+            verify(redisOperator).deleteIfUnchanged(EXPIRED_ENTRY);
+            verify(redisOperator, never()).deleteIfUnchanged(valid);
+        }
+
+        @Test
+        void givenFailureOfRedis_thenSweepDoesntThrowException() {
+            when(redisOperator.getExpiringServices()).thenThrow(new RetryableRedisException(new Exception()));
+
+            assertDoesNotThrow(() -> underTest.sweep());
+        }
+
+        @Test
+        void givenIntervalNotPositive_thenSweepIsNotStarted() {
+            underTest.sweepExpiredEntries(0);
+            underTest.stopSweeping();
+
+            verify(redisOperator, never()).getExpiringServices();
+        }
+    }
+
     @Nested
     class whenDeleteForService {
         @Test
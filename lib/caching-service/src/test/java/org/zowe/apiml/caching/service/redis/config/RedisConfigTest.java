@@ -10,6 +10,7 @@
 
 package org.zowe.apiml.caching.service.redis.config;
 
+import io.lettuce.core.ReadFrom;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -55,6 +56,21 @@ class RedisConfigTest {
         }
     }
 
+    @Nested
+    class WhenChoosingReadPolicy {
+        @Test
+        void givenNoPolicy_thenReadFromMaster() {
+            assertEquals(RedisConfig.ReadPolicy.MASTER, underTest.getReadFrom());
+            assertEquals(ReadFrom.MASTER, underTest.getReadFrom().getReadFrom());
+        }
+
+        @Test
+        void givenPinnedPolicy_thenOtherReadsPreferReplicas() {
+            underTest.setReadFrom(RedisConfig.ReadPolicy.PINNED);
+            assertEquals(ReadFrom.REPLICA_PREFERRED, underTest.getReadFrom().getReadFrom());
+        }
+    }
+
     @Nested
     class WhenParseUri {
         @Nested
@@ -19,6 +19,7 @@ import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -74,6 +75,22 @@ class RedisConfigurationTest {
         assertThat(result.getTimeout(), is(Duration.ofSeconds(TIMEOUT)));
     }
 
+    @Test
+    void givenClusterNodes_whenCreatingClusterUris_thenReturnUriForEveryNode() {
+        RedisConfig.Cluster cluster = new RedisConfig.Cluster();
+        cluster.setNodes(Arrays.asList(new RedisConfig.Cluster.ClusterNode("1.2.3.4:7000"), new RedisConfig.Cluster.ClusterNode("5.6.7.8")));
+        when(redisConfig.getCluster()).thenReturn(cluster);
+
+        List<RedisURI> result = underTest.createClusterUris();
+        assertThat(result.size(), is(2));
+        assertThat(result.get(0).getHost(), is("1.2.3.4"));
+        assertThat(result.get(0).getPort(), is(7000));
+        assertThat(result.get(0).getUsername(), is(USERNAME));
+        assertThat(result.get(0).getPassword(), is(PASSWORD.toCharArray()));
+        assertThat(result.get(1).getHost(), is("5.6.7.8"));
+        assertThat(result.get(1).getPort(), is(MASTER_PORT));
+    }
+
     @Nested
     class WhenCreatingUriWithSentinel {
         private static final String MASTER = "redismaster";
@@ -32,6 +32,7 @@ class EvictionStrategyProducerTest {
     private MessageService messageService;
 
     private VsamFile vsamFile;
+    private VsamRecordCount recordCount;
 
     @BeforeEach
     void setUp() {
@@ -40,6 +41,7 @@ class EvictionStrategyProducerTest {
         messageService = mock(MessageService.class);
 
         vsamFile = mock(VsamFile.class);
+        recordCount = new VsamRecordCount();
     }
 
     @Nested
@@ -49,7 +51,7 @@ class EvictionStrategyProducerTest {
             generalConfig.setEvictionStrategy(Strategies.REMOVE_OLDEST.getKey());
 
             underTest = new EvictionStrategyProducer(generalConfig, vsamConfig, messageService);
-            EvictionStrategy result = underTest.evictionStrategy(vsamFile);
+            EvictionStrategy result = underTest.evictionStrategy(vsamFile, recordCount);
             assertThat(result, instanceOf(RemoveOldestStrategy.class));
         }
 
@@ -58,7 +60,7 @@ class EvictionStrategyProducerTest {
             generalConfig.setEvictionStrategy(Strategies.REJECT.getKey());
 
             underTest = new EvictionStrategyProducer(generalConfig, vsamConfig, messageService);
-            EvictionStrategy result = underTest.evictionStrategy(vsamFile);
+            EvictionStrategy result = underTest.evictionStrategy(vsamFile, recordCount);
             assertThat(result, instanceOf(RejectStrategy.class));
         }
 
@@ -67,8 +69,8 @@ class EvictionStrategyProducerTest {
             generalConfig.setEvictionStrategy(Strategies.REJECT.getKey());
             underTest = new EvictionStrategyProducer(generalConfig, vsamConfig, messageService);
 
-            EvictionStrategy first = underTest.evictionStrategy(vsamFile);
-            EvictionStrategy second = underTest.evictionStrategy(vsamFile);
+            EvictionStrategy first = underTest.evictionStrategy(vsamFile, recordCount);
+            EvictionStrategy second = underTest.evictionStrategy(vsamFile, recordCount);
             assertThat(second, is(first));
 
         }
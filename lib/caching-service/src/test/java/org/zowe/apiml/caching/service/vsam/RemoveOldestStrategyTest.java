@@ -16,13 +16,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.zowe.apiml.caching.config.GeneralConfig;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
 import org.zowe.apiml.caching.service.Strategies;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.zfile.ZFile;
 import org.zowe.apiml.zfile.ZFileConstants;
 import org.zowe.apiml.zfile.ZFileException;
 
+import java.io.UnsupportedEncodingException;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -33,12 +36,13 @@ class RemoveOldestStrategyTest {
 
     private VsamConfig vsamConfiguration;
     private VsamFile file;
+    private VsamRecordCount recordCount;
     private final ArgumentCaptor<VsamRecord> recordArgumentCaptor = ArgumentCaptor.forClass(VsamRecord.class);
 
     private final String VALID_SERVICE_ID = "test-service-id";
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws ZFileException, VsamRecordException, UnsupportedEncodingException {
         GeneralConfig generalConfig = new GeneralConfig();
         generalConfig.setEvictionStrategy(Strategies.REMOVE_OLDEST.getKey());
         generalConfig.setMaxDataSize(1);
@@ -50,7 +54,10 @@ class RemoveOldestStrategyTest {
 
         file = mock(VsamFile.class);
         when(file.getZfile()).thenReturn(mock(ZFile.class));
-        underTest = new RemoveOldestStrategy(vsamConfiguration, file);
+        when(file.readContinuedRecord(any()))
+            .thenAnswer(invocation -> Optional.of(new VsamRecord(vsamConfiguration, (byte[]) invocation.getArgument(0))));
+        recordCount = mock(VsamRecordCount.class);
+        underTest = new RemoveOldestStrategy(vsamConfiguration, file, recordCount);
     }
 
     @Nested
@@ -61,6 +68,7 @@ class RemoveOldestStrategyTest {
 
             underTest.evict("new-key");
             verify(file, times(0)).delete(recordArgumentCaptor.capture());
+            verify(recordCount, never()).decrement();
         }
 
         @Test
@@ -77,6 +85,7 @@ class RemoveOldestStrategyTest {
 
             VsamRecord deleted = recordArgumentCaptor.getValue();
             assertThat(deleted.getKeyValue().getKey(), is("key-1"));
+            verify(recordCount).decrement();
         }
 
         @Test
@@ -100,4 +109,110 @@ class RemoveOldestStrategyTest {
 
         }
     }
+
+    @Nested
+    class WhenVictimIsChosen {
+        @Test
+        void givenOldestRecordWithElapsedTtl_thenItIsExpired() throws ZFileException {
+            KeyValue record = new KeyValue("key-1", "value-1", "1");
+            record.setServiceId(VALID_SERVICE_ID);
+            record.setTtl(1L);
+            when(file.readBytes(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, record).getBytes()), Optional.empty());
+
+            EntryKey victim = underTest.victim().orElseThrow(IllegalStateException::new);
+
+            assertThat(victim, is(new EntryKey(VALID_SERVICE_ID, "key-1")));
+            assertThat(underTest.isExpired(victim), is(true));
+        }
+
+        @Test
+        void givenOldestRecordWithoutTtl_thenItIsNotExpired() throws ZFileException {
+            KeyValue record = new KeyValue("key-1", "value-1", "1");
+            record.setServiceId(VALID_SERVICE_ID);
+            when(file.readBytes(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, record).getBytes()), Optional.empty());
+
+            assertThat(underTest.isExpired(underTest.victim().orElseThrow(IllegalStateException::new)), is(false));
+        }
+    }
+
+    @Nested
+    class WhenTimeIndexIsUsed {
+        private VsamTimeIndex timeIndex;
+
+        @BeforeEach
+        void setUp() {
+            timeIndex = mock(VsamTimeIndex.class);
+            when(file.getTimeIndex()).thenReturn(Optional.of(timeIndex));
+        }
+
+        @Test
+        void givenIndexedRecord_thenItIsRemovedWithoutReadingTheCache() throws Exception {
+            VsamRecord oldest = vsamRecord("key-1", "1");
+            VsamTimeIndex.Entry entry = entry(oldest, 1);
+            when(timeIndex.oldest()).thenReturn(Optional.of(entry));
+            when(file.readByKey(oldest.getKeyBytes())).thenReturn(Optional.of(oldest));
+            when(file.delete(any())).thenReturn(Optional.of(oldest));
+
+            underTest.evict("new-key");
+
+            verify(file).delete(oldest);
+            verify(file, never()).readBytes(any());
+        }
+
+        @Test
+        void givenStaleEntry_thenItIsRemovedAndTheNextOneIsUsed() throws Exception {
+            VsamRecord updated = vsamRecord("key-1", "5");
+            VsamRecord oldest = vsamRecord("key-2", "2");
+            VsamTimeIndex.Entry stale = entry(updated, 1);
+            VsamTimeIndex.Entry valid = entry(oldest, 2);
+            when(timeIndex.oldest()).thenReturn(Optional.of(stale), Optional.of(valid));
+            when(file.readByKey(updated.getKeyBytes())).thenReturn(Optional.of(updated));
+            when(file.readByKey(oldest.getKeyBytes())).thenReturn(Optional.of(oldest));
+
+            underTest.evict("new-key");
+
+            verify(timeIndex).remove(stale);
+            verify(file).delete(oldest);
+        }
+
+        @Test
+        void givenEmptyIndex_thenTheCacheIsReadAndIndexed() throws Exception {
+            VsamRecord oldest = vsamRecord("key-1", "1");
+            when(timeIndex.oldest()).thenReturn(Optional.empty());
+            when(file.readBytes(any())).thenReturn(Optional.of(oldest.getBytes()), Optional.empty());
+
+            underTest.evict("new-key");
+
+            verify(timeIndex).add(any());
+            verify(file).delete(recordArgumentCaptor.capture());
+            assertThat(recordArgumentCaptor.getValue().getKeyValue().getKey(), is("key-1"));
+        }
+
+        @Test
+        void givenEmptyIndexAndManyRecords_thenAllOfThemAreIndexed() throws Exception {
+            int records = 10005;
+            byte[] bytes = vsamRecord("key-1", "1").getBytes();
+            AtomicInteger read = new AtomicInteger();
+            when(timeIndex.oldest()).thenReturn(Optional.empty());
+            when(file.readBytes(any())).thenAnswer(invocation ->
+                read.getAndIncrement() < records ? Optional.of(bytes) : Optional.empty());
+
+            underTest.evict("new-key");
+
+            verify(timeIndex, times(records)).add(any());
+        }
+
+        private VsamTimeIndex.Entry entry(VsamRecord record, long created) throws Exception {
+            VsamTimeIndex.Entry entry = mock(VsamTimeIndex.Entry.class);
+            when(entry.getKey()).thenReturn(record.getKeyBytes());
+            when(entry.getCreated()).thenReturn(created);
+            return entry;
+        }
+
+        private VsamRecord vsamRecord(String key, String created) {
+            KeyValue keyValue = new KeyValue(key, "value", created);
+            keyValue.setServiceId(VALID_SERVICE_ID);
+            return new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, keyValue);
+        }
+    }
 }
@@ -0,0 +1,162 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.message.log.ApimlLogger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class VsamFilePoolTest {
+    private VsamFileProducer producer;
+    private VsamConfig vsamConfig;
+    private VsamFilePool underTest;
+
+    @BeforeEach
+    void setUp() {
+        vsamConfig = new VsamConfig(new GeneralConfig());
+        vsamConfig.setPoolSize(2);
+        vsamConfig.setMaxIdleTime(60000);
+
+        producer = mock(VsamFileProducer.class);
+        when(producer.newVsamFile(any(), any(), any())).thenAnswer(invocation -> mock(VsamFile.class));
+
+        underTest = new VsamFilePool(vsamConfig, producer, ApimlLogger.empty());
+    }
+
+    @Nested
+    class WhenFileIsLeased {
+        @Test
+        void givenReturnedFile_thenTheFileIsReused() {
+            VsamFile first;
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                first = lease.getFile();
+            }
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                assertThat(lease.getFile(), is(sameInstance(first)));
+            }
+
+            verify(producer, times(1)).newVsamFile(any(), any(), any());
+            verify(first, never()).close();
+        }
+
+        @Test
+        void givenConcurrentLeases_thenEveryLeaseGetsOwnFile() {
+            try (VsamFilePool.Lease first = underTest.lease(VsamConfig.VsamOptions.READ);
+                 VsamFilePool.Lease second = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                assertThat(first.getFile(), is(not(sameInstance(second.getFile()))));
+            }
+        }
+
+        @Test
+        void givenDifferentModes_thenTheFilesAreNotShared() {
+            VsamFile read;
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                read = lease.getFile();
+            }
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.WRITE)) {
+                assertThat(lease.getFile(), is(not(sameInstance(read))));
+            }
+
+            verify(producer).newVsamFile(any(), eq(VsamConfig.VsamOptions.READ), any());
+            verify(producer).newVsamFile(any(), eq(VsamConfig.VsamOptions.WRITE), any());
+        }
+
+        @Test
+        void givenLeaseClosedTwice_thenTheFileIsReturnedOnce() {
+            VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ);
+            VsamFile file = lease.getFile();
+            lease.close();
+            lease.close();
+
+            try (VsamFilePool.Lease first = underTest.lease(VsamConfig.VsamOptions.READ);
+                 VsamFilePool.Lease second = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                assertThat(first.getFile(), is(sameInstance(file)));
+                assertThat(second.getFile(), is(not(sameInstance(file))));
+            }
+        }
+    }
+
+    @Nested
+    class WhenFileIsReturned {
+        @Test
+        void givenFailedFile_thenItIsClosedAndReplaced() {
+            VsamFile failed;
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.WRITE)) {
+                failed = lease.getFile();
+                when(failed.hasFailed()).thenReturn(true);
+            }
+            verify(failed).close();
+
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.WRITE)) {
+                assertThat(lease.getFile(), is(not(sameInstance(failed))));
+            }
+        }
+
+        @Test
+        void givenFileIdleForTooLong_thenItIsClosedAndReplaced() {
+            vsamConfig.setMaxIdleTime(-1);
+
+            VsamFile idle;
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                idle = lease.getFile();
+            }
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                assertThat(lease.getFile(), is(not(sameInstance(idle))));
+            }
+
+            verify(idle).close();
+        }
+
+        @Test
+        void givenFileInUseAllTheTime_thenItIsReopenedOnceTooOld() throws InterruptedException {
+            vsamConfig.setMaxAge(100);
+
+            VsamFile first;
+            try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                first = lease.getFile();
+            }
+
+            VsamFile current = first;
+            long deadline = System.currentTimeMillis() + 5000;
+            while (current == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+                try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+                    current = lease.getFile();
+                }
+            }
+
+            assertThat(current, is(not(sameInstance(first))));
+            verify(first).close();
+        }
+    }
+
+    @Test
+    void givenIdleFiles_whenPoolIsClosed_thenTheFilesAreClosed() {
+        VsamFile file;
+        try (VsamFilePool.Lease lease = underTest.lease(VsamConfig.VsamOptions.READ)) {
+            file = lease.getFile();
+        }
+
+        underTest.close();
+
+        verify(file).close();
+    }
+}
@@ -10,25 +10,31 @@
 
 package org.zowe.apiml.caching.service.vsam;
 
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.stubbing.Answer;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.model.ScanResult;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.message.log.ApimlLogger;
+import org.zowe.apiml.zfile.LocalZFile;
 import org.zowe.apiml.zfile.ZFile;
 import org.zowe.apiml.zfile.ZFileConstants;
 import org.zowe.apiml.zfile.ZFileException;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.hasSize;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -272,6 +278,49 @@ class VsamFileTest {
             assertThat(returnedRecords, hasSize(amountOfReturnedRecords));
         }
 
+        @Test
+        void givenMoreRecordsThanLimit_thenPageWithCursorIsReturned() throws ZFileException, UnsupportedEncodingException {
+            when(zFile.locate(key.getKeyBytesSidOnly(VALID_SERVICE_ID), ZFileConstants.LOCATE_KEY_GE)).thenReturn(true);
+            when(zFile.read(any())).thenAnswer(prepareAnswer(10));
+
+            ScanResult result = underTest.readForService(VALID_SERVICE_ID, null, 3);
+            assertThat(result.getEntries(), hasSize(3));
+            assertThat(result.getCursor(), is(key.getKey(VALID_SERVICE_ID, "key-2").trim()));
+        }
+
+        @Test
+        void givenCursor_thenRecordsAfterItAreReturned() throws ZFileException, UnsupportedEncodingException {
+            String cursor = key.getKey(VALID_SERVICE_ID, "key-0").trim();
+            when(zFile.locate(key.getPaddedKeyBytes(cursor), ZFileConstants.LOCATE_KEY_GE)).thenReturn(true);
+            when(zFile.read(any())).thenAnswer(prepareAnswer(3));
+
+            ScanResult result = underTest.readForService(VALID_SERVICE_ID, cursor, 10);
+            assertThat(result.getEntries(), hasSize(2));
+            assertThat(result.getEntries().get(0).getKey(), is("key-1"));
+            assertThat(result.getCursor(), is(nullValue()));
+        }
+
+        @Test
+        void givenMoreThanTenThousandRecords_thenAllAreReturned() throws ZFileException, UnsupportedEncodingException {
+            when(zFile.locate(key.getKeyBytesSidOnly(VALID_SERVICE_ID), ZFileConstants.LOCATE_KEY_GE)).thenReturn(true);
+            when(zFile.read(any())).thenAnswer(prepareAnswer(10001));
+
+            assertThat(underTest.readForService(VALID_SERVICE_ID), hasSize(10001));
+        }
+
+        @Test
+        void givenRecordOfServiceWithSimilarHash_thenTheRetrievalStops() throws ZFileException, UnsupportedEncodingException, VsamRecordException {
+            // The hash of the other service starts with the digits of the hash of this service.
+            String otherServiceKey = VALID_SERVICE_ID.hashCode() + "7:" + "key-1".hashCode();
+            when(zFile.locate(key.getKeyBytesSidOnly(VALID_SERVICE_ID), ZFileConstants.LOCATE_KEY_GE)).thenReturn(true);
+            when(zFile.read(any())).thenAnswer(prepareAnswer(
+                defaultVsamRecord().getBytes(),
+                rawRecord(otherServiceKey, "{\"key\":\"key-1\",\"value\":\"value-1\"}")
+            ));
+
+            assertThat(underTest.readForService(VALID_SERVICE_ID), hasSize(1));
+        }
+
         @Test
         void givenZfileThrowsError_thenEmptyListIsReturned() throws UnsupportedEncodingException, ZFileException {
             when(zFile.locate(key.getKeyBytesSidOnly(VALID_SERVICE_ID), ZFileConstants.LOCATE_KEY_GE))
@@ -293,6 +342,155 @@ class VsamFileTest {
             underTest.deleteForService(VALID_SERVICE_ID);
             verify(zFile).delrec();
         }
+
+        @Test
+        void givenRecordWhichCannotBeDecoded_thenItIsDeletedAnyway() throws ZFileException, UnsupportedEncodingException {
+            when(zFile.locate(key.getKeyBytesSidOnly(VALID_SERVICE_ID), ZFileConstants.LOCATE_KEY_GE)).thenReturn(true);
+            when(zFile.read(any())).thenAnswer(prepareAnswer(
+                rawRecord(key.getKey(VALID_SERVICE_ID, "key-0"), "{broken}")
+            ));
+
+            underTest.deleteForService(VALID_SERVICE_ID);
+            verify(zFile).delrec();
+        }
+    }
+
+    @Nested
+    class WhenRecordIsSpanned {
+        @TempDir
+        Path directory;
+
+        private ZFile localFile;
+        private VsamFile spannedFile;
+
+        @BeforeEach
+        void setUp() throws VsamRecordException, ZFileException {
+            localFile = new LocalZFile(directory.resolve("cache.ksds").toString(), VsamConfig.VsamOptions.WRITE.getOptionsString(),
+                vsamConfiguration.getKeyLength(), vsamConfiguration.getRecordLength());
+            ZFileProducer localProducer = mock(ZFileProducer.class);
+            when(localProducer.openZfile()).thenReturn(localFile);
+            spannedFile = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.WRITE, false, localProducer, mock(VsamInitializer.class), apimlLogger);
+        }
+
+        @AfterEach
+        void tearDown() {
+            spannedFile.close();
+        }
+
+        @Test
+        void givenSmallValue_thenTheRecordIsOnlyAsLongAsItsContent() throws ZFileException, UnsupportedEncodingException {
+            spannedFile.create(vsamRecord("key-1", "value-1", 1));
+
+            assertThat(rawRecordLengths(), contains(lessThan(vsamConfiguration.getRecordLength())));
+        }
+
+        @Test
+        void givenValueLongerThanRecord_thenItIsReadWhole() throws ZFileException, UnsupportedEncodingException {
+            String value = StringUtils.repeat("certificate", 300);
+            spannedFile.create(vsamRecord("key-1", value, 1));
+
+            Optional<VsamRecord> read = spannedFile.read(vsamRecord("key-1", "", 1));
+
+            assertThat(read.get().getKeyValue().getValue(), is(value));
+            assertThat(rawRecordLengths().size(), is(greaterThan(1)));
+            assertThat(spannedFile.countAllRecords(), is(1));
+        }
+
+        @Test
+        void givenSpannedRecordUpdatedToSmallValue_thenTheContinuationsAreRemoved() throws ZFileException, UnsupportedEncodingException {
+            spannedFile.create(vsamRecord("key-1", StringUtils.repeat("certificate", 300), 1));
+
+            spannedFile.update(vsamRecord("key-1", "small", 1));
+
+            assertThat(spannedFile.read(vsamRecord("key-1", "", 1)).get().getKeyValue().getValue(), is("small"));
+            assertThat(rawRecordLengths(), hasSize(1));
+        }
+
+        @Test
+        void givenSpannedRecordAmongOthers_thenTheServiceIsReadWhole() {
+            String value = StringUtils.repeat("token", 500);
+            spannedFile.create(vsamRecord("key-1", "value-1", 1));
+            spannedFile.create(vsamRecord("key-2", value, 2));
+            spannedFile.create(vsamRecord("key-3", "value-3", 3));
+
+            List<VsamRecord> read = spannedFile.readForService(VALID_SERVICE_ID);
+
+            assertThat(read, hasSize(3));
+            assertThat(read.stream().filter(vsamRecord -> vsamRecord.getKeyValue().getKey().equals("key-2"))
+                .findFirst().get().getKeyValue().getValue(), is(value));
+        }
+
+        @Test
+        void givenSpannedRecordIsDeleted_thenTheContinuationsAreDeletedAsWell() throws ZFileException, UnsupportedEncodingException {
+            String value = StringUtils.repeat("token", 500);
+            spannedFile.create(vsamRecord("key-1", value, 1));
+
+            Optional<VsamRecord> deleted = spannedFile.delete(vsamRecord("key-1", "", 1));
+
+            assertThat(deleted.get().getKeyValue().getValue(), is(value));
+            assertThat(rawRecordLengths(), is(empty()));
+        }
+
+        @Test
+        void givenTimeIndex_thenUpdateReplacesTheEntryOfThePreviousVersion() throws Exception {
+            vsamConfiguration.setLocal(true);
+            vsamConfiguration.setTimeIndexName("//'" + directory.resolve("time.ksds") + "'");
+            ZFile indexedCache = new LocalZFile(directory.resolve("indexed.ksds").toString(), VsamConfig.VsamOptions.WRITE.getOptionsString(),
+                vsamConfiguration.getKeyLength(), vsamConfiguration.getRecordLength());
+            ZFileProducer indexedProducer = mock(ZFileProducer.class);
+            when(indexedProducer.openZfile()).thenReturn(indexedCache);
+            VsamFile indexedFile = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.WRITE, false, indexedProducer, mock(VsamInitializer.class), apimlLogger);
+            try {
+                indexedFile.create(vsamRecord("key-1", StringUtils.repeat("certificate", 300), 1));
+                indexedFile.update(vsamRecord("key-1", "small", 5));
+
+                VsamTimeIndex index = indexedFile.getTimeIndex().get();
+                assertThat(index.oldest().get().getCreated(), is(5L));
+                index.remove(index.oldest().get());
+                assertThat(index.oldest().isPresent(), is(false));
+            } finally {
+                indexedFile.close();
+            }
+        }
+
+        @Test
+        void givenTimeIndex_thenDeleteForServiceRemovesTheEntriesOfTheService() throws Exception {
+            vsamConfiguration.setLocal(true);
+            vsamConfiguration.setTimeIndexName("//'" + directory.resolve("time.ksds") + "'");
+            ZFile indexedCache = new LocalZFile(directory.resolve("indexed.ksds").toString(), VsamConfig.VsamOptions.WRITE.getOptionsString(),
+                vsamConfiguration.getKeyLength(), vsamConfiguration.getRecordLength());
+            ZFileProducer indexedProducer = mock(ZFileProducer.class);
+            when(indexedProducer.openZfile()).thenReturn(indexedCache);
+            VsamFile indexedFile = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.WRITE, false, indexedProducer, mock(VsamInitializer.class), apimlLogger);
+            try {
+                KeyValue other = new KeyValue("key-3", "value-3", "3");
+                other.setServiceId("other-service");
+                indexedFile.create(vsamRecord("key-1", StringUtils.repeat("certificate", 300), 1));
+                indexedFile.create(vsamRecord("key-2", "value-2", 2));
+                indexedFile.create(new VsamRecord(vsamConfiguration, "other-service", other));
+
+                indexedFile.deleteForService(VALID_SERVICE_ID);
+
+                VsamTimeIndex index = indexedFile.getTimeIndex().get();
+                assertThat(index.oldest().get().getCreated(), is(3L));
+                index.remove(index.oldest().get());
+                assertThat(index.oldest().isPresent(), is(false));
+            } finally {
+                indexedFile.close();
+            }
+        }
+
+        private List<Integer> rawRecordLengths() throws ZFileException, UnsupportedEncodingException {
+            List<Integer> lengths = new ArrayList<>();
+            byte[] recBuf = new byte[vsamConfiguration.getRecordLength()];
+            localFile.locate(" ".getBytes(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), ZFileConstants.LOCATE_KEY_FIRST);
+            int read;
+            while ((read = localFile.read(recBuf)) != -1) {
+                lengths.add(read);
+            }
+
+            return lengths;
+        }
     }
 
     @Nested
@@ -402,12 +600,32 @@ class VsamFileTest {
                 return -1;
             }
 
-            VsamRecord toReturn = records.remove(0);
-            System.arraycopy(toReturn.getBytes(), 0, arrayToPopulate, 0, arrayToPopulate.length);
-            return arrayToPopulate.length;
+            byte[] toReturn = records.remove(0).getBytes();
+            System.arraycopy(toReturn, 0, arrayToPopulate, 0, toReturn.length);
+            return toReturn.length;
+        };
+    }
+
+    private Answer<Integer> prepareAnswer(byte[]... rawRecords) {
+        List<byte[]> records = new ArrayList<>(Arrays.asList(rawRecords));
+
+        return invocation -> {
+            byte[] arrayToPopulate = invocation.getArgument(0);
+            if (records.isEmpty()) {
+                return -1;
+            }
+
+            byte[] toReturn = records.remove(0);
+            System.arraycopy(toReturn, 0, arrayToPopulate, 0, toReturn.length);
+            return toReturn.length;
         };
     }
 
+    private byte[] rawRecord(String vsamKey, String payload) throws UnsupportedEncodingException {
+        String record = StringUtils.rightPad(StringUtils.rightPad(vsamKey, vsamConfiguration.getKeyLength()) + payload, vsamConfiguration.getRecordLength());
+        return record.getBytes(vsamConfiguration.getEncoding());
+    }
+
     private List<VsamRecord> recordsToReturn(int size) {
         List<VsamRecord> records = new ArrayList<>(size);
 
@@ -14,6 +14,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.zowe.apiml.caching.model.KeyValue;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.zfile.ZFileConstants;
+
+import java.io.UnsupportedEncodingException;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -64,6 +67,17 @@ class VsamKeyTest {
 
     }
 
+    @Test
+    void keyPrefixStartsEveryKeyOfTheService() throws UnsupportedEncodingException {
+        when(config.getEncoding()).thenReturn(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
+        VsamKey underTest = new VsamKey(config);
+
+        String serviceId = "gateway";
+        String prefix = new String(underTest.getKeyPrefixBytes(serviceId), ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
+        assertThat(prefix, is(serviceId.hashCode() + ":"));
+        assertThat(underTest.getKey(serviceId, "apiml.service.name"), startsWith(prefix));
+    }
+
     @Test
     void canGetKeyFromKeyValue() {
         KeyValue kv = new KeyValue("key", "value");
@@ -73,6 +87,25 @@ class VsamKeyTest {
         assertThat(underTest.getKey(serviceId, kv), notNullValue());
     }
 
+    @Test
+    void continuationKeyFollowsTheKeyOfTheRecord() {
+        VsamKey underTest = new VsamKey(config);
+
+        String key = underTest.getKey("gateway", "apiml.service.name");
+        String continuationKey = underTest.getContinuationKey(key, 7);
+        assertThat(continuationKey.length(), is(config.getKeyLength()));
+        assertThat(continuationKey, startsWith(key.trim() + "+007"));
+        assertThat(continuationKey.compareTo(key), greaterThan(0));
+    }
+
+    @Test
+    void continuationKeyIsNullIfItDoesNotFit() {
+        when(config.getKeyLength()).thenReturn(23);
+        VsamKey underTest = new VsamKey(config);
+
+        assertThat(underTest.getContinuationKey("-1234567890:-1234567890", 1), is(nullValue()));
+    }
+
     @Test
     void hasMinimalLength() {
         when(config.getKeyLength()).thenReturn(22);
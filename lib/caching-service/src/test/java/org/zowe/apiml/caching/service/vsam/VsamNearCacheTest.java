@@ -0,0 +1,343 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.retry.annotation.Retryable;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.Messages;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VsamNearCacheTest {
+    private static final String SERVICE_ID = "service";
+
+    private VsamStorage storage;
+    private VsamConfig vsamConfig;
+    private VsamNearCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        storage = mock(VsamStorage.class);
+        vsamConfig = new VsamConfig(new GeneralConfig());
+        vsamConfig.setNearCacheFlushInterval(60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    private static StorageException notInCache(String key) {
+        return new StorageException(Messages.KEY_NOT_IN_CACHE.getKey(), Messages.KEY_NOT_IN_CACHE.getStatus(), key, SERVICE_ID);
+    }
+
+    @Nested
+    class GivenSyncDurability {
+        @BeforeEach
+        void setUp() {
+            underTest = new VsamNearCache(storage, vsamConfig);
+        }
+
+        @Test
+        void whenTheRecordIsReadAgain_thenItIsServedFromTheCache() {
+            when(storage.read(SERVICE_ID, "key")).thenReturn(new KeyValue("key", "value"));
+
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("value"));
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("value"));
+
+            verify(storage, times(1)).read(SERVICE_ID, "key");
+            assertThat(underTest.getHitRatio(), is(0.5));
+        }
+
+        @Test
+        void whenTheMissingRecordIsReadAgain_thenItIsKnownToBeMissing() {
+            when(storage.read(SERVICE_ID, "key")).thenThrow(notInCache("key"));
+
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+
+            verify(storage, times(1)).read(SERVICE_ID, "key");
+        }
+
+        @Test
+        void whenTheCachedRecordExpires_thenItIsReadAgain() {
+            vsamConfig.setNearCacheExpiration(0);
+            underTest = new VsamNearCache(storage, vsamConfig);
+            when(storage.read(SERVICE_ID, "key")).thenReturn(new KeyValue("key", "value"));
+
+            underTest.read(SERVICE_ID, "key");
+            underTest.read(SERVICE_ID, "key");
+
+            verify(storage, times(2)).read(SERVICE_ID, "key");
+        }
+
+        @Test
+        void whenTheCachedRecordsTimeToLiveElapses_thenItIsMissing() {
+            KeyValue expired = new KeyValue("key", "value", "1");
+            expired.setTtl(1L);
+            when(storage.create(SERVICE_ID, expired)).thenReturn(expired);
+
+            underTest.create(SERVICE_ID, expired);
+
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+            verify(storage, never()).read(any(), any());
+        }
+
+        @Test
+        void whenTheRecordIsCreated_thenItIsWrittenAndCached() {
+            KeyValue toCreate = new KeyValue("key", "value");
+            when(storage.create(SERVICE_ID, toCreate)).thenReturn(toCreate);
+
+            underTest.create(SERVICE_ID, toCreate);
+
+            verify(storage).create(SERVICE_ID, toCreate);
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("value"));
+            verify(storage, never()).read(any(), any());
+        }
+
+        @Test
+        void whenTheRecordIsDeleted_thenItIsKnownToBeMissing() {
+            when(storage.delete(SERVICE_ID, "key")).thenReturn(new KeyValue("key", "value"));
+
+            underTest.delete(SERVICE_ID, "key");
+
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+            verify(storage, never()).read(any(), any());
+        }
+
+        @Test
+        void whenTheWriteFails_thenTheRecordIsReadAgain() {
+            when(storage.read(SERVICE_ID, "key")).thenReturn(new KeyValue("key", "value"));
+            when(storage.update(eq(SERVICE_ID), any())).thenThrow(new RetryableVsamException(new RuntimeException("failed")));
+
+            underTest.read(SERVICE_ID, "key");
+            KeyValue toUpdate = new KeyValue("key", "other");
+            assertThrows(RetryableVsamException.class, () -> underTest.update(SERVICE_ID, toUpdate));
+            underTest.read(SERVICE_ID, "key");
+
+            verify(storage, times(2)).read(SERVICE_ID, "key");
+        }
+
+        @Test
+        void whenRecordsAreReadTogether_thenOnlyTheMissingOnesAreRead() {
+            when(storage.read(SERVICE_ID, "cached")).thenReturn(new KeyValue("cached", "value"));
+            when(storage.readAll(SERVICE_ID, Collections.singletonList("missing")))
+                .thenReturn(Collections.singletonMap("missing", new KeyValue("missing", "other")));
+
+            underTest.read(SERVICE_ID, "cached");
+
+            assertThat(underTest.readAll(SERVICE_ID, Arrays.asList("cached", "missing")).keySet(), containsInAnyOrder("cached", "missing"));
+        }
+    }
+
+    @Nested
+    class GivenDelayedDurability {
+        @BeforeEach
+        void setUp() {
+            vsamConfig.setNearCacheDurability(VsamNearCache.DELAYED_DURABILITY);
+            underTest = new VsamNearCache(storage, vsamConfig);
+            when(storage.read(eq(SERVICE_ID), any())).thenAnswer(invocation -> {
+                throw notInCache(invocation.getArgument(1));
+            });
+        }
+
+        @Test
+        void whenTheRecordIsCreated_thenItIsWrittenByTheFlush() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            verify(storage, never()).create(any(), any());
+            assertThat(underTest.getQueueDepth(), is(1));
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("value"));
+
+            underTest.flush();
+
+            verify(storage).createAll(eq(SERVICE_ID), argThat(values -> hasValues(values, "value")));
+            assertThat(underTest.getQueueDepth(), is(0));
+        }
+
+        @Test
+        void whenTheRecordIsUpdatedRepeatedly_thenOnlyTheLastValueIsWritten() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "first"));
+            underTest.update(SERVICE_ID, new KeyValue("key", "second"));
+            underTest.update(SERVICE_ID, new KeyValue("key", "third"));
+
+            underTest.flush();
+
+            verify(storage).createAll(eq(SERVICE_ID), argThat(values -> hasValues(values, "third")));
+            verify(storage, never()).updateAll(any(), any());
+        }
+
+        @Test
+        void whenTheCreatedRecordIsDeleted_thenNothingIsWritten() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+            underTest.delete(SERVICE_ID, "key");
+
+            underTest.flush();
+
+            verify(storage, never()).createAll(any(), any());
+            verify(storage, never()).deleteAll(any(), any());
+        }
+
+        @Test
+        void whenTheQueuedRecordIsCreatedAgain_thenItIsDuplicate() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.create(SERVICE_ID, new KeyValue("key", "other")));
+            assertThat(exception.getKey(), is(Messages.DUPLICATE_KEY.getKey()));
+        }
+
+        @Test
+        void whenTheQueuedRecordExpired_thenItIsMissingAndCanBeCreatedAgain() {
+            KeyValue expired = new KeyValue("key", "value", "1");
+            expired.setTtl(1L);
+            underTest.create(SERVICE_ID, expired);
+
+            assertThrows(StorageException.class, () -> underTest.read(SERVICE_ID, "key"));
+            underTest.create(SERVICE_ID, new KeyValue("key", "other"));
+
+            assertThat(underTest.read(SERVICE_ID, "key").getValue(), is("other"));
+        }
+
+        @Test
+        void whenTheMissingRecordIsUpdated_thenItIsRejected() {
+            KeyValue toUpdate = new KeyValue("key", "value");
+
+            assertThrows(StorageException.class, () -> underTest.update(SERVICE_ID, toUpdate));
+            assertThat(underTest.getQueueDepth(), is(0));
+        }
+
+        @Test
+        void whenTheQueueIsFull_thenItIsFlushedByTheWriter() {
+            vsamConfig.setNearCacheQueueSize(2);
+            underTest = new VsamNearCache(storage, vsamConfig);
+
+            underTest.create(SERVICE_ID, new KeyValue("first", "value"));
+            verify(storage, never()).createAll(any(), any());
+            underTest.create(SERVICE_ID, new KeyValue("second", "value"));
+
+            verify(storage).createAll(eq(SERVICE_ID), argThat(values -> values.size() == 2));
+        }
+
+        @Test
+        void whenTheFlushFails_thenTheChangesAreQueuedAgainUntilTheAttemptsRunOut() {
+            when(storage.createAll(any(), any())).thenThrow(new RetryableVsamException(new RuntimeException("failed")));
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            for (int attempt = 1; attempt < VsamNearCache.MAXIMUM_WRITE_ATTEMPTS; attempt++) {
+                underTest.flush();
+                assertThat(underTest.getQueueDepth(), is(1));
+            }
+            underTest.flush();
+
+            assertThat(underTest.getQueueDepth(), is(0));
+            verify(storage, times(VsamNearCache.MAXIMUM_WRITE_ATTEMPTS)).createAll(any(), any());
+        }
+
+        @Test
+        void whenTheServiceIsRead_thenTheQueueIsFlushedFirst() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            underTest.readForService(SERVICE_ID);
+
+            verify(storage).createAll(eq(SERVICE_ID), any());
+            verify(storage).readForService(SERVICE_ID);
+        }
+
+        @Test
+        void whenClosed_thenTheQueueIsFlushed() {
+            underTest.create(SERVICE_ID, new KeyValue("key", "value"));
+
+            underTest.close();
+
+            verify(storage).createAll(eq(SERVICE_ID), any());
+            verify(storage, never()).close();
+        }
+
+        private boolean hasValues(Collection<KeyValue> values, String... expected) {
+            return values.stream().map(KeyValue::getValue).collect(Collectors.toList()).equals(Arrays.asList(expected));
+        }
+    }
+
+    @Nested
+    class WhenCoalescing {
+        private final VsamNearCache.QueuedChange create = new VsamNearCache.QueuedChange(VsamNearCache.Operation.CREATE, new KeyValue("key", "created"));
+        private final VsamNearCache.QueuedChange update = new VsamNearCache.QueuedChange(VsamNearCache.Operation.UPDATE, new KeyValue("key", "updated"));
+        private final VsamNearCache.QueuedChange delete = new VsamNearCache.QueuedChange(VsamNearCache.Operation.DELETE, null);
+
+        @Test
+        void givenCreateFollowedByUpdate_thenTheUpdatedValueIsCreated() {
+            VsamNearCache.QueuedChange result = VsamNearCache.coalesce(create, update);
+
+            assertThat(result.getOperation(), is(VsamNearCache.Operation.CREATE));
+            assertThat(result.getKeyValue().getValue(), is("updated"));
+        }
+
+        @Test
+        void givenDeleteFollowedByCreate_thenTheStoredRecordIsUpdated() {
+            VsamNearCache.QueuedChange result = VsamNearCache.coalesce(delete, create);
+
+            assertThat(result.getOperation(), is(VsamNearCache.Operation.UPDATE));
+            assertThat(result.getKeyValue().getValue(), is("created"));
+        }
+
+        @Test
+        void givenUpdateFollowedByDelete_thenTheRecordIsDeleted() {
+            assertThat(VsamNearCache.coalesce(update, delete), is(delete));
+        }
+
+        @Test
+        void givenCreateFollowedByDelete_thenThereIsNothingToWrite() {
+            assertThat(VsamNearCache.coalesce(create, delete), is(nullValue()));
+        }
+    }
+
+    @Test
+    void whenBoundToRegistry_thenTheHitRatioAndQueueDepthAreReported() {
+        underTest = new VsamNearCache(storage, vsamConfig);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        when(storage.read(SERVICE_ID, "key")).thenReturn(new KeyValue("key", "value"));
+
+        underTest.bindTo(registry);
+        underTest.read(SERVICE_ID, "key");
+        underTest.read(SERVICE_ID, "key");
+
+        assertThat(registry.get("caching.vsam.nearcache.hit.ratio").gauge().value(), is(0.5));
+        assertThat(registry.get("caching.vsam.nearcache.queue.depth").gauge().value(), is(0.0));
+        assertThat(registry.get("caching.vsam.nearcache.reads").tag("result", "hit").functionCounter().count(), is(1.0));
+    }
+
+    @Test
+    void operationsAreRetriedOnlyByTheStorage() {
+        underTest = new VsamNearCache(storage, vsamConfig);
+
+        for (Method method : VsamNearCache.class.getDeclaredMethods()) {
+            assertThat(method.getName(), method.isAnnotationPresent(Retryable.class), is(false));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.zfile.ZFileConstants;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VsamRecordCodecTest {
+    private static final String VSAM_KEY = "-646160747:106079             ";
+
+    private VsamConfig config;
+    private VsamRecordCodec underTest;
+
+    @BeforeEach
+    void setUp() throws UnsupportedEncodingException {
+        config = new VsamConfig(new GeneralConfig());
+        config.setKeyLength(30);
+        config.setRecordLength(512);
+        config.setEncoding(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
+
+        underTest = VsamRecordCodec.forEncoding(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
+    }
+
+    @Nested
+    class WhenBinaryFormatIsUsed {
+        @Test
+        void thenTheRecordStartsWithTheKeyFollowedByTheFormat() throws VsamRecordException, UnsupportedEncodingException {
+            byte[] bytes = underTest.encode(config, VSAM_KEY, new KeyValue("daisy", "flower"));
+
+            assertThat(bytes.length, is(lessThan(512)));
+            assertThat(new String(bytes, 0, 30, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), is(VSAM_KEY));
+            assertThat(bytes[30], is(VsamRecordCodec.BINARY_FORMAT_V1));
+        }
+
+        @Test
+        void thenAllFieldsAreDecoded() throws VsamRecordException {
+            KeyValue keyValue = new KeyValue("daisy", "flower", "123");
+            keyValue.setServiceId("garden");
+            keyValue.setTtl(5000L);
+
+            KeyValue decoded = underTest.decode(config, underTest.encode(config, VSAM_KEY, keyValue));
+
+            assertThat(decoded, is(keyValue));
+        }
+
+        @Test
+        void givenMissingFields_thenTheyAreDecodedAsMissing() throws VsamRecordException {
+            KeyValue keyValue = new KeyValue("daisy", null, "123");
+            keyValue.setServiceId(null);
+
+            KeyValue decoded = underTest.decode(config, underTest.encode(config, VSAM_KEY, keyValue));
+
+            assertThat(decoded.getValue(), is(nullValue()));
+            assertThat(decoded.getServiceId(), is(nullValue()));
+            assertThat(decoded.getTtl(), is(nullValue()));
+        }
+
+        @Test
+        void givenValueOfTheWholeRecordLength_thenItIsRejected() {
+            String value = String.join("", Collections.nCopies(512, "x"));
+
+            assertThrows(StorageException.class, () -> underTest.encode(config, VSAM_KEY, new KeyValue("daisy", value)));
+        }
+
+        @Test
+        void givenTruncatedRecord_thenExceptionIsThrown() throws VsamRecordException {
+            byte[] bytes = underTest.encode(config, VSAM_KEY, new KeyValue("daisy", "flower"));
+            byte[] truncated = Arrays.copyOf(bytes, 40);
+
+            assertThrows(VsamRecordException.class, () -> underTest.decode(config, truncated));
+        }
+    }
+
+    @Nested
+    class WhenValueDoesNotFitIntoOneRecord {
+        private final String value = String.join("", Collections.nCopies(2000, "x"));
+
+        @Test
+        void thenItIsSpannedOverContinuationRecords() throws VsamRecordException, UnsupportedEncodingException {
+            List<byte[]> records = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+
+            assertThat(records, hasSize(5));
+            assertThat(records.get(0).length, is(512));
+            assertThat(VsamRecordCodec.continuationCount(config, records.get(0)), is(4));
+            assertThat(new String(records.get(1), 0, 30, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), is("-646160747:106079+001         "));
+            assertThat(VsamRecordCodec.isContinuation(config, records.get(1)), is(true));
+        }
+
+        @Test
+        void thenTheRecordsAreDecodedTogether() throws VsamRecordException {
+            KeyValue keyValue = new KeyValue("daisy", value, "123");
+            keyValue.setServiceId("garden");
+            keyValue.setTtl(5000L);
+            List<byte[]> records = underTest.encodeRecords(config, VSAM_KEY, keyValue);
+
+            KeyValue decoded = underTest.decode(config, records.get(0), records.subList(1, records.size()));
+
+            assertThat(decoded, is(keyValue));
+        }
+
+        @Test
+        void givenShorterRecordEncodedAfterwards_thenBothAreDecoded() throws VsamRecordException {
+            List<byte[]> records = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+            byte[] shorter = underTest.encode(config, VSAM_KEY, new KeyValue("rose", "flower"));
+
+            assertThat(underTest.decode(config, records.get(0), records.subList(1, records.size())).getValue(), is(value));
+            assertThat(underTest.decode(config, shorter).getValue(), is("flower"));
+        }
+
+        @Test
+        void givenContinuationOfAnotherWrite_thenExceptionIsThrown() throws VsamRecordException {
+            List<byte[]> first = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+            List<byte[]> second = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+            List<byte[]> mixed = new ArrayList<>(first.subList(1, first.size()));
+            mixed.set(1, second.get(2));
+
+            assertThrows(VsamRecordException.class, () -> underTest.decode(config, first.get(0), mixed));
+        }
+
+        @Test
+        void givenMissingContinuation_thenExceptionIsThrown() throws VsamRecordException {
+            List<byte[]> records = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+
+            assertThrows(VsamRecordException.class, () -> underTest.decode(config, records.get(0), records.subList(1, 3)));
+        }
+
+        @Test
+        void givenContinuationRecordAlone_thenExceptionIsThrown() throws VsamRecordException {
+            List<byte[]> records = underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value));
+
+            assertThrows(VsamRecordException.class, () -> underTest.decode(config, records.get(1)));
+        }
+
+        @Test
+        void givenJsonFormatConfigured_thenItIsRejected() {
+            config.setRecordFormat(VsamRecordCodec.JSON_FORMAT);
+
+            assertThrows(StorageException.class, () -> underTest.encodeRecords(config, VSAM_KEY, new KeyValue("daisy", value)));
+        }
+    }
+
+    @Nested
+    class WhenJsonFormatIsUsed {
+        @Test
+        void givenRecordOfPreviousVersion_thenItIsDecoded() throws VsamRecordException, UnsupportedEncodingException {
+            byte[] bytes = (VSAM_KEY + "{\"key\":\"daisy\",\"value\":\"flower\",\"ttl\":100}                    ")
+                .getBytes(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE);
+
+            KeyValue decoded = underTest.decode(config, bytes);
+
+            assertThat(decoded.getKey(), is("daisy"));
+            assertThat(decoded.getValue(), is("flower"));
+            assertThat(decoded.getTtl(), is(100L));
+        }
+
+        @Test
+        void givenJsonFormatConfigured_thenTheRecordIsWrittenAsJson() throws VsamRecordException, UnsupportedEncodingException {
+            config.setRecordFormat(VsamRecordCodec.JSON_FORMAT);
+            KeyValue keyValue = new KeyValue("daisy", "flower", "123");
+            keyValue.setServiceId("garden");
+
+            byte[] bytes = underTest.encode(config, VSAM_KEY, keyValue);
+
+            assertThat(new String(bytes, ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE),
+                startsWith(VSAM_KEY + "{\"key\":\"daisy\",\"value\":\"flower\",\"serviceId\":\"garden\",\"created\":\"123\"}"));
+            assertThat(underTest.decode(config, bytes), is(keyValue));
+        }
+    }
+
+    @Nested
+    class WhenCodecIsRequested {
+        @Test
+        void givenTheSameEncoding_thenTheCodecOfTheThreadIsReused() throws UnsupportedEncodingException {
+            assertThat(VsamRecordCodec.forEncoding(ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), is(sameInstance(underTest)));
+        }
+
+        @Test
+        void givenDifferentEncoding_thenNewCodecIsCreated() throws UnsupportedEncodingException {
+            assertThat(VsamRecordCodec.forEncoding("UTF-8"), is(not(sameInstance(underTest))));
+        }
+
+        @Test
+        void givenUnknownEncoding_thenExceptionIsThrown() {
+            assertThrows(UnsupportedEncodingException.class, () -> VsamRecordCodec.forEncoding("unknown-encoding"));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+class VsamRecordCountTest {
+    private VsamRecordCount underTest;
+    private VsamFile file;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new VsamRecordCount();
+        file = mock(VsamFile.class);
+        when(file.countAllRecords()).thenReturn(10);
+    }
+
+    @Nested
+    class WhenCountIsUnknown {
+        @Test
+        void thenTheRecordsAreCountedOnce() {
+            assertThat(underTest.get(file), is(10));
+            assertThat(underTest.get(file), is(10));
+
+            verify(file, times(1)).countAllRecords();
+        }
+
+        @Test
+        void givenCountingFailed_thenTheRecordsAreCountedAgain() {
+            when(file.hasFailed()).thenReturn(true, false);
+
+            underTest.get(file);
+            underTest.get(file);
+
+            verify(file, times(2)).countAllRecords();
+        }
+
+        @Test
+        void givenChanges_thenTheyAreIgnored() {
+            underTest.increment();
+            underTest.decrement();
+            underTest.increment();
+
+            assertThat(underTest.get(file), is(10));
+        }
+    }
+
+    @Nested
+    class WhenCountIsKnown {
+        @BeforeEach
+        void setUp() {
+            underTest.get(file);
+        }
+
+        @Test
+        void givenChanges_thenTheCountIsUpdated() {
+            underTest.increment();
+            underTest.increment();
+            underTest.decrement();
+
+            assertThat(underTest.get(file), is(11));
+        }
+
+        @Test
+        void givenMoreDeletesThanRecords_thenTheCountDoesNotGoNegative() {
+            for (int i = 0; i < 20; i++) {
+                underTest.decrement();
+            }
+
+            assertThat(underTest.get(file), is(0));
+        }
+
+        @Test
+        void givenInvalidated_thenTheRecordsAreCountedAgain() {
+            underTest.invalidate();
+            when(file.countAllRecords()).thenReturn(5);
+
+            assertThat(underTest.get(file), is(5));
+        }
+
+        @Test
+        void givenReconciliation_thenTheCountIsReplaced() {
+            underTest.increment();
+            when(file.countAllRecords()).thenReturn(3);
+
+            underTest.reconcile(file);
+
+            assertThat(underTest.get(file), is(3));
+        }
+
+        @Test
+        void givenReconciliationFailed_thenTheRecordsAreCountedOnNextUse() {
+            when(file.countAllRecords()).thenReturn(3, 7);
+            when(file.hasFailed()).thenReturn(true, false);
+
+            underTest.reconcile(file);
+
+            assertThat(underTest.get(file), is(7));
+        }
+    }
+}
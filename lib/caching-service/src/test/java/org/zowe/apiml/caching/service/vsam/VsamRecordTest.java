@@ -46,13 +46,14 @@ class VsamRecordTest {
         KeyValue kv = new KeyValue("key", "value");
         VsamRecord underTest = new VsamRecord(config, serviceId, kv);
 
-        assertThat(underTest.getBytes().length, is(512));
+        assertThat(underTest.getBytes().length, is(lessThan(512)));
         assertThat(new String(underTest.getBytes(), ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), containsString(String.valueOf(serviceId.hashCode())));
         assertThat(new String(underTest.getBytes(), ZFileConstants.DEFAULT_EBCDIC_CODE_PAGE), containsString(String.valueOf(kv.getKey().hashCode())));
     }
 
     @Test
     void bytesHoldKeyValueSerializationInJsonFormat() throws UnsupportedEncodingException, VsamRecordException {
+        when(config.getRecordFormat()).thenReturn(VsamRecordCodec.JSON_FORMAT);
         String serviceId = "Service";
         KeyValue kv = new KeyValue("key", "value");
         VsamRecord underTest = new VsamRecord(config, serviceId, kv);
@@ -84,6 +85,18 @@ class VsamRecordTest {
         assertThat(underTest.getKeyValue().getValue(), is("flower"));
     }
 
+    @Test
+    void recordCanBeCreatedFromItsBytes() throws VsamRecordException {
+        KeyValue kv = new KeyValue("daisy", "flower");
+        kv.setServiceId("Service");
+        kv.setTtl(1000L);
+
+        VsamRecord underTest = new VsamRecord(config, new VsamRecord(config, "Service", kv).getBytes());
+
+        assertThat(underTest.getServiceId(), is("Service"));
+        assertThat(underTest.getKeyValue(), is(kv));
+    }
+
     @Test
     void recordCannotBeCreatedFromIllegalBytes() throws UnsupportedEncodingException {
         byte[] recordData = "-646160747:106079             {tank}                                                                                                                                                                                                                                                                                                                                                                                                                                                                                             "
@@ -10,11 +10,15 @@
 
 package org.zowe.apiml.caching.service.vsam;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.zowe.apiml.caching.config.GeneralConfig;
 import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.EntryKey;
+import org.zowe.apiml.caching.service.EvictionStrategy;
+import org.zowe.apiml.caching.service.Messages;
 import org.zowe.apiml.caching.service.RejectStrategy;
 import org.zowe.apiml.caching.service.StorageException;
 import org.zowe.apiml.caching.service.Strategies;
@@ -22,11 +26,13 @@ import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.message.log.ApimlLogger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -54,7 +60,7 @@ class VsamStorageTest {
         producer = mock(VsamFileProducer.class);
 
         EvictionStrategyProducer evictionStrategyProducer = mock(EvictionStrategyProducer.class);
-        when(evictionStrategyProducer.evictionStrategy(any())).thenReturn(new RejectStrategy(apimlLogger));
+        when(evictionStrategyProducer.evictionStrategy(any(), any())).thenReturn(new RejectStrategy(apimlLogger));
         underTest = new VsamStorage(vsamConfiguration, initializer, producer, apimlLogger, evictionStrategyProducer);
     }
 
@@ -62,7 +68,7 @@ class VsamStorageTest {
     void givenNoInvalidFilename_whenCreateVsamStorage_thenThrowException() {
         VsamInitializer initializer = mock(VsamInitializer.class);
         EvictionStrategyProducer evictionStrategyProducer = mock(EvictionStrategyProducer.class);
-        when(evictionStrategyProducer.evictionStrategy(any())).thenReturn(new RejectStrategy(apimlLogger));
+        when(evictionStrategyProducer.evictionStrategy(any(), any())).thenReturn(new RejectStrategy(apimlLogger));
         VsamConfig vsamConfig = new VsamConfig(new GeneralConfig());
 
         vsamConfig.setFileName(null);
@@ -214,6 +220,275 @@ class VsamStorageTest {
         }
     }
 
+    @Nested
+    class WhenRecordsAreCounted {
+        private VsamFile returnedFile;
+
+        @BeforeEach
+        void setUp() {
+            returnedFile = mock(VsamFile.class);
+            when(producer.newVsamFile(any(), any(), any())).thenReturn(returnedFile);
+            when(returnedFile.create(any())).thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+        }
+
+        @Test
+        void givenMoreCreates_thenTheFileIsCountedOnlyOnce() {
+            when(returnedFile.countAllRecords()).thenReturn(60);
+
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-1", "value-1"));
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-2", "value-2"));
+
+            verify(returnedFile, times(1)).countAllRecords();
+        }
+
+        @Test
+        void givenFullStorage_whenRecordIsDeleted_thenNextCreateSucceedsWithoutCounting() {
+            KeyValue record = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            when(returnedFile.countAllRecords()).thenReturn(100);
+            when(returnedFile.delete(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, record)));
+
+            assertThrows(StorageException.class, () -> underTest.create(VALID_SERVICE_ID, new KeyValue("key-2", "value-2")));
+            underTest.delete(VALID_SERVICE_ID, "key-1");
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-2", "value-2"));
+
+            verify(returnedFile, times(1)).countAllRecords();
+        }
+
+        @Test
+        void givenReconciliation_thenTheCountOfTheFileIsUsed() {
+            when(returnedFile.countAllRecords()).thenReturn(60, 100);
+
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-1", "value-1"));
+            underTest.reconcileCount();
+
+            assertThrows(StorageException.class, () -> underTest.create(VALID_SERVICE_ID, new KeyValue("key-2", "value-2")));
+            verify(returnedFile, times(2)).countAllRecords();
+        }
+
+        @Test
+        void givenRecordsDeletedForService_thenTheFileIsCountedAgain() {
+            when(returnedFile.countAllRecords()).thenReturn(60);
+
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-1", "value-1"));
+            underTest.deleteForService(VALID_SERVICE_ID);
+            underTest.create(VALID_SERVICE_ID, new KeyValue("key-2", "value-2"));
+
+            verify(returnedFile, times(2)).countAllRecords();
+        }
+    }
+
+    @Nested
+    class WhenBatchIsProcessed {
+        private VsamFile returnedFile;
+
+        @BeforeEach
+        void setUp() {
+            returnedFile = mock(VsamFile.class);
+            when(producer.newVsamFile(any(), any(), any())).thenReturn(returnedFile);
+        }
+
+        @Test
+        void givenRecordsToCreate_thenTheFileIsOpenedAndCountedOnce() {
+            KeyValue created = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            KeyValue duplicate = new KeyValue("key-2", "value-2", VALID_SERVICE_ID);
+            when(returnedFile.countAllRecords()).thenReturn(60);
+            when(returnedFile.create(any()))
+                .thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, created)))
+                .thenReturn(Optional.empty());
+
+            Map<String, StorageException> failures = underTest.createAll(VALID_SERVICE_ID, Arrays.asList(created, duplicate));
+
+            assertThat(failures.keySet(), contains("key-2"));
+            verify(producer, times(1)).newVsamFile(any(), any(), any());
+            verify(returnedFile, times(1)).countAllRecords();
+            verify(returnedFile, times(2)).create(any());
+        }
+
+        @Test
+        void givenTheSizeIsExceededDuringTheBatch_thenTheRestIsRejected() {
+            KeyValue created = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            KeyValue rejected = new KeyValue("key-2", "value-2", VALID_SERVICE_ID);
+            when(returnedFile.countAllRecords()).thenReturn(99);
+            when(returnedFile.create(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, created)));
+
+            Map<String, StorageException> failures = underTest.createAll(VALID_SERVICE_ID, Arrays.asList(created, rejected));
+
+            assertThat(failures.keySet(), contains("key-2"));
+            verify(returnedFile, times(1)).create(any());
+        }
+
+        @Test
+        void givenKeysToRead_thenTheFoundOnesAreReturned() {
+            KeyValue record = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            when(returnedFile.read(any()))
+                .thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, record)))
+                .thenReturn(Optional.empty());
+
+            Map<String, KeyValue> result = underTest.readAll(VALID_SERVICE_ID, Arrays.asList("key-1", "key-2"));
+
+            assertThat(result.size(), is(1));
+            assertThat(result.get("key-1"), is(record));
+            verify(producer, times(1)).newVsamFile(any(), any(), any());
+        }
+
+        @Test
+        void givenRecordsToUpdate_thenTheMissingOnesFail() {
+            KeyValue updated = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            KeyValue missing = new KeyValue("key-2", "value-2", VALID_SERVICE_ID);
+            when(returnedFile.update(any()))
+                .thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, updated)))
+                .thenReturn(Optional.empty());
+
+            Map<String, StorageException> failures = underTest.updateAll(VALID_SERVICE_ID, Arrays.asList(updated, missing));
+
+            assertThat(failures.keySet(), contains("key-2"));
+        }
+
+        @Test
+        void givenKeysToDelete_thenTheMissingOnesFail() {
+            KeyValue deleted = new KeyValue("key-1", "value-1", VALID_SERVICE_ID);
+            when(returnedFile.delete(any()))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, deleted)));
+
+            Map<String, StorageException> failures = underTest.deleteAll(VALID_SERVICE_ID, Arrays.asList("key-2", "key-1"));
+
+            assertThat(failures.keySet(), contains("key-2"));
+            verify(producer, times(1)).newVsamFile(any(), any(), any());
+        }
+    }
+
+    @Nested
+    class WhenRecordIsExpired {
+        private VsamFile returnedFile;
+        private KeyValue expired;
+
+        @BeforeEach
+        void setUp() {
+            returnedFile = mock(VsamFile.class);
+            when(producer.newVsamFile(any(), any(), any())).thenReturn(returnedFile);
+            expired = new KeyValue("key-1", "value-1", "1");
+            expired.setTtl(1L);
+        }
+
+        @Test
+        void thenItIsNotRead() {
+            when(returnedFile.read(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, expired)));
+
+            assertThrows(StorageException.class, () -> underTest.read(VALID_SERVICE_ID, "key-1"));
+            assertThat(underTest.readAll(VALID_SERVICE_ID, Arrays.asList("key-1")).isEmpty(), is(true));
+        }
+
+        @Test
+        void thenItIsReplacedByTheCreatedRecord() {
+            KeyValue created = new KeyValue("key-1", "value-2");
+            when(returnedFile.countAllRecords()).thenReturn(60);
+            when(returnedFile.create(any())).thenReturn(Optional.empty());
+            when(returnedFile.read(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, expired)));
+            when(returnedFile.update(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, created)));
+
+            assertThat(underTest.create(VALID_SERVICE_ID, created).getValue(), is("value-2"));
+            verify(returnedFile).update(any());
+        }
+
+        @Test
+        void whenDeleted_thenItIsReportedAsMissing() {
+            when(returnedFile.delete(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, expired)));
+
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.delete(VALID_SERVICE_ID, "key-1"));
+            assertThat(exception.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+
+        @Test
+        void thenItIsLeftOutOfTheServiceRecords() {
+            KeyValue valid = new KeyValue("key-2", "value-2");
+            when(returnedFile.readForService(VALID_SERVICE_ID)).thenReturn(Arrays.asList(
+                new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, expired),
+                new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, valid)));
+
+            assertThat(underTest.readForService(VALID_SERVICE_ID).keySet(), contains("key-2"));
+        }
+
+        @Test
+        void givenItIsTheVictim_thenTheCreatedRecordIsAdmitted() {
+            KeyValue created = new KeyValue("key-2", "value-2");
+            EvictionStrategy strategy = victimReadMoreOftenThanCreated(true, created);
+
+            assertThat(underTest.create(VALID_SERVICE_ID, created).getValue(), is("value-2"));
+            verify(strategy).evict("key-2");
+        }
+
+        @Test
+        void givenVictimIsValid_thenTheCreatedRecordIsRejectedByTheAdmission() {
+            KeyValue created = new KeyValue("key-2", "value-2");
+            EvictionStrategy strategy = victimReadMoreOftenThanCreated(false, created);
+
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.create(VALID_SERVICE_ID, created));
+            assertThat(exception.getKey(), is(Messages.INSUFFICIENT_STORAGE.getKey()));
+            verify(strategy, never()).evict(any());
+        }
+
+        private EvictionStrategy victimReadMoreOftenThanCreated(boolean victimExpired, KeyValue created) {
+            vsamConfiguration.getGeneralConfig().setAdmissionFilterEnabled(true);
+            vsamConfiguration.getGeneralConfig().setEvictionStrategy(Strategies.REMOVE_OLDEST.getKey());
+            EntryKey victim = new EntryKey(VALID_SERVICE_ID, "key-1");
+            EvictionStrategy strategy = mock(EvictionStrategy.class);
+            when(strategy.victim()).thenReturn(Optional.of(victim));
+            when(strategy.isExpired(victim)).thenReturn(victimExpired);
+            EvictionStrategyProducer evictionStrategyProducer = mock(EvictionStrategyProducer.class);
+            when(evictionStrategyProducer.evictionStrategy(any(), any())).thenReturn(strategy);
+            underTest = new VsamStorage(vsamConfiguration, mock(VsamInitializer.class), producer, apimlLogger, evictionStrategyProducer);
+
+            when(returnedFile.read(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, expired)));
+            for (int i = 0; i < 5; i++) {
+                assertThrows(StorageException.class, () -> underTest.read(VALID_SERVICE_ID, "key-1"));
+            }
+            when(returnedFile.countAllRecords()).thenReturn(200);
+            when(returnedFile.create(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, created)));
+            return strategy;
+        }
+    }
+
+    @Nested
+    class WhenGroupCommitIsEnabled {
+        private VsamFile returnedFile;
+
+        @BeforeEach
+        void setUp() {
+            vsamConfiguration.setGroupCommit(true);
+            vsamConfiguration.setCountReconcileInterval(0);
+            EvictionStrategyProducer evictionStrategyProducer = mock(EvictionStrategyProducer.class);
+            when(evictionStrategyProducer.evictionStrategy(any(), any())).thenReturn(new RejectStrategy(apimlLogger));
+            underTest = new VsamStorage(vsamConfiguration, mock(VsamInitializer.class), producer, apimlLogger, evictionStrategyProducer);
+
+            returnedFile = mock(VsamFile.class);
+            when(producer.newVsamFile(any(), any(), any())).thenReturn(returnedFile);
+        }
+
+        @AfterEach
+        void tearDown() {
+            underTest.close();
+        }
+
+        @Test
+        void givenRecordToCreate_thenItIsCreatedByTheWriter() {
+            KeyValue record = new KeyValue("key-1", "value-1", "1");
+            when(returnedFile.countAllRecords()).thenReturn(60);
+            when(returnedFile.create(any())).thenReturn(Optional.of(new VsamRecord(vsamConfiguration, VALID_SERVICE_ID, record)));
+
+            assertThat(underTest.create(VALID_SERVICE_ID, record), is(record));
+        }
+
+        @Test
+        void givenMissingRecordToUpdate_thenTheCallerGetsItsException() {
+            KeyValue record = new KeyValue("key-1", "value-1", "1");
+            when(returnedFile.update(any())).thenReturn(Optional.empty());
+
+            StorageException exception = assertThrows(StorageException.class, () -> underTest.update(VALID_SERVICE_ID, record));
+            assertThat(exception.getKey(), is(Messages.KEY_NOT_IN_CACHE.getKey()));
+        }
+    }
+
     @Nested
     class WhenRequestAllForService {
         @Test
@@ -0,0 +1,124 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.zowe.apiml.caching.model.KeyValue;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.zfile.LocalZFile;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class VsamTimeIndexTest {
+    private static final String SERVICE_ID = "service";
+
+    @TempDir
+    Path directory;
+
+    private VsamConfig vsamConfig;
+    private VsamTimeIndex underTest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        vsamConfig = DefaultVsamConfiguration.defaultConfiguration();
+        vsamConfig.setTimeIndexName("//'" + directory.resolve("time.ksds") + "'");
+
+        VsamConfig indexConfig = VsamTimeIndex.indexConfig(vsamConfig);
+        underTest = new VsamTimeIndex(vsamConfig, new LocalZFile(directory.resolve("time.ksds").toString(),
+            VsamConfig.VsamOptions.WRITE.getOptionsString(), indexConfig.getKeyLength(), indexConfig.getRecordLength()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    @Test
+    void indexConfigIsDerivedFromCacheConfig() {
+        VsamConfig indexConfig = VsamTimeIndex.indexConfig(vsamConfig);
+
+        assertThat(indexConfig.getFileName(), is(vsamConfig.getTimeIndexName()));
+        assertThat(indexConfig.getKeyLength(), is(VsamTimeIndex.TIMESTAMP_LENGTH + vsamConfig.getKeyLength()));
+        assertThat(indexConfig.getRecordLength(), is(indexConfig.getKeyLength()));
+    }
+
+    @Nested
+    class WhenLookingForOldest {
+        @Test
+        void givenEmptyIndex_thenNothingIsReturned() throws Exception {
+            assertThat(underTest.oldest().isPresent(), is(false));
+        }
+
+        @Test
+        void givenRecords_thenTheEarliestCreatedIsReturned() throws Exception {
+            underTest.add(record("key-1", "300"));
+            underTest.add(record("key-2", "20"));
+            underTest.add(record("key-3", "1000"));
+
+            Optional<VsamTimeIndex.Entry> oldest = underTest.oldest();
+
+            assertThat(oldest.isPresent(), is(true));
+            assertThat(oldest.get().getCreated(), is(20L));
+            assertThat(oldest.get().getKey(), is(record("key-2", "20").getKeyBytes()));
+        }
+
+        @Test
+        void givenRemovedRecord_thenTheNextOneIsReturned() throws Exception {
+            underTest.add(record("key-1", "300"));
+            underTest.add(record("key-2", "20"));
+
+            underTest.remove(record("key-2", "20"));
+
+            assertThat(underTest.oldest().get().getCreated(), is(300L));
+        }
+
+        @Test
+        void givenRemovedEntry_thenTheNextOneIsReturned() throws Exception {
+            underTest.add(record("key-1", "300"));
+            underTest.add(record("key-2", "20"));
+
+            underTest.remove(underTest.oldest().get());
+
+            assertThat(underTest.oldest().get().getCreated(), is(300L));
+        }
+
+        @Test
+        void givenRecordAddedTwice_thenItIsIndexedOnce() throws Exception {
+            underTest.add(record("key-1", "20"));
+            underTest.add(record("key-1", "20"));
+
+            underTest.remove(underTest.oldest().get());
+
+            assertThat(underTest.oldest().isPresent(), is(false));
+        }
+    }
+
+    @Test
+    void warmUpLeavesTheIndexEmpty() throws Exception {
+        underTest.warmUp();
+
+        assertThat(underTest.oldest().isPresent(), is(false));
+    }
+
+    private VsamRecord record(String key, String created) {
+        KeyValue keyValue = new KeyValue(key, "value", created);
+        keyValue.setServiceId(SERVICE_ID);
+        return new VsamRecord(vsamConfig, SERVICE_ID, keyValue);
+    }
+}
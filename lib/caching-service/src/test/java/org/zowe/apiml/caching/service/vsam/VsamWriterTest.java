@@ -0,0 +1,153 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.caching.service.vsam;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.zowe.apiml.caching.config.GeneralConfig;
+import org.zowe.apiml.caching.service.Messages;
+import org.zowe.apiml.caching.service.StorageException;
+import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
+import org.zowe.apiml.message.log.ApimlLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class VsamWriterTest {
+    private VsamFileProducer producer;
+    private VsamFilePool pool;
+    private VsamWriter underTest;
+
+    @BeforeEach
+    void setUp() {
+        VsamConfig vsamConfig = new VsamConfig(new GeneralConfig());
+        vsamConfig.setPoolSize(2);
+        vsamConfig.setMaxIdleTime(60000);
+
+        producer = mock(VsamFileProducer.class);
+        when(producer.newVsamFile(any(), any(), any())).thenAnswer(invocation -> mock(VsamFile.class));
+
+        pool = new VsamFilePool(vsamConfig, producer, ApimlLogger.empty());
+        underTest = new VsamWriter(pool, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.close();
+    }
+
+    @Nested
+    class WhenOperationIsWritten {
+        @Test
+        void givenSuccessfulOperation_thenTheCallerGetsItsResult() {
+            assertThat(underTest.write(file -> "written"), is("written"));
+        }
+
+        @Test
+        void givenFailingOperation_thenTheCallerGetsItsException() {
+            StorageException failure = new StorageException(Messages.DUPLICATE_KEY.getKey(), Messages.DUPLICATE_KEY.getStatus(), "key", "service");
+
+            StorageException thrown = assertThrows(StorageException.class, () -> underTest.write(file -> {
+                throw failure;
+            }));
+            assertThat(thrown, is(sameInstance(failure)));
+        }
+
+        @Test
+        void givenConcurrentCallers_thenTheOperationsAreAppliedOnOneFile() throws Exception {
+            CountDownLatch blocked = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService callers = Executors.newFixedThreadPool(5);
+            try {
+                // The first operation holds the writer until the others are queued.
+                Future<VsamFile> first = callers.submit(() -> underTest.write(file -> {
+                    blocked.countDown();
+                    awaitQuietly(release);
+                    return file;
+                }));
+                blocked.await();
+
+                List<Future<VsamFile>> others = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    others.add(callers.submit(() -> underTest.write(file -> file)));
+                }
+                Thread.sleep(200);
+                release.countDown();
+
+                VsamFile batchFile = others.get(0).get(5, TimeUnit.SECONDS);
+                for (Future<VsamFile> other : others) {
+                    assertThat(other.get(5, TimeUnit.SECONDS), is(sameInstance(batchFile)));
+                }
+                first.get(5, TimeUnit.SECONDS);
+            } finally {
+                callers.shutdownNow();
+            }
+
+            verify(producer, times(1)).newVsamFile(any(), any(), any());
+        }
+
+        @Test
+        void givenClosedWriter_thenTheOperationIsRejected() {
+            underTest.close();
+
+            assertThrows(IllegalStateException.class, () -> underTest.write(file -> "written"));
+        }
+    }
+
+    @Nested
+    class WhenBatchIsApplied {
+        @Test
+        void givenTheFileFails_thenTheRestOfTheBatchGetsNewFile() throws Exception {
+            VsamFile failing = mock(VsamFile.class);
+            when(failing.hasFailed()).thenReturn(true);
+            VsamFile healthy = mock(VsamFile.class);
+            when(producer.newVsamFile(any(), any(), any())).thenReturn(failing, healthy);
+
+            VsamWriter.Operation<VsamFile> first = new VsamWriter.Operation<>(file -> file);
+            VsamWriter.Operation<VsamFile> second = new VsamWriter.Operation<>(file -> file);
+            underTest.apply(Arrays.asList(first, second));
+
+            assertThat(first.getResult().get(), is(sameInstance(failing)));
+            assertThat(second.getResult().get(), is(sameInstance(healthy)));
+            verify(failing).close();
+        }
+
+        @Test
+        void givenTheFileCannotBeLeased_thenAllOperationsFail() {
+            when(producer.newVsamFile(any(), any(), any())).thenThrow(new IllegalStateException("not available"));
+
+            VsamWriter.Operation<String> operation = new VsamWriter.Operation<>(file -> "written");
+            underTest.apply(Collections.singletonList(operation));
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> operation.getResult().get());
+            assertThat(exception.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
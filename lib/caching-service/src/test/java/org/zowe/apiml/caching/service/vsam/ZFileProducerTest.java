@@ -13,9 +13,19 @@ package org.zowe.apiml.caching.service.vsam;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.zowe.apiml.caching.model.KeyValue;
 import org.zowe.apiml.caching.service.vsam.config.VsamConfig;
 import org.zowe.apiml.message.log.ApimlLogger;
+import org.zowe.apiml.zfile.LocalZFile;
 
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class ZFileProducerTest {
@@ -43,4 +53,67 @@ class ZFileProducerTest {
             assertThrows(JzosImplementationException.class, () -> underTest.openZfile());
         }
     }
+
+    @Nested
+    class WhenLocalDataSetIsUsed {
+        @TempDir
+        Path directory;
+
+        @BeforeEach
+        void setUp() {
+            vsamConfiguration.setLocal(true);
+            vsamConfiguration.setFileName("//'" + directory.resolve("cache.ksds") + "'");
+        }
+
+        @Test
+        void thenLocalFileIsOpened() throws Exception {
+            assertThat(underTest.openZfile(), is(instanceOf(LocalZFile.class)));
+        }
+
+        @Test
+        void thenRecordsCanBeStoredAndReadBack() {
+            ApimlLogger logger = ApimlLogger.empty();
+            ZFileProducer readProducer = new ZFileProducer(vsamConfiguration, VsamConfig.VsamOptions.READ, logger);
+            KeyValue keyValue = new KeyValue("key", "value", "1");
+            keyValue.setServiceId("service");
+
+            try (VsamFile writer = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.WRITE, true, underTest, new VsamInitializer(), logger);
+                 VsamFile reader = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.READ, false, readProducer, new VsamInitializer(), logger)) {
+                VsamRecord record = new VsamRecord(vsamConfiguration, "service", keyValue);
+
+                assertThat(writer.create(record).isPresent(), is(true));
+                assertThat(writer.create(record), is(Optional.empty()));
+
+                Optional<VsamRecord> read = reader.read(new VsamRecord(vsamConfiguration, "service", new KeyValue("key", "")));
+                assertThat(read.isPresent(), is(true));
+                assertThat(read.get().getKeyValue().getValue(), is("value"));
+
+                assertThat(reader.readForService("service"), hasSize(1));
+                assertThat(writer.countAllRecords(), is(1));
+
+                assertThat(writer.delete(record).isPresent(), is(true));
+                assertThat(reader.readForService("service"), hasSize(0));
+            }
+        }
+
+        @Test
+        void givenTimeIndex_thenTheOldestRecordIsFoundByIt() {
+            ApimlLogger logger = ApimlLogger.empty();
+            vsamConfiguration.setTimeIndexName("//'" + directory.resolve("time.ksds") + "'");
+
+            try (VsamFile file = new VsamFile(vsamConfiguration, VsamConfig.VsamOptions.WRITE, true, underTest, new VsamInitializer(), logger)) {
+                for (String created : new String[]{"300", "100", "200"}) {
+                    KeyValue keyValue = new KeyValue("key-" + created, "value", created);
+                    keyValue.setServiceId("service");
+                    file.create(new VsamRecord(vsamConfiguration, "service", keyValue));
+                }
+
+                RemoveOldestStrategy strategy = new RemoveOldestStrategy(vsamConfiguration, file, new VsamRecordCount());
+                assertThat(strategy.victim().get().getKey(), is("key-100"));
+
+                strategy.evict("new-key");
+                assertThat(strategy.victim().get().getKey(), is("key-200"));
+            }
+        }
+    }
 }
@@ -0,0 +1,288 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.zfile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Key sequenced data set kept in a local file. It's shared by all the {@link LocalZFile} opened on the same path.
+ * <p>
+ * The file starts with a header holding the key and record length. The slots of the records follow, every slot
+ * holds the state, the length and the bytes of the record. The file is mapped to the memory in segments and the next
+ * segment is mapped once all the slots are used. The slots of the deleted records are reused.
+ * <p>
+ * The keys are indexed in a sorted map in the memory, which is rebuilt by reading all the slots when the file is
+ * opened. The keys are compared as unsigned bytes, same as by VSAM.
+ */
+class LocalKsds {
+    private static final int MAGIC = 0x4b534453;
+    private static final int HEADER_LENGTH = 16;
+    private static final int SLOT_HEADER_LENGTH = 1 + Integer.BYTES;
+    private static final int SLOTS_PER_SEGMENT = 1024;
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+
+    private static final Map<String, LocalKsds> OPENED = new HashMap<>();
+
+    private final String path;
+    private final int keyLength;
+    private final int recordLength;
+    private final int slotLength;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final TreeMap<byte[], Integer> index = new TreeMap<>(LocalKsds::compareKeys);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int references;
+
+    /**
+     * Open the data set stored in the file or create it if the file doesn't exist.
+     */
+    static synchronized LocalKsds open(String path, int keyLength, int recordLength) throws IOException {
+        LocalKsds dataset = OPENED.get(path);
+        if (dataset == null) {
+            dataset = new LocalKsds(path, keyLength, recordLength);
+            OPENED.put(path, dataset);
+        } else if (dataset.keyLength != keyLength || dataset.recordLength != recordLength) {
+            throw new IOException("The data set " + path + " is already opened with different key or record length");
+        }
+
+        dataset.references++;
+        return dataset;
+    }
+
+    /**
+     * Release the data set opened by {@link #open(String, int, int)}. The file is closed once all users released it.
+     */
+    static synchronized void release(LocalKsds dataset) throws IOException {
+        dataset.references--;
+        if (dataset.references == 0) {
+            OPENED.remove(dataset.path);
+            synchronized (dataset) {
+                dataset.segments.forEach(MappedByteBuffer::force);
+                dataset.channel.close();
+            }
+        }
+    }
+
+    private LocalKsds(String path, int keyLength, int recordLength) throws IOException {
+        if (keyLength <= 0 || recordLength < keyLength) {
+            throw new IOException("Invalid key length " + keyLength + " or record length " + recordLength);
+        }
+
+        this.path = path;
+        this.keyLength = keyLength;
+        this.recordLength = recordLength;
+        this.slotLength = SLOT_HEADER_LENGTH + recordLength;
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        try {
+            if (channel.size() == 0) {
+                writeHeader();
+            } else {
+                checkHeader();
+                load();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    int getKeyLength() {
+        return keyLength;
+    }
+
+    int getRecordLength() {
+        return recordLength;
+    }
+
+    synchronized byte[] firstKey() {
+        return index.isEmpty() ? null : index.firstKey();
+    }
+
+    synchronized byte[] lastKey() {
+        return index.isEmpty() ? null : index.lastKey();
+    }
+
+    synchronized byte[] ceilingKey(byte[] key) {
+        return index.ceilingKey(key);
+    }
+
+    synchronized byte[] higherKey(byte[] key) {
+        return index.higherKey(key);
+    }
+
+    /**
+     * @return The amount of the bytes copied or -1 if there is no record with the key.
+     */
+    synchronized int read(byte[] key, byte[] buf, int offset, int length) {
+        Integer slot = index.get(key);
+        if (slot == null) {
+            return -1;
+        }
+
+        ByteBuffer segment = slotBuffer(slot);
+        int stored = segment.getInt(segment.position() + 1);
+        int copied = Math.min(stored, length);
+        segment.position(segment.position() + SLOT_HEADER_LENGTH);
+        segment.get(buf, offset, copied);
+        return copied;
+    }
+
+    /**
+     * @return False if the record with the same key already exists.
+     */
+    synchronized boolean insert(byte[] buf, int offset, int length) throws IOException {
+        byte[] key = Arrays.copyOfRange(buf, offset, offset + keyLength);
+        if (index.containsKey(key)) {
+            return false;
+        }
+
+        int slot = freeSlots.isEmpty() ? extend() : freeSlots.pop();
+        store(slot, buf, offset, length);
+        index.put(key, slot);
+        return true;
+    }
+
+    /**
+     * @return False if there is no record with the key.
+     */
+    synchronized boolean replace(byte[] key, byte[] buf, int offset, int length) {
+        Integer slot = index.get(key);
+        if (slot == null) {
+            return false;
+        }
+
+        store(slot, buf, offset, length);
+        return true;
+    }
+
+    /**
+     * @return False if there is no record with the key.
+     */
+    synchronized boolean remove(byte[] key) {
+        Integer slot = index.remove(key);
+        if (slot == null) {
+            return false;
+        }
+
+        ByteBuffer segment = slotBuffer(slot);
+        segment.put(segment.position(), FREE);
+        freeSlots.push(slot);
+        return true;
+    }
+
+    static int compareKeys(byte[] first, byte[] second) {
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int result = (first[i] & 0xff) - (second[i] & 0xff);
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return first.length - second.length;
+    }
+
+    private void store(int slot, byte[] buf, int offset, int length) {
+        ByteBuffer segment = slotBuffer(slot);
+        int start = segment.position();
+        segment.put(USED);
+        segment.putInt(length);
+        segment.put(buf, offset, length);
+        for (int i = length; i < recordLength; i++) {
+            segment.put((byte) 0);
+        }
+        segment.position(start);
+    }
+
+    /**
+     * @return View of the segment positioned at the start of the slot.
+     */
+    private ByteBuffer slotBuffer(int slot) {
+        ByteBuffer segment = segments.get(slot / SLOTS_PER_SEGMENT).duplicate();
+        segment.position((slot % SLOTS_PER_SEGMENT) * slotLength);
+        return segment;
+    }
+
+    /**
+     * Map the next segment of the file.
+     *
+     * @return The first slot of the new segment, the rest of them is added to the free slots.
+     */
+    private int extend() throws IOException {
+        int first = segments.size() * SLOTS_PER_SEGMENT;
+        segments.add(mapSegment(segments.size()));
+
+        for (int slot = first + SLOTS_PER_SEGMENT - 1; slot > first; slot--) {
+            freeSlots.push(slot);
+        }
+
+        return first;
+    }
+
+    private MappedByteBuffer mapSegment(int number) throws IOException {
+        long segmentLength = (long) SLOTS_PER_SEGMENT * slotLength;
+        return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_LENGTH + number * segmentLength, segmentLength);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC).putInt(keyLength).putInt(recordLength).putInt(0);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        channel.read(header, 0);
+        header.flip();
+
+        if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC) {
+            throw new IOException("The file " + path + " doesn't hold a local data set");
+        }
+
+        int storedKeyLength = header.getInt();
+        int storedRecordLength = header.getInt();
+        if (storedKeyLength != keyLength || storedRecordLength != recordLength) {
+            throw new IOException("The data set " + path + " was created with key length " + storedKeyLength
+                + " and record length " + storedRecordLength);
+        }
+    }
+
+    private void load() throws IOException {
+        long segmentLength = (long) SLOTS_PER_SEGMENT * slotLength;
+        long amountOfSegments = (channel.size() - HEADER_LENGTH + segmentLength - 1) / segmentLength;
+
+        for (int number = 0; number < amountOfSegments; number++) {
+            segments.add(mapSegment(number));
+        }
+
+        // The free slots are pushed from the end, so the ones at the beginning of the file are reused first.
+        for (int slot = segments.size() * SLOTS_PER_SEGMENT - 1; slot >= 0; slot--) {
+            ByteBuffer segment = slotBuffer(slot);
+            if (segment.get(segment.position()) == USED) {
+                byte[] key = new byte[keyLength];
+                segment.position(segment.position() + SLOT_HEADER_LENGTH);
+                segment.get(key);
+                index.put(key, slot);
+            } else {
+                freeSlots.push(slot);
+            }
+        }
+    }
+}
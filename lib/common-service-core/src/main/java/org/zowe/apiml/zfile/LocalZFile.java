@@ -0,0 +1,243 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.zfile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure Java implementation of the keyed access to the VSAM KSDS, so the code using the ZFile can run off z/OS.
+ * <p>
+ * The records are kept in a local file, see {@link LocalKsds}. All the instances opened on the same path within the
+ * JVM share the data, while every instance has its own position:
+ * <ul>
+ *     <li>locate positions the file to the record with the key equal to, greater or equal to the given one, or to the
+ *     first or last record.</li>
+ *     <li>read returns the record at the position and moves to the next record in the order of the keys.</li>
+ *     <li>update and delrec change the record returned by the last read.</li>
+ *     <li>write inserts the record under the key held by its first bytes and fails if the key already exists.</li>
+ * </ul>
+ * The file opened in the read only mode, e.g. "rb,type=record", refuses the changes.
+ */
+@SuppressWarnings("squid:S1130")
+public class LocalZFile implements ZFile {
+    private final String fileName;
+    private final boolean readOnly;
+    private final LocalKsds dataset;
+
+    private byte[] position;
+    private boolean positionInclusive;
+    private byte[] lastRead;
+    private boolean closed;
+
+    public LocalZFile(String fileName, String options, int keyLength, int recordLength) throws ZFileException {
+        this.fileName = fileName;
+
+        String mode = options.split(",")[0];
+        this.readOnly = mode.startsWith("r") && !mode.contains("+");
+
+        try {
+            this.dataset = LocalKsds.open(fileName, keyLength, recordLength);
+        } catch (IOException e) {
+            throw error("Opening of the data set failed: " + e.getMessage(), ZFileConstants.LAST_OP_VSAM_OPEN_FAIL);
+        }
+    }
+
+    @Override
+    public void close() throws ZFileException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            LocalKsds.release(dataset);
+        } catch (IOException e) {
+            throw error("Closing of the data set failed: " + e.getMessage(), ZFileConstants.LAST_OP_VSAM_CLOSE);
+        }
+    }
+
+    @Override
+    public void delrec() throws ZFileException {
+        checkWritable(ZFileConstants.LAST_OP_VSAM_ERASE);
+        if (lastRead == null) {
+            throw error("No record was read before the deletion", ZFileConstants.LAST_OP_VSAM_ERASE);
+        }
+
+        if (!dataset.remove(lastRead)) {
+            throw error("The record was deleted meanwhile", ZFileConstants.LAST_OP_VSAM_ERASE);
+        }
+        lastRead = null;
+    }
+
+    @Override
+    public boolean locate(byte[] key, int options) throws ZFileException {
+        return locate(key, 0, key.length, options);
+    }
+
+    @Override
+    public boolean locate(byte[] key, int offset, int length, int options) throws ZFileException {
+        checkOpened(ZFileConstants.LAST_OP_VSAM_POINT);
+
+        byte[] searched = Arrays.copyOfRange(key, offset, offset + Math.min(length, dataset.getKeyLength()));
+        // The shorter key is generic, it matches all the keys starting with it.
+        byte[] padded = Arrays.copyOf(searched, dataset.getKeyLength());
+
+        byte[] found;
+        switch (options) {
+            case ZFileConstants.LOCATE_KEY_FIRST:
+                found = dataset.firstKey();
+                break;
+            case ZFileConstants.LOCATE_KEY_LAST:
+                found = dataset.lastKey();
+                break;
+            case ZFileConstants.LOCATE_KEY_GE:
+                found = dataset.ceilingKey(padded);
+                break;
+            case ZFileConstants.LOCATE_KEY_EQ:
+                found = dataset.ceilingKey(padded);
+                if (found != null && !startsWith(found, searched)) {
+                    found = null;
+                }
+                break;
+            default:
+                throw error("Unsupported locate option " + options, ZFileConstants.LAST_OP_VSAM_POINT);
+        }
+
+        position = found;
+        positionInclusive = true;
+        lastRead = null;
+        return found != null;
+    }
+
+    @Override
+    public boolean locate(long recordNumberOrRBA, int options) throws ZFileException {
+        throw error("Locating by the record number is not supported by the key sequenced data set", ZFileConstants.LAST_OP_VSAM_POINT);
+    }
+
+    @Override
+    public int read(byte[] buf) throws ZFileException {
+        return read(buf, 0, buf.length);
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int len) throws ZFileException {
+        checkOpened(ZFileConstants.LAST_OP_VSAM_GET);
+
+        lastRead = null;
+        if (position == null) {
+            return -1;
+        }
+
+        // The record may be deleted by another instance between looking up its key and reading it.
+        synchronized (dataset) {
+            byte[] key = positionInclusive ? dataset.ceilingKey(position) : dataset.higherKey(position);
+            if (key == null) {
+                position = null;
+                return -1;
+            }
+
+            int read = dataset.read(key, buf, offset, len);
+            position = key;
+            positionInclusive = false;
+            lastRead = key;
+            return read;
+        }
+    }
+
+    @Override
+    public int update(byte[] buf) throws ZFileException {
+        return update(buf, 0, buf.length);
+    }
+
+    @Override
+    public int update(byte[] buf, int offset, int length) throws ZFileException {
+        checkWritable(ZFileConstants.LAST_OP_VSAM_PUT);
+        checkRecord(buf, offset, length);
+        if (lastRead == null) {
+            throw error("No record was read before the update", ZFileConstants.LAST_OP_VSAM_PUT);
+        }
+        if (LocalKsds.compareKeys(Arrays.copyOfRange(buf, offset, offset + dataset.getKeyLength()), lastRead) != 0) {
+            throw error("The key of the record cannot be changed by the update", ZFileConstants.LAST_OP_VSAM_PUT);
+        }
+
+        if (!dataset.replace(lastRead, buf, offset, length)) {
+            throw error("The record was deleted meanwhile", ZFileConstants.LAST_OP_VSAM_PUT);
+        }
+        return length;
+    }
+
+    @Override
+    public void write(byte[] buf) throws ZFileException {
+        write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void write(byte[] buf, int offset, int len) throws ZFileException {
+        checkWritable(ZFileConstants.LAST_OP_VSAM_PUT);
+        checkRecord(buf, offset, len);
+
+        try {
+            if (!dataset.insert(buf, offset, len)) {
+                throw error("The record with the same key already exists", ZFileConstants.LAST_OP_VSAM_PUT);
+            }
+        } catch (IOException e) {
+            throw error("Extending of the data set failed: " + e.getMessage(), ZFileConstants.LAST_OP_VSAM_PUT);
+        }
+
+        position = Arrays.copyOfRange(buf, offset, offset + dataset.getKeyLength());
+        positionInclusive = false;
+        lastRead = null;
+    }
+
+    @Override
+    public String getActualFilename() {
+        return fileName;
+    }
+
+    private void checkOpened(int operation) throws ZFileException {
+        if (closed) {
+            throw error("The data set is closed", operation);
+        }
+    }
+
+    private void checkWritable(int operation) throws ZFileException {
+        checkOpened(operation);
+        if (readOnly) {
+            throw error("The data set is opened for reading only", operation);
+        }
+    }
+
+    private void checkRecord(byte[] buf, int offset, int length) throws ZFileException {
+        if (length < dataset.getKeyLength() || length > dataset.getRecordLength() || offset + length > buf.length) {
+            throw error("The record has to be longer than the key and not longer than " + dataset.getRecordLength() + " bytes",
+                ZFileConstants.LAST_OP_VSAM_PUT);
+        }
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (prefix.length > key.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private ZFileException error(String message, int lastOperation) {
+        return new ZFileException(fileName, message, message, 0, 0, lastOperation, null, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * https://www.eclipse.org/legal/epl-v20.html
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Copyright Contributors to the Zowe Project.
+ */
+
+package org.zowe.apiml.zfile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalZFileTest {
+    private static final int KEY_LENGTH = 4;
+    private static final int RECORD_LENGTH = 16;
+    private static final String WRITE = "ab+,type=record";
+    private static final String READ = "rb,type=record";
+
+    @TempDir
+    Path directory;
+
+    private String fileName;
+    private LocalZFile underTest;
+
+    @BeforeEach
+    void setUp() throws ZFileException {
+        fileName = directory.resolve("test.ksds").toString();
+        underTest = new LocalZFile(fileName, WRITE, KEY_LENGTH, RECORD_LENGTH);
+    }
+
+    @AfterEach
+    void tearDown() throws ZFileException {
+        underTest.close();
+    }
+
+    @Nested
+    class WhenLocating {
+        @BeforeEach
+        void setUp() throws ZFileException {
+            underTest.write(record("k002", "second"));
+            underTest.write(record("k001", "first"));
+            underTest.write(record("k003", "third"));
+        }
+
+        @Test
+        void givenExistingKey_thenTheRecordIsRead() throws ZFileException {
+            assertTrue(underTest.locate(key("k002"), ZFileConstants.LOCATE_KEY_EQ));
+            assertEquals("second", readValue(underTest));
+        }
+
+        @Test
+        void givenMissingKey_thenNothingIsFound() throws ZFileException {
+            assertFalse(underTest.locate(key("k004"), ZFileConstants.LOCATE_KEY_EQ));
+            assertEquals(-1, underTest.read(new byte[RECORD_LENGTH]));
+        }
+
+        @Test
+        void givenKeyGreaterOrEqual_thenTheFollowingRecordsAreReadInKeyOrder() throws ZFileException {
+            assertTrue(underTest.locate(key("k002"), ZFileConstants.LOCATE_KEY_GE));
+            assertEquals(Arrays.asList("second", "third"), readAll(underTest));
+        }
+
+        @Test
+        void givenKeyGreaterThanAll_thenNothingIsFound() throws ZFileException {
+            assertFalse(underTest.locate(key("k004"), ZFileConstants.LOCATE_KEY_GE));
+        }
+
+        @Test
+        void givenGenericKey_thenTheFirstMatchingRecordIsFound() throws ZFileException {
+            assertTrue(underTest.locate(key("k00"), ZFileConstants.LOCATE_KEY_EQ));
+            assertEquals("first", readValue(underTest));
+        }
+
+        @Test
+        void givenFirst_thenAllRecordsAreRead() throws ZFileException {
+            assertTrue(underTest.locate(key(" "), ZFileConstants.LOCATE_KEY_FIRST));
+            assertEquals(Arrays.asList("first", "second", "third"), readAll(underTest));
+        }
+
+        @Test
+        void givenKeysWithHighBit_thenTheyAreOrderedAsUnsigned() throws ZFileException {
+            byte[] high = record("k004", "high");
+            high[0] = (byte) 0xF0;
+            underTest.write(high);
+
+            assertTrue(underTest.locate(key(" "), ZFileConstants.LOCATE_KEY_FIRST));
+            assertEquals(Arrays.asList("first", "second", "third", "high"), readAll(underTest));
+        }
+
+        @Test
+        void givenRecordNumber_thenExceptionIsThrown() {
+            assertThrows(ZFileException.class, () -> underTest.locate(0L, ZFileConstants.LOCATE_RBA_EQ));
+        }
+    }
+
+    @Nested
+    class WhenChanging {
+        @BeforeEach
+        void setUp() throws ZFileException {
+            underTest.write(record("k001", "first"));
+            underTest.write(record("k002", "second"));
+        }
+
+        @Test
+        void givenDuplicateKey_thenWriteFails() {
+            assertThrows(ZFileException.class, () -> underTest.write(record("k001", "other")));
+        }
+
+        @Test
+        void givenReadRecord_thenItIsUpdated() throws ZFileException {
+            underTest.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ);
+            underTest.read(new byte[RECORD_LENGTH]);
+            underTest.update(record("k001", "changed"));
+
+            underTest.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ);
+            assertEquals("changed", readValue(underTest));
+        }
+
+        @Test
+        void givenNoRecordWasRead_thenUpdateAndDeleteFail() throws ZFileException {
+            underTest.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ);
+
+            assertThrows(ZFileException.class, () -> underTest.update(record("k001", "changed")));
+            assertThrows(ZFileException.class, () -> underTest.delrec());
+        }
+
+        @Test
+        void givenDifferentKey_thenUpdateFails() throws ZFileException {
+            underTest.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ);
+            underTest.read(new byte[RECORD_LENGTH]);
+
+            assertThrows(ZFileException.class, () -> underTest.update(record("k002", "changed")));
+        }
+
+        @Test
+        void givenRecordsDeletedWhileReading_thenTheReadingContinues() throws ZFileException {
+            underTest.locate(key(" "), ZFileConstants.LOCATE_KEY_FIRST);
+            while (underTest.read(new byte[RECORD_LENGTH]) != -1) {
+                underTest.delrec();
+            }
+
+            assertFalse(underTest.locate(key(" "), ZFileConstants.LOCATE_KEY_FIRST));
+        }
+
+        @Test
+        void givenTooLongRecord_thenWriteFails() {
+            assertThrows(ZFileException.class, () -> underTest.write(new byte[RECORD_LENGTH + 1]));
+        }
+
+        @Test
+        void givenReadOnlyFile_thenChangesAreRefused() throws ZFileException {
+            LocalZFile reader = new LocalZFile(fileName, READ, KEY_LENGTH, RECORD_LENGTH);
+            try {
+                assertThrows(ZFileException.class, () -> reader.write(record("k003", "third")));
+
+                reader.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ);
+                reader.read(new byte[RECORD_LENGTH]);
+                assertThrows(ZFileException.class, reader::delrec);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Nested
+    class WhenSharing {
+        @Test
+        void givenTwoFilesOnTheSamePath_thenTheChangesAreVisible() throws ZFileException {
+            LocalZFile other = new LocalZFile(fileName, READ, KEY_LENGTH, RECORD_LENGTH);
+            try {
+                underTest.write(record("k001", "first"));
+
+                assertTrue(other.locate(key("k001"), ZFileConstants.LOCATE_KEY_EQ));
+                assertEquals("first", readValue(other));
+            } finally {
+                other.close();
+            }
+        }
+
+        @Test
+        void givenDifferentRecordLength_thenOpeningFails() {
+            assertThrows(ZFileException.class, () -> new LocalZFile(fileName, READ, KEY_LENGTH, RECORD_LENGTH + 1));
+        }
+
+        @Test
+        void givenReopenedFile_thenTheRecordsArePersisted() throws ZFileException {
+            for (int i = 0; i < 1500; i++) {
+                underTest.write(record(String.format("%04d", i), "v" + i));
+            }
+            underTest.locate(key("0001"), ZFileConstants.LOCATE_KEY_EQ);
+            underTest.read(new byte[RECORD_LENGTH]);
+            underTest.delrec();
+            underTest.close();
+
+            underTest = new LocalZFile(fileName, WRITE, KEY_LENGTH, RECORD_LENGTH);
+            underTest.locate(key(" "), ZFileConstants.LOCATE_KEY_FIRST);
+            List<String> values = readAll(underTest);
+
+            assertEquals(1499, values.size());
+            assertEquals("v0", values.get(0));
+            assertEquals("v2", values.get(1));
+            assertEquals("v1499", values.get(1498));
+        }
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] record(String key, String value) {
+        return Arrays.copyOf((key + value).getBytes(StandardCharsets.US_ASCII), RECORD_LENGTH);
+    }
+
+    private static String readValue(LocalZFile file) throws ZFileException {
+        byte[] buf = new byte[RECORD_LENGTH];
+        int read = file.read(buf);
+        return new String(buf, KEY_LENGTH, read - KEY_LENGTH, StandardCharsets.US_ASCII).trim();
+    }
+
+    private static List<String> readAll(LocalZFile file) throws ZFileException {
+        List<String> values = new ArrayList<>();
+        byte[] buf = new byte[RECORD_LENGTH];
+        int read;
+        while ((read = file.read(buf)) != -1) {
+            values.add(new String(buf, KEY_LENGTH, read - KEY_LENGTH, StandardCharsets.US_ASCII).trim());
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,58 @@
+#!/bin/bash
+
+# Generates the CSV dataset with the given amount of records for run-profiling.sh. Every record has a value of 80 chars,
+# the same as the records of mock_csv.csv.
+#
+# Without the amount of keys every record has its own key. With it the records are a trace of the accesses to that
+# many keys, the keys are drawn by the Zipf distribution with the given skew, 1 by default. The higher the skew, the
+# more often the most popular keys repeat.
+
+records=$1
+keys=$2
+skew=${3:-1}
+
+if [ -z "$records" ]
+then
+    echo "Usage: ./generate-dataset.sh \${records} [\${keys} [\${skew}]] > \${dataset file}"
+    exit 1
+fi
+
+awk -v records="$records" -v keys="$keys" -v skew="$skew" '
+function value(    result, i) {
+    result = ""
+    for (i = 0; i < 80; i++) {
+        result = result substr(chars, int(rand() * length(chars)) + 1, 1)
+    }
+    return result
+}
+function zipf(    target, low, high, middle) {
+    target = rand() * cdf[keys - 1]
+    low = 0
+    high = keys - 1
+    while (low < high) {
+        middle = int((low + high) / 2)
+        if (cdf[middle] < target) {
+            low = middle + 1
+        } else {
+            high = middle
+        }
+    }
+    return low
+}
+BEGIN {
+    srand(1)
+    chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789"
+    if (keys > 0) {
+        total = 0
+        for (i = 0; i < keys; i++) {
+            total += 1 / ((i + 1) ^ skew)
+            cdf[i] = total
+        }
+    }
+
+    print "key,value"
+    for (i = 0; i < records; i++) {
+        key = keys > 0 ? zipf() : i
+        printf "key%017d,%s\n", key, value()
+    }
+}'
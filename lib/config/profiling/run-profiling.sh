@@ -9,8 +9,11 @@ dir="output"
 host=
 port=
 force=0
+metrics=
+gc=
+plan="caching-profiling-parametrized.jmx"
 
-while getopts "HMLt:h:p:d:o:f" flag; do
+while getopts "HMLt:h:p:d:o:fm:j:g:" flag; do
     case $flag in
         H) load_flag="high" ;;
         M) load_flag="medium" ;;
@@ -21,6 +24,9 @@ while getopts "HMLt:h:p:d:o:f" flag; do
         d) dataset=$OPTARG ;;
         o) dir_flag=./$OPTARG ;; # use current directory to reduce chance of accidentally deleted dir
         f) force=1 ;;
+        m) metrics=$OPTARG ;;
+        j) plan=$OPTARG ;;
+        g) gc=$OPTARG ;;
     esac
 done
 
@@ -76,4 +82,28 @@ then
     fi
 fi
 
-jmeter -D javax.net.ssl.keyStore=../../keystore/client_cert/client-certs.p12 -D javax.net.ssl.keyStorePassword=password -Jhost=$host -Jport=$port -Jthreads=$threads -Jdataset=$dataset -Jjmeter.reportgenerator.overall_granularity=1000 -n -t caching-profiling-parametrized.jmx -l $dir/result -e -o $dir/test-results -j $dir/result.log
+if [ -n "$metrics" ]
+then
+    mkdir -p $dir
+    ./sample-threads.sh $metrics > $dir/threads.csv &
+    sampler=$!
+fi
+
+if [ -n "$gc" ]
+then
+    mkdir -p $dir
+    ./sample-gc.sh $gc > $dir/gc.csv &
+    gc_sampler=$!
+fi
+
+jmeter -D javax.net.ssl.keyStore=../../keystore/client_cert/client-certs.p12 -D javax.net.ssl.keyStorePassword=password -Jhost=$host -Jport=$port -Jthreads=$threads -Jdataset=$dataset -Jjmeter.reportgenerator.overall_granularity=1000 -n -t $plan -l $dir/result -e -o $dir/test-results -j $dir/result.log
+
+if [ -n "$sampler" ]
+then
+    kill $sampler
+fi
+
+if [ -n "$gc_sampler" ]
+then
+    kill $gc_sampler
+fi
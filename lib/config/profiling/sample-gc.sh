@@ -0,0 +1,29 @@
+#!/bin/bash
+
+# Samples the garbage collection of the Caching Service every second until it's stopped. Prints the time, the amount
+# and the total time in seconds of the GC pauses so far, the longest recent pause, the used heap and the bytes
+# allocated so far as CSV.
+#
+# The metrics are read from the actuator of the Caching Service, start it with
+#   --management.endpoints.web.exposure.include=health,info,metrics
+
+url=$1
+keystore=${2:-../../keystore/client_cert/client-certs.p12}
+
+if [ -z "$url" ]
+then
+    echo "Usage: ./sample-gc.sh \${Caching Service URL} [\${client certificate keystore}]"
+    exit 1
+fi
+
+metric() {
+    curl -s -k --cert-type P12 --cert "$keystore:password" "$url/application/metrics/$1" \
+        | sed -E "s/.*\"statistic\":\"$2\",\"value\":([0-9.E-]+).*/\1/"
+}
+
+echo "time,jvm.gc.pause.count,jvm.gc.pause.total,jvm.gc.pause.max,jvm.memory.used.heap,jvm.gc.memory.allocated"
+while true
+do
+    echo "$(date +%s),$(metric jvm.gc.pause COUNT),$(metric jvm.gc.pause TOTAL_TIME),$(metric jvm.gc.pause MAX),$(metric 'jvm.memory.used?tag=area:heap' VALUE),$(metric jvm.gc.memory.allocated COUNT)"
+    sleep 1
+done
@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# Samples the threads of the Caching Service every second until it's stopped. Prints the time, the busy request
+# threads of Tomcat and all the live threads of the JVM as CSV.
+#
+# The metrics are read from the actuator of the Caching Service, start it with
+#   --management.endpoints.web.exposure.include=health,info,metrics --server.tomcat.mbeanregistry.enabled=true
+
+url=$1
+keystore=${2:-../../keystore/client_cert/client-certs.p12}
+
+if [ -z "$url" ]
+then
+    echo "Usage: ./sample-threads.sh \${Caching Service URL} [\${client certificate keystore}]"
+    exit 1
+fi
+
+metric() {
+    curl -s -k --cert-type P12 --cert "$keystore:password" "$url/application/metrics/$1" \
+        | sed -E 's/.*"statistic":"VALUE","value":([0-9.]+).*/\1/'
+}
+
+echo "time,tomcat.threads.busy,jvm.threads.live"
+while true
+do
+    echo "$(date +%s),$(metric tomcat.threads.busy),$(metric jvm.threads.live)"
+    sleep 1
+done